@@ -15,6 +15,7 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import net.minecraft.client.Minecraft;
 import net.wurstclient.addons.AddonManager;
+import net.wurstclient.ai.WalkabilityCache;
 import net.wurstclient.altbot.AccountSwitchController;
 import net.wurstclient.altbot.AltBotManager;
 import net.wurstclient.altmanager.AltManager;
@@ -55,6 +56,7 @@ import net.wurstclient.util.BanMemoryManager;
 import net.wurstclient.util.HackToggleFeedback;
 import net.wurstclient.util.TitleBackgroundModeManager;
 import net.wurstclient.util.timer.TimerManager;
+import net.wurstclient.util.chunk.BlockEntityIndex;
 import net.wurstclient.util.json.JsonException;
 import net.wurstclient.nicewurst.NiceWurstModule;
 import net.wurstclient.config.BuildConfig;
@@ -92,6 +94,8 @@ public enum WurstClient
 	private ServerObserver serverObserver;
 	private BanMemoryManager banMemoryManager;
 	private SetbackDetector setbackDetector;
+	private BlockEntityIndex blockEntityIndex;
+	private WalkabilityCache walkabilityCache;
 	private TimerManager timerManager;
 	
 	private boolean enabled = true;
@@ -149,6 +153,10 @@ public enum WurstClient
 		setbackDetector = new SetbackDetector();
 		eventManager.add(net.wurstclient.events.PacketInputListener.class,
 			setbackDetector);
+		blockEntityIndex = new BlockEntityIndex();
+		eventManager.add(UpdateListener.class, blockEntityIndex);
+		walkabilityCache = new WalkabilityCache();
+		eventManager.add(UpdateListener.class, walkabilityCache);
 		timerManager = new TimerManager();
 		eventManager.add(UpdateListener.class, timerManager);
 		eventManager.add(UpdateListener.class, HackToggleFeedback.INSTANCE);
@@ -451,6 +459,16 @@ public enum WurstClient
 		return timerManager;
 	}
 	
+	public BlockEntityIndex getBlockEntityIndex()
+	{
+		return blockEntityIndex;
+	}
+	
+	public WalkabilityCache getWalkabilityCache()
+	{
+		return walkabilityCache;
+	}
+	
 	public boolean isEnabled()
 	{
 		return enabled;
@@ -9,41 +9,20 @@ package net.wurstclient.ai;
 
 import com.mojang.blaze3d.vertex.PoseStack;
 import com.mojang.blaze3d.vertex.VertexConsumer;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map.Entry;
 
 import net.minecraft.client.Minecraft;
 import net.wurstclient.util.WurstBufferSource;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
-import net.minecraft.world.level.block.BaseFireBlock;
-import net.minecraft.world.level.block.Block;
-import net.minecraft.world.level.block.Blocks;
-import net.minecraft.world.level.block.CactusBlock;
-import net.minecraft.world.level.block.FenceBlock;
-import net.minecraft.world.level.block.FenceGateBlock;
-import net.minecraft.world.level.block.LadderBlock;
-import net.minecraft.world.level.block.LiquidBlock;
-import net.minecraft.world.level.block.PressurePlateBlock;
-import net.minecraft.world.level.block.SignBlock;
-import net.minecraft.world.level.block.SlimeBlock;
-import net.minecraft.world.level.block.SoulSandBlock;
-import net.minecraft.world.level.block.TripWireBlock;
-import net.minecraft.world.level.block.VineBlock;
-import net.minecraft.world.level.block.WallBlock;
-import net.minecraft.world.level.block.WebBlock;
-import net.minecraft.world.level.block.state.BlockState;
-import net.minecraft.world.level.material.Fluid;
-import net.minecraft.world.level.material.LavaFluid;
-import net.minecraft.world.level.material.WaterFluid;
 import net.minecraft.world.phys.AABB;
 import net.minecraft.world.phys.Vec3;
 import net.wurstclient.WurstClient;
 import net.wurstclient.WurstRenderLayers;
-import net.wurstclient.util.BlockUtils;
 import net.wurstclient.util.RegionPos;
 import net.wurstclient.util.RenderUtils;
 
@@ -52,6 +31,10 @@ public class PathFinder
 	private static final Minecraft MC = WurstClient.MC;
 	
 	private final PlayerAbilities abilities = PlayerAbilities.get();
+	private final WalkabilityCache walkability =
+		WurstClient.INSTANCE.getWalkabilityCache();
+	// set by PathPlanner while the search runs in the background
+	WalkabilityCache.ReadLog reads;
 	protected boolean fallingAllowed = true;
 	protected boolean divingAllowed = true;
 	
@@ -59,9 +42,33 @@ public class PathFinder
 	protected PathPos current;
 	private final BlockPos goal;
 	
-	private final HashMap<PathPos, Float> costMap = new HashMap<>();
-	protected final HashMap<PathPos, PathPos> prevPosMap = new HashMap<>();
-	private final PathQueue queue = new PathQueue();
+	// Every position the search has reached is a node, numbered in the order
+	// in which it was found. Positions are packed with BlockPos.asLong() and
+	// jumping nodes have their own map, since PathPos tells them apart.
+	private final Long2IntOpenHashMap nodeIds = new Long2IntOpenHashMap();
+	private final Long2IntOpenHashMap jumpingNodeIds =
+		new Long2IntOpenHashMap();
+	private long[] nPos = new long[1024];
+	private boolean[] nJumping = new boolean[1024];
+	private float[] nCost = new float[1024];
+	private int[] nParent = new int[1024];
+	private int[] nHeapIndex = new int[1024];
+	private int nodeCount;
+	private int currentId;
+	private int bestId;
+	private float bestHeuristic = Float.POSITIVE_INFINITY;
+	
+	// the open set, as a binary heap of node ids with decrease-key
+	private int[] heapId = new int[1024];
+	private float[] heapKey = new float[1024];
+	private int heapSize;
+	
+	// neighbors of the node that is being expanded
+	private final long[] neighborPos = new long[10];
+	private final boolean[] neighborJumping = new boolean[10];
+	private int neighborCount;
+	private final BlockPos.MutableBlockPos nextPos =
+		new BlockPos.MutableBlockPos();
 	
 	protected int thinkSpeed = 1024;
 	protected int thinkTime = 200;
@@ -80,8 +87,11 @@ public class PathFinder
 			start = new PathPos(BlockPos.containing(MC.player.position()));
 		this.goal = goal;
 		
-		costMap.put(start, 0F);
-		queue.add(start, getHeuristic(start));
+		nodeIds.defaultReturnValue(-1);
+		jumpingNodeIds.defaultReturnValue(-1);
+		int startId = getOrCreateNode(start.asLong(), start.isJumping());
+		nCost[startId] = 0;
+		heapPush(startId, getHeuristic(start));
 	}
 	
 	public PathFinder(PathFinder pathFinder)
@@ -100,29 +110,166 @@ public class PathFinder
 		for(; i < thinkSpeed && !checkFailed(); i++)
 		{
 			// get next position from queue
-			current = queue.poll();
+			currentId = heapPop();
+			current = getPathPos(currentId);
 			
 			// check if path is found
 			if(checkDone())
 				return;
 			
+			// remember the closest position so far that can be stood on
+			float heuristic = getHeuristic(current);
+			if(heuristic < bestHeuristic
+				&& (canFlyAt(current) || canBeSolid(current.below())))
+			{
+				bestId = currentId;
+				bestHeuristic = heuristic;
+			}
+			
 			// add neighbors to queue
-			for(PathPos next : getNeighbors(current))
+			collectNeighbors(current, currentId);
+			float currentCost = nCost[currentId];
+			for(int j = 0; j < neighborCount; j++)
 			{
 				// check cost
-				float newCost = costMap.get(current) + getCost(current, next);
-				if(costMap.containsKey(next) && costMap.get(next) <= newCost)
+				nextPos.set(neighborPos[j]);
+				float newCost = currentCost + getCost(current, nextPos);
+				int next = getOrCreateNode(neighborPos[j], neighborJumping[j]);
+				if(nCost[next] <= newCost)
 					continue;
 				
-				// add to queue
-				costMap.put(next, newCost);
-				prevPosMap.put(next, current);
-				queue.add(next, newCost + getHeuristic(next));
+				// add to queue, or move it up if it's already queued
+				nCost[next] = newCost;
+				nParent[next] = currentId;
+				float priority = newCost + getHeuristic(nextPos);
+				if(nHeapIndex[next] >= 0)
+					heapDecreaseKey(next, priority);
+				else
+					heapPush(next, priority);
 			}
 		}
 		iterations += i;
 	}
 	
+	private int getOrCreateNode(long pos, boolean jumping)
+	{
+		Long2IntOpenHashMap ids = jumping ? jumpingNodeIds : nodeIds;
+		int id = ids.get(pos);
+		if(id >= 0)
+			return id;
+		
+		id = nodeCount++;
+		if(id >= nPos.length)
+		{
+			int capacity = nPos.length << 1;
+			nPos = Arrays.copyOf(nPos, capacity);
+			nJumping = Arrays.copyOf(nJumping, capacity);
+			nCost = Arrays.copyOf(nCost, capacity);
+			nParent = Arrays.copyOf(nParent, capacity);
+			nHeapIndex = Arrays.copyOf(nHeapIndex, capacity);
+		}
+		
+		nPos[id] = pos;
+		nJumping[id] = jumping;
+		nCost[id] = Float.POSITIVE_INFINITY;
+		nParent[id] = -1;
+		nHeapIndex[id] = -1;
+		ids.put(pos, id);
+		return id;
+	}
+	
+	private int getNodeId(PathPos pos)
+	{
+		return (pos.isJumping() ? jumpingNodeIds : nodeIds).get(pos.asLong());
+	}
+	
+	private PathPos getPathPos(int id)
+	{
+		return new PathPos(BlockPos.of(nPos[id]), nJumping[id]);
+	}
+	
+	private void heapPush(int id, float key)
+	{
+		if(heapSize >= heapId.length)
+		{
+			heapId = Arrays.copyOf(heapId, heapId.length << 1);
+			heapKey = Arrays.copyOf(heapKey, heapKey.length << 1);
+		}
+		
+		int i = heapSize++;
+		heapId[i] = id;
+		heapKey[i] = key;
+		nHeapIndex[id] = i;
+		heapSiftUp(i);
+	}
+	
+	private void heapDecreaseKey(int id, float key)
+	{
+		int i = nHeapIndex[id];
+		heapKey[i] = key;
+		heapSiftUp(i);
+	}
+	
+	private int heapPop()
+	{
+		int top = heapId[0];
+		nHeapIndex[top] = -1;
+		heapSize--;
+		if(heapSize > 0)
+		{
+			heapId[0] = heapId[heapSize];
+			heapKey[0] = heapKey[heapSize];
+			nHeapIndex[heapId[0]] = 0;
+			heapSiftDown(0);
+		}
+		
+		return top;
+	}
+	
+	private void heapSiftUp(int i)
+	{
+		while(i > 0)
+		{
+			int parent = i - 1 >> 1;
+			if(heapKey[parent] <= heapKey[i])
+				break;
+			
+			heapSwap(i, parent);
+			i = parent;
+		}
+	}
+	
+	private void heapSiftDown(int i)
+	{
+		while(true)
+		{
+			int left = (i << 1) + 1;
+			int right = left + 1;
+			int smallest = i;
+			if(left < heapSize && heapKey[left] < heapKey[smallest])
+				smallest = left;
+			if(right < heapSize && heapKey[right] < heapKey[smallest])
+				smallest = right;
+			if(smallest == i)
+				return;
+			
+			heapSwap(i, smallest);
+			i = smallest;
+		}
+	}
+	
+	private void heapSwap(int a, int b)
+	{
+		int id = heapId[a];
+		heapId[a] = heapId[b];
+		heapId[b] = id;
+		float key = heapKey[a];
+		heapKey[a] = heapKey[b];
+		heapKey[b] = key;
+		nHeapIndex[heapId[a]] = a;
+		nHeapIndex[heapId[b]] = b;
+	}
+	
 	protected boolean checkDone()
 	{
 		return done = goal.equals(current);
@@ -130,17 +277,23 @@ public class PathFinder
 	
 	private boolean checkFailed()
 	{
-		return failed = queue.isEmpty() || iterations >= thinkSpeed * thinkTime;
+		return failed = heapSize == 0 || iterations >= thinkSpeed * thinkTime;
 	}
 	
-	private ArrayList<PathPos> getNeighbors(PathPos pos)
+	/**
+	 * Puts the positions that can be reached from <code>pos</code> into
+	 * {@link #neighborPos} and {@link #neighborJumping}. <code>id</code> is
+	 * the node of <code>pos</code>, used to look back along the path when
+	 * checking for fall damage.
+	 */
+	private void collectNeighbors(PathPos pos, int id)
 	{
-		ArrayList<PathPos> neighbors = new ArrayList<>();
+		neighborCount = 0;
 		
 		// abort if too far away
 		if(Math.abs(start.getX() - pos.getX()) > 256
 			|| Math.abs(start.getZ() - pos.getZ()) > 256)
-			return neighbors;
+			return;
 		
 		// get all neighbors
 		BlockPos north = pos.north();
@@ -169,35 +322,35 @@ public class PathFinder
 		{
 			// north
 			if(checkHorizontalMovement(pos, north))
-				neighbors.add(new PathPos(north));
+				addNeighbor(north, false);
 			
 			// east
 			if(checkHorizontalMovement(pos, east))
-				neighbors.add(new PathPos(east));
+				addNeighbor(east, false);
 			
 			// south
 			if(checkHorizontalMovement(pos, south))
-				neighbors.add(new PathPos(south));
+				addNeighbor(south, false);
 			
 			// west
 			if(checkHorizontalMovement(pos, west))
-				neighbors.add(new PathPos(west));
+				addNeighbor(west, false);
 			
 			// north-east
 			if(checkDiagonalMovement(pos, Direction.NORTH, Direction.EAST))
-				neighbors.add(new PathPos(northEast));
+				addNeighbor(northEast, false);
 			
 			// south-east
 			if(checkDiagonalMovement(pos, Direction.SOUTH, Direction.EAST))
-				neighbors.add(new PathPos(southEast));
+				addNeighbor(southEast, false);
 			
 			// south-west
 			if(checkDiagonalMovement(pos, Direction.SOUTH, Direction.WEST))
-				neighbors.add(new PathPos(southWest));
+				addNeighbor(southWest, false);
 			
 			// north-west
 			if(checkDiagonalMovement(pos, Direction.NORTH, Direction.WEST))
-				neighbors.add(new PathPos(northWest));
+				addNeighbor(northWest, false);
 		}
 		
 		// up
@@ -207,16 +360,32 @@ public class PathFinder
 				|| canSafelyStandOn(north) || canSafelyStandOn(east)
 				|| canSafelyStandOn(south) || canSafelyStandOn(west))
 			&& (divingAllowed
-				|| BlockUtils.getBlock(up.above()) != Blocks.WATER))
-			neighbors.add(new PathPos(up, onGround));
+				|| !hasFlag(up.above(), WalkabilityCache.WATER)))
+			addNeighbor(up, onGround);
 		
 		// down
 		if(pos.getY() > MC.level.getMinY() && canGoThrough(down)
-			&& canGoAbove(down.below()) && (flying || canFallBelow(pos))
-			&& (divingAllowed || BlockUtils.getBlock(pos) != Blocks.WATER))
-			neighbors.add(new PathPos(down));
-		
-		return neighbors;
+			&& canGoAbove(down.below()) && (flying || canFallBelow(pos, id))
+			&& (divingAllowed || !hasFlag(pos, WalkabilityCache.WATER)))
+			addNeighbor(down, false);
+	}
+	
+	private void addNeighbor(BlockPos pos, boolean jumping)
+	{
+		neighborPos[neighborCount] = pos.asLong();
+		neighborJumping[neighborCount] = jumping;
+		neighborCount++;
+	}
+	
+	private boolean isNeighbor(PathPos pos)
+	{
+		long packed = pos.asLong();
+		for(int i = 0; i < neighborCount; i++)
+			if(neighborPos[i] == packed
+				&& neighborJumping[i] == pos.isJumping())
+				return true;
+			
+		return false;
 	}
 	
 	private boolean checkHorizontalMovement(BlockPos current, BlockPos next)
@@ -255,7 +424,7 @@ public class PathFinder
 		if(!canGoAbove(pos.below()))
 			return false;
 		
-		if(!divingAllowed && BlockUtils.getBlock(up) == Blocks.WATER)
+		if(!divingAllowed && hasFlag(up, WalkabilityCache.WATER))
 			return false;
 		
 		return true;
@@ -273,7 +442,7 @@ public class PathFinder
 		if(!canGoAbove(pos.below()))
 			return false;
 		
-		if(!divingAllowed && BlockUtils.getBlock(up) == Blocks.WATER)
+		if(!divingAllowed && hasFlag(up, WalkabilityCache.WATER))
 			return false;
 		
 		return true;
@@ -284,15 +453,13 @@ public class PathFinder
 		return false;
 	}
 	
-	@SuppressWarnings("deprecation")
 	protected boolean canBeSolid(BlockPos pos)
 	{
-		BlockState state = BlockUtils.getState(pos);
-		Block block = state.getBlock();
+		int flags = walkability.getFlags(pos, reads);
 		
-		return state.blocksMotion() && !(block instanceof SignBlock)
-			|| block instanceof LadderBlock || abilities.jesus()
-				&& (block == Blocks.WATER || block == Blocks.LAVA);
+		return (flags & (WalkabilityCache.SOLID | WalkabilityCache.LADDER)) != 0
+			|| abilities.jesus() && (flags
+				& (WalkabilityCache.WATER | WalkabilityCache.LAVA)) != 0;
 	}
 	
 	@SuppressWarnings("deprecation")
@@ -305,19 +472,17 @@ public class PathFinder
 			return false;
 		
 		// check if solid
-		BlockState state = BlockUtils.getState(pos);
-		Block block = state.getBlock();
-		if(state.blocksMotion() && !(block instanceof SignBlock))
+		int flags = walkability.getFlags(pos, reads);
+		if((flags & WalkabilityCache.SOLID) != 0)
 			return false;
 		
 		// check if trapped
-		if(block instanceof TripWireBlock
-			|| block instanceof PressurePlateBlock)
+		if((flags & WalkabilityCache.TRAP) != 0)
 			return false;
 		
 		// check if safe
-		if(!abilities.invulnerable()
-			&& (block == Blocks.LAVA || block instanceof BaseFireBlock))
+		if(!abilities.invulnerable() && (flags
+			& (WalkabilityCache.LAVA | WalkabilityCache.FIRE)) != 0)
 			return false;
 		
 		return true;
@@ -326,9 +491,7 @@ public class PathFinder
 	private boolean canGoAbove(BlockPos pos)
 	{
 		// check for fences, etc.
-		Block block = BlockUtils.getBlock(pos);
-		if(block instanceof FenceBlock || block instanceof WallBlock
-			|| block instanceof FenceGateBlock)
+		if(hasFlag(pos, WalkabilityCache.FENCE))
 			return false;
 		
 		return true;
@@ -341,16 +504,14 @@ public class PathFinder
 			return false;
 		
 		// check if safe
-		BlockState state = BlockUtils.getState(pos);
-		Fluid fluid = state.getFluidState().getType();
-		if(!abilities.invulnerable() && (state.getBlock() instanceof CactusBlock
-			|| fluid instanceof LavaFluid))
+		if(!abilities.invulnerable() && hasFlag(pos,
+			WalkabilityCache.CACTUS | WalkabilityCache.LAVA_FLUID))
 			return false;
 		
 		return true;
 	}
 	
-	private boolean canFallBelow(PathPos pos)
+	private boolean canFallBelow(PathPos pos, int id)
 	{
 		// check if player can keep falling
 		BlockPos down2 = pos.below(2);
@@ -366,34 +527,33 @@ public class PathFinder
 			return true;
 		
 		// check if fall ends with slime block
-		if(BlockUtils.getBlock(down2) instanceof SlimeBlock && fallingAllowed)
+		if(hasFlag(down2, WalkabilityCache.SLIME) && fallingAllowed)
 			return true;
 		
 		// check fall damage
-		BlockPos prevPos = pos;
+		int prevId = id;
 		for(int i = 0; i <= (fallingAllowed ? 3 : 1); i++)
 		{
 			// check if prevPos does not exist, meaning that the pathfinding
 			// started during the fall and fall damage should be ignored because
 			// it cannot be prevented
-			if(prevPos == null)
+			if(prevId < 0)
 				return true;
-				
+			
+			BlockPos prevPos = BlockPos.of(nPos[prevId]);
+			
 			// check if point is not part of this fall, meaning that the fall is
 			// too short to cause any damage
 			if(!pos.above(i).equals(prevPos))
 				return true;
 			
 			// check if block resets fall damage
-			Block prevBlock = BlockUtils.getBlock(prevPos);
-			BlockState prevState = BlockUtils.getState(prevPos);
-			if(prevState.getFluidState().getType() instanceof WaterFluid
-				|| prevBlock instanceof LadderBlock
-				|| prevBlock instanceof VineBlock
-				|| prevBlock instanceof WebBlock)
+			if(hasFlag(prevPos,
+				WalkabilityCache.WATER_FLUID | WalkabilityCache.LADDER
+					| WalkabilityCache.VINE | WalkabilityCache.WEB))
 				return true;
 			
-			prevPos = prevPosMap.get(prevPos);
+			prevId = nParent[prevId];
 		}
 		
 		return false;
@@ -402,15 +562,14 @@ public class PathFinder
 	private boolean canFlyAt(BlockPos pos)
 	{
 		return abilities.flying() || !abilities.noWaterSlowdown()
-			&& BlockUtils.getBlock(pos) == Blocks.WATER;
+			&& hasFlag(pos, WalkabilityCache.WATER);
 	}
 	
 	private boolean canClimbUpAt(BlockPos pos)
 	{
 		// check if this block works for climbing
-		Block block = BlockUtils.getBlock(pos);
-		if(!abilities.spider() && !(block instanceof LadderBlock)
-			&& !(block instanceof VineBlock))
+		if(!abilities.spider() && !hasFlag(pos,
+			WalkabilityCache.LADDER | WalkabilityCache.VINE))
 			return false;
 		
 		// check if any adjacent block is solid
@@ -427,16 +586,12 @@ public class PathFinder
 	private boolean canMoveSidewaysInMidairAt(BlockPos pos)
 	{
 		// check feet
-		Block blockFeet = BlockUtils.getBlock(pos);
-		if(BlockUtils.getBlock(pos) instanceof LiquidBlock
-			|| blockFeet instanceof LadderBlock
-			|| blockFeet instanceof VineBlock || blockFeet instanceof WebBlock)
+		if(hasFlag(pos, WalkabilityCache.LIQUID | WalkabilityCache.LADDER
+			| WalkabilityCache.VINE | WalkabilityCache.WEB))
 			return true;
 		
 		// check head
-		Block blockHead = BlockUtils.getBlock(pos.above());
-		if(BlockUtils.getBlock(pos.above()) instanceof LiquidBlock
-			|| blockHead instanceof WebBlock)
+		if(hasFlag(pos.above(), WalkabilityCache.LIQUID | WalkabilityCache.WEB))
 			return true;
 		
 		return false;
@@ -450,17 +605,18 @@ public class PathFinder
 		for(int i = 0; i < positions.length; i++)
 		{
 			BlockPos pos = positions[i];
-			Block block = BlockUtils.getBlock(pos);
+			int flags = walkability.getFlags(pos, reads);
 			
 			// liquids
-			if(block == Blocks.WATER && !abilities.noWaterSlowdown())
+			if((flags & WalkabilityCache.WATER) != 0
+				&& !abilities.noWaterSlowdown())
 				costs[i] *= 1.3164437838225804F;
-			else if(block == Blocks.LAVA)
+			else if((flags & WalkabilityCache.LAVA) != 0)
 				costs[i] *= 4.539515393656079F;
 			
 			// soul sand
 			if(!canFlyAt(pos)
-				&& BlockUtils.getBlock(pos.below()) instanceof SoulSandBlock)
+				&& hasFlag(pos.below(), WalkabilityCache.SOUL_SAND))
 				costs[i] *= 2.5F;
 			
 			// mining
@@ -479,6 +635,11 @@ public class PathFinder
 		return cost;
 	}
 	
+	private boolean hasFlag(BlockPos pos, int flags)
+	{
+		return (walkability.getFlags(pos, reads) & flags) != 0;
+	}
+	
 	private float getHeuristic(BlockPos pos)
 	{
 		float dx = Math.abs(pos.getX() - goal.getX());
@@ -499,17 +660,20 @@ public class PathFinder
 	
 	public int countProcessedBlocks()
 	{
-		return prevPosMap.size();
+		// every node except the start has a previous position
+		return nodeCount - 1;
 	}
 	
 	public int getQueueSize()
 	{
-		return queue.size();
+		return heapSize;
 	}
 	
 	public float getCost(BlockPos pos)
 	{
-		return costMap.get(pos);
+		boolean jumping = pos instanceof PathPos pathPos && pathPos.isJumping();
+		int id = (jumping ? jumpingNodeIds : nodeIds).get(pos.asLong());
+		return id < 0 ? Float.POSITIVE_INFINITY : nCost[id];
 	}
 	
 	public boolean isDone()
@@ -530,24 +694,28 @@ public class PathFinder
 			throw new IllegalStateException("Path was already formatted!");
 		
 		// get last position
-		PathPos pos;
+		int id;
 		if(!failed)
-			pos = current;
+			id = currentId;
 		else
 		{
-			pos = start;
-			for(PathPos next : prevPosMap.keySet())
+			id = 0;
+			BlockPos pos = start;
+			for(int i = 1; i < nodeCount; i++)
+			{
+				BlockPos next = BlockPos.of(nPos[i]);
 				if(getHeuristic(next) < getHeuristic(pos)
 					&& (canFlyAt(next) || canBeSolid(next.below())))
+				{
+					id = i;
 					pos = next;
+				}
+			}
 		}
 		
 		// get positions
-		while(pos != null)
-		{
-			path.add(pos);
-			pos = prevPosMap.get(pos);
-		}
+		for(; id >= 0; id = nParent[id])
+			path.add(getPathPos(id));
 		
 		// reverse path
 		Collections.reverse(path);
@@ -555,6 +723,22 @@ public class PathFinder
 		return path;
 	}
 	
+	/**
+	 * Returns the path to the closest position to the goal that the search
+	 * has expanded so far and that can be stood or flown at, for following
+	 * before the search is finished. Must be called on the thread that runs
+	 * {@link #think()}.
+	 */
+	public ArrayList<PathPos> getBestPathSoFar()
+	{
+		ArrayList<PathPos> bestPath = new ArrayList<>();
+		for(int id = bestId; id >= 0; id = nParent[id])
+			bestPath.add(getPathPos(id));
+		
+		Collections.reverse(bestPath);
+		return bestPath;
+	}
+	
 	public void renderPath(PoseStack matrixStack, boolean debugMode,
 		boolean depthTest)
 	{
@@ -573,27 +757,28 @@ public class PathFinder
 			int thingsRendered = 0;
 			
 			// queue (yellow)
-			for(PathPos element : queue.toArray())
+			for(int i = 0; i < heapSize; i++)
 			{
 				if(thingsRendered >= 5000)
 					break;
 				
-				AABB box = new AABB(element).move(regionOffset).deflate(0.4);
+				AABB box = new AABB(BlockPos.of(nPos[heapId[i]]))
+					.move(regionOffset).deflate(0.4);
 				RenderUtils.drawNode(matrixStack, buffer, box, 0xC0FFFF00);
 				thingsRendered++;
 			}
 			
 			// processed (red or magenta)
-			for(Entry<PathPos, PathPos> entry : prevPosMap.entrySet())
+			for(int i = 1; i < nodeCount; i++)
 			{
 				if(thingsRendered >= 5000)
 					break;
 				
-				int color =
-					entry.getKey().isJumping() ? 0xC0FF00FF : 0xC0FF0000;
+				int color = nJumping[i] ? 0xC0FF00FF : 0xC0FF0000;
 				
-				RenderUtils.drawArrow(matrixStack, buffer, entry.getValue(),
-					entry.getKey(), region, color);
+				RenderUtils.drawArrow(matrixStack, buffer,
+					BlockPos.of(nPos[nParent[i]]), BlockPos.of(nPos[i]), region,
+					color);
 				thingsRendered++;
 			}
 		}
@@ -629,13 +814,27 @@ public class PathFinder
 		
 		// check path
 		for(int i = Math.max(1, index); i < path.size(); i++)
-			if(!getNeighbors(path.get(i - 1)).contains(path.get(i)))
+		{
+			PathPos prev = path.get(i - 1);
+			collectNeighbors(prev, getNodeId(prev));
+			if(!isNeighbor(path.get(i)))
 				return false;
+		}
 			
 		return true;
 	}
 	
 	public PathProcessor getProcessor()
+	{
+		return getProcessor(path);
+	}
+	
+	/**
+	 * Returns a processor for the given path, e.g. one from
+	 * {@link #getBestPathSoFar()}, using the abilities this search was
+	 * started with.
+	 */
+	public PathProcessor getProcessor(ArrayList<PathPos> path)
 	{
 		if(abilities.flying())
 			return new FlyPathProcessor(path, abilities.creativeFlying());
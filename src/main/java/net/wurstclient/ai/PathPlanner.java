@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2014-2026 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.ai;
+
+import com.mojang.blaze3d.vertex.PoseStack;
+import com.mojang.blaze3d.vertex.VertexConsumer;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import net.wurstclient.WurstClient;
+import net.wurstclient.WurstRenderLayers;
+import net.wurstclient.util.RegionPos;
+import net.wurstclient.util.RenderUtils;
+import net.wurstclient.util.WurstBufferSource;
+
+/**
+ * Runs a {@link PathFinder} on a background thread, one {@link
+ * PathFinder#think()} call at a time, so that long searches don't stall the
+ * client tick. After each call, the best path found so far is published for
+ * {@link #getPartialPath()}, so the player can start walking before the
+ * search is over.
+ *
+ * <p>
+ * While the search is running, the client thread must not touch the
+ * {@link PathFinder} itself, except for
+ * {@link PathFinder#getProcessor(ArrayList)}. Once {@link #isFinished()}
+ * returns true, it belongs to the client thread again and can be formatted
+ * and processed as usual. To re-target a search, {@link #cancel()} it and
+ * start a new one.
+ *
+ * <p>
+ * The search reads the live level through {@link WalkabilityCache} while the
+ * client keeps applying packets. If a packet changes the flags of a block
+ * that the search has already read, the search stops after the current
+ * <code>think()</code> call and {@link #isStale()} becomes true. The caller
+ * should then start a new search from where the player is. Changes to blocks
+ * that the search hasn't read don't matter, since it will read their new
+ * flags when it gets there.
+ */
+public final class PathPlanner
+{
+	private static final ExecutorService WORKER =
+		Executors.newSingleThreadExecutor(r -> {
+			Thread t = new Thread(r, "path-planner");
+			t.setDaemon(true);
+			return t;
+		});
+	
+	private final PathFinder pathFinder;
+	private final CompletableFuture<Void> task;
+	private volatile boolean cancelled;
+	private volatile boolean stale;
+	private volatile ArrayList<PathPos> partialPath;
+	
+	public PathPlanner(PathFinder pathFinder)
+	{
+		this.pathFinder = pathFinder;
+		task = CompletableFuture.runAsync(this::run, WORKER);
+	}
+	
+	private void run()
+	{
+		WalkabilityCache walkability =
+			WurstClient.INSTANCE.getWalkabilityCache();
+		WalkabilityCache.ReadLog reads = walkability.openReadLog();
+		pathFinder.reads = reads;
+		
+		try
+		{
+			while(!cancelled && !pathFinder.isDone() && !pathFinder.isFailed())
+			{
+				pathFinder.think();
+				if(reads.isStale())
+				{
+					stale = true;
+					return;
+				}
+				
+				partialPath = pathFinder.getBestPathSoFar();
+			}
+			
+		}catch(RuntimeException e)
+		{
+			// e.g. the world was unloaded mid-search
+			e.printStackTrace();
+			pathFinder.failed = true;
+			
+		}finally
+		{
+			pathFinder.reads = null;
+			walkability.closeReadLog(reads);
+		}
+	}
+	
+	/**
+	 * Stops the search after the current {@link PathFinder#think()} call.
+	 * {@link #isFinished()} becomes true shortly after.
+	 */
+	public void cancel()
+	{
+		cancelled = true;
+	}
+	
+	public boolean isFinished()
+	{
+		return task.isDone();
+	}
+	
+	/**
+	 * Returns true if the search was stopped because blocks that it had
+	 * already read have changed. The {@link PathFinder}'s result is
+	 * meaningless then.
+	 */
+	public boolean isStale()
+	{
+		return stale;
+	}
+	
+	/**
+	 * Returns the best path found so far, or <code>null</code> if the first
+	 * {@link PathFinder#think()} call hasn't finished yet. Every call to
+	 * <code>think()</code> publishes a new list, and published lists are never
+	 * modified.
+	 */
+	public ArrayList<PathPos> getPartialPath()
+	{
+		return partialPath;
+	}
+	
+	public PathFinder getPathFinder()
+	{
+		return pathFinder;
+	}
+	
+	/**
+	 * Renders the finished search like {@link PathFinder#renderPath(PoseStack,
+	 * boolean, boolean)}, or the partial path while it is still running.
+	 */
+	public void renderPath(PoseStack matrixStack, boolean debugMode,
+		boolean depthTest)
+	{
+		if(isFinished())
+		{
+			pathFinder.renderPath(matrixStack, debugMode, depthTest);
+			return;
+		}
+		
+		ArrayList<PathPos> path = partialPath;
+		if(path == null || path.size() < 2)
+			return;
+		
+		WurstBufferSource bs = new WurstBufferSource();
+		VertexConsumer buffer =
+			bs.getBuffer(WurstRenderLayers.getLines(depthTest));
+		
+		matrixStack.pushPose();
+		
+		RegionPos region = RenderUtils.getCameraRegion();
+		RenderUtils.applyRegionalRenderOffset(matrixStack, region);
+		
+		// partial path (cyan)
+		for(int i = 0; i < path.size() - 1; i++)
+			RenderUtils.drawArrow(matrixStack, buffer, path.get(i),
+				path.get(i + 1), region, 0xC000FFFF);
+		
+		matrixStack.popPose();
+		
+		bs.uploadAndDraw();
+	}
+}
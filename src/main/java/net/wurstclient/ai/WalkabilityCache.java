@@ -0,0 +1,455 @@
+/*
+ * Copyright (c) 2014-2026 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.ai;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.BaseFireBlock;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.CactusBlock;
+import net.minecraft.world.level.block.FenceBlock;
+import net.minecraft.world.level.block.FenceGateBlock;
+import net.minecraft.world.level.block.LadderBlock;
+import net.minecraft.world.level.block.LiquidBlock;
+import net.minecraft.world.level.block.PressurePlateBlock;
+import net.minecraft.world.level.block.SignBlock;
+import net.minecraft.world.level.block.SlimeBlock;
+import net.minecraft.world.level.block.SoulSandBlock;
+import net.minecraft.world.level.block.TripWireBlock;
+import net.minecraft.world.level.block.VineBlock;
+import net.minecraft.world.level.block.WallBlock;
+import net.minecraft.world.level.block.WebBlock;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.material.Fluid;
+import net.minecraft.world.level.material.LavaFluid;
+import net.minecraft.world.level.material.WaterFluid;
+import net.wurstclient.WurstClient;
+import net.wurstclient.events.UpdateListener;
+
+/**
+ * Remembers the block properties that {@link PathFinder} checks, as one set
+ * of flags per block and one array of flags per chunk section, so that
+ * searches and replans don't look up the same block states and block classes
+ * over and over.
+ *
+ * <p>
+ * The flags only describe the blocks. Whether the player can actually walk
+ * through lava or on water depends on their abilities and is still decided
+ * by {@link PathFinder}. Sections are filled on first use by whichever thread
+ * asks. {@link net.wurstclient.mixin.ClientPacketListenerMixin} reports
+ * block, section and chunk packets right after the client has applied them.
+ * Flags that changed are written to a copy of their column, so a section that
+ * a worker is still building from the old blocks only ends up in the old
+ * column. The positions whose flags changed are passed on to every open
+ * {@link ReadLog}.
+ */
+public final class WalkabilityCache implements UpdateListener
+{
+	/** Blocks motion and isn't a sign. */
+	static final int SOLID = 1;
+	static final int LADDER = 1 << 1;
+	static final int VINE = 1 << 2;
+	static final int WEB = 1 << 3;
+	/** The water block itself, not a waterlogged block. */
+	static final int WATER = 1 << 4;
+	/** The lava block itself. */
+	static final int LAVA = 1 << 5;
+	static final int FIRE = 1 << 6;
+	/** Tripwire or pressure plate. */
+	static final int TRAP = 1 << 7;
+	/** Fence, wall or fence gate, i.e. too tall to walk on top of. */
+	static final int FENCE = 1 << 8;
+	static final int CACTUS = 1 << 9;
+	static final int WATER_FLUID = 1 << 10;
+	static final int LAVA_FLUID = 1 << 11;
+	static final int LIQUID = 1 << 12;
+	static final int SLIME = 1 << 13;
+	static final int SOUL_SAND = 1 << 14;
+	
+	private static final int PRUNE_INTERVAL_TICKS = 100;
+	private static final char[] EMPTY_SECTION = new char[4096];
+	
+	private final ConcurrentHashMap<Long, Column> columns =
+		new ConcurrentHashMap<>();
+	private final CopyOnWriteArrayList<ReadLog> readLogs =
+		new CopyOnWriteArrayList<>();
+	private ClientLevel level;
+	private int ticksUntilPrune;
+	
+	/**
+	 * Updates the cached sections of the given chunk. Called on the client
+	 * thread after the client has applied a packet that (re)loaded it.
+	 */
+	public void afterLoadChunk(int chunkX, int chunkZ)
+	{
+		long key = ChunkPos.pack(chunkX, chunkZ);
+		Column column = columns.get(key);
+		if(column == null || level == null || level != WurstClient.MC.level)
+			return;
+		
+		LevelChunk chunk = level.getChunk(chunkX, chunkZ);
+		Column updated = new Column(chunk);
+		LongArrayList changed = new LongArrayList();
+		int sectionCount =
+			Math.min(column.sections.length(), updated.sections.length());
+		for(int i = 0; i < sectionCount; i++)
+		{
+			char[] oldFlags = column.sections.get(i);
+			if(oldFlags == null)
+				continue;
+			
+			char[] newFlags = buildSection(chunk.getSections()[i]);
+			updated.sections.set(i, newFlags);
+			
+			int minY = (column.minSectionY + i) << 4;
+			for(int j = 0; j < 4096; j++)
+				if(oldFlags[j] != newFlags[j])
+					changed.add(BlockPos.asLong(chunkX << 4 | j & 15,
+						minY | j >> 8, chunkZ << 4 | j >> 4 & 15));
+		}
+		
+		columns.put(key, updated);
+		publish(changed);
+	}
+	
+	/**
+	 * Updates the cached flags of the given block. Called on the client
+	 * thread after the client has applied a packet that changed it.
+	 */
+	public void afterUpdateBlock(BlockPos pos)
+	{
+		LongArrayList positions = new LongArrayList(1);
+		positions.add(pos.asLong());
+		afterUpdateBlocks(pos.getX() >> 4, pos.getZ() >> 4, positions);
+	}
+	
+	/**
+	 * Updates the cached flags of the given blocks, which must all be in the
+	 * given chunk. Called on the client thread after the client has applied
+	 * a packet that changed them.
+	 */
+	public void afterUpdateBlocks(int chunkX, int chunkZ,
+		LongArrayList positions)
+	{
+		long key = ChunkPos.pack(chunkX, chunkZ);
+		Column column = columns.get(key);
+		if(column == null || level == null || level != WurstClient.MC.level)
+			return;
+		
+		Column updated = new Column(column);
+		boolean[] copied = new boolean[updated.sections.length()];
+		boolean replace = false;
+		LongArrayList changed = new LongArrayList();
+		BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+		for(int i = 0; i < positions.size(); i++)
+		{
+			pos.set(positions.getLong(i));
+			int sectionIndex = SectionPos.blockToSectionCoord(pos.getY())
+				- updated.minSectionY;
+			if(sectionIndex < 0 || sectionIndex >= copied.length)
+				continue;
+			
+			// a worker may be building this section from the old blocks
+			// right now, so it has to end up in the old column
+			char[] flags = updated.sections.get(sectionIndex);
+			if(flags == null)
+			{
+				replace = true;
+				changed.add(pos.asLong());
+				continue;
+			}
+			
+			int index = (pos.getY() & 15) << 8 | (pos.getZ() & 15) << 4
+				| pos.getX() & 15;
+			char newFlags = (char)getFlags(level.getBlockState(pos));
+			if(flags[index] == newFlags)
+				continue;
+			
+			if(!copied[sectionIndex])
+			{
+				flags = flags.clone();
+				updated.sections.set(sectionIndex, flags);
+				copied[sectionIndex] = true;
+			}
+			
+			flags[index] = newFlags;
+			replace = true;
+			changed.add(pos.asLong());
+		}
+		
+		if(!replace)
+			return;
+		
+		columns.put(key, updated);
+		publish(changed);
+	}
+	
+	/**
+	 * Starts logging which blocks are read with the returned {@link ReadLog},
+	 * and which of them change afterwards. Must be closed with
+	 * {@link #closeReadLog(ReadLog)} once the search is over.
+	 */
+	public ReadLog openReadLog()
+	{
+		ReadLog reads = new ReadLog();
+		readLogs.add(reads);
+		return reads;
+	}
+	
+	public void closeReadLog(ReadLog reads)
+	{
+		readLogs.remove(reads);
+	}
+	
+	private void publish(LongArrayList changed)
+	{
+		if(changed.isEmpty())
+			return;
+		
+		for(ReadLog reads : readLogs)
+			for(int i = 0; i < changed.size(); i++)
+				reads.changes.add(changed.getLong(i));
+	}
+	
+	@Override
+	public void onUpdate()
+	{
+		ClientLevel currentLevel = WurstClient.MC.level;
+		if(currentLevel != level)
+		{
+			columns.clear();
+			for(ReadLog reads : readLogs)
+				reads.levelChanged = true;
+			level = currentLevel;
+			ticksUntilPrune = PRUNE_INTERVAL_TICKS;
+			return;
+		}
+		
+		if(--ticksUntilPrune > 0 || level == null)
+			return;
+		
+		ticksUntilPrune = PRUNE_INTERVAL_TICKS;
+		columns.keySet().removeIf(
+			k -> !level.hasChunk(ChunkPos.getX(k), ChunkPos.getZ(k)));
+	}
+	
+	/**
+	 * Returns the flags of the block at the given position. Unloaded chunks
+	 * and positions outside of the world have no flags, like air.
+	 * Thread-safe.
+	 */
+	public int getFlags(BlockPos pos)
+	{
+		return getFlags(pos, null);
+	}
+	
+	/**
+	 * Like {@link #getFlags(BlockPos)}, but also logs the block in
+	 * <code>reads</code>, if it's not <code>null</code>.
+	 */
+	public int getFlags(BlockPos pos, ReadLog reads)
+	{
+		ClientLevel currentLevel = WurstClient.MC.level;
+		if(currentLevel == null)
+			return 0;
+		
+		int chunkX = pos.getX() >> 4;
+		int chunkZ = pos.getZ() >> 4;
+		if(!currentLevel.hasChunk(chunkX, chunkZ))
+			return 0;
+		
+		long key = ChunkPos.pack(chunkX, chunkZ);
+		Column column = columns.get(key);
+		if(column == null)
+		{
+			Column newColumn =
+				new Column(currentLevel.getChunk(chunkX, chunkZ));
+			column = columns.putIfAbsent(key, newColumn);
+			if(column == null)
+				column = newColumn;
+		}
+		
+		int sectionIndex =
+			SectionPos.blockToSectionCoord(pos.getY()) - column.minSectionY;
+		if(sectionIndex < 0 || sectionIndex >= column.sections.length())
+			return 0;
+		
+		char[] flags = column.sections.get(sectionIndex);
+		if(flags == null)
+		{
+			LevelChunk chunk = currentLevel.getChunk(chunkX, chunkZ);
+			flags = buildSection(chunk.getSections()[sectionIndex]);
+			column.sections.compareAndSet(sectionIndex, null, flags);
+		}
+		
+		if(reads != null)
+			reads.add(pos);
+		
+		return flags[(pos.getY() & 15) << 8 | (pos.getZ() & 15) << 4
+			| pos.getX() & 15];
+	}
+	
+	private static char[] buildSection(LevelChunkSection section)
+	{
+		if(section == null || section.hasOnlyAir())
+			return EMPTY_SECTION;
+		
+		char[] flags = new char[4096];
+		for(int y = 0; y < 16; y++)
+			for(int z = 0; z < 16; z++)
+				for(int x = 0; x < 16; x++)
+					flags[y << 8 | z << 4 | x] =
+						(char)getFlags(section.getBlockState(x, y, z));
+		
+		return flags;
+	}
+	
+	@SuppressWarnings("deprecation")
+	private static int getFlags(BlockState state)
+	{
+		if(state.isAir())
+			return 0;
+		
+		Block block = state.getBlock();
+		int flags = 0;
+		
+		if(state.blocksMotion() && !(block instanceof SignBlock))
+			flags |= SOLID;
+		if(block instanceof LadderBlock)
+			flags |= LADDER;
+		if(block instanceof VineBlock)
+			flags |= VINE;
+		if(block instanceof WebBlock)
+			flags |= WEB;
+		if(block == Blocks.WATER)
+			flags |= WATER;
+		if(block == Blocks.LAVA)
+			flags |= LAVA;
+		if(block instanceof BaseFireBlock)
+			flags |= FIRE;
+		if(block instanceof TripWireBlock
+			|| block instanceof PressurePlateBlock)
+			flags |= TRAP;
+		if(block instanceof FenceBlock || block instanceof WallBlock
+			|| block instanceof FenceGateBlock)
+			flags |= FENCE;
+		if(block instanceof CactusBlock)
+			flags |= CACTUS;
+		if(block instanceof LiquidBlock)
+			flags |= LIQUID;
+		if(block instanceof SlimeBlock)
+			flags |= SLIME;
+		if(block instanceof SoulSandBlock)
+			flags |= SOUL_SAND;
+		
+		Fluid fluid = state.getFluidState().getType();
+		if(fluid instanceof WaterFluid)
+			flags |= WATER_FLUID;
+		if(fluid instanceof LavaFluid)
+			flags |= LAVA_FLUID;
+		
+		return flags;
+	}
+	
+	/**
+	 * The blocks that one search has read, one bit per block, plus the
+	 * positions whose flags have changed since it was opened. Apart from
+	 * collecting changes, it's not thread-safe, so only the thread that is
+	 * running the search should use it.
+	 */
+	public static final class ReadLog
+	{
+		private final Long2ObjectOpenHashMap<long[]> sections =
+			new Long2ObjectOpenHashMap<>();
+		private final ConcurrentLinkedQueue<Long> changes =
+			new ConcurrentLinkedQueue<>();
+		private volatile boolean levelChanged;
+		private long lastSectionKey = Long.MIN_VALUE;
+		private long[] lastSection;
+		private boolean stale;
+		
+		private ReadLog()
+		{}
+		
+		private void add(BlockPos pos)
+		{
+			long sectionKey = SectionPos.asLong(pos.getX() >> 4,
+				pos.getY() >> 4, pos.getZ() >> 4);
+			if(sectionKey != lastSectionKey)
+			{
+				lastSection = sections.get(sectionKey);
+				if(lastSection == null)
+				{
+					lastSection = new long[64];
+					sections.put(sectionKey, lastSection);
+				}
+				lastSectionKey = sectionKey;
+			}
+			
+			int index = (pos.getY() & 15) << 8 | (pos.getZ() & 15) << 4
+				| pos.getX() & 15;
+			lastSection[index >> 6] |= 1L << index;
+		}
+		
+		/**
+		 * Returns true if the flags of a block that was read have changed
+		 * since, or if the level has changed.
+		 */
+		public boolean isStale()
+		{
+			if(levelChanged)
+				stale = true;
+			
+			Long change;
+			while(!stale && (change = changes.poll()) != null)
+			{
+				int x = BlockPos.getX(change);
+				int y = BlockPos.getY(change);
+				int z = BlockPos.getZ(change);
+				long[] section =
+					sections.get(SectionPos.asLong(x >> 4, y >> 4, z >> 4));
+				int index = (y & 15) << 8 | (z & 15) << 4 | x & 15;
+				stale = section != null
+					&& (section[index >> 6] & 1L << index) != 0;
+			}
+			
+			return stale;
+		}
+	}
+	
+	private static final class Column
+	{
+		private final int minSectionY;
+		private final AtomicReferenceArray<char[]> sections;
+		
+		private Column(LevelChunk chunk)
+		{
+			minSectionY = SectionPos.blockToSectionCoord(chunk.getMinY());
+			sections = new AtomicReferenceArray<>(chunk.getSections().length);
+		}
+		
+		private Column(Column column)
+		{
+			minSectionY = column.minSectionY;
+			sections = new AtomicReferenceArray<>(column.sections.length());
+			for(int i = 0; i < sections.length(); i++)
+				sections.set(i, column.sections.get(i));
+		}
+	}
+}
@@ -132,6 +132,7 @@ public final class FlightGrid
 			int n = bit >> 6;
 			c.bits[n] = c.bits[n] & (1L << (bit & 0x3F) ^ 0xFFFFFFFFFFFFFFFFL);
 		}
+		c.updateBrick(x & 0xF, yIdx, z & 0xF);
 		if(hazardous)
 		{
 			int n = bit >> 6;
@@ -190,10 +191,19 @@ public final class FlightGrid
 		return this.chunks.size();
 	}
 	
+	/**
+	 * One chunk of the grid. Besides the solid and hazard bits, it keeps an
+	 * "any solid" bit for every 4x4x4 brick, packed so that each long covers
+	 * one 16-block slice and a zero long means the whole 16x16x16 cube is
+	 * empty. Hazard blocks are always solid, so empty bricks have no hazards
+	 * either.
+	 */
 	public static final class GridChunk
 	{
+		private static final long BRICK_COLUMN = 0x000F000F000F000FL;
 		final long[] bits;
 		final long[] hazard;
+		final long[] bricks;
 		volatile int source;
 		
 		GridChunk(long[] bits, long[] hazard, int source)
@@ -201,6 +211,77 @@ public final class FlightGrid
 			this.bits = bits;
 			this.hazard = hazard;
 			this.source = source;
+			this.bricks = new long[(bits.length + 63) >> 6];
+			for(int word = 0; word < bits.length; ++word)
+			{
+				long w = bits[word];
+				if(w == 0L)
+					continue;
+				// one word is 4 rows of one layer, i.e. one z-brick row
+				int yIdx = word >> 2;
+				for(int xb = 0; xb < 4; ++xb)
+				{
+					if((w & BRICK_COLUMN << (xb << 2)) == 0L)
+						continue;
+					this.bricks[yIdx >> 4] |=
+						1L << GridChunk.brickBit(xb, yIdx, word & 3);
+				}
+			}
+		}
+		
+		private static int brickBit(int xb, int yIdx, int zb)
+		{
+			return (yIdx >> 2 & 3) << 4 | zb << 2 | xb;
+		}
+		
+		/**
+		 * Recomputes the brick containing the given block after it changed.
+		 */
+		void updateBrick(int lx, int yIdx, int lz)
+		{
+			int xb = lx >> 2;
+			int zb = lz >> 2;
+			long mask = BRICK_COLUMN << (xb << 2);
+			int fromY = yIdx & ~3;
+			int toY = Math.min(fromY + 4, this.bits.length >> 2);
+			boolean any = false;
+			for(int y = fromY; y < toY && !any; ++y)
+				any = (this.bits[y << 2 | zb] & mask) != 0L;
+			long bit = 1L << GridChunk.brickBit(xb, yIdx, zb);
+			if(any)
+				this.bricks[yIdx >> 4] |= bit;
+			else
+				this.bricks[yIdx >> 4] &= ~bit;
+		}
+		
+		/**
+		 * Returns true if none of the bricks overlapping the given box (in
+		 * chunk-local x/z and grid y indices, inclusive) contain a solid
+		 * block. Whole empty 16-block slices are skipped in one step.
+		 */
+		boolean isEmpty(int lx1, int yIdx1, int lz1, int lx2, int yIdx2,
+			int lz2)
+		{
+			int xb1 = lx1 >> 2;
+			int xb2 = lx2 >> 2;
+			int row = (1 << xb2 + 1) - (1 << xb1);
+			long layer = 0L;
+			for(int zb = lz1 >> 2; zb <= lz2 >> 2; ++zb)
+				layer |= (long)row << (zb << 2);
+			for(int slice = yIdx1 >> 4; slice <= yIdx2 >> 4; ++slice)
+			{
+				long occupied = this.bricks[slice];
+				if(occupied == 0L)
+					continue;
+				int fromYb = slice == yIdx1 >> 4 ? yIdx1 >> 2 & 3 : 0;
+				int toYb = slice == yIdx2 >> 4 ? yIdx2 >> 2 & 3 : 3;
+				long mask = 0L;
+				for(int yb = fromYb; yb <= toYb; ++yb)
+					mask |= layer << (yb << 4);
+				if((occupied & mask) != 0L)
+					return false;
+			}
+			return true;
 		}
 	}
 }
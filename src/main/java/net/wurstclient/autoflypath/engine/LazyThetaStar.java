@@ -61,6 +61,10 @@ public final class LazyThetaStar
 	private int memoCx = Integer.MIN_VALUE;
 	private int memoCz = Integer.MIN_VALUE;
 	private FlightGrid.GridChunk memoChunk;
+	private int emptyX = Integer.MIN_VALUE;
+	private int emptyY;
+	private int emptyZ;
+	private int emptySize;
 	
 	public LazyThetaStar(FlightGrid grid, ChunkEnsurer ensurer)
 	{
@@ -260,6 +264,40 @@ public final class LazyThetaStar
 			|| this.solid(x, y + 2, z);
 	}
 	
+	/**
+	 * Returns true if the given box (inclusive) has no solid blocks, judging
+	 * by the 4x4x4 bricks of {@link FlightGrid.GridChunk}. Like
+	 * {@link #solid(int, int, int)}, blocks below the grid and in missing
+	 * chunks count as solid.
+	 */
+	private boolean isEmpty(int x1, int y1, int z1, int x2, int y2, int z2)
+	{
+		int yIdx1 = y1 - this.grid.minY();
+		int yIdx2 = Math.min(y2 - this.grid.minY(), this.grid.height() - 1);
+		if(yIdx1 < 0)
+		{
+			return false;
+		}
+		if(yIdx1 > yIdx2)
+		{
+			return true;
+		}
+		for(int cx = x1 >> 4; cx <= x2 >> 4; ++cx)
+		{
+			for(int cz = z1 >> 4; cz <= z2 >> 4; ++cz)
+			{
+				this.touch(cx << 4, cz << 4);
+				FlightGrid.GridChunk c = this.memoChunk(cx << 4, cz << 4);
+				if(c == null || !c.isEmpty(Math.max(x1, cx << 4) & 0xF, yIdx1,
+					Math.max(z1, cz << 4) & 0xF,
+					Math.min(x2, (cx << 4) + 15) & 0xF, yIdx2,
+					Math.min(z2, (cz << 4) + 15) & 0xF))
+					return false;
+			}
+		}
+		return true;
+	}
+	
 	private boolean passable(int x, int y, int z)
 	{
 		this.touch(x, z);
@@ -319,11 +357,43 @@ public final class LazyThetaStar
 		return this.los(a, b, 0.45);
 	}
 	
+	/**
+	 * The cell test of {@link #los(long, long, double)}. Once a cell turns
+	 * out to be in an empty 16x16x16 cube or 4x4x4 brick, with nothing
+	 * within 4 blocks below or 2 above it either, the rest of the ray passes
+	 * through that box without probing the grid again.
+	 */
+	private boolean losBlocked(int x, int y, int z)
+	{
+		if(x >= this.emptyX && x < this.emptyX + this.emptySize
+			&& y >= this.emptyY && y < this.emptyY + this.emptySize
+			&& z >= this.emptyZ && z < this.emptyZ + this.emptySize)
+		{
+			return false;
+		}
+		int minY = this.grid.minY();
+		for(int size = 16; size >= 4; size >>= 2)
+		{
+			int bx = x & -size;
+			int by = minY + (y - minY & -size);
+			int bz = z & -size;
+			if(!this.isEmpty(bx, by - 4, bz, bx + size - 1, by + size + 1,
+				bz + size - 1))
+				continue;
+			this.emptyX = bx;
+			this.emptyY = by;
+			this.emptyZ = bz;
+			this.emptySize = size;
+			return false;
+		}
+		return this.columnBlockedEnsured(x, y, z)
+			|| this.hazardBelow(x, y, z, 4);
+	}
+	
 	private boolean los(long a, long b, double offset)
 	{
 		double[][] offs;
-		GridRay.CellTest test = (x, y, z) -> this.columnBlockedEnsured(x, y, z)
-			|| this.hazardBelow(x, y, z, 4);
+		GridRay.CellTest test = this::losBlocked;
 		double ax = (double)LazyThetaStar.unpackX(a) + 0.5;
 		double ay = LazyThetaStar.unpackY(a);
 		double az = (double)LazyThetaStar.unpackZ(a) + 0.5;
@@ -342,6 +412,22 @@ public final class LazyThetaStar
 	}
 	
 	private double penalty(int x, int y, int z)
+	{
+		// nothing within reach of the terrain checks below
+		double p = this.isEmpty(x - 4, y - 8, z - 4, x + 4, y + 4, z + 4) ? 0.0
+			: this.terrainPenalty(x, y, z);
+		for(double[] zone : this.noGoZones)
+		{
+			double dx = x + 0.5 - zone[0];
+			double dy = y + 0.5 - zone[1];
+			double dz = z + 0.5 - zone[2];
+			if(dx * dx + dy * dy + dz * dz < zone[3])
+				p += NO_GO_PENALTY;
+		}
+		return p;
+	}
+	
+	private double terrainPenalty(int x, int y, int z)
 	{
 		int clearance = this.lateralClearance(x, y, z);
 		double p = CLEARANCE_PENALTY[clearance];
@@ -367,14 +453,6 @@ public final class LazyThetaStar
 			p += 1.2 * (double)(9 - dy) / 8.0;
 			break;
 		}
-		for(double[] zone : this.noGoZones)
-		{
-			double dx = x + 0.5 - zone[0];
-			double dy = y + 0.5 - zone[1];
-			double dz = z + 0.5 - zone[2];
-			if(dx * dx + dy * dy + dz * dz < zone[3])
-				p += NO_GO_PENALTY;
-		}
 		return p;
 	}
 	
@@ -524,6 +602,7 @@ public final class LazyThetaStar
 		int maxFeetY = this.grid.minY() + this.grid.height() - 3;
 		sy = Math.max(minY, Math.min(maxFeetY, sy));
 		gy = Math.max(minY, Math.min(maxFeetY, gy));
+		this.emptyX = Integer.MIN_VALUE;
 		this.forcedPassable = startPos = this.findUsableStart(sx, sy, sz);
 		long goalPos = LazyThetaStar.pack(gx, gy, gz);
 		int startId = this.nodeId(startPos);
@@ -573,12 +652,16 @@ public final class LazyThetaStar
 			}
 			double sg = this.nG[s];
 			boolean[] cube = this.cube;
+			// every block that passable() reads for the 26 neighbors
+			boolean open =
+				this.isEmpty(x - 2, y - 5, z - 2, x + 2, y + 4, z + 2);
 			for(i = 0; i < NEIGHBORS.length; ++i)
 			{
 				d = NEIGHBORS[i];
 				int ny = y + d[1];
-				cube[LazyThetaStar.NEIGHBOR_CUBE[i]] = ny >= minY
-					&& ny <= maxFeetY && this.passable(x + d[0], ny, z + d[2]);
+				cube[LazyThetaStar.NEIGHBOR_CUBE[i]] =
+					ny >= minY && ny <= maxFeetY
+						&& (open || this.passable(x + d[0], ny, z + d[2]));
 			}
 			block2: for(i = 0; i < NEIGHBORS.length; ++i)
 			{
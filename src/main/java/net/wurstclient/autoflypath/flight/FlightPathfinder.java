@@ -14,6 +14,7 @@ import net.wurstclient.autoflypath.engine.NetherBiomeRisk;
 import net.wurstclient.autoflypath.engine.NetherTerrainGenerator;
 import java.lang.ref.SoftReference;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
@@ -28,8 +29,10 @@ import net.minecraft.tags.BlockTags;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.chunk.LevelChunk;
 import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.MissingPaletteEntryException;
 import net.minecraft.world.level.chunk.PalettedContainer;
 import net.minecraft.world.phys.Vec3;
+import net.wurstclient.util.chunk.PaletteUtils;
 
 public final class FlightPathfinder
 {
@@ -54,6 +57,13 @@ public final class FlightPathfinder
 	private static final double[][] CONTINUE_ROTS = {{1.0, 0.0}, {0.819, 0.574},
 		{0.819, -0.574}, {0.342, 0.94}, {0.342, -0.94}};
 	
+	private static final int PACK_SOLID = 1;
+	private static final int PACK_HAZARD = 2;
+	// only used on the AutoFly-Pack thread
+	private final int[] packIds = new int[4096];
+	private final int[] packFlags =
+		new int[PaletteUtils.MAX_LOCAL_PALETTE_SIZE];
+	
 	private static boolean isBurnHazard(BlockState state)
 	{
 		return state.is(Blocks.LAVA) || state.is(Blocks.FIRE)
@@ -179,29 +189,18 @@ public final class FlightPathfinder
 					|| sectionBottomY >= gridMinY + gridHeight
 					|| (section = sections[i]) == null || section.hasOnlyAir())
 					continue;
-				PalettedContainer states = section.getStates();
-				for(int ly = 0; ly < 16; ++ly)
-				{
-					int yIdx = sectionBottomY + ly - gridMinY;
-					if(yIdx < 0 || yIdx >= gridHeight)
-						continue;
-					for(int z = 0; z < 16; ++z)
-					{
-						for(int x = 0; x < 16; ++x)
-						{
-							BlockState state = (BlockState)states.get(x, ly, z);
-							if(state.isAir() || state.is(BlockTags.LEAVES))
-								continue;
-							int bit = yIdx << 8 | z << 4 | x;
-							int n = bit >> 6;
-							bits[n] = bits[n] | 1L << (bit & 0x3F);
-							if(!FlightPathfinder.isBurnHazard(state))
-								continue;
-							int n2 = bit >> 6;
-							hazard[n2] = hazard[n2] | 1L << (bit & 0x3F);
-						}
-					}
-				}
+				int fromLy = Math.max(0, gridMinY - sectionBottomY);
+				int toLy = Math.min(16, gridMinY + gridHeight - sectionBottomY);
+				int yIdxBase = sectionBottomY - gridMinY;
+				PalettedContainer<BlockState> states = section.getStates();
+				PaletteUtils.Data<BlockState> data =
+					PaletteUtils.getData(states);
+				if(data == null || !data.isLocal())
+					this.packSectionByBlock(states, bits, hazard, yIdxBase,
+						fromLy, toLy);
+				else
+					this.packSectionByPalette(data, bits, hazard, yIdxBase,
+						fromLy, toLy);
 			}
 			this.grid.putChunk(chunk.getPos().x(), chunk.getPos().z(), bits,
 				hazard, 1);
@@ -212,6 +211,113 @@ public final class FlightPathfinder
 		}
 	}
 	
+	/**
+	 * Classifies each palette entry once and then builds the grid words of
+	 * the section 64 blocks at a time. Since a grid layer is 256 bits in the
+	 * same (z, x) order as a section layer, each layer is exactly four words.
+	 */
+	private void packSectionByPalette(PaletteUtils.Data<BlockState> data,
+		long[] bits, long[] hazard, int yIdxBase, int fromLy, int toLy)
+	{
+		int paletteSize = data.paletteSize();
+		int[] flags = this.packFlags;
+		int anyFlags = 0;
+		int allFlags = PACK_SOLID | PACK_HAZARD;
+		for(int id = 0; id < paletteSize; ++id)
+		{
+			int entryFlags;
+			try
+			{
+				entryFlags = FlightPathfinder.getPackFlags(
+					data.palette().valueFor(id));
+			}catch(MissingPaletteEntryException e)
+			{
+				// unknown block, so don't fly into it
+				entryFlags = PACK_SOLID;
+			}
+			flags[id] = entryFlags;
+			anyFlags |= entryFlags;
+			allFlags &= entryFlags;
+		}
+		if((anyFlags & PACK_SOLID) == 0)
+			return;
+		
+		int fromWord = yIdxBase + fromLy << 2;
+		int toWord = yIdxBase + toLy << 2;
+		if((allFlags & PACK_SOLID) != 0)
+		{
+			// uniform enough that the ids don't matter
+			Arrays.fill(bits, fromWord, toWord, -1L);
+			if((allFlags & PACK_HAZARD) != 0)
+			{
+				Arrays.fill(hazard, fromWord, toWord, -1L);
+				return;
+			}
+			if((anyFlags & PACK_HAZARD) == 0)
+				return;
+		}
+		
+		int[] ids = this.packIds;
+		data.unpackIds(ids);
+		boolean packBits = (allFlags & PACK_SOLID) == 0;
+		boolean packHazard = (anyFlags & PACK_HAZARD) != 0
+			&& (allFlags & PACK_HAZARD) == 0;
+		for(int word = fromWord; word < toWord; ++word)
+		{
+			int first = word - (yIdxBase << 2) << 6;
+			long solidWord = 0L;
+			long hazardWord = 0L;
+			for(int b = 0; b < 64; ++b)
+			{
+				int id = ids[first + b];
+				int entryFlags = id < paletteSize ? flags[id] : PACK_SOLID;
+				solidWord |= (long)(entryFlags & PACK_SOLID) << b;
+				hazardWord |= (long)(entryFlags >> 1) << b;
+			}
+			if(packBits)
+				bits[word] = solidWord;
+			if(packHazard)
+				hazard[word] = hazardWord;
+		}
+	}
+	
+	/**
+	 * Fallback for sections with a global palette, which has too many
+	 * entries to classify up front.
+	 */
+	private void packSectionByBlock(PalettedContainer<BlockState> states,
+		long[] bits, long[] hazard, int yIdxBase, int fromLy, int toLy)
+	{
+		for(int ly = fromLy; ly < toLy; ++ly)
+		{
+			int yIdx = yIdxBase + ly;
+			for(int z = 0; z < 16; ++z)
+			{
+				for(int x = 0; x < 16; ++x)
+				{
+					int entryFlags =
+						FlightPathfinder.getPackFlags(states.get(x, ly, z));
+					if(entryFlags == 0)
+						continue;
+					int bit = yIdx << 8 | z << 4 | x;
+					int n = bit >> 6;
+					bits[n] = bits[n] | 1L << (bit & 0x3F);
+					if((entryFlags & PACK_HAZARD) == 0)
+						continue;
+					hazard[n] = hazard[n] | 1L << (bit & 0x3F);
+				}
+			}
+		}
+	}
+	
+	private static int getPackFlags(BlockState state)
+	{
+		if(state.isAir() || state.is(BlockTags.LEAVES))
+			return 0;
+		return FlightPathfinder.isBurnHazard(state) ? PACK_SOLID | PACK_HAZARD
+			: PACK_SOLID;
+	}
+	
 	public void setNoGoZones(Collection<double[]> zones)
 	{
 		this.noGoZones.clear();
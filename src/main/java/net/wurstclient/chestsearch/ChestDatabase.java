@@ -7,174 +7,246 @@
  */
 package net.wurstclient.chestsearch;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.lang.reflect.Type;
+import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.stream.Collectors;
+import java.util.Set;
+import net.minecraft.world.level.ChunkPos;
 import net.wurstclient.WurstClient;
+import net.wurstclient.chestsearch.ChestJournal.Change;
 import net.wurstclient.hacks.ChestSearchHack;
 
+/**
+ * All recorded chests of one server. Changes are appended to a journal
+ * instead of rewriting the whole file, and the journal is folded back into
+ * the snapshot on a background thread once it gets long.
+ *
+ * <p>
+ * Entries are indexed by the words they contain, for {@link #search(String)},
+ * and by the chunks they cover, for finding the entry at or next to a
+ * position.
+ *
+ * <p>
+ * Every call to {@link #upsert(ChestEntry)} or
+ * {@link #removeAt(String, String, int, int, int)} that changes something
+ * bumps the version. Consumers that keep their own view of the entries can
+ * hold on to a {@link Snapshot} and then ask for the
+ * {@link #getChangesSince(long) changes since its version}, instead of
+ * copying the whole database every time they look at it.
+ */
 public class ChestDatabase
 {
+	private static final int MIN_COMPACT_CHANGES = 256;
+	// entries whose bounds cover more chunks than this are checked linearly
+	private static final int MAX_INDEXED_CHUNK_SPAN = 4;
+	private static final int MAX_CHANGE_HISTORY = 64;
+	
 	private final File file;
-	private final Gson gson;
-	private List<ChestEntry> entries;
+	private final ChestJournal journal;
+	private final LinkedHashSet<ChestEntry> entries = new LinkedHashSet<>();
+	private final ChestTextIndex textIndex = new ChestTextIndex();
+	private final HashMap<Scope, SpatialBucket> spatialIndex =
+		new HashMap<>();
+	private final ArrayDeque<ChangeSet> changeHistory = new ArrayDeque<>();
+	private final ArrayList<ChestEntry> pendingAdded = new ArrayList<>();
+	private final ArrayList<ChestEntry> pendingRemoved = new ArrayList<>();
+	private long version;
+	private List<ChestEntry> snapshot;
 	
 	public ChestDatabase(File file)
 	{
 		this.file = file;
-		this.gson = new GsonBuilder().setPrettyPrinting().create();
-		this.entries = new ArrayList<>();
+		this.journal = new ChestJournal(file);
 		load();
 	}
 	
 	private void load()
 	{
+		boolean needsCompaction;
 		try
 		{
-			if(!file.exists())
+			for(ChestEntry entry : journal.readSnapshot())
 			{
-				file.getParentFile().mkdirs();
-				file.createNewFile();
-				this.entries = new ArrayList<>();
-				save();
-				return;
-			}
-			Type t = new TypeToken<List<ChestEntry>>()
-			{}.getType();
-			try(FileReader r = new FileReader(file))
-			{
-				List<ChestEntry> read = gson.fromJson(r, t);
-				if(read != null)
-				{
-					for(ChestEntry entry : read)
-					{
-						if(entry != null)
-							entry.ensureBounds();
-					}
-					this.entries = read;
-					if(dedupeLoadedEntries())
-						save();
-				}
+				if(entry == null)
+					continue;
+				entry.ensureBounds();
+				add(entry);
 			}
+			
+			List<Change> changes = journal.readJournal();
+			for(Change change : changes)
+				replay(change);
+			needsCompaction = !changes.isEmpty();
+			
 		}catch(Exception e)
 		{
 			e.printStackTrace();
-			this.entries = new ArrayList<>();
+			entries.clear();
+			textIndex.clear();
+			spatialIndex.clear();
+			pendingAdded.clear();
+			pendingRemoved.clear();
+			return;
 		}
+		
+		if(dedupeLoadedEntries())
+			needsCompaction = true;
+		// loading isn't a change that anyone needs to catch up on
+		pendingAdded.clear();
+		pendingRemoved.clear();
+		if(needsCompaction)
+			compact(false);
 	}
 	
+	/**
+	 * Writes all entries to the snapshot file right away and waits for it.
+	 * Normal changes don't need this, since they are journaled as they
+	 * happen.
+	 */
 	public synchronized void save()
 	{
-		try(FileWriter w = new FileWriter(file))
+		compact(true);
+	}
+	
+	private void compact(boolean wait)
+	{
+		try
 		{
-			gson.toJson(entries, w);
-			log("[ChestDatabase] saved " + entries.size() + " entries to "
-				+ file.getAbsolutePath());
-		}catch(Exception e)
+			journal.compact(new ArrayList<>(entries), wait);
+			log("[ChestDatabase] compacting " + entries.size()
+				+ " entries into " + file.getAbsolutePath());
+			
+		}catch(IOException e)
 		{
 			e.printStackTrace();
 		}
 	}
 	
-	public synchronized void upsert(ChestEntry entry)
+	private void commit(List<Change> changes)
 	{
-		if(entry != null)
-			entry.ensureBounds();
-		// Try to find an existing entry with the same contents (best match)
+		publishChanges();
+		
 		try
 		{
-			String eServer = entry.serverIp;
-			String eDim = entry.dimension;
-			String entryKey = contentsKey(entry);
-			if(entryKey != null)
+			journal.append(changes);
+			
+		}catch(IOException e)
+		{
+			e.printStackTrace();
+			return;
+		}
+		
+		if(!journal.isCompacting() && journal.getChangeCount() >= Math
+			.max(MIN_COMPACT_CHANGES, entries.size() / 4))
+			compact(false);
+	}
+	
+	private void replay(Change change)
+	{
+		ChestEntry entry = change.entry;
+		entry.ensureBounds();
+		for(ChestEntry e : getNearby(entry))
+			if(equalsPos(e, entry))
 			{
-				for(ChestEntry e : entries)
+				remove(e);
+				break;
+			}
+		
+		if(Change.PUT.equals(change.op))
+			add(entry);
+	}
+	
+	public synchronized void upsert(ChestEntry entry)
+	{
+		if(entry == null)
+			return;
+		entry.ensureBounds();
+		
+		List<ChestEntry> nearby = getNearby(entry);
+		ChestEntry replaced = null;
+		boolean byContents = false;
+		
+		// Prefer an existing entry with the same contents. Only merge by
+		// contents if the recorded bounds match the new entry, so that
+		// different chests that happen to contain identical items (e.g. two
+		// single-chest halves of a double chest) aren't merged together.
+		String entryKey = contentsKey(entry);
+		if(entryKey != null)
+			for(ChestEntry e : nearby)
+				if(equalsPos(e, entry) && entryKey.equals(contentsKey(e)))
 				{
-					if(!equalsServerDim(e, eServer, eDim))
-						continue;
-					String k = contentsKey(e);
-					if(k != null && k.equals(entryKey))
-					{
-						// Only merge by contents if the recorded bounds match
-						// the new entry.
-						// This prevents different chests that happen to contain
-						// identical
-						// items (e.g. two single-chest halves of a double chest
-						// or
-						// two separate chests) from being merged together.
-						if(!equalsPos(e, entry))
-							continue;
-						// merge: preserve original primary coords
-						entry.x = e.x;
-						entry.y = e.y;
-						entry.z = e.z;
-						// preserve original clicked coords as well
-						entry.clickedX = e.clickedX;
-						entry.clickedY = e.clickedY;
-						entry.clickedZ = e.clickedZ;
-						// remove existing and replace
-						entries.remove(e);
-						entry.touch();
-						entries.add(entry);
-						finalizeInsert(entry);
-						log("[ChestDatabase] merged entry by contents; preserved primary="
-							+ entry.x + "," + entry.y + "," + entry.z);
-						return;
-					}
+					replaced = e;
+					byContents = true;
+					break;
 				}
-			}
-		}catch(Throwable ignored)
-		{}
-		Iterator<ChestEntry> it = entries.iterator();
-		while(it.hasNext())
+		
+		if(replaced == null)
+			for(ChestEntry e : nearby)
+				if(equalsPos(e, entry))
+				{
+					replaced = e;
+					break;
+				}
+		
+		ArrayList<Change> changes = new ArrayList<>();
+		if(replaced != null)
 		{
-			ChestEntry e = it.next();
-			if(equalsPos(e, entry) && equalsServerDim(e, entry))
-			{
-				// preserve the original primary recorded position (first seen)
-				entry.x = e.x;
-				entry.y = e.y;
-				entry.z = e.z;
-				entry.clickedX = e.clickedX;
-				entry.clickedY = e.clickedY;
-				entry.clickedZ = e.clickedZ;
-				entry.touch();
-				it.remove();
-				entries.add(entry);
-				finalizeInsert(entry);
-				log("[ChestDatabase] updated entry at bounds "
-					+ entry.getMinPos() + " -> " + entry.getMaxPos()
-					+ " facing=" + entry.facing + " (preserved primary="
-					+ entry.x + "," + entry.y + "," + entry.z + ")");
-				return;
-			}
+			// preserve the original primary and clicked positions (first
+			// seen)
+			entry.x = replaced.x;
+			entry.y = replaced.y;
+			entry.z = replaced.z;
+			entry.clickedX = replaced.clickedX;
+			entry.clickedY = replaced.clickedY;
+			entry.clickedZ = replaced.clickedZ;
+			remove(replaced);
+			changes.add(Change.remove(replaced));
 		}
+		
 		entry.touch();
-		entries.add(entry);
-		finalizeInsert(entry);
-		log("[ChestDatabase] added entry at bounds " + entry.getMinPos()
-			+ " -> " + entry.getMaxPos() + " facing=" + entry.facing);
+		add(entry);
+		if(removeOverlappingDuplicates(entry, changes))
+			log("[ChestDatabase] cleaned overlapping duplicates after insert.");
+		changes.add(Change.put(entry));
+		commit(changes);
+		
+		if(byContents)
+			log("[ChestDatabase] merged entry by contents; preserved primary="
+				+ entry.x + "," + entry.y + "," + entry.z);
+		else if(replaced != null)
+			log("[ChestDatabase] updated entry at bounds " + entry.getMinPos()
+				+ " -> " + entry.getMaxPos() + " facing=" + entry.facing
+				+ " (preserved primary=" + entry.x + "," + entry.y + ","
+				+ entry.z + ")");
+		else
+			log("[ChestDatabase] added entry at bounds " + entry.getMinPos()
+				+ " -> " + entry.getMaxPos() + " facing=" + entry.facing);
 	}
 	
 	public synchronized void removeAt(String serverIp, String dimension, int x,
 		int y, int z)
 	{
-		entries = entries
-			.stream().filter(e -> !(equalsServerDim(e, serverIp, dimension)
-				&& e.x == x && e.y == y && e.z == z))
-			.collect(Collectors.toList());
-		save();
+		ArrayList<Change> changes = new ArrayList<>();
+		SpatialBucket bucket = spatialIndex.get(new Scope(serverIp, dimension));
+		if(bucket != null)
+			for(ChestEntry e : bucket.get(x >> 4, z >> 4, x >> 4, z >> 4))
+				if(e.x == x && e.y == y && e.z == z)
+				{
+					remove(e);
+					changes.add(Change.remove(e));
+				}
+		
+		commit(changes);
 		log("[ChestDatabase] removed entry at " + x + "," + y + "," + z);
 	}
 	
@@ -182,9 +254,14 @@ public class ChestDatabase
 	{
 		String q = query == null ? "" : query.toLowerCase(Locale.ROOT).trim();
 		String[] tokens = tokenizeQuery(q);
+		// The index only rules entries out, so the full check below still
+		// decides, and iterating in insertion order keeps results stable.
+		Set<ChestEntry> candidates = textIndex.getCandidates(tokens);
 		List<ChestEntry> res = new ArrayList<>();
 		for(ChestEntry e : entries)
 		{
+			if(candidates != null && !candidates.contains(e))
+				continue;
 			boolean matched = false;
 			if(e.serverIp != null && containsQueryTokens(
 				e.serverIp.toLowerCase(Locale.ROOT), q, tokens))
@@ -281,7 +358,7 @@ public class ChestDatabase
 		return true;
 	}
 	
-	private static String normalizeForTokenSearch(String value)
+	static String normalizeForTokenSearch(String value)
 	{
 		if(value == null || value.isBlank())
 			return "";
@@ -315,15 +392,12 @@ public class ChestDatabase
 		return true;
 	}
 	
-	private void finalizeInsert(ChestEntry entry)
-	{
-		boolean removed = removeOverlappingDuplicates(entry);
-		if(removed)
-			log("[ChestDatabase] cleaned overlapping duplicates after insert.");
-		save();
-	}
-	
-	private boolean removeOverlappingDuplicates(ChestEntry reference)
+	/**
+	 * Removes entries with the same contents whose bounds overlap the given
+	 * one, journaling each removal.
+	 */
+	private boolean removeOverlappingDuplicates(ChestEntry reference,
+		List<Change> changes)
 	{
 		String refKey = contentsKey(reference);
 		if(refKey == null)
@@ -335,14 +409,10 @@ public class ChestDatabase
 		int refMaxY = Math.max(reference.y, reference.maxY);
 		int refMaxZ = Math.max(reference.z, reference.maxZ);
 		boolean removed = false;
-		java.util.Iterator<ChestEntry> it = entries.iterator();
-		while(it.hasNext())
+		for(ChestEntry other : getNearby(reference))
 		{
-			ChestEntry other = it.next();
 			if(other == reference)
 				continue;
-			if(!equalsServerDim(other, reference))
-				continue;
 			String otherKey = contentsKey(other);
 			if(otherKey == null || !refKey.equals(otherKey))
 				continue;
@@ -357,7 +427,9 @@ public class ChestDatabase
 				&& refMinZ <= otherMaxZ && refMaxZ >= otherMinZ;
 			if(!overlap)
 				continue;
-			it.remove();
+			remove(other);
+			if(changes != null)
+				changes.add(Change.remove(other));
 			log("[ChestDatabase] removed overlapping duplicate at "
 				+ other.getMinPos() + " -> " + other.getMaxPos());
 			removed = true;
@@ -389,42 +461,110 @@ public class ChestDatabase
 	
 	private boolean dedupeLoadedEntries()
 	{
-		if(entries == null || entries.isEmpty())
+		if(entries.isEmpty())
 			return false;
-		java.util.List<ChestEntry> copy = new ArrayList<>(entries);
-		entries = new ArrayList<>();
+		// newest first, so that the most recently recorded duplicate wins
+		ArrayList<ChestEntry> newestFirst = new ArrayList<>(entries);
+		Collections.reverse(newestFirst);
 		boolean removedAny = false;
-		for(ChestEntry entry : copy)
-		{
-			if(entry == null)
-				continue;
-			entry.ensureBounds();
-			entries.add(entry);
-			if(removeOverlappingDuplicates(entry))
+		for(ChestEntry entry : newestFirst)
+			if(entries.contains(entry)
+				&& removeOverlappingDuplicates(entry, null))
 				removedAny = true;
-		}
 		return removedAny;
 	}
 	
-	private boolean equalsServerDim(ChestEntry a, ChestEntry b)
+	/**
+	 * Returns all entries in insertion order. The list can't be modified and
+	 * is shared between callers until the next change.
+	 */
+	public synchronized List<ChestEntry> all()
 	{
-		return equalsServerDim(a, b.serverIp, b.dimension);
+		if(snapshot == null)
+			snapshot = Collections.unmodifiableList(new ArrayList<>(entries));
+		return snapshot;
 	}
 	
-	private boolean equalsServerDim(ChestEntry a, String serverIp,
-		String dimension)
+	public synchronized Snapshot snapshot()
 	{
-		if(a.serverIp == null && serverIp != null)
-			return false;
-		if(a.dimension == null && dimension != null)
-			return false;
-		return (a.serverIp == null || a.serverIp.equals(serverIp))
-			&& (a.dimension == null || a.dimension.equals(dimension));
+		return new Snapshot(version, all());
 	}
 	
-	public synchronized List<ChestEntry> all()
+	public synchronized long getVersion()
 	{
-		return new ArrayList<>(entries);
+		return version;
+	}
+	
+	/**
+	 * Returns the changes made after the given version, oldest first, or
+	 * <code>null</code> if they are no longer remembered and the caller has
+	 * to start over from a new {@link #snapshot()}.
+	 */
+	public synchronized List<ChangeSet> getChangesSince(long since)
+	{
+		if(since == version)
+			return List.of();
+		
+		ChangeSet oldest = changeHistory.peekFirst();
+		if(since > version || oldest == null || oldest.version() > since + 1)
+			return null;
+		
+		ArrayList<ChangeSet> changes = new ArrayList<>();
+		for(ChangeSet change : changeHistory)
+			if(change.version() > since)
+				changes.add(change);
+		return changes;
+	}
+	
+	private void publishChanges()
+	{
+		if(pendingAdded.isEmpty() && pendingRemoved.isEmpty())
+			return;
+		
+		version++;
+		snapshot = null;
+		changeHistory.addLast(new ChangeSet(version, List.copyOf(pendingAdded),
+			List.copyOf(pendingRemoved)));
+		if(changeHistory.size() > MAX_CHANGE_HISTORY)
+			changeHistory.removeFirst();
+		pendingAdded.clear();
+		pendingRemoved.clear();
+	}
+	
+	private void add(ChestEntry entry)
+	{
+		entries.add(entry);
+		pendingAdded.add(entry);
+		textIndex.add(entry);
+		spatialIndex.computeIfAbsent(Scope.of(entry), k -> new SpatialBucket())
+			.add(entry);
+	}
+	
+	private void remove(ChestEntry entry)
+	{
+		if(!entries.remove(entry))
+			return;
+		pendingRemoved.add(entry);
+		textIndex.remove(entry);
+		Scope scope = Scope.of(entry);
+		SpatialBucket bucket = spatialIndex.get(scope);
+		if(bucket != null && bucket.remove(entry))
+			spatialIndex.remove(scope);
+	}
+	
+	/**
+	 * Returns the entries of the same server and dimension that share at
+	 * least one chunk with the given entry's bounds.
+	 */
+	private List<ChestEntry> getNearby(ChestEntry entry)
+	{
+		SpatialBucket bucket = spatialIndex.get(Scope.of(entry));
+		if(bucket == null)
+			return List.of();
+		return bucket.get(Math.min(entry.x, entry.maxX) >> 4,
+			Math.min(entry.z, entry.maxZ) >> 4,
+			Math.max(entry.x, entry.maxX) >> 4,
+			Math.max(entry.z, entry.maxZ) >> 4);
 	}
 	
 	private String contentsKey(ChestEntry e)
@@ -455,6 +595,111 @@ public class ChestDatabase
 		}
 	}
 	
+	/**
+	 * The entries at one version of the database.
+	 */
+	public record Snapshot(long version, List<ChestEntry> entries)
+	{}
+	
+	/**
+	 * What one change did. An entry that was replaced shows up in
+	 * <code>removed</code> and its replacement in <code>added</code>, so
+	 * removals should be applied first.
+	 */
+	public record ChangeSet(long version, List<ChestEntry> added,
+		List<ChestEntry> removed)
+	{}
+	
+	private record Scope(String serverIp, String dimension)
+	{
+		private static Scope of(ChestEntry entry)
+		{
+			return new Scope(entry.serverIp, entry.dimension);
+		}
+	}
+	
+	/**
+	 * The entries of one server and dimension, listed under every chunk that
+	 * their bounds cover.
+	 */
+	private static final class SpatialBucket
+	{
+		private final Long2ObjectOpenHashMap<ArrayList<ChestEntry>> byChunk =
+			new Long2ObjectOpenHashMap<>();
+		private final ArrayList<ChestEntry> oversized = new ArrayList<>();
+		private int size;
+		
+		private void add(ChestEntry entry)
+		{
+			size++;
+			if(isOversized(entry))
+			{
+				oversized.add(entry);
+				return;
+			}
+			for(int cx = Math.min(entry.x, entry.maxX) >> 4; cx <= Math
+				.max(entry.x, entry.maxX) >> 4; cx++)
+				for(int cz = Math.min(entry.z, entry.maxZ) >> 4; cz <= Math
+					.max(entry.z, entry.maxZ) >> 4; cz++)
+					byChunk.computeIfAbsent(ChunkPos.pack(cx, cz),
+						k -> new ArrayList<>()).add(entry);
+		}
+		
+		/**
+		 * Returns true if the bucket is empty afterwards.
+		 */
+		private boolean remove(ChestEntry entry)
+		{
+			size--;
+			if(isOversized(entry))
+			{
+				oversized.remove(entry);
+				return size <= 0;
+			}
+			for(int cx = Math.min(entry.x, entry.maxX) >> 4; cx <= Math
+				.max(entry.x, entry.maxX) >> 4; cx++)
+				for(int cz = Math.min(entry.z, entry.maxZ) >> 4; cz <= Math
+					.max(entry.z, entry.maxZ) >> 4; cz++)
+				{
+					long key = ChunkPos.pack(cx, cz);
+					ArrayList<ChestEntry> list = byChunk.get(key);
+					if(list == null)
+						continue;
+					list.remove(entry);
+					if(list.isEmpty())
+						byChunk.remove(key);
+				}
+			return size <= 0;
+		}
+		
+		private List<ChestEntry> get(int minChunkX, int minChunkZ,
+			int maxChunkX, int maxChunkZ)
+		{
+			Set<ChestEntry> seen =
+				Collections.newSetFromMap(new IdentityHashMap<>());
+			ArrayList<ChestEntry> result = new ArrayList<>();
+			for(int cx = minChunkX; cx <= maxChunkX; cx++)
+				for(int cz = minChunkZ; cz <= maxChunkZ; cz++)
+				{
+					ArrayList<ChestEntry> list =
+						byChunk.get(ChunkPos.pack(cx, cz));
+					if(list != null)
+						for(ChestEntry e : list)
+							if(seen.add(e))
+								result.add(e);
+				}
+			result.addAll(oversized);
+			return result;
+		}
+		
+		private static boolean isOversized(ChestEntry entry)
+		{
+			return Math.abs((entry.maxX >> 4) - (entry.x >> 4))
+				+ Math.abs((entry.maxZ >> 4) - (entry.z >> 4))
+				> MAX_INDEXED_CHUNK_SPAN;
+		}
+	}
+	
 	public static File defaultFile()
 	{
 		// defaults to config/wurst/chest_database.json relative to project
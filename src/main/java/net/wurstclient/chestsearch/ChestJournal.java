@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2014-2026 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.chestsearch;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Storage for one {@link ChestDatabase}: a JSON snapshot of all entries plus
+ * an append-only journal of the puts and removes made since.
+ *
+ * <p>
+ * Compacting rotates the journal out of the way, writes a new snapshot on a
+ * background thread and then deletes the rotated journal. If the game closes
+ * in between, the rotated journal is simply replayed again on the next load,
+ * which is harmless because replaying a change twice has the same result as
+ * replaying it once.
+ */
+final class ChestJournal
+{
+	private static final ExecutorService COMPACTOR =
+		Executors.newSingleThreadExecutor(r -> {
+			Thread t = new Thread(r, "chest-database-compactor");
+			t.setDaemon(true);
+			return t;
+		});
+	
+	private final Path snapshotFile;
+	private final Path journalFile;
+	private final Path rotatedJournalFile;
+	private final Gson snapshotGson =
+		new GsonBuilder().setPrettyPrinting().create();
+	private final Gson journalGson = new Gson();
+	private BufferedWriter writer;
+	private int changeCount;
+	private CompletableFuture<Void> compaction =
+		CompletableFuture.completedFuture(null);
+	
+	ChestJournal(File snapshotFile)
+	{
+		this.snapshotFile = snapshotFile.toPath();
+		journalFile = this.snapshotFile
+			.resolveSibling(snapshotFile.getName() + ".journal");
+		rotatedJournalFile = this.snapshotFile
+			.resolveSibling(snapshotFile.getName() + ".journal.old");
+	}
+	
+	/**
+	 * Reads the last snapshot. Returns an empty list if there is none yet.
+	 */
+	List<ChestEntry> readSnapshot() throws IOException
+	{
+		if(!Files.exists(snapshotFile))
+			return new ArrayList<>();
+		
+		Type t = new TypeToken<List<ChestEntry>>()
+		{}.getType();
+		try(Reader r =
+			Files.newBufferedReader(snapshotFile, StandardCharsets.UTF_8))
+		{
+			List<ChestEntry> read = snapshotGson.fromJson(r, t);
+			return read == null ? new ArrayList<>() : read;
+		}
+	}
+	
+	/**
+	 * Reads the changes of a rotated journal left over from an unfinished
+	 * compaction, followed by those of the current journal. A change that
+	 * can't be parsed, e.g. the last one after a crash, is skipped.
+	 */
+	List<Change> readJournal() throws IOException
+	{
+		ArrayList<Change> changes = new ArrayList<>();
+		readJournal(rotatedJournalFile, changes);
+		readJournal(journalFile, changes);
+		changeCount = changes.size();
+		return changes;
+	}
+	
+	private void readJournal(Path file, List<Change> changes)
+		throws IOException
+	{
+		if(!Files.exists(file))
+			return;
+		
+		try(BufferedReader r =
+			Files.newBufferedReader(file, StandardCharsets.UTF_8))
+		{
+			String line;
+			while((line = r.readLine()) != null)
+			{
+				if(line.isBlank())
+					continue;
+				
+				try
+				{
+					Change change = journalGson.fromJson(line, Change.class);
+					if(change != null && change.entry != null
+						&& (Change.PUT.equals(change.op)
+							|| Change.REMOVE.equals(change.op)))
+						changes.add(change);
+					
+				}catch(JsonParseException e)
+				{
+					// torn write
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Appends the given changes and flushes them, so that they survive the
+	 * game closing right after.
+	 */
+	void append(List<Change> changes) throws IOException
+	{
+		if(changes.isEmpty())
+			return;
+		
+		if(writer == null)
+		{
+			Files.createDirectories(journalFile.getParent());
+			writer = Files.newBufferedWriter(journalFile,
+				StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+				StandardOpenOption.APPEND);
+		}
+		
+		for(Change change : changes)
+		{
+			writer.write(journalGson.toJson(change));
+			writer.newLine();
+		}
+		writer.flush();
+		changeCount += changes.size();
+	}
+	
+	int getChangeCount()
+	{
+		return changeCount;
+	}
+	
+	boolean isCompacting()
+	{
+		return !compaction.isDone();
+	}
+	
+	/**
+	 * Replaces the snapshot with the given entries and starts a new journal.
+	 * The entries must not be modified afterwards, since they are written on
+	 * a background thread unless <code>wait</code> is true.
+	 */
+	void compact(List<ChestEntry> entries, boolean wait) throws IOException
+	{
+		compaction.join();
+		
+		closeWriter();
+		if(Files.exists(journalFile))
+		{
+			if(Files.exists(rotatedJournalFile))
+			{
+				// the last compaction failed, so keep both journals
+				Files.write(rotatedJournalFile, Files.readAllBytes(journalFile),
+					StandardOpenOption.APPEND);
+				Files.delete(journalFile);
+			}else
+				Files.move(journalFile, rotatedJournalFile,
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+		changeCount = 0;
+		
+		compaction = CompletableFuture.runAsync(() -> {
+			try
+			{
+				writeSnapshot(entries);
+				Files.deleteIfExists(rotatedJournalFile);
+				
+			}catch(IOException e)
+			{
+				e.printStackTrace();
+			}
+		}, COMPACTOR);
+		
+		if(wait)
+			compaction.join();
+	}
+	
+	private void writeSnapshot(List<ChestEntry> entries) throws IOException
+	{
+		Files.createDirectories(snapshotFile.getParent());
+		Path tmp =
+			snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+		try(Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8))
+		{
+			snapshotGson.toJson(entries, w);
+		}
+		Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING,
+			StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	private void closeWriter() throws IOException
+	{
+		if(writer == null)
+			return;
+		
+		writer.close();
+		writer = null;
+	}
+	
+	/**
+	 * One line of the journal. Removes only carry the entry's server,
+	 * dimension and bounds.
+	 */
+	static final class Change
+	{
+		static final String PUT = "put";
+		static final String REMOVE = "remove";
+		
+		String op;
+		ChestEntry entry;
+		
+		static Change put(ChestEntry entry)
+		{
+			Change change = new Change();
+			change.op = PUT;
+			change.entry = entry;
+			return change;
+		}
+		
+		static Change remove(ChestEntry entry)
+		{
+			ChestEntry key = new ChestEntry();
+			key.serverIp = entry.serverIp;
+			key.dimension = entry.dimension;
+			key.x = entry.x;
+			key.y = entry.y;
+			key.z = entry.z;
+			key.maxX = entry.maxX;
+			key.maxY = entry.maxY;
+			key.maxZ = entry.maxZ;
+			
+			Change change = new Change();
+			change.op = REMOVE;
+			change.entry = key;
+			return change;
+		}
+	}
+}
@@ -137,7 +137,12 @@ public class ChestManager
 		return it;
 	}
 	
-	private ChestDatabase getCurrentDb()
+	/**
+	 * Returns the shared database of the server that the player is currently
+	 * on. Databases are cached for the whole session, so consumers can keep
+	 * the returned instance and follow its version.
+	 */
+	public ChestDatabase getCurrentDb()
 	{
 		String serverIp = null;
 		try
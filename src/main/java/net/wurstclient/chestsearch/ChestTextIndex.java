@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2014-2026 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.chestsearch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted index from the words in a {@link ChestEntry}'s server, dimension
+ * and item ids, names, NBT, enchantments and potion effects to the entries
+ * that contain them.
+ *
+ * <p>
+ * A word is a run of letters and digits, as produced by
+ * {@link ChestDatabase#normalizeForTokenSearch(String)}. Since every query
+ * token that {@link ChestDatabase#search(String)} accepts has to appear
+ * inside one of these words, the index can rule out entries without changing
+ * what the search finds.
+ */
+final class ChestTextIndex
+{
+	private final HashMap<String, Set<ChestEntry>> entriesByWord =
+		new HashMap<>();
+	
+	void add(ChestEntry entry)
+	{
+		for(String word : getWords(entry))
+			entriesByWord
+				.computeIfAbsent(word,
+					k -> Collections.newSetFromMap(new IdentityHashMap<>()))
+				.add(entry);
+	}
+	
+	void remove(ChestEntry entry)
+	{
+		for(String word : getWords(entry))
+		{
+			Set<ChestEntry> entries = entriesByWord.get(word);
+			if(entries == null)
+				continue;
+			
+			entries.remove(entry);
+			if(entries.isEmpty())
+				entriesByWord.remove(word);
+		}
+	}
+	
+	void clear()
+	{
+		entriesByWord.clear();
+	}
+	
+	/**
+	 * Returns the entries that contain every one of the given tokens, or
+	 * <code>null</code> if there are no tokens to narrow the search down with.
+	 */
+	Set<ChestEntry> getCandidates(String[] tokens)
+	{
+		if(tokens.length == 0)
+			return null;
+		
+		ArrayList<Set<ChestEntry>> perToken = new ArrayList<>(tokens.length);
+		for(String token : tokens)
+		{
+			Set<ChestEntry> matches =
+				Collections.newSetFromMap(new IdentityHashMap<>());
+			for(Map.Entry<String, Set<ChestEntry>> e : entriesByWord
+				.entrySet())
+				if(e.getKey().contains(token))
+					matches.addAll(e.getValue());
+			
+			if(matches.isEmpty())
+				return Set.of();
+			
+			perToken.add(matches);
+		}
+		
+		perToken.sort((a, b) -> Integer.compare(a.size(), b.size()));
+		Set<ChestEntry> candidates = perToken.get(0);
+		for(int i = 1; i < perToken.size(); i++)
+			candidates.retainAll(perToken.get(i));
+		
+		return candidates;
+	}
+	
+	private static Set<String> getWords(ChestEntry entry)
+	{
+		HashSet<String> words = new HashSet<>();
+		addWords(words, entry.serverIp);
+		addWords(words, entry.dimension);
+		if(entry.items == null)
+			return words;
+		
+		for(ChestEntry.ItemEntry item : entry.items)
+		{
+			if(item == null)
+				continue;
+			
+			addWords(words, item.itemId);
+			addWords(words, item.displayName);
+			if(item.nbt != null)
+				addWords(words, item.nbt.toString());
+			if(item.enchantments != null)
+				for(String enchantment : item.enchantments)
+					addWords(words, enchantment);
+			if(item.potionEffects != null)
+				for(String effect : item.potionEffects)
+					addWords(words, effect);
+			addWords(words, item.primaryPotion);
+		}
+		
+		return words;
+	}
+	
+	private static void addWords(Set<String> words, String text)
+	{
+		String normalized = ChestDatabase.normalizeForTokenSearch(text);
+		if(normalized.isEmpty())
+			return;
+		
+		Collections.addAll(words, normalized.split(" "));
+	}
+}
@@ -37,6 +37,7 @@ public final class CmdList
 	public final EnabledHaxCmd enabledHaxCmd = new EnabledHaxCmd();
 	public final EnchantCmd enchantCmd = new EnchantCmd();
 	public final ElytraInfoCmd elytraInfoCmd = new ElytraInfoCmd();
+	public final EventProfilerCmd eventProfilerCmd = new EventProfilerCmd();
 	public final ExcavateCmd excavateCmd = new ExcavateCmd();
 	public final FeaturesCmd featuresCmd = new FeaturesCmd();
 	public final FollowCmd followCmd = new FollowCmd();
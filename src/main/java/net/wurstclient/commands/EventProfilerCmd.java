@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2014-2026 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.commands;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Locale;
+import net.wurstclient.DontBlock;
+import net.wurstclient.command.CmdError;
+import net.wurstclient.command.CmdException;
+import net.wurstclient.command.CmdSyntaxError;
+import net.wurstclient.command.Command;
+import net.wurstclient.event.EventProfiler;
+import net.wurstclient.util.ChatUtils;
+import net.wurstclient.util.MathUtils;
+import net.wurstclient.util.json.JsonException;
+
+@DontBlock
+public final class EventProfilerCmd extends Command
+{
+	private static final DateTimeFormatter FILE_NAME_FORMAT =
+		DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+	
+	public EventProfilerCmd()
+	{
+		super("eventprofiler",
+			"Measures how much time and memory each event listener\n"
+				+ "uses, per event type.",
+			".eventprofiler start", ".eventprofiler stop",
+			".eventprofiler reset", ".eventprofiler top [<count>]",
+			".eventprofiler export <csv|json>",
+			"Exports are saved in '.minecraft/wurst/profiler'.");
+	}
+	
+	@Override
+	public void call(String[] args) throws CmdException
+	{
+		if(args.length < 1)
+			throw new CmdSyntaxError();
+		
+		switch(args[0].toLowerCase())
+		{
+			case "start":
+			EventProfiler.start();
+			ChatUtils.message("Event profiler started.");
+			if(!EventProfiler.isAllocationTracked())
+				ChatUtils.warning(
+					"This JVM can't measure allocations per thread.");
+			break;
+			
+			case "stop":
+			EventProfiler.stop();
+			ChatUtils.message("Event profiler stopped.");
+			break;
+			
+			case "reset":
+			EventProfiler.reset();
+			ChatUtils.message("Event profiler data cleared.");
+			break;
+			
+			case "top":
+			top(args);
+			break;
+			
+			case "export":
+			export(args);
+			break;
+			
+			default:
+			throw new CmdSyntaxError();
+		}
+	}
+	
+	private void top(String[] args) throws CmdException
+	{
+		if(args.length > 2)
+			throw new CmdSyntaxError();
+		
+		int count = 8;
+		if(args.length == 2)
+		{
+			if(!MathUtils.isInteger(args[1]))
+				throw new CmdSyntaxError("Not a number: " + args[1]);
+			
+			count = Math.max(1, Integer.parseInt(args[1]));
+		}
+		
+		ArrayList<EventProfiler.Row> rows = EventProfiler.getRows();
+		if(rows.isEmpty())
+			throw new CmdError("No data recorded yet.");
+		
+		ChatUtils.message(String.format(Locale.ROOT,
+			"Slowest listeners (%.1fs):", EventProfiler.getRecordedSeconds()));
+		for(int i = 0; i < Math.min(count, rows.size()); i++)
+		{
+			EventProfiler.Row row = rows.get(i);
+			ChatUtils.message(String.format(Locale.ROOT,
+				"%s / %s: %.2fms total, %d calls, p99 %.3fms, max %.3fms",
+				row.eventType(), row.listener(), row.totalNs() / 1e6,
+				row.calls(), row.p99Ns() / 1e6, row.maxNs() / 1e6));
+		}
+	}
+	
+	private void export(String[] args) throws CmdException
+	{
+		if(args.length != 2)
+			throw new CmdSyntaxError();
+		
+		String format = args[1].toLowerCase();
+		if(!format.equals("csv") && !format.equals("json"))
+			throw new CmdSyntaxError("Unknown format: " + args[1]);
+		
+		String fileName = "events_"
+			+ LocalDateTime.now().format(FILE_NAME_FORMAT) + "." + format;
+		Path path =
+			WURST.getWurstFolder().resolve("profiler").resolve(fileName);
+		
+		try
+		{
+			if(format.equals("csv"))
+				EventProfiler.exportCsv(path);
+			else
+				EventProfiler.exportJson(path);
+			
+			ChatUtils.message("Event profile saved: " + fileName);
+			
+		}catch(IOException | JsonException e)
+		{
+			e.printStackTrace();
+			throw new CmdError("Couldn't save profile: " + e.getMessage());
+		}
+	}
+}
@@ -8,11 +8,15 @@
 package net.wurstclient.commands;
 
 import com.mojang.blaze3d.vertex.PoseStack;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
 import java.util.stream.StreamSupport;
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.entity.LivingEntity;
 import net.wurstclient.ai.PathFinder;
+import net.wurstclient.ai.PathPlanner;
+import net.wurstclient.ai.PathPos;
 import net.wurstclient.ai.PathProcessor;
 import net.wurstclient.command.CmdError;
 import net.wurstclient.command.CmdException;
@@ -28,8 +32,10 @@ import net.wurstclient.util.MathUtils;
 public final class GoToCmd extends Command
 	implements UpdateListener, RenderListener
 {
+	private PathPlanner planner;
 	private PathFinder pathFinder;
 	private PathProcessor processor;
+	private ArrayList<PathPos> partialPath;
 	private boolean enabled;
 	
 	public GoToCmd()
@@ -57,11 +63,11 @@ public final class GoToCmd extends Command
 			BlockPos goal = WURST.getCmds().pathCmd.getLastGoal();
 			if(goal == null)
 				throw new CmdError("No previous position on .path.");
-			pathFinder = new PathFinder(goal);
+			planner = new PathPlanner(new PathFinder(goal));
 		}else
 		{
 			BlockPos goal = argsToPos(args);
-			pathFinder = new PathFinder(goal);
+			planner = new PathPlanner(new PathFinder(goal));
 		}
 		
 		// start
@@ -127,29 +133,51 @@ public final class GoToCmd extends Command
 	public void onUpdate()
 	{
 		// find path
-		if(!pathFinder.isDone())
+		if(planner != null)
 		{
-			PathProcessor.lockControls();
+			if(!planner.isFinished())
+			{
+				followPartialPath();
+				return;
+			}
+			
+			// blocks changed mid-search, so search again from here, but keep
+			// walking along the old partial path until the new one catches up
+			if(planner.isStale())
+			{
+				System.out.println("Updating path...");
+				planner =
+					new PathPlanner(new PathFinder(planner.getPathFinder()));
+				followPartialPath();
+				return;
+			}
 			
-			pathFinder.think();
+			pathFinder = planner.getPathFinder();
+			planner = null;
+			partialPath = null;
 			
 			if(!pathFinder.isDone())
 			{
-				if(pathFinder.isFailed())
-				{
-					ChatUtils.error("Could not find a path.");
-					disable();
-				}
-				
+				ChatUtils.error("Could not find a path.");
+				disable();
 				return;
 			}
 			
 			pathFinder.formatPath();
 			
 			// set processor
+			boolean followedPartialPath = processor != null;
 			processor = pathFinder.getProcessor();
 			
 			System.out.println("Done");
+			
+			// start over from here if the partial path led somewhere else
+			if(followedPartialPath && !isOnPath(pathFinder.getPath()))
+			{
+				System.out.println("Updating path...");
+				startPlanning(pathFinder.getGoal());
+				return;
+			}
 		}
 		
 		// check path
@@ -157,7 +185,7 @@ public final class GoToCmd extends Command
 			&& !pathFinder.isPathStillValid(processor.getIndex()))
 		{
 			System.out.println("Updating path...");
-			pathFinder = new PathFinder(pathFinder.getGoal());
+			startPlanning(pathFinder.getGoal());
 			return;
 		}
 		
@@ -168,12 +196,59 @@ public final class GoToCmd extends Command
 			disable();
 	}
 	
+	/**
+	 * Walks along the best path found so far while the planner is still
+	 * searching. A newer partial path is only picked up once the player is on
+	 * it, or has nothing else to follow.
+	 */
+	private void followPartialPath()
+	{
+		ArrayList<PathPos> path = planner.getPartialPath();
+		if(path != null && path != partialPath && path.size() > 1
+			&& (processor == null || processor.isDone() || isOnPath(path)))
+		{
+			partialPath = path;
+			processor = planner.getPathFinder().getProcessor(path);
+		}
+		
+		if(processor == null || processor.isDone())
+		{
+			PathProcessor.lockControls();
+			return;
+		}
+		
+		processor.process();
+	}
+	
+	private void startPlanning(BlockPos goal)
+	{
+		planner = new PathPlanner(new PathFinder(goal));
+		processor = null;
+		partialPath = null;
+	}
+	
+	private boolean isOnPath(List<PathPos> path)
+	{
+		BlockPos pos;
+		if(MC.player.onGround())
+			pos = BlockPos.containing(MC.player.getX(),
+				MC.player.getY() + 0.5, MC.player.getZ());
+		else
+			pos = BlockPos.containing(MC.player.position());
+		
+		return path.indexOf(pos) >= 0;
+	}
+	
 	@Override
 	public void onRender(PoseStack matrixStack, float partialTicks)
 	{
 		PathCmd pathCmd = WURST.getCmds().pathCmd;
-		pathFinder.renderPath(matrixStack, pathCmd.isDebugMode(),
-			pathCmd.isDepthTest());
+		if(planner != null)
+			planner.renderPath(matrixStack, pathCmd.isDebugMode(),
+				pathCmd.isDepthTest());
+		else
+			pathFinder.renderPath(matrixStack, pathCmd.isDebugMode(),
+				pathCmd.isDepthTest());
 	}
 	
 	private void disable()
@@ -181,6 +256,10 @@ public final class GoToCmd extends Command
 		EVENTS.remove(UpdateListener.class, this);
 		EVENTS.remove(RenderListener.class, this);
 		
+		if(planner != null)
+			planner.cancel();
+		planner = null;
+		partialPath = null;
 		pathFinder = null;
 		processor = null;
 		PathProcessor.releaseControls();
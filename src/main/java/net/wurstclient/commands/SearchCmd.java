@@ -7,10 +7,13 @@
  */
 package net.wurstclient.commands;
 
+import java.util.Locale;
+import net.wurstclient.command.CmdError;
 import net.wurstclient.command.CmdException;
 import net.wurstclient.command.CmdSyntaxError;
 import net.wurstclient.command.Command;
 import net.wurstclient.hacks.SearchHack;
+import net.wurstclient.util.ChatUtils;
 
 public final class SearchCmd extends Command
 {
@@ -18,7 +21,8 @@ public final class SearchCmd extends Command
 	{
 		super("search",
 			"Sets Search to query mode and enables/disables it from chat.",
-			".search <query>", ".search query <query>", ".search [on|off]");
+			".search <query>", ".search query <query>", ".search [on|off]",
+			".search stats");
 	}
 	
 	@Override
@@ -43,6 +47,10 @@ public final class SearchCmd extends Command
 			search.setEnabled(false);
 			return;
 			
+			case "stats":
+			stats(search);
+			return;
+			
 			case "query":
 			if(args.length < 2)
 				throw new CmdSyntaxError();
@@ -56,6 +64,19 @@ public final class SearchCmd extends Command
 		}
 	}
 	
+	private void stats(SearchHack search) throws CmdException
+	{
+		SearchHack.MeshStats stats = search.getMeshStats();
+		if(!search.isEnabled() || stats.faces() == 0)
+			throw new CmdError("Search isn't drawing a filled mesh right now.");
+		
+		double reduction = 1 - stats.quads() / (double)stats.faces();
+		ChatUtils.message(String.format(Locale.ROOT,
+			"Search mesh: %d faces merged into %d quads in %d chunks (%.1f%%"
+				+ " fewer triangles).",
+			stats.faces(), stats.quads(), stats.chunks(), reduction * 100));
+	}
+	
 	private static String joinArgs(String[] args, int start)
 	{
 		StringBuilder out = new StringBuilder();
@@ -10,7 +10,7 @@ package net.wurstclient.event;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import net.minecraft.CrashReport;
 import net.minecraft.CrashReportCategory;
 import net.minecraft.ReportedException;
@@ -25,6 +25,14 @@ public final class EventManager
 	private final HashMap<Class<? extends Listener>, ArrayList<? extends Listener>> listenerMap =
 		new HashMap<>();
 	
+	/**
+	 * Read-only copies of the lists in {@link #listenerMap}. They are rebuilt
+	 * whenever a listener is added or removed, so that firing an event never
+	 * has to copy or lock anything. Types without listeners have no entry.
+	 */
+	private final ConcurrentHashMap<Class<? extends Listener>, ArrayList<? extends Listener>> snapshotMap =
+		new ConcurrentHashMap<>();
+	
 	public EventManager(WurstClient wurst)
 	{
 		this.wurst = wurst;
@@ -44,6 +52,18 @@ public final class EventManager
 		eventManager.fireImpl(event);
 	}
 	
+	/**
+	 * Returns true if at least one listener of the given type is registered.
+	 * Hot call sites can use this to skip creating event objects that nobody
+	 * would receive.
+	 */
+	public static boolean hasListeners(Class<? extends Listener> type)
+	{
+		EventManager eventManager = WurstClient.INSTANCE.getEventManager();
+		return eventManager != null
+			&& eventManager.snapshotMap.containsKey(type);
+	}
+	
 	private <L extends Listener, E extends Event<L>> void fireImpl(E event)
 	{
 		if(!wurst.isEnabled())
@@ -55,23 +75,20 @@ public final class EventManager
 		try
 		{
 			Class<L> type = event.getListenerType();
+			
+			// The snapshot is never modified after it's published, so
+			// listeners can safely add or remove listeners while it's being
+			// iterated, even from other threads.
 			@SuppressWarnings("unchecked")
-			ArrayList<L> listeners = (ArrayList<L>)listenerMap.get(type);
+			ArrayList<L> listeners = (ArrayList<L>)snapshotMap.get(type);
 			
-			if(listeners == null || listeners.isEmpty())
+			if(listeners == null)
 				return;
-				
-			// Creating a copy of the list to avoid concurrent modification
-			// issues.
-			ArrayList<L> listeners2 = new ArrayList<>(listeners);
 			
-			// remove() sets an element to null before removing it. When one
-			// thread calls remove() while another calls fire(), it is possible
-			// for this list to contain null elements, which need to be filtered
-			// out.
-			listeners2.removeIf(Objects::isNull);
-			
-			event.fire(listeners2);
+			if(EventProfiler.isEnabled())
+				EventProfiler.fire(event, listeners);
+			else
+				event.fire(listeners);
 			
 		}catch(Throwable e)
 		{
@@ -98,7 +115,8 @@ public final class EventManager
 		return hax != null && hax.hideWurstHack.isEnabled();
 	}
 	
-	public <L extends Listener> void add(Class<L> type, L listener)
+	public synchronized <L extends Listener> void add(Class<L> type,
+		L listener)
 	{
 		try
 		{
@@ -109,10 +127,12 @@ public final class EventManager
 			{
 				listeners = new ArrayList<>(Arrays.asList(listener));
 				listenerMap.put(type, listeners);
+				updateSnapshot(type, listeners);
 				return;
 			}
 			
 			listeners.add(listener);
+			updateSnapshot(type, listeners);
 			
 		}catch(Throwable e)
 		{
@@ -130,15 +150,16 @@ public final class EventManager
 		}
 	}
 	
-	public <L extends Listener> void remove(Class<L> type, L listener)
+	public synchronized <L extends Listener> void remove(Class<L> type,
+		L listener)
 	{
 		try
 		{
 			@SuppressWarnings("unchecked")
 			ArrayList<L> listeners = (ArrayList<L>)listenerMap.get(type);
 			
-			if(listeners != null)
-				listeners.remove(listener);
+			if(listeners != null && listeners.remove(listener))
+				updateSnapshot(type, listeners);
 			
 		}catch(Throwable e)
 		{
@@ -155,4 +176,13 @@ public final class EventManager
 			throw new ReportedException(report);
 		}
 	}
+	
+	private void updateSnapshot(Class<? extends Listener> type,
+		ArrayList<? extends Listener> listeners)
+	{
+		if(listeners.isEmpty())
+			snapshotMap.remove(type);
+		else
+			snapshotMap.put(type, new ArrayList<>(listeners));
+	}
 }
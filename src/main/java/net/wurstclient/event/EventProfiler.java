@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2014-2026 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.event;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.management.ThreadMXBean;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import net.wurstclient.Feature;
+import net.wurstclient.util.LatencyHistogram;
+import net.wurstclient.util.json.JsonException;
+import net.wurstclient.util.json.JsonUtils;
+
+/**
+ * Optional profiler for the event bus. While it's running,
+ * {@link EventManager} hands each listener its own one-element list, so that
+ * the time and memory spent in every listener of every event type can be
+ * measured separately, including packet and chat listeners that
+ * {@link net.wurstclient.util.HackPerformanceTracker} doesn't cover.
+ *
+ * <p>
+ * Allocation is measured with the JVM's per-thread allocation counter and is
+ * reported as -1 where that counter isn't available.
+ */
+public enum EventProfiler
+{
+	;
+	
+	private static final ThreadMXBean THREAD_BEAN = getThreadBean();
+	
+	private static final ConcurrentHashMap<Class<? extends Listener>, TypeStats> STATS =
+		new ConcurrentHashMap<>();
+	
+	private static volatile boolean enabled;
+	private static volatile long startNs;
+	
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+	
+	public static void start()
+	{
+		if(enabled)
+			return;
+		
+		startNs = System.nanoTime();
+		enabled = true;
+	}
+	
+	public static void stop()
+	{
+		enabled = false;
+	}
+	
+	public static void reset()
+	{
+		STATS.clear();
+		startNs = System.nanoTime();
+	}
+	
+	public static boolean isAllocationTracked()
+	{
+		return THREAD_BEAN != null;
+	}
+	
+	static <L extends Listener> void fire(Event<L> event,
+		ArrayList<L> listeners)
+	{
+		Class<L> type = event.getListenerType();
+		TypeStats typeStats = STATS.computeIfAbsent(type, t -> new TypeStats());
+		
+		ArrayList<L> single = new ArrayList<>(1);
+		single.add(null);
+		
+		for(L listener : listeners)
+		{
+			single.set(0, listener);
+			long startBytes = getAllocatedBytes();
+			long start = System.nanoTime();
+			try
+			{
+				event.fire(single);
+				
+			}finally
+			{
+				long durationNs = System.nanoTime() - start;
+				long bytes = startBytes < 0 ? -1
+					: Math.max(0, getAllocatedBytes() - startBytes);
+				typeStats.record(listener, durationNs, bytes);
+			}
+			
+			if(event instanceof CancellableEvent<?> cancellable
+				&& cancellable.isCancelled())
+				break;
+		}
+	}
+	
+	/**
+	 * Returns one row per event type and listener, slowest total time first.
+	 */
+	public static ArrayList<Row> getRows()
+	{
+		ArrayList<Row> rows = new ArrayList<>();
+		for(Map.Entry<Class<? extends Listener>, TypeStats> e : STATS
+			.entrySet())
+			e.getValue().addRows(e.getKey().getSimpleName(), rows);
+		
+		rows.sort(Comparator.comparingLong(Row::totalNs).reversed());
+		return rows;
+	}
+	
+	public static double getRecordedSeconds()
+	{
+		return (System.nanoTime() - startNs) / 1_000_000_000D;
+	}
+	
+	public static void exportCsv(Path path) throws IOException
+	{
+		Files.createDirectories(path.getParent());
+		try(BufferedWriter writer = Files.newBufferedWriter(path))
+		{
+			writer.write("event,listener,calls,total_ns,mean_ns,p50_ns,"
+				+ "p90_ns,p99_ns,max_ns,allocated_bytes");
+			writer.newLine();
+			
+			for(Row row : getRows())
+			{
+				writer.write(csvField(row.eventType()) + ","
+					+ csvField(row.listener()) + "," + row.calls() + ","
+					+ row.totalNs() + "," + row.meanNs() + "," + row.p50Ns()
+					+ "," + row.p90Ns() + "," + row.p99Ns() + ","
+					+ row.maxNs() + "," + row.allocatedBytes());
+				writer.newLine();
+			}
+		}
+	}
+	
+	public static void exportJson(Path path) throws IOException, JsonException
+	{
+		JsonObject json = new JsonObject();
+		json.addProperty("recorded_seconds", getRecordedSeconds());
+		json.addProperty("allocation_tracked", isAllocationTracked());
+		
+		JsonArray rows = new JsonArray();
+		for(Row row : getRows())
+		{
+			JsonObject jsonRow = new JsonObject();
+			jsonRow.addProperty("event", row.eventType());
+			jsonRow.addProperty("listener", row.listener());
+			jsonRow.addProperty("calls", row.calls());
+			jsonRow.addProperty("total_ns", row.totalNs());
+			jsonRow.addProperty("mean_ns", row.meanNs());
+			jsonRow.addProperty("p50_ns", row.p50Ns());
+			jsonRow.addProperty("p90_ns", row.p90Ns());
+			jsonRow.addProperty("p99_ns", row.p99Ns());
+			jsonRow.addProperty("max_ns", row.maxNs());
+			jsonRow.addProperty("allocated_bytes", row.allocatedBytes());
+			rows.add(jsonRow);
+		}
+		json.add("listeners", rows);
+		
+		Files.createDirectories(path.getParent());
+		JsonUtils.toJson(json, path);
+	}
+	
+	private static String csvField(String value)
+	{
+		if(value.indexOf(',') < 0 && value.indexOf('"') < 0)
+			return value;
+		
+		return "\"" + value.replace("\"", "\"\"") + "\"";
+	}
+	
+	private static String getListenerName(Listener listener)
+	{
+		if(listener instanceof Feature feature)
+			return feature.getName();
+		
+		return listener.getClass().getName();
+	}
+	
+	private static long getAllocatedBytes()
+	{
+		if(THREAD_BEAN == null)
+			return -1;
+		
+		return THREAD_BEAN.getCurrentThreadAllocatedBytes();
+	}
+	
+	private static ThreadMXBean getThreadBean()
+	{
+		try
+		{
+			ThreadMXBean bean =
+				ManagementFactory.getPlatformMXBean(ThreadMXBean.class);
+			if(bean == null || !bean.isThreadAllocatedMemorySupported())
+				return null;
+			
+			if(!bean.isThreadAllocatedMemoryEnabled())
+				bean.setThreadAllocatedMemoryEnabled(true);
+			
+			return bean;
+			
+		}catch(RuntimeException e)
+		{
+			return null;
+		}
+	}
+	
+	private static final class TypeStats
+	{
+		private final IdentityHashMap<Listener, ListenerStats> listeners =
+			new IdentityHashMap<>();
+		
+		private synchronized void record(Listener listener, long durationNs,
+			long bytes)
+		{
+			listeners.computeIfAbsent(listener, l -> new ListenerStats())
+				.record(durationNs, bytes);
+		}
+		
+		private synchronized void addRows(String eventType,
+			ArrayList<Row> rows)
+		{
+			for(Map.Entry<Listener, ListenerStats> e : listeners.entrySet())
+				rows.add(e.getValue().toRow(eventType,
+					getListenerName(e.getKey())));
+		}
+	}
+	
+	private static final class ListenerStats
+	{
+		private final LatencyHistogram histogram = new LatencyHistogram();
+		private long totalNs;
+		private long allocatedBytes;
+		
+		private void record(long durationNs, long bytes)
+		{
+			histogram.record(durationNs);
+			totalNs += durationNs;
+			if(bytes < 0 || allocatedBytes < 0)
+				allocatedBytes = -1;
+			else
+				allocatedBytes += bytes;
+		}
+		
+		private Row toRow(String eventType, String listener)
+		{
+			long calls = histogram.getTotalCount();
+			return new Row(eventType, listener, calls, totalNs,
+				calls == 0 ? 0 : totalNs / calls,
+				histogram.getValueAtPercentile(50),
+				histogram.getValueAtPercentile(90),
+				histogram.getValueAtPercentile(99), histogram.getMax(),
+				allocatedBytes);
+		}
+	}
+	
+	public record Row(String eventType, String listener, long calls,
+		long totalNs, long meanNs, long p50Ns, long p90Ns, long p99Ns,
+		long maxNs, long allocatedBytes)
+	{}
+}
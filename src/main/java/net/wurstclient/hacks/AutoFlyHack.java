@@ -73,6 +73,7 @@ import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.chunk.LevelChunk;
 import net.wurstclient.util.chunk.ChunkSearcherCoordinator;
+import net.wurstclient.util.chunk.PaletteQuery;
 import net.wurstclient.util.chunk.ChunkSearcher.Result;
 import org.lwjgl.glfw.GLFW;
 
@@ -1867,11 +1868,11 @@ public final class AutoFlyHack extends Hack
 		ChunkAreaSetting area = new ChunkAreaSetting(
 			"Chunk trail portal scan (internal)", "", CHUNK_TRAIL_PORTAL_AREA);
 		chunkTrailPortalCoordinator =
-			new ChunkSearcherCoordinator((pos, state) -> {
+			new ChunkSearcherCoordinator(PaletteQuery.of(state -> {
 				return state != null
 					&& (state.getBlock() == Blocks.NETHER_PORTAL
 						|| state.getBlock() == Blocks.END_PORTAL);
-			}, area);
+			}), area);
 	}
 	
 	private boolean scanBlocksForKeyword(int slot, String keyword,
@@ -36,6 +36,7 @@ import net.wurstclient.util.RenderUtils;
 import net.wurstclient.util.RotationUtils;
 import net.wurstclient.util.chunk.ChunkSearcher.Result;
 import net.wurstclient.util.chunk.ChunkSearcherCoordinator;
+import net.wurstclient.util.chunk.PaletteQuery;
 
 @SearchTags({"barrier esp"})
 public final class BarrierEspHack extends Hack implements UpdateListener,
@@ -66,7 +67,7 @@ public final class BarrierEspHack extends Hack implements UpdateListener,
 			"description.wurst.setting.barrieresp.set_esp_y_limit", 62, -65,
 			255, 1, SliderSetting.ValueDisplay.INTEGER);
 	private final BiPredicate<BlockPos, BlockState> query =
-		(pos, state) -> state.getBlock() == Blocks.BARRIER;
+		PaletteQuery.of(state -> state.getBlock() == Blocks.BARRIER);
 	private final ChunkSearcherCoordinator coordinator =
 		new ChunkSearcherCoordinator(query, area);
 	private final ArrayList<AABB> boxes = new ArrayList<>();
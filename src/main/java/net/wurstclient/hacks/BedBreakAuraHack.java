@@ -29,6 +29,7 @@ import net.wurstclient.util.BlockBreaker;
 import net.wurstclient.util.BlockBreaker.BlockBreakingParams;
 import net.wurstclient.util.RotationUtils;
 import net.wurstclient.util.chunk.ChunkSearcherCoordinator;
+import net.wurstclient.util.chunk.PaletteQuery;
 
 @SearchTags({"bed break aura", "bedbreakaura", "bed breaker", "bed aura"})
 public final class BedBreakAuraHack extends Hack implements UpdateListener
@@ -47,8 +48,8 @@ public final class BedBreakAuraHack extends Hack implements UpdateListener
 	private final ChunkAreaSetting searchArea = new ChunkAreaSetting(
 		"Internal search area", "", ChunkAreaSetting.ChunkArea.A65);
 	private final ChunkSearcherCoordinator coordinator =
-		new ChunkSearcherCoordinator((pos, state) -> state != null
-			&& state.getBlock() instanceof BedBlock, searchArea);
+		new ChunkSearcherCoordinator(PaletteQuery.of(state -> state != null
+			&& state.getBlock() instanceof BedBlock), searchArea);
 	
 	private BlockPos currentTarget;
 	private BlockPos pausedTarget;
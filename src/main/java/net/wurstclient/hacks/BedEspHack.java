@@ -28,7 +28,7 @@ import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.DoorBlock;
 import net.minecraft.world.level.block.entity.BlockEntity;
-import net.minecraft.world.level.block.entity.TrialSpawnerBlockEntity;
+import net.minecraft.world.level.block.entity.BlockEntityType;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.block.state.properties.BedPart;
 import net.minecraft.world.phys.AABB;
@@ -50,7 +50,7 @@ import net.wurstclient.util.RenderUtils;
 import net.wurstclient.util.BlockUtils;
 import net.wurstclient.util.chunk.ChunkSearcher.Result;
 import net.wurstclient.util.chunk.ChunkSearcherCoordinator;
-import net.wurstclient.util.chunk.ChunkUtils;
+import net.wurstclient.util.chunk.PaletteQuery;
 
 @SearchTags({"BedESP", "bed esp"})
 public final class BedEspHack extends Hack implements UpdateListener,
@@ -102,7 +102,7 @@ public final class BedEspHack extends Hack implements UpdateListener,
 			"Hides beds that appear to belong to villages.", false);
 	
 	private final BiPredicate<BlockPos, BlockState> query =
-		(pos, state) -> state.getBlock() instanceof BedBlock;
+		PaletteQuery.of(state -> state.getBlock() instanceof BedBlock);
 	
 	private final ChunkSearcherCoordinator coordinator =
 		new ChunkSearcherCoordinator(query, area);
@@ -361,8 +361,8 @@ public final class BedEspHack extends Hack implements UpdateListener,
 		if(MC.level == null)
 			return List.of();
 		
-		return ChunkUtils.getLoadedBlockEntities()
-			.filter(be -> be instanceof TrialSpawnerBlockEntity)
+		return WURST.getBlockEntityIndex()
+			.getAll(BlockEntityType.TRIAL_SPAWNER).stream()
 			.map(BlockEntity::getBlockPos).map(BlockPos::immutable)
 			.collect(Collectors.toList());
 	}
@@ -40,6 +40,7 @@ import net.wurstclient.util.RotationUtils;
 import net.wurstclient.util.ShaderUtils;
 import net.wurstclient.util.chunk.ChunkSearcher;
 import net.wurstclient.util.chunk.ChunkSearcherCoordinator;
+import net.wurstclient.util.chunk.PaletteQuery;
 
 @SearchTags({"cave finder"})
 public final class CaveFinderHack extends Hack
@@ -66,7 +67,8 @@ public final class CaveFinderHack extends Hack
 	
 	private final ChunkSearcherCoordinator coordinator =
 		new ChunkSearcherCoordinator(
-			(pos, state) -> state.getBlock() == Blocks.CAVE_AIR, area);
+			PaletteQuery.of(state -> state.getBlock() == Blocks.CAVE_AIR),
+			area);
 	
 	private ForkJoinPool forkJoinPool;
 	private ForkJoinTask<HashSet<BlockPos>> getMatchingBlocksTask;
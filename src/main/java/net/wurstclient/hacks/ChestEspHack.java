@@ -8,6 +8,8 @@
 package net.wurstclient.hacks;
 
 import com.mojang.blaze3d.vertex.PoseStack;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceLinkedOpenHashSet;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -41,6 +43,7 @@ import net.minecraft.world.level.block.ShulkerBoxBlock;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.block.state.properties.ChestType;
 import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.entity.BlockEntityType;
 import net.minecraft.world.level.block.entity.ChestBlockEntity;
 import net.minecraft.world.level.block.entity.BarrelBlockEntity;
 import net.minecraft.world.level.block.entity.CrafterBlockEntity;
@@ -49,8 +52,6 @@ import net.minecraft.world.level.block.entity.DropperBlockEntity;
 import net.minecraft.world.level.block.entity.EnderChestBlockEntity;
 import net.minecraft.world.level.block.entity.HopperBlockEntity;
 import net.minecraft.world.level.block.entity.DispenserBlockEntity;
-import net.minecraft.world.level.block.entity.TrialSpawnerBlockEntity;
-import net.minecraft.world.level.block.entity.SpawnerBlockEntity;
 import net.minecraft.world.level.chunk.LevelChunk;
 import net.minecraft.world.level.chunk.LevelChunkSection;
 import net.minecraft.world.level.ChunkPos;
@@ -66,6 +67,7 @@ import net.wurstclient.events.UpdateListener;
 import net.wurstclient.hack.Hack;
 import net.wurstclient.hacks.chestesp.ChestEspGroup;
 import net.wurstclient.hacks.chestesp.ChestEspGroupManager;
+import net.wurstclient.chestsearch.ChestDatabase;
 import net.wurstclient.chestsearch.ChestEntry;
 import net.wurstclient.chestsearch.ChestManager;
 import net.wurstclient.chestsearch.ChestSearchMarkerRenderer;
@@ -97,7 +99,6 @@ public class ChestEspHack extends Hack implements UpdateListener,
 	private static final long REVEAL_SAMPLE_EXPIRY_MS = 120000L;
 	private static final long BURST_WINDOW_MS = 2000L;
 	private static final long BURST_QUIET_MS = 10000L;
-	private static final long OPENED_CHESTS_REFRESH_MS = 1000L;
 	private static final long ENVIRONMENT_CACHE_REFRESH_MS = 125L;
 	private static final long ENV_FILTER_CACHE_TTL_MS = 250L;
 	private static final int BURST_THRESHOLD = 40;
@@ -147,13 +148,19 @@ public class ChestEspHack extends Hack implements UpdateListener,
 			false);
 	private final SliderSetting aboveGroundY = new SliderSetting(
 		"Set ESP Y limit", 62, -65, 255, 1, SliderSetting.ValueDisplay.INTEGER);
-	private java.util.List<ChestEntry> openedChests = java.util.List.of();
-	private long lastOpenedChestsRefreshMs;
-	private java.util.Set<Long> openedChestIndex = java.util.Set.of();
-	private java.util.List<ChestEntry> openedChestOversized =
-		java.util.List.of();
-	private java.util.List<ChestEntry> openedChestIndexSource;
-	private String openedChestIndexDimFull;
+	// recorded chests of the current dimension, kept in sync with the shared
+	// ChestDatabase by applying its change sets
+	private ChestManager openedChestManager;
+	private ChestDatabase openedChestDatabase;
+	private long openedChestVersion;
+	private String openedChestDimFull;
+	private final ReferenceLinkedOpenHashSet<ChestEntry> openedChests =
+		new ReferenceLinkedOpenHashSet<>();
+	// number of recorded chests covering each block position
+	private final Long2IntOpenHashMap openedChestIndex =
+		new Long2IntOpenHashMap();
+	private final ArrayList<ChestEntry> openedChestOversized =
+		new ArrayList<>();
 	
 	// Buried highlighting
 	private final CheckboxSetting highlightBuried = new CheckboxSetting(
@@ -290,7 +297,9 @@ public class ChestEspHack extends Hack implements UpdateListener,
 		EVENTS.add(PacketInputListener.class, this);
 		resetAntiEspState();
 		antiEspPreviouslyEnabled = antiEspDetection.isChecked();
-		lastOpenedChestsRefreshMs = 0L;
+		// re-read the ChestSearch config in case its database path changed
+		openedChestManager = null;
+		clearOpenedChests();
 		lastEnvironmentalRefreshMs = 0L;
 		lastEnvironmentRefreshAnchor = null;
 		lastEnvironmentRefreshDimension = null;
@@ -354,11 +363,7 @@ public class ChestEspHack extends Hack implements UpdateListener,
 		HashSet<BlockPos> seenShulkers =
 			shulkerChatAlerts.isChecked() ? new HashSet<>() : null;
 		
-		java.util.stream.Stream<BlockEntity> blockEntityStream =
-			effectiveLimit > 0
-				? getNearestLoadedBlockEntities(effectiveLimit).stream()
-				: ChunkUtils.getLoadedBlockEntities();
-		blockEntityStream.forEach(be -> {
+		getNearestLoadedBlockEntities(effectiveLimit).forEach(be -> {
 			if(enforceAboveGround && be.getBlockPos().getY() < yLimit)
 				return;
 			
@@ -431,30 +436,126 @@ public class ChestEspHack extends Hack implements UpdateListener,
 	
 	private void refreshOpenedChestCacheIfNeeded()
 	{
-		long now = System.currentTimeMillis();
-		if(now - lastOpenedChestsRefreshMs < OPENED_CHESTS_REFRESH_MS)
-			return;
-		
-		lastOpenedChestsRefreshMs = now;
-		
 		// Keep ChestESP markers available without requiring ChestSearch to be
-		// enabled, but avoid expensive DB reads every tick.
+		// enabled. The database is shared and versioned, so this only does
+		// real work when a chest was recorded or removed.
+		ChestDatabase db;
 		try
 		{
-			ChestManager mgr = new ChestManager();
-			openedChests = mgr.all();
+			if(openedChestManager == null)
+				openedChestManager = new ChestManager();
+			db = openedChestManager.getCurrentDb();
+			
 		}catch(Throwable ignored)
 		{
-			openedChests = java.util.List.of();
+			clearOpenedChests();
+			return;
+		}
+		
+		String curDimFull = MC.level == null ? "overworld"
+			: MC.level.dimension().identifier().toString();
+		String curDim = MC.level == null ? "overworld"
+			: MC.level.dimension().identifier().getPath();
+		
+		List<ChestDatabase.ChangeSet> changes = null;
+		if(db == openedChestDatabase && curDimFull.equals(openedChestDimFull))
+			changes = db.getChangesSince(openedChestVersion);
+		
+		if(changes == null)
+		{
+			clearOpenedChests();
+			ChestDatabase.Snapshot snapshot = db.snapshot();
+			for(ChestEntry e : snapshot.entries())
+				addOpenedChest(e, curDimFull, curDim);
+			openedChestDatabase = db;
+			openedChestVersion = snapshot.version();
+			openedChestDimFull = curDimFull;
+			return;
+		}
+		
+		for(ChestDatabase.ChangeSet change : changes)
+		{
+			for(ChestEntry e : change.removed())
+				removeOpenedChest(e);
+			for(ChestEntry e : change.added())
+				addOpenedChest(e, curDimFull, curDim);
+			openedChestVersion = change.version();
+		}
+	}
+	
+	private void clearOpenedChests()
+	{
+		openedChests.clear();
+		openedChestIndex.clear();
+		openedChestOversized.clear();
+		openedChestDatabase = null;
+		openedChestDimFull = null;
+	}
+	
+	private void addOpenedChest(ChestEntry e, String curDimFull,
+		String curDim)
+	{
+		if(e == null || e.dimension == null)
+			return;
+		
+		String ed = e.dimension;
+		boolean sameDimension = ed.equals(curDimFull) || ed.equals(curDim)
+			|| ed.endsWith(":" + curDim);
+		if(!sameDimension || !openedChests.add(e))
+			return;
+		
+		if(isOversizedOpenedChest(e))
+		{
+			openedChestOversized.add(e);
+			return;
+		}
+		
+		for(int x = Math.min(e.x, e.maxX); x <= Math.max(e.x, e.maxX); x++)
+			for(int y = Math.min(e.y, e.maxY); y <= Math.max(e.y,
+				e.maxY); y++)
+				for(int z = Math.min(e.z, e.maxZ); z <= Math.max(e.z,
+					e.maxZ); z++)
+					openedChestIndex.addTo(
+						net.minecraft.core.BlockPos.asLong(x, y, z), 1);
+	}
+	
+	private void removeOpenedChest(ChestEntry e)
+	{
+		if(!openedChests.remove(e))
+			return;
+		
+		if(isOversizedOpenedChest(e))
+		{
+			openedChestOversized.remove(e);
+			return;
 		}
+		
+		for(int x = Math.min(e.x, e.maxX); x <= Math.max(e.x, e.maxX); x++)
+			for(int y = Math.min(e.y, e.maxY); y <= Math.max(e.y,
+				e.maxY); y++)
+				for(int z = Math.min(e.z, e.maxZ); z <= Math.max(e.z,
+					e.maxZ); z++)
+				{
+					long pos = net.minecraft.core.BlockPos.asLong(x, y, z);
+					if(openedChestIndex.addTo(pos, -1) <= 1)
+						openedChestIndex.remove(pos);
+				}
+	}
+	
+	private static boolean isOversizedOpenedChest(ChestEntry e)
+	{
+		return Math.abs(e.maxX - e.x) > 4 || Math.abs(e.maxY - e.y) > 4
+			|| Math.abs(e.maxZ - e.z) > 4;
 	}
 	
 	private List<BlockEntity> getNearestLoadedBlockEntities(int limit)
 	{
-		var eyesPos = RotationUtils.getEyesPos();
-		return EspLimitUtils.collectNearest(ChunkUtils.getLoadedBlockEntities(),
-			limit, be -> be.getBlockPos().distToCenterSqr(eyesPos),
-			this::isRelevantBlockEntityTarget);
+		// No type filter here, since isRelevantBlockEntityTarget() also
+		// accepts modded containers by their block class. Without a limit,
+		// the groups do all of the filtering.
+		return WURST.getBlockEntityIndex().getNearest(
+			RotationUtils.getEyesPos(), Double.POSITIVE_INFINITY, limit, null,
+			limit > 0 ? this::isRelevantBlockEntityTarget : null);
 	}
 	
 	private List<Entity> getNearestEntitiesForRendering(int limit)
@@ -659,11 +760,6 @@ public class ChestEspHack extends Hack implements UpdateListener,
 			}
 		}
 		
-		String curDimFull = MC.level == null ? "overworld"
-			: MC.level.dimension().identifier().toString();
-		String curDim = MC.level == null ? "overworld"
-			: MC.level.dimension().identifier().getPath();
-		
 		boolean applyEnvFilters = MC.level != null && !preFilteredEnv
 			&& (isSpawnerFilterActive() || filterTrialChambers.isChecked()
 				|| filterVillages.isChecked());
@@ -741,7 +837,7 @@ public class ChestEspHack extends Hack implements UpdateListener,
 				// check normal
 				for(AABB box : baseNormal)
 				{
-					if(isRecordedChest(box, curDimFull, curDim))
+					if(isRecordedChest(box))
 						opened.add(box);
 					else
 						cNormal.add(box);
@@ -749,7 +845,7 @@ public class ChestEspHack extends Hack implements UpdateListener,
 				// check buried as well
 				for(AABB box : buriedBoxes)
 				{
-					if(isRecordedChest(box, curDimFull, curDim))
+					if(isRecordedChest(box))
 						opened.add(box);
 					else
 						cBuried.add(box);
@@ -942,13 +1038,11 @@ public class ChestEspHack extends Hack implements UpdateListener,
 		return buried;
 	}
 	
-	private boolean isRecordedChest(AABB box, String curDimFull, String curDim)
+	private boolean isRecordedChest(AABB box)
 	{
 		if(openedChests.isEmpty())
 			return false;
 		
-		rebuildOpenedChestIndexIfNeeded(curDimFull, curDim);
-		
 		int boxMinX = (int)Math.floor(box.minX + 1e-6);
 		int boxMaxX = (int)Math.floor(box.maxX - 1e-6);
 		int boxMinY = (int)Math.floor(box.minY + 1e-6);
@@ -960,13 +1054,13 @@ public class ChestEspHack extends Hack implements UpdateListener,
 			&& boxMaxZ - boxMinZ <= 8;
 		if(!smallBox)
 			return isRecordedChestLinear(boxMinX, boxMaxX, boxMinY, boxMaxY,
-				boxMinZ, boxMaxZ, curDimFull, curDim);
+				boxMinZ, boxMaxZ);
 		
 		if(!openedChestIndex.isEmpty())
 			for(int x = boxMinX; x <= boxMaxX; x++)
 				for(int y = boxMinY; y <= boxMaxY; y++)
 					for(int z = boxMinZ; z <= boxMaxZ; z++)
-						if(openedChestIndex.contains(
+						if(openedChestIndex.containsKey(
 							net.minecraft.core.BlockPos.asLong(x, y, z)))
 							return true;
 						
@@ -989,20 +1083,10 @@ public class ChestEspHack extends Hack implements UpdateListener,
 	}
 	
 	private boolean isRecordedChestLinear(int boxMinX, int boxMaxX, int boxMinY,
-		int boxMaxY, int boxMinZ, int boxMaxZ, String curDimFull, String curDim)
+		int boxMaxY, int boxMinZ, int boxMaxZ)
 	{
-		String dimSuffix = ":" + curDim;
 		for(ChestEntry e : openedChests)
 		{
-			if(e == null || e.dimension == null)
-				continue;
-			
-			String ed = e.dimension;
-			boolean sameDimension = ed.equals(curDimFull) || ed.equals(curDim)
-				|| ed.endsWith(dimSuffix);
-			if(!sameDimension)
-				continue;
-			
 			int minX = Math.min(e.x, e.maxX);
 			int maxX = Math.max(e.x, e.maxX);
 			int minY = Math.min(e.y, e.maxY);
@@ -1018,53 +1102,6 @@ public class ChestEspHack extends Hack implements UpdateListener,
 		return false;
 	}
 	
-	private void rebuildOpenedChestIndexIfNeeded(String curDimFull,
-		String curDim)
-	{
-		if(openedChestIndexSource == openedChests
-			&& java.util.Objects.equals(openedChestIndexDimFull, curDimFull))
-			return;
-		
-		java.util.HashSet<Long> index = new java.util.HashSet<>();
-		java.util.ArrayList<ChestEntry> oversized = new java.util.ArrayList<>();
-		String dimSuffix = ":" + curDim;
-		
-		for(ChestEntry e : openedChests)
-		{
-			if(e == null || e.dimension == null)
-				continue;
-			
-			String ed = e.dimension;
-			boolean sameDimension = ed.equals(curDimFull) || ed.equals(curDim)
-				|| ed.endsWith(dimSuffix);
-			if(!sameDimension)
-				continue;
-			
-			int minX = Math.min(e.x, e.maxX);
-			int maxX = Math.max(e.x, e.maxX);
-			int minY = Math.min(e.y, e.maxY);
-			int maxY = Math.max(e.y, e.maxY);
-			int minZ = Math.min(e.z, e.maxZ);
-			int maxZ = Math.max(e.z, e.maxZ);
-			
-			if(maxX - minX > 4 || maxY - minY > 4 || maxZ - minZ > 4)
-			{
-				oversized.add(e);
-				continue;
-			}
-			
-			for(int x = minX; x <= maxX; x++)
-				for(int y = minY; y <= maxY; y++)
-					for(int z = minZ; z <= maxZ; z++)
-						index.add(net.minecraft.core.BlockPos.asLong(x, y, z));
-		}
-		
-		openedChestIndex = index;
-		openedChestOversized = oversized;
-		openedChestIndexSource = openedChests;
-		openedChestIndexDimFull = curDimFull;
-	}
-	
 	private void renderTracers(PoseStack matrixStack, float partialTicks)
 	{
 		boolean workstationEnabled = false;
@@ -1099,16 +1136,6 @@ public class ChestEspHack extends Hack implements UpdateListener,
 			}
 		}
 		
-		String curDimFull = null;
-		String curDim = null;
-		if(hideOpenedTracers)
-		{
-			curDimFull = MC.level == null ? "overworld"
-				: MC.level.dimension().identifier().toString();
-			curDim = MC.level == null ? "overworld"
-				: MC.level.dimension().identifier().getPath();
-		}
-		
 		boolean applyEnvFilters = MC.level != null && !preFilteredEnv
 			&& (isSpawnerFilterActive() || filterTrialChambers.isChecked()
 				|| filterVillages.isChecked());
@@ -1166,7 +1193,7 @@ public class ChestEspHack extends Hack implements UpdateListener,
 					new java.util.ArrayList<>();
 				for(AABB box : boxes)
 				{
-					if(isRecordedChest(box, curDimFull, curDim))
+					if(isRecordedChest(box))
 						continue;
 					
 					filtered.add(box.getCenter());
@@ -1615,17 +1642,16 @@ public class ChestEspHack extends Hack implements UpdateListener,
 	
 	private List<BlockPos> collectTrialSpawnerPositions()
 	{
-		return ChunkUtils.getLoadedBlockEntities()
-			.filter(be -> be instanceof TrialSpawnerBlockEntity)
+		return WURST.getBlockEntityIndex()
+			.getAll(BlockEntityType.TRIAL_SPAWNER).stream()
 			.map(BlockEntity::getBlockPos).map(BlockPos::immutable)
 			.collect(Collectors.toList());
 	}
 	
 	private List<BlockPos> collectSpawnerPositions()
 	{
-		return ChunkUtils.getLoadedBlockEntities()
-			.filter(be -> be instanceof SpawnerBlockEntity)
-			.map(BlockEntity::getBlockPos).map(BlockPos::immutable)
+		return WURST.getBlockEntityIndex().getAll(BlockEntityType.MOB_SPAWNER)
+			.stream().map(BlockEntity::getBlockPos).map(BlockPos::immutable)
 			.collect(Collectors.toList());
 	}
 	
@@ -37,6 +37,7 @@ import net.wurstclient.util.RotationUtils;
 import net.wurstclient.util.RenderUtils;
 import net.wurstclient.util.chunk.ChunkSearcher.Result;
 import net.wurstclient.util.chunk.ChunkSearcherCoordinator;
+import net.wurstclient.util.chunk.PaletteQuery;
 
 @SearchTags({"lavaesp", "wateresp", "lava water", "LavaWaterESP"})
 public final class LavaWaterEspHack extends Hack implements UpdateListener,
@@ -85,7 +86,7 @@ public final class LavaWaterEspHack extends Hack implements UpdateListener,
 		"Tracer flash", "Make tracers pulse with a smooth fade.", false);
 	
 	private final BiPredicate<BlockPos, BlockState> query =
-		(pos, state) -> isEnabledTargetBlock(state.getBlock());
+		PaletteQuery.of(state -> isEnabledTargetBlock(state.getBlock()));
 	private final ChunkSearcherCoordinator coordinator =
 		new ChunkSearcherCoordinator(query, area);
 	private boolean groupsUpToDate;
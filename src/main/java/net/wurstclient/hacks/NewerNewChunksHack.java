@@ -9,23 +9,22 @@ package net.wurstclient.hacks;
 
 import com.mojang.blaze3d.vertex.PoseStack;
 import java.awt.Color;
-import java.io.IOException;
-import java.io.BufferedReader;
 import java.lang.reflect.Field;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.minecraft.client.multiplayer.ClientLevel;
 import net.minecraft.client.multiplayer.ServerData;
 import net.minecraft.core.BlockPos;
@@ -52,6 +51,11 @@ import net.wurstclient.Category;
 import net.wurstclient.events.RenderListener;
 import net.wurstclient.events.UpdateListener;
 import net.wurstclient.hack.Hack;
+import net.wurstclient.hacks.newernewchunks.NewerNewChunksIndex;
+import net.wurstclient.hacks.newernewchunks.NewerNewChunksRenderer;
+import net.wurstclient.hacks.newernewchunks.NewerNewChunksStore;
+import net.wurstclient.hacks.newernewchunks.NewerNewChunksStore.ChunkType;
+import net.wurstclient.render.globalesp.GlobalEspManager;
 import net.wurstclient.settings.ButtonSetting;
 import net.wurstclient.settings.CheckboxSetting;
 import net.wurstclient.settings.ColorSetting;
@@ -59,6 +63,7 @@ import net.wurstclient.settings.EnumSetting;
 import net.wurstclient.settings.SliderSetting;
 import net.wurstclient.settings.SliderSetting.ValueDisplay;
 import net.wurstclient.util.ChatUtils;
+import net.wurstclient.util.MinPriorityThreadFactory;
 import net.wurstclient.util.RenderUtils;
 
 public final class NewerNewChunksHack extends Hack
@@ -119,8 +124,18 @@ public final class NewerNewChunksHack extends Hack
 		getField(PalettedContainer.class, "data");
 	private static final Field PAL_DATA_PALETTE_FIELD = getPaletteField();
 	private static final Class<?> PAL_STRATEGY_CLASS = getPalStrategyClass();
-	private static final Pattern CHUNK_COORD_PATTERN =
-		Pattern.compile("-?\\d+");
+	
+	/**
+	 * Classifies loaded chunks off the client thread. The queue is bounded so
+	 * that a backlog of section copies can't pile up when chunks arrive
+	 * faster than they can be classified.
+	 */
+	private static final int CLASSIFIER_THREADS = Math.max(1,
+		Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+	private static final ExecutorService CLASSIFIER =
+		new ThreadPoolExecutor(CLASSIFIER_THREADS, CLASSIFIER_THREADS, 0L,
+			TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(256),
+			new MinPriorityThreadFactory());
 	
 	private final EnumSetting<DetectMode> detectMode = new EnumSetting<>(
 		"Chunk Detection Mode", DetectMode.values(), DetectMode.Normal);
@@ -262,34 +277,18 @@ public final class NewerNewChunksHack extends Hack
 	private final SliderSetting windowRefreshDistanceChunks = new SliderSetting(
 		"Window-Refresh-Distance(Chunks)", 48, 4, 128, 1, ValueDisplay.INTEGER);
 	
-	private final Set<ChunkPos> newChunks = ConcurrentHashMap.newKeySet();
-	private final Set<ChunkPos> oldChunks = ConcurrentHashMap.newKeySet();
-	private final Set<ChunkPos> tickExploitChunks =
-		ConcurrentHashMap.newKeySet();
-	private final Set<ChunkPos> beingUpdatedOldChunks =
-		ConcurrentHashMap.newKeySet();
-	private final Set<ChunkPos> oldGenerationChunks =
-		ConcurrentHashMap.newKeySet();
-	
-	// Region-bucket indices (32x32 chunk tiles) for O(visible) queries
-	private static final int REGION_SHIFT = 5; // 32x32 tiles
 	private static final int WEBHOOK_MIN_THICKNESS_CHUNKS = 6;
-	private final Map<Long, Set<ChunkPos>> idxNew = new ConcurrentHashMap<>();
-	private final Map<Long, Set<ChunkPos>> idxOld = new ConcurrentHashMap<>();
-	private final Map<Long, Set<ChunkPos>> idxTick = new ConcurrentHashMap<>();
-	private final Map<Long, Set<ChunkPos>> idxBeingUpdated =
-		new ConcurrentHashMap<>();
-	private final Map<Long, Set<ChunkPos>> idxOldGen =
-		new ConcurrentHashMap<>();
-	private final Set<ChunkPos> newChunksView =
-		Collections.unmodifiableSet(newChunks);
-	private final Set<ChunkPos> oldChunksView =
-		Collections.unmodifiableSet(oldChunks);
-	
-	private final Set<Path> filePaths = Set.of(Paths.NewChunkData,
-		Paths.OldChunkData, Paths.BlockExploitChunkData,
-		Paths.BeingUpdatedChunkData, Paths.OldGenerationChunkData);
+	private final NewerNewChunksIndex chunks = new NewerNewChunksIndex();
+	private final NewerNewChunksRenderer renderer =
+		new NewerNewChunksRenderer();
+	private final ConcurrentLinkedQueue<LoadedWindow> loadedWindows =
+		new ConcurrentLinkedQueue<>();
+	
+	private final LongOpenHashSet classifyingChunks = new LongOpenHashSet();
+	private final ConcurrentLinkedQueue<ClassifiedChunk> classifiedChunks =
+		new ConcurrentLinkedQueue<>();
 	
+	private NewerNewChunksStore store;
 	private String serverKey = "unknown";
 	private String dimensionKey = "unknown";
 	private boolean loadedThisSession;
@@ -355,6 +354,73 @@ public final class NewerNewChunksHack extends Hack
 		boolean hasUsableEvidence)
 	{}
 	
+	/**
+	 * The settings and dimension that classification depends on, as they
+	 * were when the chunk arrived.
+	 */
+	private record ClassifierSettings(boolean paletteExploit,
+		boolean beingUpdatedDetector, boolean overworldOldChunksDetector,
+		boolean netherOldChunksDetector, boolean endOldChunksDetector,
+		boolean liquidExploit, int classificationMinY, boolean overworld,
+		boolean nether, boolean end)
+	{}
+	
+	/**
+	 * A copy of one chunk section's block states, or <code>null</code> states
+	 * if it only contains air. The first biome palette entry is only captured
+	 * in the End, where classification needs it.
+	 */
+	private record SectionSnapshot(PalettedContainer<BlockState> states,
+		Holder<Biome> firstBiome)
+	{}
+	
+	private record ChunkSnapshot(ClientLevel level, ChunkPos pos, int minY,
+		SectionSnapshot[] sections, ClassifierSettings settings)
+	{
+		static ChunkSnapshot capture(ClientLevel level, LevelChunk chunk,
+			ClassifierSettings settings)
+		{
+			LevelChunkSection[] chunkSections = chunk.getSections();
+			SectionSnapshot[] sections =
+				new SectionSnapshot[chunkSections.length];
+			
+			for(int i = 0; i < chunkSections.length; i++)
+			{
+				LevelChunkSection section = chunkSections[i];
+				if(section == null)
+					continue;
+				
+				PalettedContainer<BlockState> states =
+					section.hasOnlyAir() ? null : section.getStates().copy();
+				
+				Holder<Biome> firstBiome = null;
+				if(settings.end())
+				{
+					List<Holder<Biome>> biomes =
+						getRawPaletteEntries(section.getBiomes());
+					if(!biomes.isEmpty())
+						firstBiome = biomes.get(0);
+				}
+				
+				sections[i] = new SectionSnapshot(states, firstBiome);
+			}
+			
+			return new ChunkSnapshot(level, chunk.getPos(), chunk.getMinY(),
+				sections, settings);
+		}
+	}
+	
+	private record ClassifiedChunk(ChunkSnapshot snapshot, ChunkType type)
+	{}
+	
+	/**
+	 * Chunks read from disk by the window loader, waiting to be merged into
+	 * the index on the client thread.
+	 */
+	private record LoadedWindow(NewerNewChunksStore store,
+		LongArrayList chunks, ArrayList<ChunkType> types)
+	{}
+	
 	private static Set<Block> createNewNetherBlocks()
 	{
 		HashSet<Block> blocks = new HashSet<>(Set.of(Blocks.ANCIENT_DEBRIS,
@@ -499,18 +565,6 @@ public final class NewerNewChunksHack extends Hack
 		}
 	}
 	
-	private static final class Paths
-	{
-		private static final Path NewChunkData = Path.of("NewChunkData.txt");
-		private static final Path OldChunkData = Path.of("OldChunkData.txt");
-		private static final Path BlockExploitChunkData =
-			Path.of("BlockExploitChunkData.txt");
-		private static final Path BeingUpdatedChunkData =
-			Path.of("BeingUpdatedChunkData.txt");
-		private static final Path OldGenerationChunkData =
-			Path.of("OldGenerationChunkData.txt");
-	}
-	
 	public NewerNewChunksHack()
 	{
 		super("NewerNewChunks");
@@ -564,7 +618,6 @@ public final class NewerNewChunksHack extends Hack
 	protected void onEnable()
 	{
 		resolveWorldKeys();
-		ensureDataFiles();
 		if(loadChunkData.isChecked())
 		{
 			if(MC.player != null)
@@ -608,8 +661,11 @@ public final class NewerNewChunksHack extends Hack
 	{
 		EVENTS.remove(UpdateListener.class, this);
 		EVENTS.remove(RenderListener.class, this);
+		if(store != null)
+			store.flush();
 		if(removeOnDisable.isChecked() && !isMapaTrackingActive())
 			clearChunkData();
+		renderer.close();
 		try
 		{
 			windowLoader.shutdownNow();
@@ -622,6 +678,8 @@ public final class NewerNewChunksHack extends Hack
 	{
 		if(MC.level == null)
 		{
+			if(store != null)
+				store.flush();
 			if(trackedLevel != null
 				&& removeOnLeaveWorldOrChangeDimensions.isChecked())
 				clearChunkData();
@@ -634,8 +692,11 @@ public final class NewerNewChunksHack extends Hack
 			return;
 		
 		resolveWorldKeys();
-		ensureDataFiles();
 		ensureTrackingWorld();
+		applyLoadedWindows();
+		applyClassifiedChunks();
+		if(store != null)
+			store.flushIfDue();
 		
 		if(deleteWarningTicks <= 100)
 			deleteWarningTicks++;
@@ -693,71 +754,65 @@ public final class NewerNewChunksHack extends Hack
 		double maxDist = renderDistance.getValue() * 16;
 		BlockPos playerPos = MC.player.blockPosition();
 		
-		ChunkPos pc = MC.player.chunkPosition();
-		int visR = (int)Math.ceil(maxDist / 16.0);
-		Set<ChunkPos> visOld = getOldChunksInRange(pc.x(), pc.z(), visR);
-		Set<ChunkPos> visNew = getNewChunksInRange(pc.x(), pc.z(), visR);
-		Set<ChunkPos> visTick =
-			getBlockExploitChunksInRange(pc.x(), pc.z(), visR);
-		Set<ChunkPos> visBeing =
-			getBeingUpdatedChunksInRange(pc.x(), pc.z(), visR);
-		Set<ChunkPos> visOldGen =
-			getOldGenerationChunksInRange(pc.x(), pc.z(), visR);
-		List<AABB> oldBoxes = collectBoxes(visOld, y, playerPos, maxDist);
-		List<AABB> newBoxes = collectBoxes(visNew, y, playerPos, maxDist);
-		List<AABB> tickBoxes = collectBoxes(visTick, y, playerPos, maxDist);
-		List<AABB> beingUpdatedBoxes =
-			collectBoxes(visBeing, y, playerPos, maxDist);
-		List<AABB> oldVersionBoxes =
-			collectBoxes(visOldGen, y, playerPos, maxDist);
-		
-		if(!oldBoxes.isEmpty())
+		int[] tickColors = getBlockExploitRenderColors();
+		if(WURST.getHax().simulationSonarHack.isEnabled()
+			|| GlobalEspManager.getInstance().shouldTakeOverRenderCalls())
 		{
-			renderBoxes(matrices, oldBoxes, oldChunksSideColor.getColorI(40),
+			renderBoxes(matrices, ChunkType.OLD, y, playerPos, maxDist,
+				oldChunksSideColor.getColorI(40),
 				oldChunksLineColor.getColorI(80));
-		}
-		
-		if(!newBoxes.isEmpty())
-		{
-			renderBoxes(matrices, newBoxes, newChunksSideColor.getColorI(95),
+			renderBoxes(matrices, ChunkType.NEW, y, playerPos, maxDist,
+				newChunksSideColor.getColorI(95),
 				newChunksLineColor.getColorI(205));
-		}
-		
-		if(!beingUpdatedBoxes.isEmpty())
-		{
-			renderBoxes(matrices, beingUpdatedBoxes,
-				beingUpdatedChunksSideColor.getColorI(60),
+			renderBoxes(matrices, ChunkType.BEING_UPDATED, y, playerPos,
+				maxDist, beingUpdatedChunksSideColor.getColorI(60),
 				beingUpdatedChunksLineColor.getColorI(100));
-		}
-		
-		if(!oldVersionBoxes.isEmpty())
-		{
-			renderBoxes(matrices, oldVersionBoxes,
-				oldVersionChunksSideColor.getColorI(40),
+			renderBoxes(matrices, ChunkType.OLD_GENERATION, y, playerPos,
+				maxDist, oldVersionChunksSideColor.getColorI(40),
 				oldVersionChunksLineColor.getColorI(80));
+			renderBoxes(matrices, ChunkType.BLOCK_EXPLOIT, y, playerPos,
+				maxDist, tickColors[0], tickColors[1]);
+			return;
 		}
 		
-		if(!tickBoxes.isEmpty())
-		{
-			int side;
-			int line;
-			DetectMode mode = detectMode.getSelected();
-			if(!blockUpdateExploit.isChecked()
-				|| mode == DetectMode.IgnoreBlockExploit)
-			{
-				side = oldChunksSideColor.getColorI(40);
-				line = oldChunksLineColor.getColorI(80);
-			}else if(mode == DetectMode.Normal)
-			{
-				side = newChunksSideColor.getColorI(95);
-				line = newChunksLineColor.getColorI(205);
-			}else
-			{
-				side = blockExploitChunksSideColor.getColorI(75);
-				line = blockExploitChunksLineColor.getColorI(170);
-			}
-			renderBoxes(matrices, tickBoxes, side, line);
-		}
+		ShapeMode mode = shapeMode.getSelected();
+		boolean sides = mode == ShapeMode.Sides || mode == ShapeMode.Both;
+		boolean lines = mode == ShapeMode.Lines || mode == ShapeMode.Both;
+		renderer.update(chunks, playerPos, maxDist);
+		renderer.draw(matrices, ChunkType.OLD, y,
+			oldChunksSideColor.getColorI(40), oldChunksLineColor.getColorI(80),
+			sides, lines);
+		renderer.draw(matrices, ChunkType.NEW, y,
+			newChunksSideColor.getColorI(95), newChunksLineColor.getColorI(205),
+			sides, lines);
+		renderer.draw(matrices, ChunkType.BEING_UPDATED, y,
+			beingUpdatedChunksSideColor.getColorI(60),
+			beingUpdatedChunksLineColor.getColorI(100), sides, lines);
+		renderer.draw(matrices, ChunkType.OLD_GENERATION, y,
+			oldVersionChunksSideColor.getColorI(40),
+			oldVersionChunksLineColor.getColorI(80), sides, lines);
+		renderer.draw(matrices, ChunkType.BLOCK_EXPLOIT, y, tickColors[0],
+			tickColors[1], sides, lines);
+	}
+	
+	/**
+	 * Returns the side and line colors of BlockExploit chunks, which are
+	 * drawn like old or new chunks unless BlockExploitMode is selected.
+	 */
+	private int[] getBlockExploitRenderColors()
+	{
+		DetectMode mode = detectMode.getSelected();
+		if(!blockUpdateExploit.isChecked()
+			|| mode == DetectMode.IgnoreBlockExploit)
+			return new int[]{oldChunksSideColor.getColorI(40),
+				oldChunksLineColor.getColorI(80)};
+		
+		if(mode == DetectMode.Normal)
+			return new int[]{newChunksSideColor.getColorI(95),
+				newChunksLineColor.getColorI(205)};
+		
+		return new int[]{blockExploitChunksSideColor.getColorI(75),
+			blockExploitChunksLineColor.getColorI(170)};
 	}
 	
 	public void setAutoFlyRenderSuppressed(boolean suppressed)
@@ -785,168 +840,243 @@ public final class NewerNewChunksHack extends Hack
 		if(chunk == null || chunk.isEmpty())
 			return;
 		
-		if(paletteExploit.isChecked())
+		if(!paletteExploit.isChecked() && !liquidExploit.isChecked())
+			return;
+		
+		long key = ChunkPos.pack(x, z);
+		if(!classifyingChunks.add(key))
+			return;
+		
+		ChunkSnapshot snapshot = ChunkSnapshot.capture(MC.level, chunk,
+			captureClassifierSettings());
+		try
+		{
+			CLASSIFIER.execute(() -> classifyAndQueue(snapshot));
+			
+		}catch(RejectedExecutionException e)
+		{
+			// too far behind, so classify it here rather than drop it
+			classifyAndQueue(snapshot);
+		}
+	}
+	
+	/**
+	 * Classifies the given snapshot and queues the result for
+	 * {@link #applyClassifiedChunks()}. If classification fails, the chunk is
+	 * queued as unclassified, so that it doesn't stay in
+	 * <code>classifyingChunks</code> and can be classified again the next
+	 * time it loads.
+	 */
+	private void classifyAndQueue(ChunkSnapshot snapshot)
+	{
+		ChunkType type;
+		try
+		{
+			type = classify(snapshot);
+			
+		}catch(RuntimeException e)
+		{
+			e.printStackTrace();
+			type = null;
+		}
+		
+		classifiedChunks.add(new ClassifiedChunk(snapshot, type));
+	}
+	
+	/**
+	 * Applies the classifications that the worker threads have finished
+	 * since the last call. Results for a different world, or for chunks that
+	 * were classified some other way in the meantime, are dropped.
+	 */
+	private void applyClassifiedChunks()
+	{
+		ClassifiedChunk result;
+		while((result = classifiedChunks.poll()) != null)
 		{
-			ChunkClassification classification = classifyChunk(chunk);
+			ChunkSnapshot snapshot = result.snapshot();
+			ChunkPos chunkPos = snapshot.pos();
+			classifyingChunks.remove(ChunkPos.pack(chunkPos.x(), chunkPos.z()));
+			
+			if(result.type() == null || snapshot.level() != MC.level
+				|| containsAny(chunkPos))
+				continue;
+			
+			switch(result.type())
+			{
+				case NEW -> markNew(chunkPos);
+				case OLD -> markOld(chunkPos);
+				case BEING_UPDATED -> markBeingUpdated(chunkPos);
+				case OLD_GENERATION -> markOldGeneration(chunkPos);
+			}
+		}
+	}
+	
+	private ClassifierSettings captureClassifierSettings()
+	{
+		return new ClassifierSettings(paletteExploit.isChecked(),
+			beingUpdatedDetector.isChecked(),
+			overworldOldChunksDetector.isChecked(),
+			netherOldChunksDetector.isChecked(),
+			endOldChunksDetector.isChecked(), liquidExploit.isChecked(),
+			getClassificationMinY(), isOverworld(), isNether(), isEnd());
+	}
+	
+	/**
+	 * Decides what the given chunk looks like, or returns <code>null</code>
+	 * if there isn't enough evidence either way. Runs on the classifier
+	 * threads, so it must only use the snapshot.
+	 */
+	private static ChunkType classify(ChunkSnapshot snapshot)
+	{
+		ClassifierSettings settings = snapshot.settings();
+		if(settings.paletteExploit())
+		{
+			ChunkClassification classification = classifyChunk(snapshot);
 			if(classification.hasUsableEvidence())
 			{
 				boolean isNewChunk = classification.isNewChunk();
 				boolean isOldGeneration = classification.isOldGeneration();
 				boolean chunkIsBeingUpdated =
 					classification.chunkIsBeingUpdated();
-				boolean allowNew = isEnd() ? isNewChunk : !isOldGeneration;
+				boolean allowNew =
+					settings.end() ? isNewChunk : !isOldGeneration;
 				
 				if(isNewChunk && !chunkIsBeingUpdated && allowNew)
-				{
-					markNew(chunkPos);
-					return;
-				}
+					return ChunkType.NEW;
 				
 				if(!isNewChunk && !chunkIsBeingUpdated && isOldGeneration)
-				{
-					markOldGeneration(chunkPos);
-					return;
-				}
+					return ChunkType.OLD_GENERATION;
 				
 				if(chunkIsBeingUpdated)
-				{
-					markBeingUpdated(chunkPos);
-					return;
-				}
+					return ChunkType.BEING_UPDATED;
 				
 				if(!isNewChunk)
-				{
-					markOld(chunkPos);
-					return;
-				}
+					return ChunkType.OLD;
 			}
 		}
 		
-		if(liquidExploit.isChecked() && hasFlowingFluid(chunk))
-			markOld(chunkPos);
+		if(settings.liquidExploit() && hasFlowingFluid(snapshot))
+			return ChunkType.OLD;
+		
+		return null;
 	}
 	
-	private ChunkClassification classifyChunk(LevelChunk chunk)
+	private static ChunkClassification classifyChunk(ChunkSnapshot snapshot)
 	{
+		ClassifierSettings settings = snapshot.settings();
+		boolean nether = settings.nether();
+		boolean end = settings.end();
 		boolean isNewChunk = false;
 		boolean isOldGeneration = false;
 		boolean chunkIsBeingUpdated = false;
 		boolean hasUsableEvidence = false;
-		LevelChunkSection[] sections = chunk.getSections();
+		SectionSnapshot[] sections = snapshot.sections();
 		
-		if(overworldOldChunksDetector.isChecked() && isOverworld())
-			isOldGeneration = isOverworldOldGeneration(chunk);
+		if(settings.overworldOldChunksDetector() && settings.overworld())
+			isOldGeneration = isOverworldOldGeneration(snapshot);
 		
-		if(!isOldGeneration && netherOldChunksDetector.isChecked()
-			&& isNether())
-			isOldGeneration = isNetherOldGeneration(chunk);
+		if(!isOldGeneration && settings.netherOldChunksDetector() && nether)
+			isOldGeneration = isNetherOldGeneration(snapshot);
 		
-		if(!isOldGeneration && endOldChunksDetector.isChecked() && isEnd())
+		if(!isOldGeneration && settings.endOldChunksDetector() && end)
 			isOldGeneration = hasEndBiomeFromPalette(sections);
 		
-		if(paletteExploit.isChecked())
+		boolean firstChunkAppearsNew = false;
+		int loops = 0;
+		int newChunkQuantifier = 0;
+		int oldChunkQuantifier = 0;
+		
+		for(int sectionIndex =
+			0; sectionIndex < sections.length; sectionIndex++)
 		{
-			boolean firstChunkAppearsNew = false;
-			int loops = 0;
-			int newChunkQuantifier = 0;
-			int oldChunkQuantifier = 0;
+			SectionSnapshot section = sections[sectionIndex];
+			if(section == null
+				|| !shouldUseSectionForClassification(snapshot, sectionIndex))
+				continue;
 			
-			for(int sectionIndex =
-				0; sectionIndex < sections.length; sectionIndex++)
+			int isNewSection = 0;
+			int isBeingUpdatedSection = 0;
+			PalettedContainer<BlockState> blockStates = section.states();
+			
+			if(blockStates != null)
 			{
-				LevelChunkSection section = sections[sectionIndex];
-				if(section == null
-					|| !shouldUseSectionForClassification(chunk, sectionIndex))
-					continue;
+				hasUsableEvidence = true;
+				List<BlockState> paletteEntries =
+					getRawPaletteEntries(blockStates);
+				int blockPaletteLength = paletteEntries.size();
 				
-				int isNewSection = 0;
-				int isBeingUpdatedSection = 0;
+				if(isHashMapPalette(blockStates))
+				{
+					int bstatesSize = countDistinctSectionStates(blockStates);
+					if(bstatesSize <= 1)
+						bstatesSize = blockPaletteLength;
+					if(bstatesSize < blockPaletteLength)
+						isNewSection = 2;
+				}
 				
-				if(!section.hasOnlyAir())
+				for(int i = 0; i < blockPaletteLength; i++)
 				{
-					hasUsableEvidence = true;
-					PalettedContainer<BlockState> blockStates =
-						section.getStates();
-					List<BlockState> paletteEntries =
-						getRawPaletteEntries(blockStates);
-					int blockPaletteLength = paletteEntries.size();
+					Block block = paletteEntries.get(i).getBlock();
+					if(i == 0 && loops == 0 && block == Blocks.AIR && !end)
+						firstChunkAppearsNew = true;
 					
-					if(isHashMapPalette(blockStates))
-					{
-						int bstatesSize = countDistinctSectionStates(section);
-						if(bstatesSize <= 1)
-							bstatesSize = blockPaletteLength;
-						if(bstatesSize < blockPaletteLength)
-							isNewSection = 2;
-					}
+					if(i == 0 && block == Blocks.AIR && !nether && !end)
+						isNewSection++;
 					
-					for(int i = 0; i < blockPaletteLength; i++)
-					{
-						Block block = paletteEntries.get(i).getBlock();
-						if(i == 0 && loops == 0 && block == Blocks.AIR
-							&& !isEnd())
-							firstChunkAppearsNew = true;
-						
-						if(i == 0 && block == Blocks.AIR && !isNether()
-							&& !isEnd())
-							isNewSection++;
-						
-						if(i == 1
-							&& (block == Blocks.WATER || block == Blocks.STONE
-								|| block == Blocks.GRASS_BLOCK
-								|| block == Blocks.SNOW_BLOCK)
-							&& !isNether() && !isEnd())
-							isNewSection++;
-						
-						if(i == 2
-							&& (block == Blocks.SNOW_BLOCK
-								|| block == Blocks.DIRT
-								|| block == Blocks.POWDER_SNOW)
-							&& !isNether() && !isEnd())
-							isNewSection++;
-						
-						if(loops == 4 && block == Blocks.BEDROCK && !isNether()
-							&& !isEnd() && beingUpdatedDetector.isChecked())
-							chunkIsBeingUpdated = true;
-						
-						if(block == Blocks.AIR && (isNether() || isEnd()))
-							isBeingUpdatedSection++;
-					}
+					if(i == 1
+						&& (block == Blocks.WATER || block == Blocks.STONE
+							|| block == Blocks.GRASS_BLOCK
+							|| block == Blocks.SNOW_BLOCK)
+						&& !nether && !end)
+						isNewSection++;
 					
-					if(isBeingUpdatedSection >= 2)
-						oldChunkQuantifier++;
-					if(isNewSection >= 2)
-						newChunkQuantifier++;
+					if(i == 2
+						&& (block == Blocks.SNOW_BLOCK || block == Blocks.DIRT
+							|| block == Blocks.POWDER_SNOW)
+						&& !nether && !end)
+						isNewSection++;
+					
+					if(loops == 4 && block == Blocks.BEDROCK && !nether && !end
+						&& settings.beingUpdatedDetector())
+						chunkIsBeingUpdated = true;
+					
+					if(block == Blocks.AIR && (nether || end))
+						isBeingUpdatedSection++;
 				}
 				
-				if(isEnd() && isEndNewChunkByPalette(section))
-					isNewChunk = true;
-				
-				if(!section.hasOnlyAir())
-					loops++;
+				if(isBeingUpdatedSection >= 2)
+					oldChunkQuantifier++;
+				if(isNewSection >= 2)
+					newChunkQuantifier++;
 			}
 			
-			if(loops > 0)
+			if(end && section.firstBiome() != null
+				&& section.firstBiome().is(Biomes.PLAINS))
+				isNewChunk = true;
+			
+			if(blockStates != null)
+				loops++;
+		}
+		
+		if(loops > 0)
+		{
+			if(settings.beingUpdatedDetector() && (nether || end))
 			{
-				if(beingUpdatedDetector.isChecked() && (isNether() || isEnd()))
-				{
-					double oldPercentage =
-						((double)oldChunkQuantifier / loops) * 100;
-					if(oldPercentage >= 25)
-						chunkIsBeingUpdated = true;
-				}else if(!isNether() && !isEnd())
-				{
-					double percentage =
-						((double)newChunkQuantifier / loops) * 100;
-					if(percentage >= 51)
-						isNewChunk = true;
-				}
+				double oldPercentage =
+					((double)oldChunkQuantifier / loops) * 100;
+				if(oldPercentage >= 25)
+					chunkIsBeingUpdated = true;
+			}else if(!nether && !end)
+			{
+				double percentage = ((double)newChunkQuantifier / loops) * 100;
+				if(percentage >= 51)
+					isNewChunk = true;
 			}
-			
-			if(firstChunkAppearsNew)
-				isNewChunk = true;
 		}
 		
+		if(firstChunkAppearsNew)
+			isNewChunk = true;
+		
 		return new ChunkClassification(isNewChunk, isOldGeneration,
 			chunkIsBeingUpdated, hasUsableEvidence || isOldGeneration);
 	}
@@ -958,20 +1088,23 @@ public final class NewerNewChunksHack extends Hack
 		return minimumClassificationY.getValueI();
 	}
 	
-	private int getSectionMinY(LevelChunk chunk, int sectionIndex)
+	private static int getSectionMinY(ChunkSnapshot snapshot,
+		int sectionIndex)
 	{
-		return chunk.getMinY() + sectionIndex * 16;
+		return snapshot.minY() + sectionIndex * 16;
 	}
 	
-	private int getSectionMaxY(LevelChunk chunk, int sectionIndex)
+	private static int getSectionMaxY(ChunkSnapshot snapshot,
+		int sectionIndex)
 	{
-		return getSectionMinY(chunk, sectionIndex) + 15;
+		return getSectionMinY(snapshot, sectionIndex) + 15;
 	}
 	
-	private boolean shouldUseSectionForClassification(LevelChunk chunk,
-		int sectionIndex)
+	private static boolean shouldUseSectionForClassification(
+		ChunkSnapshot snapshot, int sectionIndex)
 	{
-		return getSectionMaxY(chunk, sectionIndex) >= getClassificationMinY();
+		return getSectionMaxY(snapshot, sectionIndex) >= snapshot.settings()
+			.classificationMinY();
 	}
 	
 	public void afterUpdateBlock(BlockPos pos)
@@ -1014,7 +1147,6 @@ public final class NewerNewChunksHack extends Hack
 				MC.level.getBlockState(neighbor).getFluidState();
 			if(!neighborFluid.isEmpty() && neighborFluid.isSource())
 			{
-				tickExploitChunks.remove(chunkPos);
 				markNew(chunkPos);
 				return;
 			}
@@ -1023,76 +1155,78 @@ public final class NewerNewChunksHack extends Hack
 	
 	public Set<ChunkPos> getNewChunks()
 	{
-		return Set.copyOf(newChunks);
+		return Set.copyOf(chunks.view(ChunkType.NEW));
 	}
 	
 	public Set<ChunkPos> getNewChunksLiveView()
 	{
-		return newChunksView;
+		return chunks.view(ChunkType.NEW);
 	}
 	
 	public Set<ChunkPos> getOldChunks()
 	{
-		return Set.copyOf(oldChunks);
+		return Set.copyOf(chunks.view(ChunkType.OLD));
 	}
 	
 	// Visible-range queries using region buckets
 	public Set<ChunkPos> getNewChunksInRange(int cx, int cz, int radius)
 	{
-		return getChunksInRange(idxNew, cx, cz, radius);
+		return chunks.getInRange(ChunkType.NEW, cx, cz, radius);
 	}
 	
 	public Set<ChunkPos> getOldChunksInRange(int cx, int cz, int radius)
 	{
-		return getChunksInRange(idxOld, cx, cz, radius);
+		return chunks.getInRange(ChunkType.OLD, cx, cz, radius);
 	}
 	
 	public Set<ChunkPos> getBlockExploitChunksInRange(int cx, int cz,
 		int radius)
 	{
-		return getChunksInRange(idxTick, cx, cz, radius);
+		return chunks.getInRange(ChunkType.BLOCK_EXPLOIT, cx, cz, radius);
 	}
 	
 	public Set<ChunkPos> getBeingUpdatedChunksInRange(int cx, int cz,
 		int radius)
 	{
-		return getChunksInRange(idxBeingUpdated, cx, cz, radius);
+		return chunks.getInRange(ChunkType.BEING_UPDATED, cx, cz, radius);
 	}
 	
 	public Set<ChunkPos> getOldGenerationChunksInRange(int cx, int cz,
 		int radius)
 	{
-		return getChunksInRange(idxOldGen, cx, cz, radius);
+		return chunks.getInRange(ChunkType.OLD_GENERATION, cx, cz, radius);
 	}
 	
 	public Set<ChunkPos> getOldChunksLiveView()
 	{
-		return oldChunksView;
+		return chunks.view(ChunkType.OLD);
 	}
 	
 	public boolean isNewChunk(ChunkPos chunkPos)
 	{
-		return chunkPos != null && newChunks.contains(chunkPos);
+		return chunkPos != null
+			&& chunks.contains(chunkPos.x(), chunkPos.z(), ChunkType.NEW);
 	}
 	
 	public boolean isOldChunk(ChunkPos chunkPos)
 	{
-		return chunkPos != null && oldChunks.contains(chunkPos);
+		return chunkPos != null
+			&& chunks.contains(chunkPos.x(), chunkPos.z(), ChunkType.OLD);
 	}
 	
 	public Set<ChunkPos> getBlockExploitChunks()
 	{
-		return Set.copyOf(tickExploitChunks);
+		return Set.copyOf(chunks.view(ChunkType.BLOCK_EXPLOIT));
 	}
 	
 	public Set<ChunkPos> getBeingUpdatedChunks()
 	{
-		return Set.copyOf(beingUpdatedOldChunks);
+		return Set.copyOf(chunks.view(ChunkType.BEING_UPDATED));
 	}
 	
 	public Set<ChunkPos> getOldGenerationChunks()
 	{
-		return Set.copyOf(oldGenerationChunks);
+		return Set.copyOf(chunks.view(ChunkType.OLD_GENERATION));
 	}
 	
 	public int getNewChunksColorI()
@@ -1136,6 +1270,13 @@ public final class NewerNewChunksHack extends Hack
 		mapaTrackingActiveLastTick = true;
 		
 		ensureTrackingWorld();
+		if(!isEnabled())
+		{
+			applyLoadedWindows();
+			applyClassifiedChunks();
+			if(store != null)
+				store.flushIfDue();
+		}
 		
 		long tick = MC.level.getGameTime();
 		if(activatedNow || tick != lastMapaRescanTick && tick % 40L == 0L)
@@ -1149,17 +1290,13 @@ public final class NewerNewChunksHack extends Hack
 	
 	private boolean containsAny(ChunkPos chunkPos)
 	{
-		return newChunks.contains(chunkPos) || oldChunks.contains(chunkPos)
-			|| tickExploitChunks.contains(chunkPos)
-			|| beingUpdatedOldChunks.contains(chunkPos)
-			|| oldGenerationChunks.contains(chunkPos);
+		return chunks.get(chunkPos.x(), chunkPos.z()) != null;
 	}
 	
 	private boolean containsFinalChunkType(ChunkPos chunkPos)
 	{
-		return newChunks.contains(chunkPos) || oldChunks.contains(chunkPos)
-			|| beingUpdatedOldChunks.contains(chunkPos)
-			|| oldGenerationChunks.contains(chunkPos);
+		ChunkType type = chunks.get(chunkPos.x(), chunkPos.z());
+		return type != null && type != ChunkType.BLOCK_EXPLOIT;
 	}
 	
 	private boolean isTrackingActive()
@@ -1184,7 +1321,6 @@ public final class NewerNewChunksHack extends Hack
 			trackedLevel = MC.level;
 			loadedThisSession = false;
 			resolveWorldKeys();
-			ensureDataFiles();
 			if(loadChunkData.isChecked())
 			{
 				if(MC.player != null)
@@ -1223,20 +1359,11 @@ public final class NewerNewChunksHack extends Hack
 	
 	private void markNew(ChunkPos chunkPos)
 	{
-		if(!newChunks.add(chunkPos))
+		if(!chunks.put(chunkPos.x(), chunkPos.z(), ChunkType.NEW))
 			return;
-		indexAdd(idxNew, chunkPos);
-		oldChunks.remove(chunkPos);
-		indexRemove(idxOld, chunkPos);
-		tickExploitChunks.remove(chunkPos);
-		indexRemove(idxTick, chunkPos);
-		beingUpdatedOldChunks.remove(chunkPos);
-		indexRemove(idxBeingUpdated, chunkPos);
-		oldGenerationChunks.remove(chunkPos);
-		indexRemove(idxOldGen, chunkPos);
 		if(saveChunkData.isChecked())
-			saveChunk(Paths.NewChunkData, chunkPos);
-		if(isThickEnoughForWebhook(chunkPos, newChunksView))
+			saveChunk(ChunkType.NEW, chunkPos);
+		if(isThickEnoughForWebhook(chunkPos, chunks.view(ChunkType.NEW)))
 			WURST.getHax().webhookAlertHack.onChunkDetected("new chunk",
 				chunkPos);
 		triggerAlarm(AlarmType.NEW);
@@ -1244,20 +1371,11 @@ public final class NewerNewChunksHack extends Hack
 	
 	private void markOld(ChunkPos chunkPos)
 	{
-		if(!oldChunks.add(chunkPos))
+		if(!chunks.put(chunkPos.x(), chunkPos.z(), ChunkType.OLD))
 			return;
-		indexAdd(idxOld, chunkPos);
-		newChunks.remove(chunkPos);
-		indexRemove(idxNew, chunkPos);
-		tickExploitChunks.remove(chunkPos);
-		indexRemove(idxTick, chunkPos);
-		beingUpdatedOldChunks.remove(chunkPos);
-		indexRemove(idxBeingUpdated, chunkPos);
-		oldGenerationChunks.remove(chunkPos);
-		indexRemove(idxOldGen, chunkPos);
 		if(saveChunkData.isChecked())
-			saveChunk(Paths.OldChunkData, chunkPos);
-		if(isThickEnoughForWebhook(chunkPos, oldChunksView))
+			saveChunk(ChunkType.OLD, chunkPos);
+		if(isThickEnoughForWebhook(chunkPos, chunks.view(ChunkType.OLD)))
 			WURST.getHax().webhookAlertHack.onChunkDetected("old chunk",
 				chunkPos);
 		triggerAlarm(AlarmType.OLD);
@@ -1265,47 +1383,28 @@ public final class NewerNewChunksHack extends Hack
 	
 	private void markTickExploit(ChunkPos chunkPos)
 	{
-		if(!tickExploitChunks.add(chunkPos))
+		if(!chunks.put(chunkPos.x(), chunkPos.z(), ChunkType.BLOCK_EXPLOIT))
 			return;
-		indexAdd(idxTick, chunkPos);
 		if(saveChunkData.isChecked())
-			saveChunk(Paths.BlockExploitChunkData, chunkPos);
+			saveChunk(ChunkType.BLOCK_EXPLOIT, chunkPos);
 		triggerAlarm(AlarmType.BLOCK_EXPLOIT);
 	}
 	
 	private void markBeingUpdated(ChunkPos chunkPos)
 	{
-		if(!beingUpdatedOldChunks.add(chunkPos))
+		if(!chunks.put(chunkPos.x(), chunkPos.z(), ChunkType.BEING_UPDATED))
 			return;
-		indexAdd(idxBeingUpdated, chunkPos);
-		newChunks.remove(chunkPos);
-		indexRemove(idxNew, chunkPos);
-		oldChunks.remove(chunkPos);
-		indexRemove(idxOld, chunkPos);
-		tickExploitChunks.remove(chunkPos);
-		indexRemove(idxTick, chunkPos);
-		oldGenerationChunks.remove(chunkPos);
-		indexRemove(idxOldGen, chunkPos);
 		if(saveChunkData.isChecked())
-			saveChunk(Paths.BeingUpdatedChunkData, chunkPos);
+			saveChunk(ChunkType.BEING_UPDATED, chunkPos);
 		triggerAlarm(AlarmType.BEING_UPDATED);
 	}
 	
 	private void markOldGeneration(ChunkPos chunkPos)
 	{
-		if(!oldGenerationChunks.add(chunkPos))
+		if(!chunks.put(chunkPos.x(), chunkPos.z(), ChunkType.OLD_GENERATION))
 			return;
-		indexAdd(idxOldGen, chunkPos);
-		newChunks.remove(chunkPos);
-		indexRemove(idxNew, chunkPos);
-		oldChunks.remove(chunkPos);
-		indexRemove(idxOld, chunkPos);
-		tickExploitChunks.remove(chunkPos);
-		indexRemove(idxTick, chunkPos);
-		beingUpdatedOldChunks.remove(chunkPos);
-		indexRemove(idxBeingUpdated, chunkPos);
 		if(saveChunkData.isChecked())
-			saveChunk(Paths.OldGenerationChunkData, chunkPos);
+			saveChunk(ChunkType.OLD_GENERATION, chunkPos);
 		triggerAlarm(AlarmType.OLD_VERSION);
 	}
 	
@@ -1454,49 +1553,34 @@ public final class NewerNewChunksHack extends Hack
 	
 	private void clearChunkData()
 	{
-		newChunks.clear();
-		oldChunks.clear();
-		tickExploitChunks.clear();
-		beingUpdatedOldChunks.clear();
-		oldGenerationChunks.clear();
-		idxNew.clear();
-		idxOld.clear();
-		idxTick.clear();
-		idxBeingUpdated.clear();
-		idxOldGen.clear();
-	}
-	
-	private List<AABB> collectBoxes(Set<ChunkPos> chunks, double y,
-		BlockPos playerPos, double maxDist)
-	{
-		var boxes = new java.util.ArrayList<AABB>();
-		for(ChunkPos chunk : chunks)
-		{
-			double centerX = chunk.getMiddleBlockX();
-			double centerZ = chunk.getMiddleBlockZ();
-			if(playerPos.closerThan(
-				new BlockPos((int)centerX, playerPos.getY(), (int)centerZ),
-				maxDist))
-			{
-				double minX = chunk.getMinBlockX();
-				double minZ = chunk.getMinBlockZ();
-				boxes.add(new AABB(minX, y, minZ, minX + 16, y + 1, minZ + 16));
-			}
-		}
-		return boxes;
-	}
-	
-	private void renderBoxes(PoseStack matrices, List<AABB> boxes,
-		int sideColor, int lineColor)
-	{
-		if(WURST != null && WURST.getHax().simulationSonarHack.isEnabled())
-			boxes = boxes.stream().filter(
-				box -> !WURST.getHax().simulationSonarHack.isChunkOverridden(
-					new ChunkPos((int)Math.floor(box.minX / 16),
-						(int)Math.floor(box.minZ / 16))))
-				.toList();
+		chunks.clear();
+		loadedWindows.clear();
+	}
+	
+	/**
+	 * Draws the chunks of the given type one box at a time, for when
+	 * SimulationSonar hides some of them or GlobalESP takes over the boxes.
+	 */
+	private void renderBoxes(PoseStack matrices, ChunkType type, double y,
+		BlockPos playerPos, double maxDist, int sideColor, int lineColor)
+	{
+		var sonar = WURST.getHax().simulationSonarHack;
+		ArrayList<AABB> boxes = new ArrayList<>();
+		int radius = (int)Math.ceil(maxDist / 16.0);
+		ChunkPos pc = ChunkPos.containing(playerPos);
+		chunks.forEachInRange(type, pc.x(), pc.z(), radius, (x, z) -> {
+			ChunkPos chunk = new ChunkPos(x, z);
+			if(!isWithinDistance(chunk, playerPos, maxDist)
+				|| sonar.isChunkOverridden(chunk))
+				return;
+			
+			double minX = chunk.getMinBlockX();
+			double minZ = chunk.getMinBlockZ();
+			boxes.add(new AABB(minX, y, minZ, minX + 16, y + 1, minZ + 16));
+		});
 		if(boxes.isEmpty())
 			return;
+		
 		ShapeMode mode = shapeMode.getSelected();
 		if(mode == ShapeMode.Sides || mode == ShapeMode.Both)
 			RenderUtils.drawSolidBoxes(matrices, boxes, sideColor, true);
@@ -1512,35 +1596,15 @@ public final class NewerNewChunksHack extends Hack
 		
 		double maxDist = renderDistance.getValue() * 16;
 		BlockPos playerPos = MC.player.blockPosition();
-		removeOutside(newChunks, playerPos, maxDist);
-		removeOutside(oldChunks, playerPos, maxDist);
-		removeOutside(tickExploitChunks, playerPos, maxDist);
-		removeOutside(beingUpdatedOldChunks, playerPos, maxDist);
-		removeOutside(oldGenerationChunks, playerPos, maxDist);
+		chunks.removeIf((x, z) -> !isWithinDistance(new ChunkPos(x, z),
+			playerPos, maxDist));
 	}
 	
-	private void removeOutside(Set<ChunkPos> chunks, BlockPos playerPos,
+	private static boolean isWithinDistance(ChunkPos chunk, BlockPos playerPos,
 		double maxDist)
 	{
-		var it = chunks.iterator();
-		while(it.hasNext())
-		{
-			ChunkPos chunk = it.next();
-			boolean keep =
-				playerPos.closerThan(new BlockPos(chunk.getMiddleBlockX(),
-					playerPos.getY(), chunk.getMiddleBlockZ()), maxDist);
-			if(!keep)
-			{
-				it.remove();
-				// Remove from all indices (chunk could be in multiple transient
-				// sets)
-				indexRemove(idxNew, chunk);
-				indexRemove(idxOld, chunk);
-				indexRemove(idxTick, chunk);
-				indexRemove(idxBeingUpdated, chunk);
-				indexRemove(idxOldGen, chunk);
-			}
-		}
+		return playerPos.closerThan(new BlockPos(chunk.getMiddleBlockX(),
+			playerPos.getY(), chunk.getMiddleBlockZ()), maxDist);
 	}
 	
 	private void resolveWorldKeys()
@@ -1564,41 +1628,52 @@ public final class NewerNewChunksHack extends Hack
 			.resolve("NewChunks").resolve(serverKey).resolve(dimensionKey);
 	}
 	
-	private void ensureDataFiles()
+	private NewerNewChunksStore getStore()
 	{
-		if(!saveChunkData.isChecked() && !loadChunkData.isChecked())
-			return;
-		
 		Path baseDir = getBaseDir();
-		try
-		{
-			Files.createDirectories(baseDir);
-			for(Path fileName : filePaths)
-			{
-				Path file = baseDir.resolve(fileName);
-				if(Files.notExists(file))
-					Files.createFile(file);
-			}
-		}catch(IOException e)
+		if(store == null || !store.getBaseDir().equals(baseDir))
 		{
-			e.printStackTrace();
+			if(store != null)
+				store.flush();
+			store = NewerNewChunksStore.forDirectory(baseDir);
 		}
+		
+		return store;
 	}
 	
-	private void loadDataWindowed(int px, int pz, int radiusChunks)
+	private void loadDataWindowed(NewerNewChunksStore windowStore, int px,
+		int pz, int radiusChunks)
 	{
-		// Merge-only windowed load from disk, respecting existing
-		// classifications
-		loadChunkDataWindowed(Paths.BlockExploitChunkData, tickExploitChunks,
-			px, pz, radiusChunks);
-		loadChunkDataWindowed(Paths.OldChunkData, oldChunks, px, pz,
-			radiusChunks);
-		loadChunkDataWindowed(Paths.NewChunkData, newChunks, px, pz,
-			radiusChunks);
-		loadChunkDataWindowed(Paths.BeingUpdatedChunkData,
-			beingUpdatedOldChunks, px, pz, radiusChunks);
-		loadChunkDataWindowed(Paths.OldGenerationChunkData, oldGenerationChunks,
-			px, pz, radiusChunks);
+		LoadedWindow window = new LoadedWindow(windowStore, new LongArrayList(),
+			new ArrayList<>());
+		windowStore.read(px, pz, radiusChunks, (x, z, type) -> {
+			window.chunks().add(ChunkPos.pack(x, z));
+			window.types().add(type);
+		});
+		loadedWindows.add(window);
+	}
+	
+	/**
+	 * Merges the chunks read by the window loader into the index, without
+	 * overriding chunks that were classified in the meantime.
+	 */
+	private void applyLoadedWindows()
+	{
+		LoadedWindow window;
+		while((window = loadedWindows.poll()) != null)
+		{
+			if(window.store() != store)
+				continue;
+			
+			for(int i = 0; i < window.chunks().size(); i++)
+			{
+				long chunk = window.chunks().getLong(i);
+				int x = ChunkPos.getX(chunk);
+				int z = ChunkPos.getZ(chunk);
+				if(chunks.get(x, z) == null)
+					chunks.put(x, z, window.types().get(i));
+			}
+		}
 	}
 	
 	private void requestWindowLoad(int px, int pz, int radiusChunks)
@@ -1606,13 +1681,14 @@ public final class NewerNewChunksHack extends Hack
 		if(windowLoadInProgress)
 			return;
 		windowLoadInProgress = true;
+		NewerNewChunksStore windowStore = getStore();
 		ensureWindowLoader();
 		try
 		{
 			windowLoader.submit(() -> {
 				try
 				{
-					loadDataWindowed(px, pz, radiusChunks);
+					loadDataWindowed(windowStore, px, pz, radiusChunks);
 				}finally
 				{
 					windowLoadInProgress = false;
@@ -1628,7 +1704,7 @@ public final class NewerNewChunksHack extends Hack
 				windowLoader.submit(() -> {
 					try
 					{
-						loadDataWindowed(px, pz, radiusChunks);
+						loadDataWindowed(windowStore, px, pz, radiusChunks);
 					}finally
 					{
 						windowLoadInProgress = false;
@@ -1664,46 +1740,6 @@ public final class NewerNewChunksHack extends Hack
 		return Math.min(256, win + 32);
 	}
 	
-	private void loadChunkDataWindowed(Path fileName, Set<ChunkPos> target,
-		int px, int pz, int radiusChunks)
-	{
-		Path path = getBaseDir().resolve(fileName);
-		if(Files.notExists(path))
-			return;
-		
-		try(BufferedReader br =
-			Files.newBufferedReader(path, StandardCharsets.UTF_8))
-		{
-			String line;
-			while((line = br.readLine()) != null)
-			{
-				ChunkPos chunkPos = parseChunkPos(line);
-				if(chunkPos == null)
-					continue;
-				if(Math.abs(chunkPos.x() - px) > radiusChunks
-					|| Math.abs(chunkPos.z() - pz) > radiusChunks)
-					continue;
-				if(!containsAny(chunkPos))
-				{
-					target.add(chunkPos);
-					if(target == newChunks)
-						indexAdd(idxNew, chunkPos);
-					else if(target == oldChunks)
-						indexAdd(idxOld, chunkPos);
-					else if(target == tickExploitChunks)
-						indexAdd(idxTick, chunkPos);
-					else if(target == beingUpdatedOldChunks)
-						indexAdd(idxBeingUpdated, chunkPos);
-					else if(target == oldGenerationChunks)
-						indexAdd(idxOldGen, chunkPos);
-				}
-			}
-		}catch(IOException e)
-		{
-			e.printStackTrace();
-		}
-	}
-	
 	private void refreshWindowedLoadIfNeeded()
 	{
 		if(!loadChunkData.isChecked() || MC.player == null)
@@ -1718,94 +1754,9 @@ public final class NewerNewChunksHack extends Hack
 		}
 	}
 	
-	private ChunkPos parseChunkPos(String line)
-	{
-		if(line == null || line.isBlank())
-			return null;
-			
-		// Supports both current format "x,z" and legacy formats like:
-		// "[-44933, 1204]" or "ChunkPos{x=-44933, z=1204}".
-		Matcher matcher = CHUNK_COORD_PATTERN.matcher(line);
-		if(!matcher.find())
-			return null;
-		
-		int x = Integer.parseInt(matcher.group());
-		if(!matcher.find())
-			return null;
-		
-		int z = Integer.parseInt(matcher.group());
-		return new ChunkPos(x, z);
-	}
-	
-	private void saveChunk(Path fileName, ChunkPos chunkPos)
-	{
-		ensureDataFiles();
-		Path file = getBaseDir().resolve(fileName);
-		String line =
-			chunkPos.x() + "," + chunkPos.z() + System.lineSeparator();
-		try
-		{
-			Files.writeString(file, line, StandardCharsets.UTF_8,
-				StandardOpenOption.CREATE, StandardOpenOption.APPEND);
-		}catch(IOException e)
-		{
-			e.printStackTrace();
-		}
-	}
-	
-	// --- Region index helpers and queries ---
-	private static long regionKey(int x, int z)
+	private void saveChunk(ChunkType type, ChunkPos chunkPos)
 	{
-		int rx = x >> REGION_SHIFT;
-		int rz = z >> REGION_SHIFT;
-		return (((long)rx) << 32) ^ (rz & 0xFFFFFFFFL);
-	}
-	
-	private static long regionKeyFromRegion(int rx, int rz)
-	{
-		return (((long)rx) << 32) ^ (rz & 0xFFFFFFFFL);
-	}
-	
-	private void indexAdd(Map<Long, Set<ChunkPos>> index, ChunkPos pos)
-	{
-		long key = regionKey(pos.x(), pos.z());
-		Set<ChunkPos> bucket =
-			index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet());
-		bucket.add(pos);
-	}
-	
-	private void indexRemove(Map<Long, Set<ChunkPos>> index, ChunkPos pos)
-	{
-		long key = regionKey(pos.x(), pos.z());
-		Set<ChunkPos> bucket = index.get(key);
-		if(bucket != null)
-		{
-			bucket.remove(pos);
-			if(bucket.isEmpty())
-				index.remove(key);
-		}
-	}
-	
-	private Set<ChunkPos> getChunksInRange(Map<Long, Set<ChunkPos>> index,
-		int cx, int cz, int radius)
-	{
-		int minRx = (cx - radius) >> REGION_SHIFT;
-		int maxRx = (cx + radius) >> REGION_SHIFT;
-		int minRz = (cz - radius) >> REGION_SHIFT;
-		int maxRz = (cz + radius) >> REGION_SHIFT;
-		Set<ChunkPos> result = new HashSet<>();
-		for(int rx = minRx; rx <= maxRx; rx++)
-			for(int rz = minRz; rz <= maxRz; rz++)
-			{
-				Set<ChunkPos> bucket = index.get(regionKeyFromRegion(rx, rz));
-				if(bucket == null || bucket.isEmpty())
-					continue;
-				for(ChunkPos cp : bucket)
-					if(Math.abs(cp.x() - cx) <= radius
-						&& Math.abs(cp.z() - cz) <= radius)
-						result.add(cp);
-			}
-		return result;
+		getStore().put(chunkPos.x(), chunkPos.z(), type);
 	}
 	
 	private boolean isThickEnoughForWebhook(ChunkPos chunkPos,
@@ -1856,69 +1807,49 @@ public final class NewerNewChunksHack extends Hack
 		deleteWarningPresses++;
 		deleteWarningTicks = 200;
 		clearChunkData();
-		
-		Path baseDir = getBaseDir();
-		try
-		{
-			Files.deleteIfExists(baseDir.resolve(Paths.NewChunkData));
-			Files.deleteIfExists(baseDir.resolve(Paths.OldChunkData));
-			Files.deleteIfExists(baseDir.resolve(Paths.BlockExploitChunkData));
-			Files.deleteIfExists(baseDir.resolve(Paths.BeingUpdatedChunkData));
-			Files.deleteIfExists(baseDir.resolve(Paths.OldGenerationChunkData));
-		}catch(IOException e)
-		{
-			e.printStackTrace();
-		}
-		
-		ensureDataFiles();
+		getStore().deleteAll();
 		ChatUtils.message("Chunk data deleted for this dimension.");
 	}
 	
-	private boolean hasFlowingFluid(LevelChunk chunk)
+	private static boolean hasFlowingFluid(ChunkSnapshot snapshot)
 	{
-		int minY = Math.max(chunk.getMinY(), getClassificationMinY());
-		int maxY = chunk.getMaxY();
-		BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
-		for(int cx = 0; cx < 16; cx++)
-			for(int y = minY; y <= maxY; y++)
-				for(int cz = 0; cz < 16; cz++)
-				{
-					pos.set(chunk.getPos().getMinBlockX() + cx, y,
-						chunk.getPos().getMinBlockZ() + cz);
-					FluidState fluid = chunk.getFluidState(pos);
-					if(!fluid.isEmpty() && !fluid.isSource())
-						return true;
-				}
+		int minY = snapshot.settings().classificationMinY();
+		SectionSnapshot[] sections = snapshot.sections();
+		for(int i = 0; i < sections.length; i++)
+		{
+			if(sections[i] == null || sections[i].states() == null)
+				continue;
+			
+			PalettedContainer<BlockState> states = sections[i].states();
+			int sectionMinY = getSectionMinY(snapshot, i);
+			for(int y = 0; y < 16; y++)
+			{
+				if(sectionMinY + y < minY)
+					continue;
+				
+				for(int x = 0; x < 16; x++)
+					for(int z = 0; z < 16; z++)
+					{
+						FluidState fluid = states.get(x, y, z).getFluidState();
+						if(!fluid.isEmpty() && !fluid.isSource())
+							return true;
+					}
+			}
+		}
 		return false;
 	}
 	
-	private int countDistinctSectionStates(LevelChunkSection section)
+	private static int countDistinctSectionStates(
+		PalettedContainer<BlockState> states)
 	{
 		HashSet<BlockState> distinct = new HashSet<>();
 		for(int x = 0; x < 16; x++)
 			for(int y = 0; y < 16; y++)
 				for(int z = 0; z < 16; z++)
-					distinct.add(section.getBlockState(x, y, z));
+					distinct.add(states.get(x, y, z));
 		return distinct.size();
 	}
 	
-	private boolean detectOldGenerationChunk(LevelChunk chunk)
-	{
-		if(MC.level == null)
-			return false;
-		
-		if(isOverworld() && overworldOldChunksDetector.isChecked())
-			return isOverworldOldGeneration(chunk);
-		
-		if(isNether() && netherOldChunksDetector.isChecked())
-			return isNetherOldGeneration(chunk);
-		
-		if(isEnd() && endOldChunksDetector.isChecked())
-			return hasEndBiome(chunk);
-		
-		return false;
-	}
-	
 	@SuppressWarnings("unchecked")
 	private static boolean isHashMapPalette(
 		PalettedContainer<BlockState> states)
@@ -1937,46 +1868,32 @@ public final class NewerNewChunksHack extends Hack
 		}
 	}
 	
-	private boolean hasEndBiomeFromPalette(LevelChunkSection[] sections)
+	private static boolean hasEndBiomeFromPalette(SectionSnapshot[] sections)
 	{
-		if(MC.level == null || sections.length == 0 || sections[0] == null)
+		if(sections.length == 0 || sections[0] == null)
 			return false;
 		
-		List<Holder<Biome>> paletteEntries =
-			getRawPaletteEntries(sections[0].getBiomes());
-		
-		return !paletteEntries.isEmpty()
-			&& paletteEntries.get(0).is(Biomes.THE_END);
+		Holder<Biome> firstBiome = sections[0].firstBiome();
+		return firstBiome != null && firstBiome.is(Biomes.THE_END);
 	}
 	
-	private boolean isEndNewChunkByPalette(LevelChunkSection section)
+	private static boolean isOverworldOldGeneration(ChunkSnapshot snapshot)
 	{
-		if(MC.level == null)
-			return false;
-		
-		List<Holder<Biome>> paletteEntries =
-			getRawPaletteEntries(section.getBiomes());
-		
-		return !paletteEntries.isEmpty()
-			&& paletteEntries.get(0).is(Biomes.PLAINS);
-	}
-	
-	private boolean isOverworldOldGeneration(LevelChunk chunk)
-	{
-		LevelChunkSection[] sections = chunk.getSections();
+		SectionSnapshot[] sections = snapshot.sections();
 		int safeSections = Math.min(17, sections.length);
 		boolean foundAnyOre = false;
 		boolean hasNewOverworldGeneration = false;
-		int minY = getClassificationMinY();
+		int minY = snapshot.settings().classificationMinY();
 		
 		for(int i = 0; i < safeSections; i++)
 		{
-			LevelChunkSection section = sections[i];
-			if(section == null || section.hasOnlyAir()
-				|| !shouldUseSectionForClassification(chunk, i))
+			SectionSnapshot section = sections[i];
+			if(section == null || section.states() == null
+				|| !shouldUseSectionForClassification(snapshot, i))
 				continue;
 			
-			int sectionMinY = getSectionMinY(chunk, i);
+			PalettedContainer<BlockState> states = section.states();
+			int sectionMinY = getSectionMinY(snapshot, i);
 			for(int x = 0; x < 16; x++)
 				for(int y = 0; y < 16; y++)
 					for(int z = 0; z < 16; z++)
@@ -1985,7 +1902,7 @@ public final class NewerNewChunksHack extends Hack
 						if(blockY < minY)
 							continue;
 						
-						Block block = section.getBlockState(x, y, z).getBlock();
+						Block block = states.get(x, y, z).getBlock();
 						if(!foundAnyOre && ORE_BLOCKS.contains(block))
 							foundAnyOre = true;
 						
@@ -2004,22 +1921,23 @@ public final class NewerNewChunksHack extends Hack
 		return foundAnyOre && !hasNewOverworldGeneration;
 	}
 	
-	private boolean isNetherOldGeneration(LevelChunk chunk)
+	private static boolean isNetherOldGeneration(ChunkSnapshot snapshot)
 	{
-		LevelChunkSection[] sections = chunk.getSections();
+		SectionSnapshot[] sections = snapshot.sections();
 		int safeSections = Math.min(8, sections.length);
-		int minY = getClassificationMinY();
+		int minY = snapshot.settings().classificationMinY();
 		boolean foundUsableSection = false;
 		
 		for(int i = 0; i < safeSections; i++)
 		{
-			LevelChunkSection section = sections[i];
-			if(section == null || section.hasOnlyAir()
-				|| !shouldUseSectionForClassification(chunk, i))
+			SectionSnapshot section = sections[i];
+			if(section == null || section.states() == null
+				|| !shouldUseSectionForClassification(snapshot, i))
 				continue;
 			
 			foundUsableSection = true;
-			int sectionMinY = getSectionMinY(chunk, i);
+			PalettedContainer<BlockState> states = section.states();
+			int sectionMinY = getSectionMinY(snapshot, i);
 			for(int x = 0; x < 16; x++)
 				for(int y = 0; y < 16; y++)
 					for(int z = 0; z < 16; z++)
@@ -2027,7 +1945,7 @@ public final class NewerNewChunksHack extends Hack
 						if(sectionMinY + y < minY)
 							continue;
 						
-						Block block = section.getBlockState(x, y, z).getBlock();
+						Block block = states.get(x, y, z).getBlock();
 						if(NEW_NETHER_BLOCKS.contains(block))
 							return false;
 					}
@@ -2036,23 +1954,6 @@ public final class NewerNewChunksHack extends Hack
 		return foundUsableSection;
 	}
 	
-	private boolean hasEndBiome(LevelChunk chunk)
-	{
-		BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
-		int minX = chunk.getPos().getMinBlockX();
-		int minZ = chunk.getPos().getMinBlockZ();
-		int y = Math.max(MC.level.getMinY() + 1, 64);
-		for(int x = 0; x < 16; x += 4)
-			for(int z = 0; z < 16; z += 4)
-			{
-				pos.set(minX + x, y, minZ + z);
-				Holder<Biome> biome = MC.level.getBiome(pos);
-				if(biome.is(Biomes.THE_END))
-					return true;
-			}
-		return false;
-	}
-	
 	private boolean hasAnyBlockInChunk(LevelChunk chunk, Set<Block> blocks,
 		int minY, int maxY)
 	{
@@ -56,6 +56,7 @@ import net.wurstclient.util.RenderUtils.ColoredPoint;
 import net.wurstclient.util.RotationUtils;
 import net.wurstclient.util.chunk.ChunkSearcher.Result;
 import net.wurstclient.util.chunk.ChunkSearcherCoordinator;
+import net.wurstclient.util.chunk.PaletteQuery;
 
 public final class PortalEspHack extends Hack implements UpdateListener,
 	CameraTransformViewBobbingListener, RenderListener
@@ -197,11 +198,11 @@ public final class PortalEspHack extends Hack implements UpdateListener,
 			false);
 	
 	private final BiPredicate<BlockPos, BlockState> query =
-		(pos, state) -> state.getBlock() == Blocks.NETHER_PORTAL
+		PaletteQuery.of(state -> state.getBlock() == Blocks.NETHER_PORTAL
 			|| state.getBlock() == Blocks.END_PORTAL
 			|| state.getBlock() == Blocks.END_PORTAL_FRAME
 			|| state.getBlock() == Blocks.END_GATEWAY
-			|| state.getBlock() == Blocks.OBSIDIAN;
+			|| state.getBlock() == Blocks.OBSIDIAN);
 	
 	private final ChunkSearcherCoordinator coordinator =
 		new ChunkSearcherCoordinator(query, area);
@@ -26,6 +26,7 @@ import net.minecraft.world.item.component.ItemContainerContents;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.entity.BlockEntityType;
 import net.minecraft.world.level.block.entity.DecoratedPotBlockEntity;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.phys.AABB;
@@ -45,9 +46,9 @@ import net.wurstclient.util.ChatUtils;
 import net.wurstclient.util.EspLimitUtils;
 import net.wurstclient.util.RenderUtils;
 import net.wurstclient.util.RotationUtils;
-import net.wurstclient.util.chunk.ChunkUtils;
 import net.wurstclient.util.chunk.ChunkSearcher.Result;
 import net.wurstclient.util.chunk.ChunkSearcherCoordinator;
+import net.wurstclient.util.chunk.PaletteQuery;
 
 @SearchTags({"pot esp", "PotESP", "decorated pot esp", "trial pot"})
 public final class PotEspHack extends Hack implements UpdateListener,
@@ -97,7 +98,7 @@ public final class PotEspHack extends Hack implements UpdateListener,
 		"Set ESP Y limit", 62, -65, 255, 1, SliderSetting.ValueDisplay.INTEGER);
 	
 	private final BiPredicate<BlockPos, BlockState> query =
-		(pos, state) -> state.getBlock() == Blocks.DECORATED_POT;
+		PaletteQuery.of(state -> state.getBlock() == Blocks.DECORATED_POT);
 	private final ChunkSearcherCoordinator coordinator =
 		new ChunkSearcherCoordinator(query, area);
 	
@@ -213,9 +214,8 @@ public final class PotEspHack extends Hack implements UpdateListener,
 			
 		// Fallback scan over loaded block entities to handle hacked/malformed
 		// pots where suspicious items can sit in non-zero container slots.
-		ChunkUtils.getLoadedBlockEntities()
-			.filter(be -> be instanceof DecoratedPotBlockEntity)
-			.map(BlockEntity::getBlockPos).forEach(pos -> {
+		WURST.getBlockEntityIndex().getAll(BlockEntityType.DECORATED_POT)
+			.stream().map(BlockEntity::getBlockPos).forEach(pos -> {
 				if(onlyAboveGround.isChecked()
 					&& pos.getY() < aboveGroundY.getValue())
 					return;
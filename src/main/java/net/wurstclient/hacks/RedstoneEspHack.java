@@ -42,6 +42,7 @@ import net.wurstclient.util.RenderUtils;
 import net.wurstclient.util.RotationUtils;
 import net.wurstclient.util.chunk.ChunkSearcher.Result;
 import net.wurstclient.util.chunk.ChunkSearcherCoordinator;
+import net.wurstclient.util.chunk.PaletteQuery;
 
 @SearchTags({"redstone esp", "RedstoneESP"})
 public final class RedstoneEspHack extends Hack implements UpdateListener,
@@ -194,7 +195,7 @@ public final class RedstoneEspHack extends Hack implements UpdateListener,
 			wrap(detectorRail), wrap(activatorRail));
 	
 	private final BiPredicate<BlockPos, BlockState> query =
-		(pos, state) -> isEnabledTarget(state.getBlock());
+		PaletteQuery.of(state -> isEnabledTarget(state.getBlock()));
 	private final ChunkSearcherCoordinator coordinator =
 		new ChunkSearcherCoordinator(query, area);
 	private boolean groupsUpToDate;
@@ -7,9 +7,7 @@
  */
 package net.wurstclient.hacks;
 
-import com.mojang.blaze3d.vertex.DefaultVertexFormat;
 import com.mojang.blaze3d.vertex.PoseStack;
-import com.mojang.blaze3d.PrimitiveTopology;
 import java.awt.Color;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
@@ -17,9 +15,13 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Locale;
 import java.util.Arrays;
-import java.util.PriorityQueue;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinTask;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.minecraft.core.BlockPos;
 import net.minecraft.network.protocol.Packet;
 import net.minecraft.network.protocol.game.ClientboundBlockEntityDataPacket;
@@ -47,13 +49,13 @@ import net.minecraft.world.phys.Vec3;
 import net.minecraft.world.phys.AABB;
 import net.wurstclient.Category;
 import net.wurstclient.SearchTags;
-import net.wurstclient.WurstRenderLayers;
 import net.wurstclient.events.PacketInputListener;
 import net.wurstclient.events.PacketInputListener.PacketInputEvent;
 import net.wurstclient.events.RenderListener;
 import net.wurstclient.events.UpdateListener;
 import net.wurstclient.events.CameraTransformViewBobbingListener;
 import net.wurstclient.hack.Hack;
+import net.wurstclient.hacks.search.ChunkMeshCache;
 import net.wurstclient.settings.BlockSetting;
 import net.wurstclient.settings.CheckboxSetting;
 import net.wurstclient.settings.TextFieldSetting;
@@ -61,16 +63,14 @@ import net.wurstclient.settings.ChunkAreaSetting;
 import net.wurstclient.settings.SliderSetting;
 import net.wurstclient.settings.SliderSetting.ValueDisplay;
 import net.wurstclient.util.BlockUtils;
-import net.wurstclient.util.BlockVertexCompiler;
 import net.wurstclient.util.ChatUtils;
-import net.wurstclient.util.EasyVertexBuffer;
-import net.wurstclient.util.RegionPos;
 import net.wurstclient.util.RenderUtils;
 import net.wurstclient.util.RotationUtils;
 import net.wurstclient.util.ShaderUtils;
 import net.wurstclient.util.chunk.ChunkUtils;
-import net.wurstclient.util.chunk.ChunkSearcher;
 import net.wurstclient.util.chunk.ChunkSearcherCoordinator;
+import net.wurstclient.util.chunk.PackedMatches;
+import net.wurstclient.util.chunk.PaletteQuery;
 
 @SearchTags({"BlockESP", "block esp"})
 public final class SearchHack extends Hack implements UpdateListener,
@@ -175,18 +175,17 @@ public final class SearchHack extends Hack implements UpdateListener,
 		new ChunkSearcherCoordinator(area);
 	
 	private ForkJoinPool forkJoinPool;
-	private ForkJoinTask<HashSet<BlockPos>> getMatchingBlocksTask;
-	private ForkJoinTask<ArrayList<int[]>> compileVerticesTask;
+	private ForkJoinTask<LongOpenHashSet> getMatchingBlocksTask;
+	private ForkJoinTask<ChunkMeshCache.Update> compileVerticesTask;
 	private boolean shaderSafeMode;
 	private int buildGeneration;
 	private int currentBuildGeneration;
 	
 	// Keep a copy of matching positions for tracers
-	private HashSet<BlockPos> lastMatchingBlocks;
+	private LongOpenHashSet lastMatchingBlocks;
 	private java.util.List<AABB> highlightBoxes;
 	
-	private EasyVertexBuffer vertexBuffer;
-	private RegionPos bufferRegion;
+	private final ChunkMeshCache chunkMeshes = new ChunkMeshCache();
 	private boolean bufferUpToDate;
 	// Precomputed tracer endpoints
 	private java.util.List<net.minecraft.world.phys.Vec3> tracerEnds;
@@ -325,10 +324,7 @@ public final class SearchHack extends Hack implements UpdateListener,
 		stopBuildingBuffer(true);
 		coordinator.reset();
 		forkJoinPool.shutdownNow();
-		if(vertexBuffer != null)
-			vertexBuffer.close();
-		vertexBuffer = null;
-		bufferRegion = null;
+		chunkMeshes.clear();
 		lastMatchingBlocks = null;
 		highlightBoxes = null;
 		tracerEnds = null;
@@ -401,10 +397,11 @@ public final class SearchHack extends Hack implements UpdateListener,
 		
 		// Recenter per chunk when sticky is off
 		ChunkPos currentChunk = ChunkPos.containing(MC.player.blockPosition());
+		// (the coordinator drops chunks that left the area by itself, so the
+		// chunks that are still in range don't need to be searched again)
 		if(!stickyArea.isChecked() && !currentChunk.equals(lastPlayerChunk))
 		{
 			lastPlayerChunk = currentChunk;
-			coordinator.reset();
 			stopBuildingBuffer(false);
 		}
 		
@@ -433,6 +430,7 @@ public final class SearchHack extends Hack implements UpdateListener,
 		
 		// Update coordinator (adds/removes searchers, applies packet updates)
 		coordinator.update();
+		chunkMeshes.closeOutOfRange(area);
 		if(searchItemContents.isChecked())
 		{
 			HashSet<BlockPos> previous = new HashSet<>(matchingItemPositions);
@@ -547,8 +545,7 @@ public final class SearchHack extends Hack implements UpdateListener,
 	@Override
 	public void onRender(PoseStack matrixStack, float partialTicks)
 	{
-		boolean drawBoxes =
-			style.hasBoxes() && vertexBuffer != null && bufferRegion != null;
+		boolean drawBoxes = style.hasBoxes() && !chunkMeshes.isEmpty();
 		boolean drawTracers =
 			style.hasLines() && tracerEnds != null && !tracerEnds.isEmpty();
 		boolean drawHighlights =
@@ -561,13 +558,7 @@ public final class SearchHack extends Hack implements UpdateListener,
 			: RenderUtils.getRainbowColor();
 		
 		if(drawBoxes && highlightFill.isChecked())
-		{
-			matrixStack.pushPose();
-			RenderUtils.applyRegionalRenderOffset(matrixStack, bufferRegion);
-			vertexBuffer.draw(matrixStack, WurstRenderLayers.ESP_QUADS, rgb,
-				0.5F);
-			matrixStack.popPose();
-		}
+			chunkMeshes.draw(matrixStack, rgb, 0.5F);
 		
 		if(drawTracers)
 		{
@@ -643,10 +634,7 @@ public final class SearchHack extends Hack implements UpdateListener,
 			}
 			listExactIds = exact;
 			listKeywords = kw.toArray(new String[0]);
-			coordinator.setQuery((pos, state) -> {
-				if(onlyAboveGround.isChecked()
-					&& pos.getY() < aboveGroundY.getValue())
-					return false;
+			coordinator.setQuery(PaletteQuery.of(state -> {
 				String idFull = BlockUtils.getName(state.getBlock());
 				if(listExactIds.contains(idFull))
 					return true;
@@ -665,34 +653,34 @@ public final class SearchHack extends Hack implements UpdateListener,
 						return true;
 				}
 				return false;
-			});
+			}, this::isAboveGroundFilterPassed));
 			lastQuery = "";
 			break;
 			case QUERY:
 			lastBlock = currentBlock;
-			coordinator.setQuery((pos, state) -> {
-				if(onlyAboveGround.isChecked()
-					&& pos.getY() < aboveGroundY.getValue())
-					return false;
-				return blockMatchesQuery(state.getBlock(), normalizedQuery);
-			});
+			coordinator.setQuery(PaletteQuery.of(
+				state -> blockMatchesQuery(state.getBlock(), normalizedQuery),
+				this::isAboveGroundFilterPassed));
 			lastQuery = normalizedQuery;
 			break;
 			case BLOCK_ID:
 			default:
 			lastBlock = currentBlock;
-			coordinator.setQuery((pos, state) -> {
-				if(onlyAboveGround.isChecked()
-					&& pos.getY() < aboveGroundY.getValue())
-					return false;
-				return state.getBlock() == currentBlock;
-			});
+			coordinator.setQuery(
+				PaletteQuery.of(state -> state.getBlock() == currentBlock,
+					this::isAboveGroundFilterPassed));
 			lastQuery = "";
 		}
 		notify = true;
 		lastMatchesVersion = coordinator.getMatchesVersion();
 	}
 	
+	private boolean isAboveGroundFilterPassed(BlockPos pos, BlockState state)
+	{
+		return !onlyAboveGround.isChecked()
+			|| pos.getY() >= aboveGroundY.getValue();
+	}
+	
 	private boolean blockMatchesQuery(Block block, String normalizedQuery)
 	{
 		String id = BlockUtils.getName(block);
@@ -803,45 +791,87 @@ public final class SearchHack extends Hack implements UpdateListener,
 	
 	private void startGetMatchingBlocksTask()
 	{
-		// Use a bounded max-heap to keep only the closest N matches without
-		// sorting the entire result set. This avoids long pauses when scanning
-		// very large areas.
 		BlockPos eyesPos = BlockPos.containing(RotationUtils.getEyesPos());
 		final int limitCount = getEffectiveRenderLimit();
 		currentBuildGeneration = buildGeneration;
 		HashSet<BlockPos> itemPositions = new HashSet<>(matchingItemPositions);
-		getMatchingBlocksTask = forkJoinPool.submit(() -> {
-			PriorityQueue<BlockPos> heap = new PriorityQueue<>((limitCount + 1),
-				(a, b) -> Integer.compare(b.distManhattan(eyesPos),
-					a.distManhattan(eyesPos)));
-			java.util.Iterator<ChunkSearcher.Result> it =
-				coordinator.getReadyMatches().iterator();
-			while(it.hasNext())
+		getMatchingBlocksTask =
+			forkJoinPool.submit(() -> collectNearestMatches(
+				coordinator.getReadyPackedMatches().toList(), itemPositions,
+				eyesPos, limitCount));
+	}
+	
+	/**
+	 * Keeps only the closest N matches without sorting or boxing the entire
+	 * result set. Manhattan distances are bounded by the search area, so a
+	 * distance histogram finds the cutoff in two linear passes. This avoids
+	 * long pauses and GC spikes when scanning very large areas.
+	 */
+	private static LongOpenHashSet collectNearestMatches(
+		java.util.List<PackedMatches> chunkMatches,
+		java.util.Collection<BlockPos> extraPositions, BlockPos eyesPos,
+		int limitCount)
+	{
+		int total = extraPositions.size();
+		for(PackedMatches matches : chunkMatches)
+			total += matches.size();
+		
+		LongArrayList candidates = new LongArrayList(total);
+		IntArrayList distances = new IntArrayList(total);
+		int maxDistance = 0;
+		
+		for(PackedMatches matches : chunkMatches)
+			for(int i = 0; i < matches.size(); i++)
 			{
-				ChunkSearcher.Result r = it.next();
-				BlockPos pos = r.pos();
-				if(heap.size() < limitCount)
-					heap.offer(pos);
-				else if(pos.distManhattan(eyesPos) < heap.peek()
-					.distManhattan(eyesPos))
-				{
-					heap.poll();
-					heap.offer(pos);
-				}
+				long pos = matches.getPos(i);
+				int distance = getManhattanDistance(pos, eyesPos);
+				candidates.add(pos);
+				distances.add(distance);
+				maxDistance = Math.max(maxDistance, distance);
 			}
-			for(BlockPos pos : itemPositions)
+		
+		for(BlockPos pos : extraPositions)
+		{
+			int distance = pos.distManhattan(eyesPos);
+			candidates.add(pos.asLong());
+			distances.add(distance);
+			maxDistance = Math.max(maxDistance, distance);
+		}
+		
+		if(candidates.size() <= limitCount)
+			return new LongOpenHashSet(candidates);
+		
+		int[] histogram = new int[maxDistance + 1];
+		for(int i = 0; i < distances.size(); i++)
+			histogram[distances.getInt(i)]++;
+		
+		int cutoff = 0;
+		int closer = 0;
+		while(closer + histogram[cutoff] < limitCount)
+			closer += histogram[cutoff++];
+		
+		int remainingAtCutoff = limitCount - closer;
+		LongOpenHashSet nearest = new LongOpenHashSet(limitCount);
+		for(int i = 0; i < candidates.size(); i++)
+		{
+			int distance = distances.getInt(i);
+			if(distance < cutoff)
+				nearest.add(candidates.getLong(i));
+			else if(distance == cutoff && remainingAtCutoff > 0)
 			{
-				if(heap.size() < limitCount)
-					heap.offer(pos);
-				else if(pos.distManhattan(eyesPos) < heap.peek()
-					.distManhattan(eyesPos))
-				{
-					heap.poll();
-					heap.offer(pos);
-				}
+				nearest.add(candidates.getLong(i));
+				remainingAtCutoff--;
 			}
-			return new HashSet<>(heap);
-		});
+		}
+		
+		return nearest;
+	}
+	
+	private static int getManhattanDistance(long pos, BlockPos other)
+	{
+		return Math.abs(BlockPos.getX(pos) - other.getX())
+			+ Math.abs(BlockPos.getY(pos) - other.getY())
+			+ Math.abs(BlockPos.getZ(pos) - other.getZ());
 	}
 	
 	private void startCompileVerticesTask()
@@ -852,7 +882,7 @@ public final class SearchHack extends Hack implements UpdateListener,
 			return;
 		}
 		
-		HashSet<BlockPos> matchingBlocks = getMatchingBlocksTask.join();
+		LongOpenHashSet matchingBlocks = getMatchingBlocksTask.join();
 		// store for tracers
 		lastMatchingBlocks = matchingBlocks;
 		
@@ -867,8 +897,11 @@ public final class SearchHack extends Hack implements UpdateListener,
 			notify = false;
 		}
 		
+		// only the chunks whose matches changed get meshed again
+		Long2ObjectOpenHashMap<LongOpenHashSet> uploaded =
+			chunkMeshes.snapshotBlocks();
 		compileVerticesTask = forkJoinPool
-			.submit(() -> BlockVertexCompiler.compile(matchingBlocks));
+			.submit(() -> ChunkMeshCache.compile(matchingBlocks, uploaded));
 	}
 	
 	private void buildBufferSafeMode()
@@ -879,42 +912,11 @@ public final class SearchHack extends Hack implements UpdateListener,
 		if(getMatchingBlocksTask != null || compileVerticesTask != null)
 			stopBuildingBuffer(false);
 			
-		// Use a bounded max-heap to keep only the closest N matches without
-		// sorting the entire result set. This avoids long pauses when scanning
-		// very large areas.
 		BlockPos eyesPos = BlockPos.containing(RotationUtils.getEyesPos());
-		final int limitCount = getEffectiveRenderLimit();
-		java.util.ArrayList<ChunkSearcher.Result> readyMatches =
-			coordinator.getReadyMatches().collect(
-				java.util.stream.Collectors.toCollection(ArrayList::new));
-		PriorityQueue<BlockPos> heap =
-			new PriorityQueue<>((limitCount + 1), (a, b) -> Integer
-				.compare(b.distManhattan(eyesPos), a.distManhattan(eyesPos)));
-		for(ChunkSearcher.Result r : readyMatches)
-		{
-			BlockPos pos = r.pos();
-			if(heap.size() < limitCount)
-				heap.offer(pos);
-			else if(pos.distManhattan(eyesPos) < heap.peek()
-				.distManhattan(eyesPos))
-			{
-				heap.poll();
-				heap.offer(pos);
-			}
-		}
-		for(BlockPos pos : matchingItemPositions)
-		{
-			if(heap.size() < limitCount)
-				heap.offer(pos);
-			else if(pos.distManhattan(eyesPos) < heap.peek()
-				.distManhattan(eyesPos))
-			{
-				heap.poll();
-				heap.offer(pos);
-			}
-		}
+		LongOpenHashSet matchingBlocks = collectNearestMatches(
+			coordinator.getReadyPackedMatches().toList(),
+			matchingItemPositions, eyesPos, getEffectiveRenderLimit());
 		
-		HashSet<BlockPos> matchingBlocks = new HashSet<>(heap);
 		// store for tracers
 		lastMatchingBlocks = matchingBlocks;
 		
@@ -935,8 +937,9 @@ public final class SearchHack extends Hack implements UpdateListener,
 			return;
 		}
 		
-		ArrayList<int[]> vertices = BlockVertexCompiler.compile(matchingBlocks);
-		setBufferFromVertices(vertices, matchingBlocks);
+		ChunkMeshCache.Update update = ChunkMeshCache.compile(matchingBlocks,
+			chunkMeshes.snapshotBlocks());
+		setBufferFromMeshUpdate(update, matchingBlocks);
 	}
 	
 	private void setBufferFromTask()
@@ -947,38 +950,25 @@ public final class SearchHack extends Hack implements UpdateListener,
 			return;
 		}
 		
-		ArrayList<int[]> vertices = compileVerticesTask.join();
-		setBufferFromVertices(vertices, lastMatchingBlocks);
+		ChunkMeshCache.Update update = compileVerticesTask.join();
+		setBufferFromMeshUpdate(update, lastMatchingBlocks);
 	}
 	
 	private void setSimpleBufferFromTask()
 	{
-		HashSet<BlockPos> matchingBlocks = getMatchingBlocksTask.join();
+		LongOpenHashSet matchingBlocks = getMatchingBlocksTask.join();
 		lastMatchingBlocks = matchingBlocks;
 		setSimpleBufferFromMatches(matchingBlocks);
 	}
 	
-	private void setSimpleBufferFromMatches(HashSet<BlockPos> matchingBlocks)
+	private void setSimpleBufferFromMatches(LongOpenHashSet matchingBlocks)
 	{
-		if(vertexBuffer != null)
-		{
-			vertexBuffer.close();
-			vertexBuffer = null;
-		}
-		
-		bufferRegion = null;
+		chunkMeshes.clear();
 		bufferUpToDate = true;
 		
 		if(matchingBlocks != null)
 		{
-			highlightBoxes = matchingBlocks.stream().map(AABB::new)
-				.collect(java.util.stream.Collectors.toList());
-			tracerEnds = matchingBlocks.stream().map(pos -> {
-				if(net.wurstclient.util.BlockUtils.canBeClicked(pos))
-					return net.wurstclient.util.BlockUtils.getBoundingBox(pos)
-						.getCenter();
-				return Vec3.atCenterOf(pos);
-			}).collect(java.util.stream.Collectors.toList());
+			setHighlightsAndTracers(matchingBlocks);
 			foundCount = Math.min(matchingBlocks.size(), 999);
 			
 		}else
@@ -989,31 +979,15 @@ public final class SearchHack extends Hack implements UpdateListener,
 		}
 	}
 	
-	private void setBufferFromVertices(ArrayList<int[]> vertices,
-		HashSet<BlockPos> matchingBlocks)
+	private void setBufferFromMeshUpdate(ChunkMeshCache.Update update,
+		LongOpenHashSet matchingBlocks)
 	{
-		RegionPos region = RenderUtils.getCameraRegion();
-		if(vertexBuffer != null)
-			vertexBuffer.close();
-		vertexBuffer = EasyVertexBuffer.createAndUpload(PrimitiveTopology.QUADS,
-			DefaultVertexFormat.POSITION_COLOR, buffer -> {
-				for(int[] vertex : vertices)
-					buffer.addVertex(vertex[0] - region.x(), vertex[1],
-						vertex[2] - region.z()).setColor(0xFFFFFFFF);
-			});
+		chunkMeshes.apply(update);
 		bufferUpToDate = true;
-		bufferRegion = region;
 		// build tracer endpoints now that we have matching blocks
 		if(matchingBlocks != null)
 		{
-			highlightBoxes = matchingBlocks.stream().map(AABB::new)
-				.collect(java.util.stream.Collectors.toList());
-			tracerEnds = matchingBlocks.stream().map(pos -> {
-				if(net.wurstclient.util.BlockUtils.canBeClicked(pos))
-					return net.wurstclient.util.BlockUtils.getBoundingBox(pos)
-						.getCenter();
-				return Vec3.atCenterOf(pos);
-			}).collect(java.util.stream.Collectors.toList());
+			setHighlightsAndTracers(matchingBlocks);
 			// update count for HUD (clamped to 999)
 			foundCount = Math.min(matchingBlocks.size(), 999);
 		}else
@@ -1023,6 +997,25 @@ public final class SearchHack extends Hack implements UpdateListener,
 		}
 	}
 	
+	private void setHighlightsAndTracers(LongOpenHashSet matchingBlocks)
+	{
+		ArrayList<AABB> boxes = new ArrayList<>(matchingBlocks.size());
+		ArrayList<Vec3> ends = new ArrayList<>(matchingBlocks.size());
+		LongIterator iterator = matchingBlocks.iterator();
+		while(iterator.hasNext())
+		{
+			BlockPos pos = BlockPos.of(iterator.nextLong());
+			boxes.add(new AABB(pos));
+			if(BlockUtils.canBeClicked(pos))
+				ends.add(BlockUtils.getBoundingBox(pos).getCenter());
+			else
+				ends.add(Vec3.atCenterOf(pos));
+		}
+		
+		highlightBoxes = boxes;
+		tracerEnds = ends;
+	}
+	
 	private void stopBuildingBuffer(boolean discardCurrent)
 	{
 		buildGeneration++;
@@ -1039,12 +1032,7 @@ public final class SearchHack extends Hack implements UpdateListener,
 			lastMatchingBlocks = null;
 			highlightBoxes = null;
 			foundCount = 0;
-			if(vertexBuffer != null)
-			{
-				vertexBuffer.close();
-				vertexBuffer = null;
-			}
-			bufferRegion = null;
+			chunkMeshes.clear();
 		}
 	}
 	
@@ -1068,6 +1056,16 @@ public final class SearchHack extends Hack implements UpdateListener,
 		return v / 100F;
 	}
 	
+	/**
+	 * Returns the size of the filled highlight mesh that is currently being
+	 * drawn, which is empty while the fill is off.
+	 */
+	public MeshStats getMeshStats()
+	{
+		return new MeshStats(chunkMeshes.getChunkCount(),
+			chunkMeshes.getFaceCount(), chunkMeshes.getQuadCount());
+	}
+	
 	public void enableQuerySearch(String rawQuery)
 	{
 		mode.setSelected(SearchMode.QUERY);
@@ -1607,4 +1605,7 @@ public final class SearchHack extends Hack implements UpdateListener,
 	
 	private record RevealSample(double distance, long timestamp)
 	{}
+	
+	public record MeshStats(int chunks, int faces, int quads)
+	{}
 }
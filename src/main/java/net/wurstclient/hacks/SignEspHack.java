@@ -43,6 +43,7 @@ import net.wurstclient.util.RenderUtils;
 import net.wurstclient.util.RotationUtils;
 import net.wurstclient.util.chunk.ChunkSearcher.Result;
 import net.wurstclient.util.chunk.ChunkSearcherCoordinator;
+import net.wurstclient.util.chunk.PaletteQuery;
 
 @SearchTags({"sign esp", "SignESP"})
 public final class SignEspHack extends Hack implements UpdateListener,
@@ -85,7 +86,7 @@ public final class SignEspHack extends Hack implements UpdateListener,
 	private final CheckboxSetting nearestTracerOnly = new CheckboxSetting(
 		"Nearest tracer only", "Only draw the closest SignESP tracer.", false);
 	private final BiPredicate<BlockPos, BlockState> query =
-		(pos, state) -> state.getBlock() instanceof SignBlock;
+		PaletteQuery.of(state -> state.getBlock() instanceof SignBlock);
 	private final ChunkSearcherCoordinator coordinator =
 		new ChunkSearcherCoordinator(query, area);
 	private boolean groupsUpToDate;
@@ -12,11 +12,13 @@ import com.mojang.math.Axis;
 import java.awt.Color;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import net.minecraft.client.gui.Font;
 import net.minecraft.client.gui.Font.DisplayMode;
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.entity.Entity;
 import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.entity.BlockEntityType;
 import net.minecraft.world.level.block.entity.SpawnerBlockEntity;
 import net.minecraft.world.phys.AABB;
 import net.minecraft.world.phys.Vec3;
@@ -33,7 +35,6 @@ import net.wurstclient.settings.EspStyleSetting;
 import net.wurstclient.settings.SliderSetting;
 import net.wurstclient.settings.SliderSetting.ValueDisplay;
 import net.wurstclient.util.RenderUtils;
-import net.wurstclient.util.chunk.ChunkUtils;
 
 @SearchTags({"spawner esp", "mob spawner", "monster spawner"})
 public final class SpawnerEspHack extends Hack implements UpdateListener,
@@ -84,15 +85,14 @@ public final class SpawnerEspHack extends Hack implements UpdateListener,
 			return;
 		
 		double max = maxDistance.getValue();
-		double maxSq = max <= 0 ? Double.MAX_VALUE : max * max;
-		Vec3 player = MC.player.position();
-		ChunkUtils.getLoadedBlockEntities()
-			.filter(SpawnerBlockEntity.class::isInstance)
+		WURST.getBlockEntityIndex()
+			.getNearest(MC.player.position(),
+				max <= 0 ? Double.POSITIVE_INFINITY : max, 0,
+				Set.of(BlockEntityType.MOB_SPAWNER), null)
+			.stream().filter(SpawnerBlockEntity.class::isInstance)
 			.map(SpawnerBlockEntity.class::cast).forEach(spawner -> {
 				BlockPos pos = spawner.getBlockPos();
-				Vec3 center = Vec3.atCenterOf(pos);
-				if(!MC.level.getBlockState(pos).is(Blocks.SPAWNER)
-					|| player.distanceToSqr(center) > maxSq)
+				if(!MC.level.getBlockState(pos).is(Blocks.SPAWNER))
 					return;
 				Entity display = spawner.getSpawner()
 					.getOrCreateDisplayEntity(MC.level, pos);
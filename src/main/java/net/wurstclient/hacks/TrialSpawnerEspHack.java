@@ -35,6 +35,7 @@ import net.minecraft.world.entity.LivingEntity;
 import net.minecraft.world.entity.item.ItemEntity;
 import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.VaultBlock;
+import net.minecraft.world.level.block.entity.BlockEntityType;
 import net.minecraft.world.level.block.entity.TrialSpawnerBlockEntity;
 import net.minecraft.world.level.block.entity.trialspawner.TrialSpawner;
 import net.minecraft.world.level.block.entity.trialspawner.TrialSpawnerConfig;
@@ -62,7 +63,6 @@ import net.wurstclient.util.RenderUtils;
 import net.wurstclient.util.RenderUtils.ColoredBox;
 import net.wurstclient.util.RenderUtils.ColoredPoint;
 import net.wurstclient.nicewurst.NiceWurstModule;
-import net.wurstclient.util.chunk.ChunkUtils;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
@@ -268,7 +268,7 @@ public final class TrialSpawnerEspHack extends Hack
 		}
 		
 		vaults.clear();
-		ChunkUtils.getLoadedBlockEntities()
+		WURST.getBlockEntityIndex().getAll(BlockEntityType.VAULT).stream()
 			.filter(be -> be instanceof VaultBlockEntity)
 			.map(be -> (VaultBlockEntity)be).forEach(be -> {
 				BlockPos vpos = be.getBlockPos().immutable();
@@ -381,8 +381,8 @@ public final class TrialSpawnerEspHack extends Hack
 		
 		// When only-vaults is enabled, skip scanning spawners entirely
 		if(!onlyVaults.isChecked())
-			ChunkUtils.getLoadedBlockEntities()
-				.filter(be -> be instanceof TrialSpawnerBlockEntity)
+			WURST.getBlockEntityIndex().getAll(BlockEntityType.TRIAL_SPAWNER)
+				.stream().filter(be -> be instanceof TrialSpawnerBlockEntity)
 				.map(be -> (TrialSpawnerBlockEntity)be).forEach(spawner -> {
 					BlockPos pos = spawner.getBlockPos();
 					double distSq = MC.player.distanceToSqr(pos.getX() + 0.5,
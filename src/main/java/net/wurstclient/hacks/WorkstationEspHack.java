@@ -37,6 +37,7 @@ import net.wurstclient.util.RenderUtils;
 import net.wurstclient.util.RotationUtils;
 import net.wurstclient.util.chunk.ChunkSearcher.Result;
 import net.wurstclient.util.chunk.ChunkSearcherCoordinator;
+import net.wurstclient.util.chunk.PaletteQuery;
 
 @SearchTags({"workstation esp", "WorkstationESP"})
 public final class WorkstationEspHack extends Hack implements UpdateListener,
@@ -178,7 +179,7 @@ public final class WorkstationEspHack extends Hack implements UpdateListener,
 		blastFurnace, smoker, campfire, soulCampfire, brewingStand, cauldron,
 		barrel, composter, lectern, fletchingTable, beacon);
 	private final BiPredicate<BlockPos, BlockState> query =
-		(pos, state) -> isTargetBlock(state.getBlock());
+		PaletteQuery.of(state -> isTargetBlock(state.getBlock()));
 	private final ChunkSearcherCoordinator coordinator =
 		new ChunkSearcherCoordinator(query, area);
 	private boolean groupsUpToDate;
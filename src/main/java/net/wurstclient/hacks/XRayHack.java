@@ -19,7 +19,7 @@ import net.fabricmc.loader.api.ModContainer;
 import net.fabricmc.loader.api.metadata.ModMetadata;
 import net.minecraft.client.renderer.blockentity.state.BlockEntityRenderState;
 import net.minecraft.core.BlockPos;
-import net.minecraft.core.Direction;
+import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.phys.AABB;
 import net.minecraft.world.level.block.state.BlockState;
@@ -30,6 +30,7 @@ import net.wurstclient.events.PacketInputListener;
 import net.wurstclient.events.RenderListener;
 import net.wurstclient.events.VisGraphListener;
 import net.wurstclient.hack.Hack;
+import net.wurstclient.hacks.xray.ExposureCache;
 import net.wurstclient.mixinterface.ISimpleOption;
 import net.wurstclient.util.RenderUtils;
 import net.wurstclient.settings.BlockListSetting;
@@ -106,10 +107,13 @@ public final class XRayHack extends Hack
 	private ArrayList<String> oreNamesCache;
 	private java.util.Set<String> oreExactIds;
 	private String[] oreKeywords;
+	// one bit per Block.BLOCK_STATE_REGISTRY id, replaced as a whole whenever
+	// the list or query changes so that chunk meshing threads never see it
+	// half-built
+	private volatile long[] visibleStates;
 	private double lastOpacityVal;
 	private int lastOresHash;
-	private final ThreadLocal<BlockPos.MutableBlockPos> mutablePosForExposedCheck =
-		ThreadLocal.withInitial(BlockPos.MutableBlockPos::new);
+	private final ExposureCache exposureCache = new ExposureCache();
 	
 	// Track last selected mode so switching triggers reloads
 	private Mode lastMode = null;
@@ -167,7 +171,7 @@ public final class XRayHack extends Hack
 		super("X-Ray");
 		setCategory(Category.RENDER);
 		coordinator = new ChunkSearcherCoordinator(
-			(pos, state) -> isVisible(state.getBlock(), pos), area);
+			(pos, state) -> isVisible(state, pos), area);
 		addSetting(ores);
 		addSetting(onlyExposed);
 		addSetting(opacity);
@@ -216,11 +220,13 @@ public final class XRayHack extends Hack
 					.filter(s -> !s.isEmpty()).toArray(String[]::new);
 			}
 			lastOpacityVal = opacity.getValue();
+			compileVisibleStates();
 		}
 		
 		// remember current onlyExposed value to detect changes later
 		lastOnlyExposed = onlyExposed.isChecked();
 		// reset coordinator
+		exposureCache.clear();
 		coordinator.reset();
 		lastMatchesVersion = coordinator.getMatchesVersion();
 		highlightPositionsUpToDate = false;
@@ -262,11 +268,16 @@ public final class XRayHack extends Hack
 		if(!fullbright.isChangingGamma())
 			ISimpleOption.get(MC.options.gamma())
 				.forceSetValue(fullbright.getDefaultGamma());
+		
+		exposureCache.clear();
 	}
 	
 	@Override
 	public void onUpdate()
 	{
+		// forget exposure masks of unloaded chunks
+		exposureCache.update();
+		
 		// update chunk searchers (background search)
 		boolean changed = coordinator.update();
 		int matchesVersion = coordinator.getMatchesVersion();
@@ -311,6 +322,7 @@ public final class XRayHack extends Hack
 					oreKeywords = Stream.of(q.split(","))
 						.map(s -> s.trim().toLowerCase(java.util.Locale.ROOT))
 						.filter(s -> !s.isEmpty()).toArray(String[]::new);
+				compileVisibleStates();
 				// reset search and highlights
 				resetCoordinatorAndHighlights();
 				requestTerrainReload();
@@ -360,6 +372,7 @@ public final class XRayHack extends Hack
 			{
 				oreKeywords = newKw;
 				oreExactIds = null; // force keyword path
+				compileVisibleStates();
 				// reset so results update instantly
 				resetCoordinatorAndHighlights();
 				requestTerrainReload();
@@ -521,7 +534,7 @@ public final class XRayHack extends Hack
 		if(!isEnabled())
 			return null;
 		
-		boolean visible = isVisible(state.getBlock(), pos);
+		boolean visible = isVisible(state, pos);
 		if(!visible && opacity.getValue() > 0)
 			return null;
 		
@@ -534,66 +547,97 @@ public final class XRayHack extends Hack
 			return false;
 		
 		BlockPos pos = state.blockPos;
-		Block block = BlockUtils.getBlock(pos);
-		if(isVisible(block, pos))
+		if(isVisible(BlockUtils.getState(pos), pos))
 			return false;
 		
 		return true;
 	}
 	
-	// add fallback when caches are null
 	public boolean isVisible(Block block, BlockPos pos)
+	{
+		return isVisible(block.defaultBlockState(), pos);
+	}
+	
+	/**
+	 * Called for every block while chunks are being meshed, so the list or
+	 * query is compiled into {@link #visibleStates} beforehand and this only
+	 * needs to look up one bit.
+	 */
+	public boolean isVisible(BlockState state, BlockPos pos)
+	{
+		long[] states = visibleStates;
+		if(states == null)
+			states = compileVisibleStates();
+		
+		int id = Block.getId(state);
+		boolean visible = id >= 0 && id >>> 6 < states.length
+			&& (states[id >>> 6] & 1L << id) != 0;
+		
+		if(visible && onlyExposed.isChecked() && pos != null)
+			return isExposed(pos);
+		
+		return visible;
+	}
+	
+	private long[] compileVisibleStates()
+	{
+		int stateCount = Block.BLOCK_STATE_REGISTRY.size();
+		long[] states = new long[(stateCount + 63) >>> 6];
+		for(Block block : BuiltInRegistries.BLOCK)
+		{
+			if(!matches(block))
+				continue;
+			
+			for(BlockState state : block.getStateDefinition()
+				.getPossibleStates())
+			{
+				int id = Block.getId(state);
+				if(id >= 0)
+					states[id >>> 6] |= 1L << id;
+			}
+		}
+		
+		visibleStates = states;
+		return states;
+	}
+	
+	private boolean matches(Block block)
 	{
 		String idFull = BlockUtils.getName(block);
 		
-		boolean visible = false;
 		// Behavior depends on mode
-		Mode cur = mode.getSelected();
-		if(cur == Mode.LIST)
+		if(mode.getSelected() == Mode.LIST)
 		{
 			// exact ID set (preferred fast path)
 			if(oreExactIds != null)
-				visible = oreExactIds.contains(idFull);
+				return oreExactIds.contains(idFull);
 			// fallback to original list if caches aren't ready yet
-			if(!visible && oreExactIds == null && oreNamesCache != null)
-				visible = oreNamesCache.contains(idFull);
-		}else // QUERY mode
-		{
-			if(oreKeywords != null && oreKeywords.length > 0)
-			{
-				String localId = idFull.contains(":")
-					? idFull.substring(idFull.indexOf(":") + 1) : idFull;
-				String localSpaced = localId.replace('_', ' ');
-				String transKey = block.getDescriptionId();
-				String display = block.getName().getString();
-				for(String term : oreKeywords)
-					if(containsNormalized(idFull, term)
-						|| containsNormalized(localId, term)
-						|| containsNormalized(localSpaced, term)
-						|| containsNormalized(transKey, term)
-						|| containsNormalized(display, term))
-					{
-						visible = true;
-						break;
-					}
-			}
+			return oreNamesCache != null && oreNamesCache.contains(idFull);
 		}
 		
-		if(visible && onlyExposed.isChecked() && pos != null)
-			return isExposed(pos);
+		// QUERY mode
+		if(oreKeywords == null || oreKeywords.length == 0)
+			return false;
 		
-		return visible;
+		String localId = idFull.contains(":")
+			? idFull.substring(idFull.indexOf(":") + 1) : idFull;
+		String localSpaced = localId.replace('_', ' ');
+		String transKey = block.getDescriptionId();
+		String display = block.getName().getString();
+		for(String term : oreKeywords)
+			if(containsNormalized(idFull, term)
+				|| containsNormalized(localId, term)
+				|| containsNormalized(localSpaced, term)
+				|| containsNormalized(transKey, term)
+				|| containsNormalized(display, term))
+				return true;
+			
+		return false;
 	}
 	
 	private boolean isExposed(BlockPos pos)
 	{
-		BlockPos.MutableBlockPos mutablePos = mutablePosForExposedCheck.get();
-		for(Direction direction : Direction.values())
-			if(!BlockUtils
-				.isOpaqueFullCube(mutablePos.setWithOffset(pos, direction)))
-				return true;
-			
-		return false;
+		return exposureCache.isExposed(pos);
 	}
 	
 	private void rebuildOreCaches()
@@ -611,6 +655,7 @@ public final class XRayHack extends Hack
 		}
 		oreExactIds = exact;
 		oreKeywords = kw.toArray(new String[0]);
+		compileVisibleStates();
 	}
 	
 	private static boolean containsNormalized(String haystack, String needle)
@@ -619,6 +664,21 @@ public final class XRayHack extends Hack
 			&& haystack.toLowerCase(java.util.Locale.ROOT).contains(needle);
 	}
 	
+	// Called from ClientPacketListenerMixin after a packet was applied.
+	// Also re-filters the highlights, since blocks next to the change may
+	// have become exposed without being patched themselves.
+	public void afterUpdateBlock(BlockPos pos)
+	{
+		exposureCache.afterUpdateBlock(pos);
+		visibleBoxesUpToDate = false;
+	}
+	
+	public void afterUpdateChunk(int chunkX, int chunkZ)
+	{
+		exposureCache.afterUpdateChunk(chunkX, chunkZ);
+		visibleBoxesUpToDate = false;
+	}
+	
 	// Public API used by rendering mixins
 	public boolean isOpacityMode()
 	{
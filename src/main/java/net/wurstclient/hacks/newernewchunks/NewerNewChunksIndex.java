@@ -0,0 +1,358 @@
+/*
+ * Copyright (c) 2014-2026 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.hacks.newernewchunks;
+
+import java.util.AbstractSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import net.minecraft.world.level.ChunkPos;
+import net.wurstclient.hacks.newernewchunks.NewerNewChunksStore.ChunkType;
+
+/**
+ * NewerNewChunks' in-memory chunk classifications, as one byte per chunk in
+ * 32x32-chunk regions. Each chunk has at most one {@link ChunkType}.
+ *
+ * <p>
+ * Every change stamps its region with a new version, so that
+ * {@link NewerNewChunksRenderer} can tell which regions it has to rebuild.
+ * Must only be used on the client thread.
+ */
+public final class NewerNewChunksIndex
+{
+	static final int REGION_SHIFT = 5;
+	static final int REGION_SIZE = 1 << REGION_SHIFT;
+	private static final int REGION_MASK = REGION_SIZE - 1;
+	private static final ChunkType[] TYPES = ChunkType.values();
+	
+	private final Long2ObjectOpenHashMap<Region> regions =
+		new Long2ObjectOpenHashMap<>();
+	private final int[] counts = new int[TYPES.length];
+	private final Set<ChunkPos>[] views;
+	private long nextVersion = 1;
+	
+	@SuppressWarnings("unchecked")
+	public NewerNewChunksIndex()
+	{
+		views = new Set[TYPES.length];
+		for(ChunkType type : TYPES)
+			views[type.ordinal()] = new View(type);
+	}
+	
+	/**
+	 * Returns the classification of the given chunk, or <code>null</code> if
+	 * it has none.
+	 */
+	public ChunkType get(int chunkX, int chunkZ)
+	{
+		Region region = regions.get(getRegionKey(chunkX, chunkZ));
+		if(region == null)
+			return null;
+		
+		return region.get(chunkX & REGION_MASK, chunkZ & REGION_MASK);
+	}
+	
+	public boolean contains(int chunkX, int chunkZ, ChunkType type)
+	{
+		return get(chunkX, chunkZ) == type;
+	}
+	
+	/**
+	 * Sets the classification of the given chunk, replacing any other.
+	 * Returns false if it already had this one.
+	 */
+	public boolean put(int chunkX, int chunkZ, ChunkType type)
+	{
+		long key = getRegionKey(chunkX, chunkZ);
+		Region region = regions.get(key);
+		if(region == null)
+			regions.put(key, region = new Region());
+		
+		int index = getIndex(chunkX, chunkZ);
+		int oldCode = region.types[index];
+		int newCode = type.ordinal() + 1;
+		if(oldCode == newCode)
+			return false;
+		
+		if(oldCode != 0)
+			counts[oldCode - 1]--;
+		else
+			region.size++;
+		
+		region.types[index] = (byte)newCode;
+		region.version = nextVersion++;
+		counts[type.ordinal()]++;
+		return true;
+	}
+	
+	/**
+	 * Removes the classification of the given chunk. Returns false if it
+	 * didn't have one.
+	 */
+	public boolean remove(int chunkX, int chunkZ)
+	{
+		long key = getRegionKey(chunkX, chunkZ);
+		Region region = regions.get(key);
+		if(region == null)
+			return false;
+		
+		int index = getIndex(chunkX, chunkZ);
+		int oldCode = region.types[index];
+		if(oldCode == 0)
+			return false;
+		
+		region.types[index] = 0;
+		region.version = nextVersion++;
+		counts[oldCode - 1]--;
+		if(--region.size == 0)
+			regions.remove(key);
+		
+		return true;
+	}
+	
+	/**
+	 * Removes every chunk that matches the given predicate.
+	 */
+	public void removeIf(ChunkPredicate predicate)
+	{
+		for(ObjectIterator<Long2ObjectMap.Entry<Region>> itr =
+			regions.long2ObjectEntrySet().fastIterator(); itr.hasNext();)
+		{
+			Long2ObjectMap.Entry<Region> entry = itr.next();
+			Region region = entry.getValue();
+			int baseX = ChunkPos.getX(entry.getLongKey()) << REGION_SHIFT;
+			int baseZ = ChunkPos.getZ(entry.getLongKey()) << REGION_SHIFT;
+			
+			for(int i = 0; i < region.types.length; i++)
+			{
+				int code = region.types[i];
+				if(code == 0 || !predicate.test(baseX + (i & REGION_MASK),
+					baseZ + (i >> REGION_SHIFT)))
+					continue;
+				
+				region.types[i] = 0;
+				region.version = nextVersion++;
+				counts[code - 1]--;
+				region.size--;
+			}
+			
+			if(region.size == 0)
+				itr.remove();
+		}
+	}
+	
+	public void clear()
+	{
+		regions.clear();
+		for(int i = 0; i < counts.length; i++)
+			counts[i] = 0;
+	}
+	
+	public int size(ChunkType type)
+	{
+		return counts[type.ordinal()];
+	}
+	
+	/**
+	 * Returns an unmodifiable live view of the chunks with the given
+	 * classification.
+	 */
+	public Set<ChunkPos> view(ChunkType type)
+	{
+		return views[type.ordinal()];
+	}
+	
+	/**
+	 * Calls <code>consumer</code> for every chunk with the given
+	 * classification within <code>radius</code> chunks of the given chunk,
+	 * measured along each axis.
+	 */
+	public void forEachInRange(ChunkType type, int centerX, int centerZ,
+		int radius, ChunkConsumer consumer)
+	{
+		int minX = centerX - radius;
+		int maxX = centerX + radius;
+		int minZ = centerZ - radius;
+		int maxZ = centerZ + radius;
+		byte code = (byte)(type.ordinal() + 1);
+		
+		for(int rx = minX >> REGION_SHIFT; rx <= maxX >> REGION_SHIFT; rx++)
+			for(int rz = minZ >> REGION_SHIFT; rz <= maxZ >> REGION_SHIFT; rz++)
+			{
+				Region region = regions.get(ChunkPos.pack(rx, rz));
+				if(region == null)
+					continue;
+				
+				int baseX = rx << REGION_SHIFT;
+				int baseZ = rz << REGION_SHIFT;
+				int fromX = Math.max(minX, baseX) - baseX;
+				int toX = Math.min(maxX, baseX + REGION_MASK) - baseX;
+				int fromZ = Math.max(minZ, baseZ) - baseZ;
+				int toZ = Math.min(maxZ, baseZ + REGION_MASK) - baseZ;
+				
+				for(int z = fromZ; z <= toZ; z++)
+					for(int x = fromX; x <= toX; x++)
+						if(region.types[z << REGION_SHIFT | x] == code)
+							consumer.accept(baseX + x, baseZ + z);
+			}
+	}
+	
+	/**
+	 * Returns a new, modifiable set of the chunks that
+	 * {@link #forEachInRange(ChunkType, int, int, int, ChunkConsumer)} would
+	 * visit.
+	 */
+	public HashSet<ChunkPos> getInRange(ChunkType type, int centerX,
+		int centerZ, int radius)
+	{
+		HashSet<ChunkPos> result = new HashSet<>();
+		forEachInRange(type, centerX, centerZ, radius,
+			(x, z) -> result.add(new ChunkPos(x, z)));
+		return result;
+	}
+	
+	/**
+	 * Returns the region with the given region coordinates, or
+	 * <code>null</code> if none of its chunks are classified.
+	 */
+	Region getRegion(int regionX, int regionZ)
+	{
+		return regions.get(ChunkPos.pack(regionX, regionZ));
+	}
+	
+	private static long getRegionKey(int chunkX, int chunkZ)
+	{
+		return ChunkPos.pack(chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT);
+	}
+	
+	private static int getIndex(int chunkX, int chunkZ)
+	{
+		return (chunkZ & REGION_MASK) << REGION_SHIFT | chunkX & REGION_MASK;
+	}
+	
+	static final class Region
+	{
+		private final byte[] types = new byte[REGION_SIZE * REGION_SIZE];
+		private int size;
+		private long version;
+		
+		ChunkType get(int localX, int localZ)
+		{
+			int code = types[localZ << REGION_SHIFT | localX];
+			return code == 0 ? null : TYPES[code - 1];
+		}
+		
+		long getVersion()
+		{
+			return version;
+		}
+	}
+	
+	private final class View extends AbstractSet<ChunkPos>
+	{
+		private final ChunkType type;
+		
+		private View(ChunkType type)
+		{
+			this.type = type;
+		}
+		
+		@Override
+		public boolean contains(Object o)
+		{
+			return o instanceof ChunkPos pos
+				&& NewerNewChunksIndex.this.contains(pos.x(), pos.z(), type);
+		}
+		
+		@Override
+		public int size()
+		{
+			return counts[type.ordinal()];
+		}
+		
+		@Override
+		public Iterator<ChunkPos> iterator()
+		{
+			return new ChunkIterator(type);
+		}
+	}
+	
+	private final class ChunkIterator implements Iterator<ChunkPos>
+	{
+		private final ObjectIterator<Long2ObjectMap.Entry<Region>> regionItr =
+			regions.long2ObjectEntrySet().fastIterator();
+		private final byte code;
+		private Region region;
+		private int baseX;
+		private int baseZ;
+		private int index;
+		private ChunkPos next;
+		
+		private ChunkIterator(ChunkType type)
+		{
+			code = (byte)(type.ordinal() + 1);
+			next = findNext();
+		}
+		
+		@Override
+		public boolean hasNext()
+		{
+			return next != null;
+		}
+		
+		@Override
+		public ChunkPos next()
+		{
+			if(next == null)
+				throw new NoSuchElementException();
+			
+			ChunkPos result = next;
+			next = findNext();
+			return result;
+		}
+		
+		private ChunkPos findNext()
+		{
+			while(true)
+			{
+				while(region != null && index < region.types.length)
+				{
+					int i = index++;
+					if(region.types[i] == code)
+						return new ChunkPos(baseX + (i & REGION_MASK),
+							baseZ + (i >> REGION_SHIFT));
+				}
+				
+				if(!regionItr.hasNext())
+					return null;
+				
+				Long2ObjectMap.Entry<Region> entry = regionItr.next();
+				region = entry.getValue();
+				baseX = ChunkPos.getX(entry.getLongKey()) << REGION_SHIFT;
+				baseZ = ChunkPos.getZ(entry.getLongKey()) << REGION_SHIFT;
+				index = 0;
+			}
+		}
+	}
+	
+	@FunctionalInterface
+	public interface ChunkConsumer
+	{
+		public void accept(int chunkX, int chunkZ);
+	}
+	
+	@FunctionalInterface
+	public interface ChunkPredicate
+	{
+		public boolean test(int chunkX, int chunkZ);
+	}
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2014-2026 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.hacks.newernewchunks;
+
+import com.mojang.blaze3d.vertex.PoseStack;
+import com.mojang.blaze3d.vertex.VertexConsumer;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import net.minecraft.client.renderer.rendertype.RenderType;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.phys.AABB;
+import net.wurstclient.WurstRenderLayers;
+import net.wurstclient.hacks.newernewchunks.NewerNewChunksIndex.Region;
+import net.wurstclient.hacks.newernewchunks.NewerNewChunksStore.ChunkType;
+import net.wurstclient.util.BufferWithLayer;
+import net.wurstclient.util.RegionPos;
+import net.wurstclient.util.RenderUtils;
+
+/**
+ * Keeps NewerNewChunks' boxes as one white vertex buffer per region, chunk
+ * type and shape, which are tinted when drawn. A region's buffers are only
+ * rebuilt when its version in the {@link NewerNewChunksIndex} changes.
+ *
+ * <p>
+ * Regions are drawn whole if any part of them is within the render distance.
+ * Must only be used on the render thread.
+ */
+public final class NewerNewChunksRenderer
+{
+	private static final int TYPE_COUNT = ChunkType.values().length;
+	
+	private final Long2ObjectOpenHashMap<RegionMesh> meshes =
+		new Long2ObjectOpenHashMap<>();
+	private final LongArrayList visibleRegions = new LongArrayList();
+	
+	/**
+	 * Finds the regions within <code>maxDist</code> blocks of the player,
+	 * rebuilds the ones that changed and closes the ones that are out of
+	 * range or empty. Call once per frame before
+	 * {@link #draw(PoseStack, ChunkType, double, int, int, boolean, boolean)}.
+	 */
+	public void update(NewerNewChunksIndex index, BlockPos playerPos,
+		double maxDist)
+	{
+		visibleRegions.clear();
+		LongOpenHashSet keep = new LongOpenHashSet();
+		
+		int regionBlocks = NewerNewChunksIndex.REGION_SIZE * 16;
+		int minRx = Math.floorDiv((int)(playerPos.getX() - maxDist),
+			regionBlocks);
+		int maxRx = Math.floorDiv((int)(playerPos.getX() + maxDist),
+			regionBlocks);
+		int minRz = Math.floorDiv((int)(playerPos.getZ() - maxDist),
+			regionBlocks);
+		int maxRz = Math.floorDiv((int)(playerPos.getZ() + maxDist),
+			regionBlocks);
+		double maxDistSq = maxDist * maxDist;
+		
+		for(int rx = minRx; rx <= maxRx; rx++)
+			for(int rz = minRz; rz <= maxRz; rz++)
+			{
+				Region region = index.getRegion(rx, rz);
+				if(region == null)
+					continue;
+				
+				int x1 = rx * regionBlocks;
+				int z1 = rz * regionBlocks;
+				double dx = Math.max(0, Math.max(x1 - playerPos.getX(),
+					playerPos.getX() - (x1 + regionBlocks)));
+				double dz = Math.max(0, Math.max(z1 - playerPos.getZ(),
+					playerPos.getZ() - (z1 + regionBlocks)));
+				if(dx * dx + dz * dz > maxDistSq)
+					continue;
+				
+				long key = ChunkPos.pack(rx, rz);
+				keep.add(key);
+				visibleRegions.add(key);
+				
+				RegionMesh mesh = meshes.get(key);
+				if(mesh != null && mesh.version == region.getVersion())
+					continue;
+				
+				close(mesh);
+				meshes.put(key, build(region));
+			}
+		
+		for(ObjectIterator<Long2ObjectMap.Entry<RegionMesh>> itr =
+			meshes.long2ObjectEntrySet().fastIterator(); itr.hasNext();)
+		{
+			Long2ObjectMap.Entry<RegionMesh> entry = itr.next();
+			if(keep.contains(entry.getLongKey()))
+				continue;
+			
+			close(entry.getValue());
+			itr.remove();
+		}
+	}
+	
+	/**
+	 * Draws the chunks of the given type in the regions found by the last
+	 * {@link #update(NewerNewChunksIndex, BlockPos, double)}, at height
+	 * <code>y</code>.
+	 */
+	public void draw(PoseStack matrixStack, ChunkType type, double y,
+		int sideColor, int lineColor, boolean sides, boolean lines)
+	{
+		for(int i = 0; i < visibleRegions.size(); i++)
+		{
+			long key = visibleRegions.getLong(i);
+			RegionMesh mesh = meshes.get(key);
+			BufferWithLayer sideBuffer =
+				sides ? mesh.sides[type.ordinal()] : null;
+			BufferWithLayer lineBuffer =
+				lines ? mesh.lines[type.ordinal()] : null;
+			if(sideBuffer == null && lineBuffer == null)
+				continue;
+			
+			matrixStack.pushPose();
+			RenderUtils.applyRegionalRenderOffset(matrixStack,
+				new RegionPos(ChunkPos.getX(key) << 9,
+					ChunkPos.getZ(key) << 9));
+			matrixStack.translate(0, y, 0);
+			
+			if(sideBuffer != null)
+				sideBuffer.draw(matrixStack, sideColor);
+			if(lineBuffer != null)
+				lineBuffer.draw(matrixStack, lineColor);
+			
+			matrixStack.popPose();
+		}
+	}
+	
+	public void close()
+	{
+		meshes.values().forEach(NewerNewChunksRenderer::close);
+		meshes.clear();
+		visibleRegions.clear();
+	}
+	
+	private static RegionMesh build(Region region)
+	{
+		RegionMesh mesh = new RegionMesh(region.getVersion());
+		int[] counts = new int[TYPE_COUNT];
+		int size = NewerNewChunksIndex.REGION_SIZE;
+		for(int z = 0; z < size; z++)
+			for(int x = 0; x < size; x++)
+			{
+				ChunkType type = region.get(x, z);
+				if(type != null)
+					counts[type.ordinal()]++;
+			}
+		
+		for(ChunkType type : ChunkType.values())
+		{
+			if(counts[type.ordinal()] == 0)
+				continue;
+			
+			mesh.sides[type.ordinal()] = upload(WurstRenderLayers.QUADS,
+				region, type, RenderUtils::drawSolidBox);
+			mesh.lines[type.ordinal()] = upload(WurstRenderLayers.LINES,
+				region, type, RenderUtils::drawOutlinedBox);
+		}
+		
+		return mesh;
+	}
+	
+	private static BufferWithLayer upload(RenderType layer, Region region,
+		ChunkType type, BoxDrawer drawer)
+	{
+		int size = NewerNewChunksIndex.REGION_SIZE;
+		return BufferWithLayer.createAndUpload(layer, buffer -> {
+			for(int z = 0; z < size; z++)
+				for(int x = 0; x < size; x++)
+				{
+					if(region.get(x, z) != type)
+						continue;
+					
+					AABB box = new AABB(x * 16, 0, z * 16, x * 16 + 16, 1,
+						z * 16 + 16);
+					drawer.draw(buffer, box, 0xFFFFFFFF);
+				}
+		});
+	}
+	
+	private static void close(RegionMesh mesh)
+	{
+		if(mesh == null)
+			return;
+		
+		for(int i = 0; i < TYPE_COUNT; i++)
+		{
+			if(mesh.sides[i] != null)
+				mesh.sides[i].close();
+			if(mesh.lines[i] != null)
+				mesh.lines[i].close();
+		}
+	}
+	
+	@FunctionalInterface
+	private interface BoxDrawer
+	{
+		public void draw(VertexConsumer buffer, AABB box, int color);
+	}
+	
+	private static final class RegionMesh
+	{
+		private final long version;
+		private final BufferWithLayer[] sides =
+			new BufferWithLayer[TYPE_COUNT];
+		private final BufferWithLayer[] lines =
+			new BufferWithLayer[TYPE_COUNT];
+		
+		private RegionMesh(long version)
+		{
+			this.version = version;
+		}
+	}
+}
@@ -0,0 +1,486 @@
+/*
+ * Copyright (c) 2014-2026 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.hacks.newernewchunks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.world.level.ChunkPos;
+
+/**
+ * Saved chunk classifications of one server and dimension, sharded into one
+ * file per 32x32-chunk region. Each region file holds one 4-bit
+ * {@link ChunkType} per chunk, so loading the chunks around the player only
+ * reads the few regions that overlap the window, no matter how many chunks
+ * have been saved elsewhere.
+ *
+ * <p>
+ * {@link #put(int, int, ChunkType)} only remembers the change. Changes are
+ * written in batches on a background thread by {@link #flush()}, one
+ * read-modify-write per touched region. Reads also see changes that haven't
+ * been written yet.
+ *
+ * <p>
+ * The <code>.txt</code> files used by older versions are imported into the
+ * region files the first time the store is used and then renamed to
+ * <code>.txt.migrated</code>.
+ *
+ * <p>
+ * There is only ever one store per directory, see
+ * {@link #forDirectory(Path)}.
+ */
+public final class NewerNewChunksStore
+{
+	private static final ExecutorService WRITER =
+		Executors.newSingleThreadExecutor(r -> {
+			Thread t = new Thread(r, "nnc-region-writer");
+			t.setDaemon(true);
+			return t;
+		});
+	private static final ConcurrentHashMap<Path, NewerNewChunksStore> STORES =
+		new ConcurrentHashMap<>();
+	
+	private static final int REGION_SHIFT = 5;
+	private static final int REGION_SIZE = 1 << REGION_SHIFT;
+	private static final int CHUNKS_PER_REGION = REGION_SIZE * REGION_SIZE;
+	private static final int REGION_FILE_BYTES = CHUNKS_PER_REGION / 2;
+	private static final int FLUSH_THRESHOLD = 4096;
+	private static final long FLUSH_INTERVAL_NANOS = 5_000_000_000L;
+	private static final Pattern CHUNK_COORD_PATTERN =
+		Pattern.compile("-?\\d+");
+	
+	/**
+	 * Legacy files in reverse load priority. Older versions loaded them in the
+	 * opposite order and kept the first classification they found, so
+	 * importing them in this order lets the same one win.
+	 */
+	private static final String[] LEGACY_FILES = {"OldGenerationChunkData.txt",
+		"BeingUpdatedChunkData.txt", "NewChunkData.txt", "OldChunkData.txt",
+		"BlockExploitChunkData.txt"};
+	private static final ChunkType[] LEGACY_TYPES = {ChunkType.OLD_GENERATION,
+		ChunkType.BEING_UPDATED, ChunkType.NEW, ChunkType.OLD,
+		ChunkType.BLOCK_EXPLOIT};
+	
+	private final Path baseDir;
+	private final Path regionDir;
+	
+	// guards the region files and legacyChecked
+	private final Object fileLock = new Object();
+	// guards pending and pendingCount
+	private final Object pendingLock = new Object();
+	private Long2ObjectOpenHashMap<byte[]> pending =
+		new Long2ObjectOpenHashMap<>();
+	private int pendingCount;
+	private long lastFlushNanos = System.nanoTime();
+	private boolean legacyChecked;
+	
+	private NewerNewChunksStore(Path baseDir)
+	{
+		this.baseDir = baseDir;
+		regionDir = baseDir.resolve("regions");
+	}
+	
+	public static NewerNewChunksStore forDirectory(Path baseDir)
+	{
+		return STORES.computeIfAbsent(baseDir, NewerNewChunksStore::new);
+	}
+	
+	public Path getBaseDir()
+	{
+		return baseDir;
+	}
+	
+	/**
+	 * Remembers the classification of the given chunk, replacing any earlier
+	 * one. Thread-safe.
+	 */
+	public void put(int chunkX, int chunkZ, ChunkType type)
+	{
+		long key =
+			ChunkPos.pack(chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT);
+		synchronized(pendingLock)
+		{
+			byte[] region = pending.get(key);
+			if(region == null)
+				pending.put(key, region = new byte[CHUNKS_PER_REGION]);
+			
+			int index = getIndex(chunkX, chunkZ);
+			if(region[index] == 0)
+				pendingCount++;
+			region[index] = (byte)type.code;
+		}
+	}
+	
+	/**
+	 * Starts writing the pending changes if there are a lot of them or if the
+	 * last write was a while ago. Meant to be called every tick.
+	 */
+	public void flushIfDue()
+	{
+		boolean due;
+		synchronized(pendingLock)
+		{
+			due = pendingCount >= FLUSH_THRESHOLD || pendingCount > 0
+				&& System.nanoTime() - lastFlushNanos >= FLUSH_INTERVAL_NANOS;
+		}
+		
+		if(due)
+			flush();
+	}
+	
+	/**
+	 * Starts writing all pending changes on the writer thread.
+	 */
+	public void flush()
+	{
+		synchronized(pendingLock)
+		{
+			lastFlushNanos = System.nanoTime();
+			if(pendingCount == 0)
+				return;
+		}
+		
+		WRITER.execute(this::writePending);
+	}
+	
+	private void writePending()
+	{
+		synchronized(fileLock)
+		{
+			Long2ObjectOpenHashMap<byte[]> batch;
+			synchronized(pendingLock)
+			{
+				batch = pending;
+				pending = new Long2ObjectOpenHashMap<>();
+				pendingCount = 0;
+			}
+			
+			try
+			{
+				migrateLegacyFiles();
+				for(Long2ObjectMap.Entry<byte[]> e : batch
+					.long2ObjectEntrySet())
+					writeRegion(e.getLongKey(), e.getValue());
+				
+			}catch(IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	private void writeRegion(long key, byte[] changes) throws IOException
+	{
+		Files.createDirectories(regionDir);
+		try(FileChannel channel =
+			FileChannel.open(getRegionFile(key), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE))
+		{
+			byte[] data = readFully(channel);
+			for(int i = 0; i < CHUNKS_PER_REGION; i++)
+				if(changes[i] != 0)
+					setCode(data, i, changes[i]);
+			
+			channel.write(ByteBuffer.wrap(data), 0);
+		}
+	}
+	
+	/**
+	 * Reads the classifications of all saved chunks within
+	 * <code>radius</code> chunks of the given chunk, measured along each axis,
+	 * including changes that haven't been written yet. Blocks while a batch of
+	 * changes is being written, so it shouldn't be called on the client
+	 * thread.
+	 */
+	public void read(int centerX, int centerZ, int radius, Visitor visitor)
+	{
+		int minX = centerX - radius;
+		int maxX = centerX + radius;
+		int minZ = centerZ - radius;
+		int maxZ = centerZ + radius;
+		int minRx = minX >> REGION_SHIFT;
+		int maxRx = maxX >> REGION_SHIFT;
+		int minRz = minZ >> REGION_SHIFT;
+		int maxRz = maxZ >> REGION_SHIFT;
+		
+		synchronized(fileLock)
+		{
+			try
+			{
+				migrateLegacyFiles();
+			}catch(IOException e)
+			{
+				e.printStackTrace();
+			}
+			
+			for(int rx = minRx; rx <= maxRx; rx++)
+				for(int rz = minRz; rz <= maxRz; rz++)
+				{
+					long key = ChunkPos.pack(rx, rz);
+					byte[] data = readRegion(key);
+					synchronized(pendingLock)
+					{
+						byte[] changes = pending.get(key);
+						if(changes != null)
+						{
+							if(data == null)
+								data = new byte[REGION_FILE_BYTES];
+							for(int i = 0; i < CHUNKS_PER_REGION; i++)
+								if(changes[i] != 0)
+									setCode(data, i, changes[i]);
+						}
+					}
+					
+					if(data != null)
+						visitRegion(rx, rz, data, minX, maxX, minZ, maxZ,
+							visitor);
+				}
+		}
+	}
+	
+	private static void visitRegion(int rx, int rz, byte[] data, int minX,
+		int maxX, int minZ, int maxZ, Visitor visitor)
+	{
+		int baseX = rx << REGION_SHIFT;
+		int baseZ = rz << REGION_SHIFT;
+		int fromX = Math.max(minX, baseX);
+		int toX = Math.min(maxX, baseX + REGION_SIZE - 1);
+		int fromZ = Math.max(minZ, baseZ);
+		int toZ = Math.min(maxZ, baseZ + REGION_SIZE - 1);
+		
+		for(int z = fromZ; z <= toZ; z++)
+			for(int x = fromX; x <= toX; x++)
+			{
+				ChunkType type = ChunkType.of(getCode(data, getIndex(x, z)));
+				if(type != null)
+					visitor.visit(x, z, type);
+			}
+	}
+	
+	private byte[] readRegion(long key)
+	{
+		Path file = getRegionFile(key);
+		if(!Files.exists(file))
+			return null;
+		
+		try(FileChannel channel = FileChannel.open(file))
+		{
+			return readFully(channel);
+			
+		}catch(IOException e)
+		{
+			e.printStackTrace();
+			return null;
+		}
+	}
+	
+	/**
+	 * Drops all pending changes and deletes all region files as well as any
+	 * legacy files that haven't been imported yet.
+	 */
+	public void deleteAll()
+	{
+		synchronized(fileLock)
+		{
+			synchronized(pendingLock)
+			{
+				pending.clear();
+				pendingCount = 0;
+			}
+			
+			try
+			{
+				if(Files.isDirectory(regionDir))
+				{
+					try(DirectoryStream<Path> files =
+						Files.newDirectoryStream(regionDir))
+					{
+						for(Path file : files)
+							Files.delete(file);
+					}
+					Files.delete(regionDir);
+				}
+				
+				for(String legacyFile : LEGACY_FILES)
+					Files.deleteIfExists(baseDir.resolve(legacyFile));
+				
+			}catch(IOException e)
+			{
+				e.printStackTrace();
+			}
+			
+			legacyChecked = true;
+		}
+	}
+	
+	private void migrateLegacyFiles() throws IOException
+	{
+		if(legacyChecked)
+			return;
+		legacyChecked = true;
+		
+		Long2ObjectOpenHashMap<byte[]> imported =
+			new Long2ObjectOpenHashMap<>();
+		boolean found = false;
+		for(int i = 0; i < LEGACY_FILES.length; i++)
+		{
+			Path file = baseDir.resolve(LEGACY_FILES[i]);
+			if(!Files.exists(file))
+				continue;
+			
+			found = true;
+			byte code = (byte)LEGACY_TYPES[i].code;
+			try(BufferedReader r =
+				Files.newBufferedReader(file, StandardCharsets.UTF_8))
+			{
+				String line;
+				while((line = r.readLine()) != null)
+				{
+					long pos = parseLegacyLine(line);
+					if(pos == Long.MAX_VALUE)
+						continue;
+					
+					int x = ChunkPos.getX(pos);
+					int z = ChunkPos.getZ(pos);
+					long key =
+						ChunkPos.pack(x >> REGION_SHIFT, z >> REGION_SHIFT);
+					byte[] region = imported.computeIfAbsent(key,
+						k -> new byte[CHUNKS_PER_REGION]);
+					region[getIndex(x, z)] = code;
+				}
+			}
+		}
+		
+		if(!found)
+			return;
+		
+		// anything already in region files is newer than the legacy files
+		for(Long2ObjectMap.Entry<byte[]> e : imported.long2ObjectEntrySet())
+		{
+			byte[] existing = readRegion(e.getLongKey());
+			if(existing != null)
+				for(int i = 0; i < CHUNKS_PER_REGION; i++)
+					if(getCode(existing, i) != 0)
+						e.getValue()[i] = 0;
+			
+			writeRegion(e.getLongKey(), e.getValue());
+		}
+		
+		for(String legacyFile : LEGACY_FILES)
+		{
+			Path file = baseDir.resolve(legacyFile);
+			if(Files.exists(file))
+				Files.move(file, file.resolveSibling(legacyFile + ".migrated"),
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	/**
+	 * Parses lines like <code>x,z</code>, <code>[x, z]</code> or
+	 * <code>ChunkPos{x=x, z=z}</code>. Returns {@link Long#MAX_VALUE} if the
+	 * line doesn't contain two numbers.
+	 */
+	private static long parseLegacyLine(String line)
+	{
+		Matcher matcher = CHUNK_COORD_PATTERN.matcher(line);
+		try
+		{
+			if(!matcher.find())
+				return Long.MAX_VALUE;
+			int x = Integer.parseInt(matcher.group());
+			
+			if(!matcher.find())
+				return Long.MAX_VALUE;
+			int z = Integer.parseInt(matcher.group());
+			
+			return ChunkPos.pack(x, z);
+			
+		}catch(NumberFormatException e)
+		{
+			return Long.MAX_VALUE;
+		}
+	}
+	
+	private Path getRegionFile(long key)
+	{
+		return regionDir.resolve(
+			"r." + ChunkPos.getX(key) + "." + ChunkPos.getZ(key) + ".nnc");
+	}
+	
+	private static byte[] readFully(FileChannel channel) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(REGION_FILE_BYTES);
+		while(buffer.hasRemaining() && channel.read(buffer) >= 0)
+		{}
+		
+		// a short file is padded with unknown chunks
+		return buffer.array();
+	}
+	
+	private static int getIndex(int chunkX, int chunkZ)
+	{
+		return (chunkZ & REGION_SIZE - 1) << REGION_SHIFT
+			| chunkX & REGION_SIZE - 1;
+	}
+	
+	private static int getCode(byte[] data, int index)
+	{
+		return data[index >> 1] >> ((index & 1) << 2) & 0xF;
+	}
+	
+	private static void setCode(byte[] data, int index, int code)
+	{
+		int shift = (index & 1) << 2;
+		data[index >> 1] =
+			(byte)(data[index >> 1] & ~(0xF << shift) | code << shift);
+	}
+	
+	public enum ChunkType
+	{
+		NEW(1),
+		OLD(2),
+		BLOCK_EXPLOIT(3),
+		BEING_UPDATED(4),
+		OLD_GENERATION(5);
+		
+		private static final ChunkType[] BY_CODE =
+			{null, NEW, OLD, BLOCK_EXPLOIT, BEING_UPDATED, OLD_GENERATION};
+		
+		private final int code;
+		
+		private ChunkType(int code)
+		{
+			this.code = code;
+		}
+		
+		private static ChunkType of(int code)
+		{
+			return code < BY_CODE.length ? BY_CODE[code] : null;
+		}
+	}
+	
+	@FunctionalInterface
+	public interface Visitor
+	{
+		public void visit(int chunkX, int chunkZ, ChunkType type);
+	}
+}
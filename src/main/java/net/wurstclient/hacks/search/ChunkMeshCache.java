@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2014-2026 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.hacks.search;
+
+import com.mojang.blaze3d.PrimitiveTopology;
+import com.mojang.blaze3d.vertex.DefaultVertexFormat;
+import com.mojang.blaze3d.vertex.PoseStack;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.ChunkPos;
+import net.wurstclient.WurstRenderLayers;
+import net.wurstclient.settings.ChunkAreaSetting;
+import net.wurstclient.util.BlockVertexCompiler;
+import net.wurstclient.util.EasyVertexBuffer;
+import net.wurstclient.util.RegionPos;
+import net.wurstclient.util.RenderUtils;
+
+/**
+ * Keeps Search's filled highlight mesh as one vertex buffer per chunk, so
+ * that a change in the matches only recompiles and re-uploads the chunks it
+ * touched.
+ *
+ * <p>
+ * {@link #compile(LongOpenHashSet, Long2ObjectOpenHashMap)} runs on a worker
+ * thread and compares the new matches against a snapshot of what is currently
+ * uploaded. Everything else must be called on the render thread.
+ */
+public final class ChunkMeshCache
+{
+	private final Long2ObjectOpenHashMap<ChunkMesh> meshes =
+		new Long2ObjectOpenHashMap<>();
+	
+	/**
+	 * Returns the blocks that each uploaded chunk mesh was built from. The
+	 * sets are never modified afterwards, so the snapshot can be handed to
+	 * {@link #compile(LongOpenHashSet, Long2ObjectOpenHashMap)}.
+	 */
+	public Long2ObjectOpenHashMap<LongOpenHashSet> snapshotBlocks()
+	{
+		Long2ObjectOpenHashMap<LongOpenHashSet> blocks =
+			new Long2ObjectOpenHashMap<>(meshes.size());
+		for(Long2ObjectMap.Entry<ChunkMesh> entry : meshes
+			.long2ObjectEntrySet())
+			blocks.put(entry.getLongKey(), entry.getValue().blocks());
+		
+		return blocks;
+	}
+	
+	/**
+	 * Meshes the chunks whose matches differ from <code>previous</code>, plus
+	 * their horizontal neighbors, since faces on a chunk's edge depend on the
+	 * blocks next to it. Thread-safe.
+	 */
+	public static Update compile(LongOpenHashSet matchingBlocks,
+		Long2ObjectOpenHashMap<LongOpenHashSet> previous)
+	{
+		Long2ObjectOpenHashMap<LongOpenHashSet> byChunk =
+			new Long2ObjectOpenHashMap<>();
+		LongIterator iterator = matchingBlocks.iterator();
+		while(iterator.hasNext())
+		{
+			long pos = iterator.nextLong();
+			long chunkKey = ChunkPos.pack(BlockPos.getX(pos) >> 4,
+				BlockPos.getZ(pos) >> 4);
+			byChunk.computeIfAbsent(chunkKey, k -> new LongOpenHashSet())
+				.add(pos);
+		}
+		
+		LongOpenHashSet changed = new LongOpenHashSet();
+		for(Long2ObjectMap.Entry<LongOpenHashSet> entry : byChunk
+			.long2ObjectEntrySet())
+			if(!entry.getValue().equals(previous.get(entry.getLongKey())))
+				changed.add(entry.getLongKey());
+		
+		LongArrayList removed = new LongArrayList();
+		LongIterator previousIterator = previous.keySet().iterator();
+		while(previousIterator.hasNext())
+		{
+			long chunkKey = previousIterator.nextLong();
+			if(byChunk.containsKey(chunkKey))
+				continue;
+			
+			changed.add(chunkKey);
+			removed.add(chunkKey);
+		}
+		
+		LongOpenHashSet dirty = new LongOpenHashSet(changed);
+		LongIterator changedIterator = changed.iterator();
+		while(changedIterator.hasNext())
+		{
+			long chunkKey = changedIterator.nextLong();
+			int x = ChunkPos.getX(chunkKey);
+			int z = ChunkPos.getZ(chunkKey);
+			dirty.add(ChunkPos.pack(x - 1, z));
+			dirty.add(ChunkPos.pack(x + 1, z));
+			dirty.add(ChunkPos.pack(x, z - 1));
+			dirty.add(ChunkPos.pack(x, z + 1));
+		}
+		
+		Long2ObjectOpenHashMap<CompiledChunk> rebuilt =
+			new Long2ObjectOpenHashMap<>();
+		LongIterator dirtyIterator = dirty.iterator();
+		while(dirtyIterator.hasNext())
+		{
+			long chunkKey = dirtyIterator.nextLong();
+			LongOpenHashSet blocks = byChunk.get(chunkKey);
+			if(blocks == null)
+				continue;
+			
+			rebuilt.put(chunkKey, new CompiledChunk(blocks,
+				BlockVertexCompiler.compileGreedy(blocks, matchingBlocks)));
+		}
+		
+		return new Update(rebuilt, removed);
+	}
+	
+	/**
+	 * Uploads the chunks that {@link #compile(LongOpenHashSet,
+	 * Long2ObjectOpenHashMap)} rebuilt and closes the ones it removed.
+	 */
+	public void apply(Update update)
+	{
+		for(int i = 0; i < update.removed.size(); i++)
+			close(meshes.remove(update.removed.getLong(i)));
+		
+		for(Long2ObjectMap.Entry<CompiledChunk> entry : update.rebuilt
+			.long2ObjectEntrySet())
+		{
+			long chunkKey = entry.getLongKey();
+			CompiledChunk compiled = entry.getValue();
+			RegionPos region = RegionPos.of(new ChunkPos(
+				ChunkPos.getX(chunkKey), ChunkPos.getZ(chunkKey)));
+			BlockVertexCompiler.Mesh mesh = compiled.mesh();
+			close(meshes.put(chunkKey, new ChunkMesh(compiled.blocks(),
+				upload(mesh, region), region, mesh.faces(),
+				mesh.getQuadCount())));
+		}
+	}
+	
+	/**
+	 * Closes the buffers of chunks that left the search area right away,
+	 * instead of waiting for the next rebuild.
+	 */
+	public void closeOutOfRange(ChunkAreaSetting area)
+	{
+		meshes.long2ObjectEntrySet().removeIf(entry -> {
+			long chunkKey = entry.getLongKey();
+			if(area.isInRange(new ChunkPos(ChunkPos.getX(chunkKey),
+				ChunkPos.getZ(chunkKey))))
+				return false;
+			
+			close(entry.getValue());
+			return true;
+		});
+	}
+	
+	public void draw(PoseStack matrixStack, float[] rgb, float alpha)
+	{
+		for(ChunkMesh mesh : meshes.values())
+		{
+			if(mesh.buffer() == null)
+				continue;
+			
+			matrixStack.pushPose();
+			RenderUtils.applyRegionalRenderOffset(matrixStack, mesh.region());
+			mesh.buffer().draw(matrixStack, WurstRenderLayers.ESP_QUADS, rgb,
+				alpha);
+			matrixStack.popPose();
+		}
+	}
+	
+	public void clear()
+	{
+		meshes.values().forEach(ChunkMeshCache::close);
+		meshes.clear();
+	}
+	
+	public boolean isEmpty()
+	{
+		return meshes.isEmpty();
+	}
+	
+	public int getChunkCount()
+	{
+		return meshes.size();
+	}
+	
+	public int getFaceCount()
+	{
+		int faces = 0;
+		for(ChunkMesh mesh : meshes.values())
+			faces += mesh.faces();
+		
+		return faces;
+	}
+	
+	public int getQuadCount()
+	{
+		int quads = 0;
+		for(ChunkMesh mesh : meshes.values())
+			quads += mesh.quads();
+		
+		return quads;
+	}
+	
+	private static EasyVertexBuffer upload(BlockVertexCompiler.Mesh mesh,
+		RegionPos region)
+	{
+		IntArrayList vertices = mesh.vertices();
+		if(vertices.isEmpty())
+			return null;
+		
+		return EasyVertexBuffer.createAndUpload(PrimitiveTopology.QUADS,
+			DefaultVertexFormat.POSITION_COLOR, buffer -> {
+				for(int i = 0; i < vertices.size(); i += 3)
+					buffer.addVertex(vertices.getInt(i) - region.x(),
+						vertices.getInt(i + 1),
+						vertices.getInt(i + 2) - region.z())
+						.setColor(0xFFFFFFFF);
+			});
+	}
+	
+	private static void close(ChunkMesh mesh)
+	{
+		if(mesh != null && mesh.buffer() != null)
+			mesh.buffer().close();
+	}
+	
+	private record ChunkMesh(LongOpenHashSet blocks, EasyVertexBuffer buffer,
+		RegionPos region, int faces, int quads)
+	{}
+	
+	private record CompiledChunk(LongOpenHashSet blocks,
+		BlockVertexCompiler.Mesh mesh)
+	{}
+	
+	/**
+	 * The result of {@link ChunkMeshCache#compile(LongOpenHashSet,
+	 * Long2ObjectOpenHashMap)}, ready to be applied.
+	 */
+	public static final class Update
+	{
+		private final Long2ObjectOpenHashMap<CompiledChunk> rebuilt;
+		private final LongArrayList removed;
+		
+		private Update(Long2ObjectOpenHashMap<CompiledChunk> rebuilt,
+			LongArrayList removed)
+		{
+			this.rebuilt = rebuilt;
+			this.removed = removed;
+		}
+	}
+}
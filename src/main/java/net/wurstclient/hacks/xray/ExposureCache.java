@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2014-2026 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.hacks.xray;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.wurstclient.WurstClient;
+import net.wurstclient.util.BlockUtils;
+
+/**
+ * Remembers which blocks of each chunk section touch at least one block that
+ * isn't an opaque full cube, as one 4096-bit mask per section.
+ *
+ * <p>
+ * Masks are built on first use by whichever thread asks, which is usually a
+ * chunk meshing or chunk search worker, and are reused until a block or chunk
+ * update touches the section's column or one of its neighbors. Invalidations
+ * come from {@link net.wurstclient.mixin.ClientPacketListenerMixin} right after
+ * the client has applied the packet, so that no mask outlives the blocks it
+ * was built from.
+ */
+public final class ExposureCache
+{
+	private static final int PRUNE_INTERVAL_TICKS = 100;
+	
+	private final ConcurrentHashMap<Long, Column> columns =
+		new ConcurrentHashMap<>();
+	private final ThreadLocal<BlockPos.MutableBlockPos> fallbackPos =
+		ThreadLocal.withInitial(BlockPos.MutableBlockPos::new);
+	private ClientLevel level;
+	private int ticksUntilPrune;
+	
+	/**
+	 * Forgets the masks of the given block's column and of the neighbors it
+	 * borders. Called after the client has applied the block update.
+	 */
+	public void afterUpdateBlock(BlockPos pos)
+	{
+		int chunkX = pos.getX() >> 4;
+		int chunkZ = pos.getZ() >> 4;
+		invalidate(chunkX, chunkZ);
+		
+		// a block on the column's edge also changes its neighbors' masks
+		int localX = pos.getX() & 15;
+		int localZ = pos.getZ() & 15;
+		if(localX == 0)
+			invalidate(chunkX - 1, chunkZ);
+		else if(localX == 15)
+			invalidate(chunkX + 1, chunkZ);
+		if(localZ == 0)
+			invalidate(chunkX, chunkZ - 1);
+		else if(localZ == 15)
+			invalidate(chunkX, chunkZ + 1);
+	}
+	
+	/**
+	 * Forgets the masks of the given column and its four neighbors. Called
+	 * after the client has applied a section update or (re)loaded the chunk,
+	 * either of which may touch any edge.
+	 */
+	public void afterUpdateChunk(int chunkX, int chunkZ)
+	{
+		invalidate(chunkX, chunkZ);
+		invalidate(chunkX - 1, chunkZ);
+		invalidate(chunkX + 1, chunkZ);
+		invalidate(chunkX, chunkZ - 1);
+		invalidate(chunkX, chunkZ + 1);
+	}
+	
+	/**
+	 * Forgets unloaded chunks, or everything if the level changed. Must be
+	 * called on the client thread, once per tick.
+	 */
+	public void update()
+	{
+		ClientLevel currentLevel = WurstClient.MC.level;
+		if(currentLevel != level)
+		{
+			clear();
+			return;
+		}
+		
+		if(--ticksUntilPrune > 0 || level == null)
+			return;
+		
+		ticksUntilPrune = PRUNE_INTERVAL_TICKS;
+		columns.keySet().removeIf(k -> !level
+			.hasChunk(ChunkPos.getX(k), ChunkPos.getZ(k)));
+	}
+	
+	public void clear()
+	{
+		columns.clear();
+		level = WurstClient.MC.level;
+		ticksUntilPrune = PRUNE_INTERVAL_TICKS;
+	}
+	
+	/**
+	 * Returns whether at least one of the six blocks next to the given
+	 * position is not an opaque full cube. Thread-safe.
+	 */
+	public boolean isExposed(BlockPos pos)
+	{
+		ClientLevel currentLevel = WurstClient.MC.level;
+		if(currentLevel == null)
+			return false;
+		
+		int chunkX = pos.getX() >> 4;
+		int chunkZ = pos.getZ() >> 4;
+		if(!currentLevel.hasChunk(chunkX, chunkZ))
+			return isExposedUncached(pos);
+		
+		long key = ChunkPos.pack(chunkX, chunkZ);
+		Column column = columns.get(key);
+		if(column == null)
+		{
+			Column newColumn =
+				new Column(currentLevel.getChunk(chunkX, chunkZ));
+			column = columns.putIfAbsent(key, newColumn);
+			if(column == null)
+				column = newColumn;
+		}
+		
+		int sectionIndex =
+			SectionPos.blockToSectionCoord(pos.getY()) - column.minSectionY;
+		if(sectionIndex < 0 || sectionIndex >= column.masks.length())
+			return isExposedUncached(pos);
+		
+		long[] mask = column.masks.get(sectionIndex);
+		if(mask == null)
+		{
+			mask = buildMask(currentLevel, chunkX,
+				column.minSectionY + sectionIndex, chunkZ);
+			column.masks.compareAndSet(sectionIndex, null, mask);
+		}
+		
+		int bit = (pos.getY() & 15) << 8 | (pos.getZ() & 15) << 4
+			| pos.getX() & 15;
+		return (mask[bit >>> 6] & 1L << bit) != 0;
+	}
+	
+	private boolean isExposedUncached(BlockPos pos)
+	{
+		BlockPos.MutableBlockPos mutablePos = fallbackPos.get();
+		for(Direction direction : Direction.values())
+			if(!BlockUtils
+				.isOpaqueFullCube(mutablePos.setWithOffset(pos, direction)))
+				return true;
+		
+		return false;
+	}
+	
+	/**
+	 * Builds the mask of one section from its own blocks plus the adjacent
+	 * layer of each of its six neighbors, reading each block state once
+	 * instead of once per neighboring candidate.
+	 */
+	private static long[] buildMask(ClientLevel level, int chunkX,
+		int sectionY, int chunkZ)
+	{
+		// opacity of the section plus a one block border, indexed
+		// (y + 1) * 324 + (z + 1) * 18 + (x + 1)
+		boolean[] opaque = new boolean[18 * 18 * 18];
+		
+		LevelChunkSection center = getSection(level, chunkX, sectionY, chunkZ);
+		if(center != null)
+			for(int y = 0; y < 16; y++)
+				for(int z = 0; z < 16; z++)
+					for(int x = 0; x < 16; x++)
+						opaque[paddedIndex(x, y, z)] =
+							isOpaque(center.getBlockState(x, y, z));
+		
+		fillBorder(opaque, level, chunkX - 1, sectionY, chunkZ, Direction.WEST);
+		fillBorder(opaque, level, chunkX + 1, sectionY, chunkZ, Direction.EAST);
+		fillBorder(opaque, level, chunkX, sectionY - 1, chunkZ, Direction.DOWN);
+		fillBorder(opaque, level, chunkX, sectionY + 1, chunkZ, Direction.UP);
+		fillBorder(opaque, level, chunkX, sectionY, chunkZ - 1,
+			Direction.NORTH);
+		fillBorder(opaque, level, chunkX, sectionY, chunkZ + 1,
+			Direction.SOUTH);
+		
+		long[] mask = new long[64];
+		for(int y = 0; y < 16; y++)
+			for(int z = 0; z < 16; z++)
+				for(int x = 0; x < 16; x++)
+				{
+					int i = paddedIndex(x, y, z);
+					if(opaque[i - 1] && opaque[i + 1] && opaque[i - 18]
+						&& opaque[i + 18] && opaque[i - 324] && opaque[i + 324])
+						continue;
+					
+					int bit = y << 8 | z << 4 | x;
+					mask[bit >>> 6] |= 1L << bit;
+				}
+		
+		return mask;
+	}
+	
+	/**
+	 * Copies the layer of the given neighbor section that touches the center
+	 * section into the border of <code>opaque</code>.
+	 */
+	private static void fillBorder(boolean[] opaque, ClientLevel level,
+		int chunkX, int sectionY, int chunkZ, Direction side)
+	{
+		LevelChunkSection section = getSection(level, chunkX, sectionY, chunkZ);
+		if(section == null)
+			return;
+		
+		for(int a = 0; a < 16; a++)
+			for(int b = 0; b < 16; b++)
+			{
+				int i;
+				BlockState state;
+				switch(side)
+				{
+					case WEST ->
+					{
+						i = paddedIndex(-1, a, b);
+						state = section.getBlockState(15, a, b);
+					}
+					case EAST ->
+					{
+						i = paddedIndex(16, a, b);
+						state = section.getBlockState(0, a, b);
+					}
+					case DOWN ->
+					{
+						i = paddedIndex(a, -1, b);
+						state = section.getBlockState(a, 15, b);
+					}
+					case UP ->
+					{
+						i = paddedIndex(a, 16, b);
+						state = section.getBlockState(a, 0, b);
+					}
+					case NORTH ->
+					{
+						i = paddedIndex(a, b, -1);
+						state = section.getBlockState(a, b, 15);
+					}
+					default ->
+					{
+						i = paddedIndex(a, b, 16);
+						state = section.getBlockState(a, b, 0);
+					}
+				}
+				opaque[i] = isOpaque(state);
+			}
+	}
+	
+	/**
+	 * Returns <code>null</code> for unloaded chunks, sections outside of the
+	 * world and sections that only contain air, all of which count as not
+	 * opaque.
+	 */
+	private static LevelChunkSection getSection(ClientLevel level, int chunkX,
+		int sectionY, int chunkZ)
+	{
+		if(!level.hasChunk(chunkX, chunkZ))
+			return null;
+		
+		LevelChunk chunk = level.getChunk(chunkX, chunkZ);
+		LevelChunkSection[] sections = chunk.getSections();
+		int index =
+			sectionY - SectionPos.blockToSectionCoord(chunk.getMinY());
+		if(index < 0 || index >= sections.length)
+			return null;
+		
+		LevelChunkSection section = sections[index];
+		if(section == null || section.hasOnlyAir())
+			return null;
+		
+		return section;
+	}
+	
+	private static boolean isOpaque(BlockState state)
+	{
+		return state.isSolidRender();
+	}
+	
+	private static int paddedIndex(int x, int y, int z)
+	{
+		return (y + 1) * 324 + (z + 1) * 18 + x + 1;
+	}
+	
+	/**
+	 * Drops the whole column rather than single masks, so that a mask that a
+	 * worker is still building from the old blocks can only end up in the
+	 * dropped column.
+	 */
+	private void invalidate(int chunkX, int chunkZ)
+	{
+		columns.remove(ChunkPos.pack(chunkX, chunkZ));
+	}
+	
+	private static final class Column
+	{
+		private final int minSectionY;
+		private final AtomicReferenceArray<long[]> masks;
+		
+		private Column(LevelChunk chunk)
+		{
+			minSectionY = SectionPos.blockToSectionCoord(chunk.getMinY());
+			masks = new AtomicReferenceArray<>(chunk.getSections().length);
+		}
+	}
+}
@@ -0,0 +1,988 @@
+/*
+ * Copyright (c) 2014-2026 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.mapa.map;
+
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.world.level.ChunkPos;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persistent column cache for Mapa, split into region tiles of 32x32 chunks.
+ * Each region keeps its columns in primitive per-chunk arrays, is loaded from
+ * its own gzip-compressed file the first time it's accessed and is evicted in
+ * LRU order once too many chunks are resident. Only regions that changed are
+ * written back. Regions under the visible part of the world map can be pinned
+ * so that they aren't evicted while its tiles are being rasterized.
+ *
+ * <p>
+ * All methods must be called from the render thread. File access happens on
+ * the given single-threaded executor, so writes and loads of the same region
+ * always run in submission order.
+ */
+final class ColumnRegionCache
+{
+	static final long MISSING = -1L;
+	
+	private static final int LEGACY_MAGIC = 0x4D415041; // MAPA
+	private static final int LEGACY_VERSION = 25;
+	private static final int REGION_MAGIC = 0x4D415052; // MAPR
+	private static final int REGION_VERSION = 1;
+	private static final int REGION_CHUNK_BITS = 5;
+	private static final int REGION_BLOCK_BITS = REGION_CHUNK_BITS + 4;
+	private static final int CHUNKS_PER_REGION = 1 << (REGION_CHUNK_BITS * 2);
+	private static final int MAX_RESIDENT_CHUNKS = 16384;
+	private static final int MAX_RESIDENT_REGIONS = 256;
+	private static final long SAVE_INTERVAL_TICKS = 120;
+	
+	private final ExecutorService ioExecutor;
+	private final Long2ObjectOpenHashMap<Region> regions =
+		new Long2ObjectOpenHashMap<>();
+	private final ConcurrentLinkedQueue<LoadedRegion> loadedRegions =
+		new ConcurrentLinkedQueue<>();
+	private final Long2LongOpenHashMap evictedVersions =
+		new Long2LongOpenHashMap();
+	private final AtomicInteger pendingWrites = new AtomicInteger();
+	private Path folder;
+	private long accessClock;
+	private long version;
+	private int residentChunks;
+	private int knownColumns;
+	private long lastSaveTick = Long.MIN_VALUE;
+	private Region lastRegion;
+	private int pinMinRegionX = 1;
+	private int pinMinRegionZ = 1;
+	private int pinMaxRegionX;
+	private int pinMaxRegionZ;
+	
+	ColumnRegionCache(ExecutorService ioExecutor)
+	{
+		this.ioExecutor = ioExecutor;
+	}
+	
+	/**
+	 * Switches to the given cache folder. Dirty regions of the previous folder
+	 * are written back first. If a cache file from before the region format
+	 * exists, it's split into region files on the IO thread.
+	 */
+	void open(Path folder, Path legacyFile)
+	{
+		flush();
+		dropResidentRegions();
+		this.folder = folder;
+		
+		if(legacyFile != null && Files.exists(legacyFile))
+		{
+			ioExecutor.submit(() -> migrateLegacyCache(legacyFile, folder));
+		}
+	}
+	
+	/**
+	 * Forgets every cached column, including the ones on disk.
+	 */
+	void clear()
+	{
+		dropResidentRegions();
+		Path toDelete = folder;
+		if(toDelete != null)
+		{
+			ioExecutor.submit(() -> deleteRegionFiles(toDelete));
+		}
+	}
+	
+	/**
+	 * Returns the packed column at the given position, or {@link #MISSING}.
+	 * Asking for a region that isn't resident starts loading it.
+	 */
+	long get(int x, int z, boolean underground)
+	{
+		Region region = getRegion(x, z, underground);
+		if(region == null)
+		{
+			return MISSING;
+		}
+		ColumnChunk chunk = region.chunks[chunkIndex(x, z)];
+		if(chunk == null)
+		{
+			return MISSING;
+		}
+		int i = columnIndex(x, z);
+		if(!chunk.isKnown(i))
+		{
+			return MISSING;
+		}
+		return pack(chunk.colors[i], chunk.ys[i], chunk.flags[i]);
+	}
+	
+	boolean contains(int x, int z, boolean underground)
+	{
+		return get(x, z, underground) != MISSING;
+	}
+	
+	/**
+	 * Stores a column and returns true if anything changed.
+	 */
+	boolean put(int x, int z, boolean underground, int color, int y,
+		int flags)
+	{
+		Region region = getRegion(x, z, underground);
+		if(region == null)
+		{
+			return false;
+		}
+		int chunkIndex = chunkIndex(x, z);
+		ColumnChunk chunk = region.chunks[chunkIndex];
+		if(chunk == null)
+		{
+			chunk = new ColumnChunk();
+			region.chunks[chunkIndex] = chunk;
+			region.chunkCount++;
+			residentChunks++;
+		}
+		
+		int i = columnIndex(x, z);
+		boolean known = chunk.isKnown(i);
+		if(known && chunk.colors[i] == color && chunk.ys[i] == (short)y
+			&& chunk.flags[i] == (byte)flags)
+		{
+			return false;
+		}
+		if(!known)
+		{
+			chunk.setKnown(i);
+			region.knownColumns++;
+			knownColumns++;
+		}
+		chunk.setColor(i, color);
+		chunk.ys[i] = (short)y;
+		chunk.flags[i] = (byte)flags;
+		region.dirty = true;
+		region.version = ++version;
+		evictIfNeeded(region);
+		return true;
+	}
+	
+	/**
+	 * Captures the surface colors of all cached chunks in the given chunk
+	 * range without copying them. Unknown columns read as 0. Regions in range
+	 * that aren't resident start loading.
+	 */
+	SurfaceSnapshot snapshotSurface(int minChunkX, int minChunkZ,
+		int maxChunkX, int maxChunkZ)
+	{
+		Long2ObjectOpenHashMap<int[]> colors = new Long2ObjectOpenHashMap<>();
+		for(int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++)
+		{
+			for(int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++)
+			{
+				Region region = getRegion(chunkX << 4, chunkZ << 4, false);
+				if(region == null)
+				{
+					return new SurfaceSnapshot(colors, getSurfaceVersion(
+						minChunkX, minChunkZ, maxChunkX, maxChunkZ));
+				}
+				ColumnChunk chunk = region.chunks[chunkIndex(chunkX << 4,
+					chunkZ << 4)];
+				if(chunk != null)
+				{
+					colors.put(ChunkPos.pack(chunkX, chunkZ), chunk.share());
+				}
+			}
+		}
+		return new SurfaceSnapshot(colors, getSurfaceVersion(minChunkX,
+			minChunkZ, maxChunkX, maxChunkZ));
+	}
+	
+	/**
+	 * Returns a version for the surface in the given chunk range that only
+	 * changes when a column in one of its regions changes. While one of them
+	 * is still loading, it's -1. If one of them hasn't been requested yet, or
+	 * was evicted before it finished loading, it's -2. Unlike
+	 * {@link #snapshotSurface(int, int, int, int)}, this doesn't load anything.
+	 */
+	long getSurfaceVersion(int minChunkX, int minChunkZ, int maxChunkX,
+		int maxChunkZ)
+	{
+		int maxRegionX = maxChunkX >> REGION_CHUNK_BITS;
+		int maxRegionZ = maxChunkZ >> REGION_CHUNK_BITS;
+		long surfaceVersion = 0;
+		boolean loading = false;
+		for(int regionZ = minChunkZ >> REGION_CHUNK_BITS; regionZ <= maxRegionZ;
+			regionZ++)
+		{
+			for(int regionX = minChunkX >> REGION_CHUNK_BITS;
+				regionX <= maxRegionX; regionX++)
+			{
+				long key = regionKey(regionX, regionZ, false);
+				Region region = regions.get(key);
+				if(region != null && !region.loaded)
+				{
+					loading = true;
+					continue;
+				}
+				long regionVersion = region != null ? region.version
+					: evictedVersions.getOrDefault(key, -2);
+				if(regionVersion < 0)
+				{
+					return -2;
+				}
+				surfaceVersion = Math.max(surfaceVersion, regionVersion);
+			}
+		}
+		return loading ? -1 : surfaceVersion;
+	}
+	
+	/**
+	 * Keeps the surface regions in the given chunk range from being evicted,
+	 * even if that means going over the resident limits, until a different
+	 * range is pinned or {@link #unpinSurface()} is called.
+	 */
+	void pinSurface(int minChunkX, int minChunkZ, int maxChunkX,
+		int maxChunkZ)
+	{
+		pinMinRegionX = minChunkX >> REGION_CHUNK_BITS;
+		pinMinRegionZ = minChunkZ >> REGION_CHUNK_BITS;
+		pinMaxRegionX = maxChunkX >> REGION_CHUNK_BITS;
+		pinMaxRegionZ = maxChunkZ >> REGION_CHUNK_BITS;
+	}
+	
+	void unpinSurface()
+	{
+		pinMinRegionX = 1;
+		pinMinRegionZ = 1;
+		pinMaxRegionX = 0;
+		pinMaxRegionZ = 0;
+		evictIfNeeded(null);
+	}
+	
+	/**
+	 * Merges regions that finished loading. Call once per frame before
+	 * sampling.
+	 */
+	void processLoadedRegions()
+	{
+		LoadedRegion loaded;
+		while((loaded = loadedRegions.poll()) != null)
+		{
+			// drop loads of regions that were evicted or dropped since, even
+			// if the same region has been requested again in the meantime
+			Region region = loaded.region();
+			if(regions.get(region.key) != region || region.loaded)
+			{
+				continue;
+			}
+			region.loaded = true;
+			if(loaded.chunks() != null
+				&& mergeMissingColumns(region, loaded.chunks()))
+			{
+				version++;
+			}
+		}
+		evictIfNeeded(null);
+	}
+	
+	/**
+	 * Writes dirty regions in the background, at most every
+	 * {@link #SAVE_INTERVAL_TICKS} ticks and never while the previous round is
+	 * still being written.
+	 */
+	void maybeSave(long tick)
+	{
+		if(folder == null || tick - lastSaveTick < SAVE_INTERVAL_TICKS
+			|| pendingWrites.get() > 0)
+		{
+			return;
+		}
+		lastSaveTick = tick;
+		flush();
+	}
+	
+	/**
+	 * Schedules every dirty region to be written. Since the IO thread runs
+	 * tasks in order, anything loaded later sees these writes.
+	 */
+	void flush()
+	{
+		if(folder == null)
+		{
+			return;
+		}
+		for(Region region : regions.values())
+		{
+			if(region.dirty)
+			{
+				scheduleWrite(region);
+			}
+		}
+	}
+	
+	/**
+	 * Increases whenever a column changes or a region finishes loading.
+	 */
+	long getVersion()
+	{
+		return version;
+	}
+	
+	int getKnownColumnCount()
+	{
+		return knownColumns;
+	}
+	
+	static int unpackColor(long packed)
+	{
+		return (int)packed;
+	}
+	
+	static int unpackY(long packed)
+	{
+		return (short)(packed >>> 32);
+	}
+	
+	static int unpackFlags(long packed)
+	{
+		return (int)(packed >>> 48) & 0xFF;
+	}
+	
+	private static long pack(int color, short y, byte flags)
+	{
+		return (1L << 56) | ((flags & 0xFFL) << 48) | ((y & 0xFFFFL) << 32)
+			| (color & 0xFFFFFFFFL);
+	}
+	
+	private Region getRegion(int x, int z, boolean underground)
+	{
+		if(folder == null)
+		{
+			return null;
+		}
+		int regionX = x >> REGION_BLOCK_BITS;
+		int regionZ = z >> REGION_BLOCK_BITS;
+		long key = regionKey(regionX, regionZ, underground);
+		
+		Region region = lastRegion;
+		if(region == null || region.key != key)
+		{
+			region = regions.get(key);
+			if(region == null)
+			{
+				region = new Region(key, regionX, regionZ, underground);
+				// a region that is read back unchanged keeps its version, so
+				// tiles that already show it aren't rasterized again
+				region.version = evictedVersions.containsKey(key)
+					? evictedVersions.remove(key) : ++version;
+				regions.put(key, region);
+				requestLoad(region);
+				evictIfNeeded(region);
+			}
+			lastRegion = region;
+		}
+		region.lastAccess = ++accessClock;
+		return region;
+	}
+	
+	private void requestLoad(Region region)
+	{
+		Path path = getRegionPath(folder, region.regionX, region.regionZ,
+			region.underground);
+		ioExecutor.submit(() -> loadedRegions
+			.add(new LoadedRegion(region, readRegion(path))));
+	}
+	
+	private void evictIfNeeded(Region keep)
+	{
+		while(residentChunks > MAX_RESIDENT_CHUNKS
+			|| regions.size() > MAX_RESIDENT_REGIONS)
+		{
+			Region oldest = null;
+			for(Region region : regions.values())
+			{
+				if(region != keep && !isPinned(region) && (oldest == null
+					|| region.lastAccess < oldest.lastAccess))
+				{
+					oldest = region;
+				}
+			}
+			if(oldest == null)
+			{
+				return;
+			}
+			
+			if(oldest.dirty)
+			{
+				scheduleWrite(oldest);
+			}
+			if(oldest.loaded)
+			{
+				evictedVersions.put(oldest.key, oldest.version);
+			}
+			regions.remove(oldest.key);
+			residentChunks -= oldest.chunkCount;
+			knownColumns -= oldest.knownColumns;
+			if(lastRegion == oldest)
+			{
+				lastRegion = null;
+			}
+		}
+	}
+	
+	private boolean isPinned(Region region)
+	{
+		return !region.underground && region.regionX >= pinMinRegionX
+			&& region.regionX <= pinMaxRegionX
+			&& region.regionZ >= pinMinRegionZ
+			&& region.regionZ <= pinMaxRegionZ;
+	}
+	
+	private void scheduleWrite(Region region)
+	{
+		ColumnChunk[] chunks = new ColumnChunk[CHUNKS_PER_REGION];
+		for(int i = 0; i < CHUNKS_PER_REGION; i++)
+		{
+			if(region.chunks[i] != null)
+			{
+				chunks[i] = region.chunks[i].copy();
+			}
+		}
+		region.dirty = false;
+		
+		// a region that hasn't finished loading only holds new columns, so the
+		// old ones have to be read back before the file is replaced
+		boolean mergeWithFile = !region.loaded;
+		Path path = getRegionPath(folder, region.regionX, region.regionZ,
+			region.underground);
+		pendingWrites.incrementAndGet();
+		ioExecutor.submit(() -> {
+			try
+			{
+				if(mergeWithFile)
+				{
+					ColumnChunk[] onDisk = readRegion(path);
+					if(onDisk != null)
+					{
+						mergeMissingColumns(chunks, onDisk);
+					}
+				}
+				writeRegion(path, chunks);
+			}finally
+			{
+				pendingWrites.decrementAndGet();
+			}
+		});
+	}
+	
+	private void dropResidentRegions()
+	{
+		regions.clear();
+		loadedRegions.clear();
+		evictedVersions.clear();
+		residentChunks = 0;
+		knownColumns = 0;
+		lastRegion = null;
+		version++;
+	}
+	
+	/**
+	 * Copies columns that the region doesn't know yet from the given chunks.
+	 * Columns already in the region are newer and are kept.
+	 */
+	private boolean mergeMissingColumns(Region region, ColumnChunk[] from)
+	{
+		boolean changed = false;
+		for(int c = 0; c < CHUNKS_PER_REGION; c++)
+		{
+			ColumnChunk source = from[c];
+			if(source == null)
+			{
+				continue;
+			}
+			ColumnChunk target = region.chunks[c];
+			if(target == null)
+			{
+				region.chunks[c] = source;
+				region.chunkCount++;
+				region.knownColumns += source.knownCount;
+				residentChunks++;
+				knownColumns += source.knownCount;
+				changed = true;
+				continue;
+			}
+			int added = target.addMissing(source);
+			region.knownColumns += added;
+			knownColumns += added;
+			changed |= added > 0;
+		}
+		return changed;
+	}
+	
+	private static void mergeMissingColumns(ColumnChunk[] into,
+		ColumnChunk[] from)
+	{
+		for(int c = 0; c < CHUNKS_PER_REGION; c++)
+		{
+			if(from[c] == null)
+			{
+				continue;
+			}
+			if(into[c] == null)
+			{
+				into[c] = from[c];
+			}else
+			{
+				into[c].addMissing(from[c]);
+			}
+		}
+	}
+	
+	private static ColumnChunk[] readRegion(Path path)
+	{
+		if(Files.notExists(path))
+		{
+			return null;
+		}
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(
+			new GZIPInputStream(Files.newInputStream(path)))))
+		{
+			if(in.readInt() != REGION_MAGIC
+				|| in.readInt() != REGION_VERSION)
+			{
+				return null;
+			}
+			ColumnChunk[] chunks = new ColumnChunk[CHUNKS_PER_REGION];
+			int count = in.readInt();
+			for(int c = 0; c < count; c++)
+			{
+				int index = in.readUnsignedShort();
+				if(index >= CHUNKS_PER_REGION)
+				{
+					return null;
+				}
+				ColumnChunk chunk = new ColumnChunk();
+				for(int w = 0; w < chunk.known.length; w++)
+				{
+					chunk.known[w] = in.readLong();
+					chunk.knownCount += Long.bitCount(chunk.known[w]);
+				}
+				for(int i = 0; i < 256; i++)
+				{
+					if(!chunk.isKnown(i))
+					{
+						continue;
+					}
+					chunk.colors[i] = in.readInt();
+					chunk.ys[i] = in.readShort();
+					chunk.flags[i] = in.readByte();
+				}
+				chunks[index] = chunk;
+			}
+			return chunks;
+		}catch(IOException ignored)
+		{
+			return null;
+		}
+	}
+	
+	/**
+	 * Returns true if every column that is known in <code>expected</code> is
+	 * also known in <code>chunks</code>.
+	 */
+	private static boolean containsColumns(ColumnChunk[] chunks,
+		ColumnChunk[] expected)
+	{
+		if(chunks == null)
+		{
+			return false;
+		}
+		for(int c = 0; c < CHUNKS_PER_REGION; c++)
+		{
+			if(expected[c] == null)
+			{
+				continue;
+			}
+			if(chunks[c] == null)
+			{
+				return false;
+			}
+			for(int i = 0; i < 256; i++)
+			{
+				if(expected[c].isKnown(i) && !chunks[c].isKnown(i))
+				{
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Writes the given chunks to the region file, or deletes it if none of
+	 * them know any columns. Returns false if that failed.
+	 */
+	private static boolean writeRegion(Path path, ColumnChunk[] chunks)
+	{
+		int count = 0;
+		for(ColumnChunk chunk : chunks)
+		{
+			if(chunk != null && chunk.knownCount > 0)
+			{
+				count++;
+			}
+		}
+		try
+		{
+			if(count == 0)
+			{
+				Files.deleteIfExists(path);
+				return true;
+			}
+			Files.createDirectories(path.getParent());
+			Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+			try(DataOutputStream out =
+				new DataOutputStream(new BufferedOutputStream(
+					new GZIPOutputStream(Files.newOutputStream(tmp)))))
+			{
+				out.writeInt(REGION_MAGIC);
+				out.writeInt(REGION_VERSION);
+				out.writeInt(count);
+				for(int c = 0; c < CHUNKS_PER_REGION; c++)
+				{
+					ColumnChunk chunk = chunks[c];
+					if(chunk == null || chunk.knownCount == 0)
+					{
+						continue;
+					}
+					out.writeShort(c);
+					for(long word : chunk.known)
+					{
+						out.writeLong(word);
+					}
+					for(int i = 0; i < 256; i++)
+					{
+						if(!chunk.isKnown(i))
+						{
+							continue;
+						}
+						out.writeInt(chunk.colors[i]);
+						out.writeShort(chunk.ys[i]);
+						out.writeByte(chunk.flags[i]);
+					}
+				}
+			}
+			Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+			return true;
+		}catch(IOException e)
+		{
+			return false;
+		}
+	}
+	
+	private static void deleteRegionFiles(Path folder)
+	{
+		if(Files.notExists(folder))
+		{
+			return;
+		}
+		try(DirectoryStream<Path> files =
+			Files.newDirectoryStream(folder, "*.bin"))
+		{
+			for(Path file : files)
+			{
+				Files.deleteIfExists(file);
+			}
+		}catch(IOException ignored)
+		{}
+	}
+	
+	/**
+	 * Splits a cache file from before the region format into region files.
+	 * The old file is only deleted once every region file has been written
+	 * and read back, so a failed migration is simply retried next time.
+	 */
+	private static void migrateLegacyCache(Path legacyFile, Path folder)
+	{
+		Long2ObjectOpenHashMap<ColumnChunk[]> migrated =
+			new Long2ObjectOpenHashMap<>();
+		try(DataInputStream in = new DataInputStream(
+			new BufferedInputStream(Files.newInputStream(legacyFile))))
+		{
+			int magic = in.readInt();
+			int version = in.readInt();
+			if(magic != LEGACY_MAGIC
+				|| (version != 23 && version != LEGACY_VERSION))
+			{
+				Files.deleteIfExists(legacyFile);
+				return;
+			}
+			int count = in.readInt();
+			for(int i = 0; i < count; i++)
+			{
+				long key = in.readLong();
+				int color = in.readInt();
+				int y = in.readInt();
+				int flags = version >= LEGACY_VERSION ? in.readInt() : 0;
+				
+				int x = MapRenderService.unpackColumnX(key);
+				int z = MapRenderService.unpackColumnZ(key);
+				boolean underground =
+					MapRenderService.unpackColumnUnderground(key);
+				long regionKey = regionKey(x >> REGION_BLOCK_BITS,
+					z >> REGION_BLOCK_BITS, underground);
+				ColumnChunk[] chunks = migrated.get(regionKey);
+				if(chunks == null)
+				{
+					chunks = new ColumnChunk[CHUNKS_PER_REGION];
+					migrated.put(regionKey, chunks);
+				}
+				int chunkIndex = chunkIndex(x, z);
+				if(chunks[chunkIndex] == null)
+				{
+					chunks[chunkIndex] = new ColumnChunk();
+				}
+				ColumnChunk chunk = chunks[chunkIndex];
+				int column = columnIndex(x, z);
+				if(!chunk.isKnown(column))
+				{
+					chunk.setKnown(column);
+				}
+				chunk.colors[column] = color;
+				chunk.ys[column] = (short)y;
+				chunk.flags[column] = (byte)flags;
+			}
+		}catch(IOException e)
+		{
+			return;
+		}
+		
+		for(Long2ObjectMap.Entry<ColumnChunk[]> entry : migrated
+			.long2ObjectEntrySet())
+		{
+			long key = entry.getLongKey();
+			Path path = getRegionPath(folder, regionXOf(key), regionZOf(key),
+				(key & 1L) != 0L);
+			ColumnChunk[] chunks = entry.getValue();
+			ColumnChunk[] merged = chunks;
+			ColumnChunk[] onDisk = readRegion(path);
+			if(onDisk != null)
+			{
+				mergeMissingColumns(onDisk, chunks);
+				merged = onDisk;
+			}
+			if(!writeRegion(path, merged)
+				|| !containsColumns(readRegion(path), chunks))
+			{
+				return;
+			}
+		}
+		
+		try
+		{
+			Files.deleteIfExists(legacyFile);
+		}catch(IOException ignored)
+		{}
+	}
+	
+	private static Path getRegionPath(Path folder, int regionX, int regionZ,
+		boolean underground)
+	{
+		String prefix = underground ? "u." : "r.";
+		return folder.resolve(prefix + regionX + "." + regionZ + ".bin");
+	}
+	
+	private static long regionKey(int regionX, int regionZ,
+		boolean underground)
+	{
+		long packed = ((long)regionX << 32) ^ (regionZ & 0xFFFFFFFFL);
+		return (packed << 1) ^ (underground ? 1L : 0L);
+	}
+	
+	private static int regionXOf(long key)
+	{
+		return (int)(key >> 33);
+	}
+	
+	private static int regionZOf(long key)
+	{
+		return (int)(key >>> 1);
+	}
+	
+	private static int chunkIndex(int x, int z)
+	{
+		int mask = (1 << REGION_CHUNK_BITS) - 1;
+		return (((z >> 4) & mask) << REGION_CHUNK_BITS) | ((x >> 4) & mask);
+	}
+	
+	private static int columnIndex(int x, int z)
+	{
+		return ((z & 15) << 4) | (x & 15);
+	}
+	
+	private static final class Region
+	{
+		private final long key;
+		private final int regionX;
+		private final int regionZ;
+		private final boolean underground;
+		private final ColumnChunk[] chunks =
+			new ColumnChunk[CHUNKS_PER_REGION];
+		private int chunkCount;
+		private int knownColumns;
+		private boolean loaded;
+		private boolean dirty;
+		private long lastAccess;
+		private long version;
+		
+		private Region(long key, int regionX, int regionZ,
+			boolean underground)
+		{
+			this.key = key;
+			this.regionX = regionX;
+			this.regionZ = regionZ;
+			this.underground = underground;
+		}
+	}
+	
+	private static final class ColumnChunk
+	{
+		private final long[] known = new long[4];
+		private int[] colors = new int[256];
+		private boolean colorsShared;
+		private final short[] ys = new short[256];
+		private final byte[] flags = new byte[256];
+		private int knownCount;
+		
+		private boolean isKnown(int i)
+		{
+			return (known[i >> 6] & (1L << i)) != 0;
+		}
+		
+		/**
+		 * Marks the color array as read by a snapshot. The next write copies
+		 * it first, so the snapshot never changes.
+		 */
+		private int[] share()
+		{
+			colorsShared = true;
+			return colors;
+		}
+		
+		private void setColor(int i, int color)
+		{
+			if(colorsShared)
+			{
+				colors = colors.clone();
+				colorsShared = false;
+			}
+			colors[i] = color;
+		}
+		
+		private void setKnown(int i)
+		{
+			known[i >> 6] |= 1L << i;
+			knownCount++;
+		}
+		
+		/**
+		 * Copies the columns that are known in the other chunk but not in
+		 * this one. Returns how many were copied.
+		 */
+		private int addMissing(ColumnChunk other)
+		{
+			int added = 0;
+			for(int i = 0; i < 256; i++)
+			{
+				if(!other.isKnown(i) || isKnown(i))
+				{
+					continue;
+				}
+				setKnown(i);
+				setColor(i, other.colors[i]);
+				ys[i] = other.ys[i];
+				flags[i] = other.flags[i];
+				added++;
+			}
+			return added;
+		}
+		
+		private ColumnChunk copy()
+		{
+			ColumnChunk copy = new ColumnChunk();
+			System.arraycopy(known, 0, copy.known, 0, known.length);
+			System.arraycopy(colors, 0, copy.colors, 0, colors.length);
+			System.arraycopy(ys, 0, copy.ys, 0, ys.length);
+			System.arraycopy(flags, 0, copy.flags, 0, flags.length);
+			copy.knownCount = knownCount;
+			return copy;
+		}
+	}
+	
+	private record LoadedRegion(Region region, ColumnChunk[] chunks)
+	{}
+	
+	/**
+	 * Immutable surface colors of a set of chunks, safe to read from any
+	 * thread.
+	 */
+	static final class SurfaceSnapshot
+	{
+		private final Long2ObjectOpenHashMap<int[]> colors;
+		private final long version;
+		private long lastChunkKey = Long.MIN_VALUE;
+		private int[] lastChunk;
+		
+		private SurfaceSnapshot(Long2ObjectOpenHashMap<int[]> colors,
+			long version)
+		{
+			this.colors = colors;
+			this.version = version;
+		}
+		
+		/**
+		 * Returns the {@link ColumnRegionCache#getSurfaceVersion(int, int,
+		 * int, int)} that this snapshot was taken at.
+		 */
+		long getVersion()
+		{
+			return version;
+		}
+		
+		/**
+		 * Returns the color of the given column, or 0 if it's unknown. Not
+		 * thread-safe itself, so each thread needs its own snapshot.
+		 */
+		int getColor(int x, int z)
+		{
+			long chunkKey = ChunkPos.pack(x >> 4, z >> 4);
+			if(chunkKey != lastChunkKey)
+			{
+				lastChunkKey = chunkKey;
+				lastChunk = colors.get(chunkKey);
+			}
+			if(lastChunk == null)
+			{
+				return 0;
+			}
+			return lastChunk[columnIndex(x, z)];
+		}
+	}
+}
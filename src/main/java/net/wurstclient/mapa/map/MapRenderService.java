@@ -12,10 +12,8 @@ import com.mojang.blaze3d.platform.NativeImage;
 import com.mojang.blaze3d.systems.RenderSystem;
 import com.mojang.blaze3d.textures.FilterMode;
 import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
-import it.unimi.dsi.fastutil.longs.Long2IntLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
 import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
-import it.unimi.dsi.fastutil.longs.Long2IntMap;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.fabricmc.loader.api.FabricLoader;
@@ -48,21 +46,13 @@ import net.minecraft.core.Direction;
 import net.minecraft.world.phys.shapes.Shapes;
 import net.minecraft.world.phys.shapes.VoxelShape;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.net.SocketAddress;
 import java.lang.reflect.Field;
 import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 public final class MapRenderService
 {
@@ -72,9 +62,6 @@ public final class MapRenderService
 		new BlockPos.MutableBlockPos();
 	private static final Identifier MINIMAP_TEX_ID =
 		Identifier.fromNamespaceAndPath("mapa", "dynamic/minimap");
-	private static final int COLUMN_CACHE_LIMIT = 120_000;
-	private static final int CACHE_MAGIC = 0x4D415041; // MAPA
-	private static final int CACHE_VERSION = 25;
 	private static final int MAX_BACKING_SAMPLES = 896;
 	private static final double ROTATION_SCALE = 1.41421356237;
 	private static final int SAMPLE_OVERSCAN = 48;
@@ -120,12 +107,6 @@ public final class MapRenderService
 	private double lastMotionCenterZ = Double.NaN;
 	private DynamicTexture minimapTexture;
 	private int textureSize;
-	private final Long2IntLinkedOpenHashMap cachedColumnColor =
-		new Long2IntLinkedOpenHashMap();
-	private final Long2IntLinkedOpenHashMap cachedColumnY =
-		new Long2IntLinkedOpenHashMap();
-	private final Long2IntLinkedOpenHashMap cachedColumnFlags =
-		new Long2IntLinkedOpenHashMap();
 	private final Long2IntOpenHashMap visibleChunkStates =
 		new Long2IntOpenHashMap();
 	private final LongArrayList dirtyChunks = new LongArrayList();
@@ -159,10 +140,7 @@ public final class MapRenderService
 	private float chunkRefreshAggression = 1.5f;
 	private String activeCacheKey = "";
 	private String activeServerKey = "";
-	private Path activeCachePath;
-	private long lastDiskSaveTick = Long.MIN_VALUE;
 	private long lastChunkPollTick = Long.MIN_VALUE;
-	private boolean dirtyDiskCache = false;
 	private int cachedLightingSignature = Integer.MIN_VALUE;
 	private int cachedColumnSamplingSignature = Integer.MIN_VALUE;
 	private int cachedUndergroundBand = Integer.MIN_VALUE;
@@ -172,7 +150,8 @@ public final class MapRenderService
 			t.setDaemon(true);
 			return t;
 		});
-	private final AtomicBoolean writeInFlight = new AtomicBoolean(false);
+	private final ColumnRegionCache columnCache =
+		new ColumnRegionCache(ioExecutor);
 	private static final Field SPRITE_ORIGINAL_IMAGE_FIELD;
 	private static final Field ABSTRACT_TEXTURE_SAMPLER_FIELD;
 	
@@ -212,12 +191,17 @@ public final class MapRenderService
 	public WorldMapSnapshot snapshotWorldMap(Minecraft mc)
 	{
 		if(mc.level == null || mc.player == null)
-			return new WorldMapSnapshot(0.0, 0.0, "", new long[0], new int[0]);
+			return new WorldMapSnapshot(0.0, 0.0, "", 0, 0);
 		
 		ensureCacheContext(mc, mc.level);
-		CacheSnapshot snapshot = snapshotCache(activeCachePath);
 		return new WorldMapSnapshot(mc.player.getX(), mc.player.getZ(),
-			activeCacheKey, snapshot.keys(), snapshot.colors());
+			activeCacheKey, columnCache.getVersion(),
+			columnCache.getKnownColumnCount());
+	}
+	
+	ColumnRegionCache getColumnCache()
+	{
+		return columnCache;
 	}
 	
 	public static int unpackColumnX(long key)
@@ -379,7 +363,7 @@ public final class MapRenderService
 					useUnderground ? 1.0f : surfacePriorityRefreshScale,
 					useUnderground ? 1.0f : surfaceBackgroundRefreshScale);
 			}
-			maybeScheduleCacheSave(tick);
+			columnCache.maybeSave(tick);
 			lastMotionCenterX = centerX;
 			lastMotionCenterZ = centerZ;
 			lastMotionSampleTick = tick;
@@ -1557,10 +1541,10 @@ public final class MapRenderService
 		LevelChunk chunk = getSampledChunk(level, cx, cz);
 		if(chunk == null)
 		{
-			if(!undergroundMode && cachedColumnColor.containsKey(key))
+			Sample cached = undergroundMode ? null : getCachedColumn(key);
+			if(cached != null)
 			{
-				return new Sample(cachedColumnColor.get(key),
-					cachedColumnY.get(key), true, cachedColumnFlags.get(key));
+				return cached;
 			}
 			Sample nearby = undergroundMode ? null
 				: sampleNearbyCached(x, z, undergroundMode);
@@ -2216,16 +2200,16 @@ public final class MapRenderService
 				int dz1 = -r;
 				int dz2 = r;
 				long k1 = columnKey(x + dx, z + dz1, undergroundMode);
-				if(cachedColumnColor.containsKey(k1))
+				Sample cached1 = getCachedColumn(k1);
+				if(cached1 != null)
 				{
-					return new Sample(cachedColumnColor.get(k1),
-						cachedColumnY.get(k1), true, cachedColumnFlags.get(k1));
+					return cached1;
 				}
 				long k2 = columnKey(x + dx, z + dz2, undergroundMode);
-				if(cachedColumnColor.containsKey(k2))
+				Sample cached2 = getCachedColumn(k2);
+				if(cached2 != null)
 				{
-					return new Sample(cachedColumnColor.get(k2),
-						cachedColumnY.get(k2), true, cachedColumnFlags.get(k2));
+					return cached2;
 				}
 			}
 			for(int dz = -r + 1; dz <= r - 1; dz++)
@@ -2233,16 +2217,16 @@ public final class MapRenderService
 				int dx1 = -r;
 				int dx2 = r;
 				long k1 = columnKey(x + dx1, z + dz, undergroundMode);
-				if(cachedColumnColor.containsKey(k1))
+				Sample cached1 = getCachedColumn(k1);
+				if(cached1 != null)
 				{
-					return new Sample(cachedColumnColor.get(k1),
-						cachedColumnY.get(k1), true, cachedColumnFlags.get(k1));
+					return cached1;
 				}
 				long k2 = columnKey(x + dx2, z + dz, undergroundMode);
-				if(cachedColumnColor.containsKey(k2))
+				Sample cached2 = getCachedColumn(k2);
+				if(cached2 != null)
 				{
-					return new Sample(cachedColumnColor.get(k2),
-						cachedColumnY.get(k2), true, cachedColumnFlags.get(k2));
+					return cached2;
 				}
 			}
 		}
@@ -2572,13 +2556,10 @@ public final class MapRenderService
 		String key = serverKey + "|" + dim;
 		if(key.equals(activeCacheKey))
 		{
+			columnCache.processLoadedRegions();
 			return;
 		}
 		
-		flushCacheNow();
-		cachedColumnColor.clear();
-		cachedColumnY.clear();
-		cachedColumnFlags.clear();
 		visibleChunkStates.clear();
 		dirtyChunks.clear();
 		cachedLightingSignature = Integer.MIN_VALUE;
@@ -2586,9 +2567,10 @@ public final class MapRenderService
 		lastChunkPollTick = Long.MIN_VALUE;
 		activeCacheKey = key;
 		cachedUndergroundBand = Integer.MIN_VALUE;
-		activeCachePath = FabricLoader.getInstance().getConfigDir()
-			.resolve("mapa-cache").resolve(serverKey).resolve(dim + ".bin");
-		loadCache(activeCachePath);
+		Path serverFolder = FabricLoader.getInstance().getConfigDir()
+			.resolve("mapa-cache").resolve(serverKey);
+		columnCache.open(serverFolder.resolve(dim),
+			serverFolder.resolve(dim + ".bin"));
 	}
 	
 	private static String resolveServerKey(Minecraft mc)
@@ -2621,10 +2603,7 @@ public final class MapRenderService
 	
 	private void clearColumnCache()
 	{
-		cachedColumnColor.clear();
-		cachedColumnY.clear();
-		cachedColumnFlags.clear();
-		dirtyDiskCache = true;
+		columnCache.clear();
 	}
 	
 	private static String sanitize(String in)
@@ -2648,132 +2627,17 @@ public final class MapRenderService
 		return sb.toString();
 	}
 	
-	private void loadCache(Path path)
-	{
-		if(path == null || Files.notExists(path))
-		{
-			return;
-		}
-		try(DataInputStream in = new DataInputStream(
-			new BufferedInputStream(Files.newInputStream(path))))
-		{
-			int magic = in.readInt();
-			int version = in.readInt();
-			if(magic != CACHE_MAGIC
-				|| (version != 23 && version != CACHE_VERSION))
-			{
-				return;
-			}
-			int count = in.readInt();
-			int limit = Math.min(count, COLUMN_CACHE_LIMIT);
-			for(int i = 0; i < limit; i++)
-			{
-				long key = in.readLong();
-				int color = in.readInt();
-				int y = in.readInt();
-				int flags = version >= CACHE_VERSION ? in.readInt() : 0;
-				cachedColumnColor.putAndMoveToLast(key, color);
-				cachedColumnY.putAndMoveToLast(key, y);
-				cachedColumnFlags.putAndMoveToLast(key, flags);
-			}
-			for(int i = limit; i < count; i++)
-			{
-				in.readLong();
-				in.readInt();
-				in.readInt();
-				if(version >= CACHE_VERSION)
-				{
-					in.readInt();
-				}
-			}
-		}catch(IOException ignored)
-		{}
-	}
-	
-	private void maybeScheduleCacheSave(long tick)
+	private Sample getCachedColumn(long key)
 	{
-		if(!dirtyDiskCache || activeCachePath == null)
-		{
-			return;
-		}
-		if(tick - lastDiskSaveTick < 120)
-		{
-			return;
-		}
-		if(!writeInFlight.compareAndSet(false, true))
+		long column = columnCache.get(unpackColumnX(key), unpackColumnZ(key),
+			unpackColumnUnderground(key));
+		if(column == ColumnRegionCache.MISSING)
 		{
-			return;
-		}
-		
-		CacheSnapshot snapshot = snapshotCache(activeCachePath);
-		dirtyDiskCache = false;
-		lastDiskSaveTick = tick;
-		ioExecutor.submit(() -> {
-			try
-			{
-				writeCache(snapshot);
-			}finally
-			{
-				writeInFlight.set(false);
-			}
-		});
-	}
-	
-	private void flushCacheNow()
-	{
-		if(!dirtyDiskCache || activeCachePath == null)
-		{
-			return;
-		}
-		writeCache(snapshotCache(activeCachePath));
-		dirtyDiskCache = false;
-	}
-	
-	private CacheSnapshot snapshotCache(Path path)
-	{
-		int size = cachedColumnColor.size();
-		long[] keys = new long[size];
-		int[] colors = new int[size];
-		int[] ys = new int[size];
-		int[] flags = new int[size];
-		int i = 0;
-		for(Long2IntMap.Entry entry : cachedColumnColor.long2IntEntrySet())
-		{
-			long key = entry.getLongKey();
-			keys[i] = key;
-			colors[i] = entry.getIntValue();
-			ys[i] = cachedColumnY.get(key);
-			flags[i] = cachedColumnFlags.get(key);
-			i++;
+			return null;
 		}
-		return new CacheSnapshot(path, keys, colors, ys, flags);
-	}
-	
-	private static void writeCache(CacheSnapshot snapshot)
-	{
-		Path path = snapshot.path();
-		try
-		{
-			Files.createDirectories(path.getParent());
-			Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
-			try(DataOutputStream out = new DataOutputStream(
-				new BufferedOutputStream(Files.newOutputStream(tmp))))
-			{
-				out.writeInt(CACHE_MAGIC);
-				out.writeInt(CACHE_VERSION);
-				out.writeInt(snapshot.keys().length);
-				for(int i = 0; i < snapshot.keys().length; i++)
-				{
-					out.writeLong(snapshot.keys()[i]);
-					out.writeInt(snapshot.colors()[i]);
-					out.writeInt(snapshot.ys()[i]);
-					out.writeInt(snapshot.flags()[i]);
-				}
-			}
-			Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING,
-				StandardCopyOption.ATOMIC_MOVE);
-		}catch(IOException ignored)
-		{}
+		return new Sample(ColumnRegionCache.unpackColor(column),
+			ColumnRegionCache.unpackY(column), true,
+			ColumnRegionCache.unpackFlags(column));
 	}
 	
 	private static long columnKey(int x, int z, boolean undergroundMode)
@@ -3024,26 +2888,8 @@ public final class MapRenderService
 	
 	private void putColumnCache(long key, int color, int y, int flags)
 	{
-		boolean changed = true;
-		if(cachedColumnColor.containsKey(key))
-		{
-			changed = cachedColumnColor.get(key) != color
-				|| cachedColumnY.get(key) != y
-				|| cachedColumnFlags.get(key) != flags;
-		}
-		cachedColumnColor.putAndMoveToLast(key, color);
-		cachedColumnY.putAndMoveToLast(key, y);
-		cachedColumnFlags.putAndMoveToLast(key, flags);
-		if(changed)
-		{
-			dirtyDiskCache = true;
-		}
-		if(cachedColumnColor.size() > COLUMN_CACHE_LIMIT)
-		{
-			cachedColumnColor.removeFirstInt();
-			cachedColumnY.removeFirstInt();
-			cachedColumnFlags.removeFirstInt();
-		}
+		columnCache.put(unpackColumnX(key), unpackColumnZ(key),
+			unpackColumnUnderground(key), color, y, flags);
 	}
 	
 	private static int wholeSampleShift(double sampleDelta)
@@ -3861,11 +3707,7 @@ public final class MapRenderService
 	private record Sample(int argb, int y, boolean known, int flags)
 	{}
 	
-	private record CacheSnapshot(Path path, long[] keys, int[] colors, int[] ys,
-		int[] flags)
-	{}
-	
 	public static record WorldMapSnapshot(double playerX, double playerZ,
-		String cacheKey, long[] keys, int[] colors)
+		String cacheKey, long cacheVersion, int cachedColumns)
 	{}
 }
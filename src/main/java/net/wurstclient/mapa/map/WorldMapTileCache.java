@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2014-2026 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.mapa.map;
+
+import com.mojang.blaze3d.platform.NativeImage;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.GuiGraphicsExtractor;
+import net.minecraft.client.renderer.RenderPipelines;
+import net.minecraft.client.renderer.texture.DynamicTexture;
+import net.minecraft.resources.Identifier;
+import net.minecraft.util.Mth;
+import net.wurstclient.util.MinPriorityThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Renders the fullscreen world map from fixed-size tiles. Each tile is
+ * rasterized on a worker thread from an immutable
+ * {@link ColumnRegionCache.SurfaceSnapshot}, uploaded into its own texture on
+ * the render thread and kept per zoom level, so panning and zooming back only
+ * composite textures that already exist. A tile is only rasterized again when
+ * a column in one of the regions under it changes.
+ */
+public final class WorldMapTileCache
+{
+	private static final int TILE_SIZE = 128;
+	private static final int BACKGROUND_COLOR = 0xFF101010;
+	private static final int MAX_CACHED_TILES = 320;
+	private static final int MAX_PENDING_TILES = 8;
+	private static final int MAX_UPLOADS_PER_FRAME = 6;
+	private static final long REFRESH_INTERVAL_MS = 500;
+	private static final ExecutorService RASTER_POOL =
+		MinPriorityThreadFactory.newFixedThreadPool();
+	
+	private final MapRenderService mapRenderService;
+	private final Long2ObjectOpenHashMap<Tile> tiles =
+		new Long2ObjectOpenHashMap<>();
+	private String cacheKey = "";
+	private int nextTextureId;
+	private int pendingTiles;
+	private long frame;
+	
+	public WorldMapTileCache(MapRenderService mapRenderService)
+	{
+		this.mapRenderService = mapRenderService;
+	}
+	
+	/**
+	 * Draws the map area centered on the given world position. Tiles that
+	 * aren't rasterized yet are left empty and filled in on later frames.
+	 */
+	public void render(GuiGraphicsExtractor gfx,
+		MapRenderService.WorldMapSnapshot snapshot, int zoomLevel,
+		double blocksPerPixel, int drawX, int drawY, int drawWidth,
+		int drawHeight, double centerX, double centerZ)
+	{
+		if(!snapshot.cacheKey().equals(cacheKey))
+		{
+			close();
+			cacheKey = snapshot.cacheKey();
+		}
+		frame++;
+		
+		double originX = centerX / blocksPerPixel - drawWidth / 2.0;
+		double originZ = centerZ / blocksPerPixel - drawHeight / 2.0;
+		int minTileX = Mth.floor(originX / TILE_SIZE);
+		int minTileZ = Mth.floor(originZ / TILE_SIZE);
+		int maxTileX = Mth.floor((originX + drawWidth) / TILE_SIZE);
+		int maxTileZ = Mth.floor((originZ + drawHeight) / TILE_SIZE);
+		
+		ArrayList<Tile> visible = new ArrayList<>();
+		for(int tileZ = minTileZ; tileZ <= maxTileZ; tileZ++)
+		{
+			for(int tileX = minTileX; tileX <= maxTileX; tileX++)
+			{
+				long key = tileKey(zoomLevel, tileX, tileZ);
+				Tile tile = tiles.get(key);
+				if(tile == null)
+				{
+					tile = new Tile(key, tileX, tileZ, blocksPerPixel);
+					tiles.put(key, tile);
+				}
+				tile.lastUsedFrame = frame;
+				visible.add(tile);
+			}
+		}
+		
+		// also drain tiles that scrolled off screen, or they would keep
+		// counting towards MAX_PENDING_TILES
+		int uploads = 0;
+		for(Tile tile : tiles.values())
+		{
+			if(uploads >= MAX_UPLOADS_PER_FRAME)
+			{
+				break;
+			}
+			if(tile.pending != null && tile.pending.isDone())
+			{
+				upload(tile);
+				uploads++;
+			}
+		}
+		
+		// keep the regions under the visible tiles resident, or zooming out
+		// far enough would have them evict each other all the time
+		ColumnRegionCache columnCache = mapRenderService.getColumnCache();
+		columnCache.pinSurface(
+			chunkOf(minTileX * TILE_SIZE, blocksPerPixel),
+			chunkOf(minTileZ * TILE_SIZE, blocksPerPixel),
+			chunkOf((maxTileX + 1) * TILE_SIZE - 1, blocksPerPixel),
+			chunkOf((maxTileZ + 1) * TILE_SIZE - 1, blocksPerPixel));
+		
+		// rasterize the tiles closest to the center first
+		double centerTileX = (originX + drawWidth / 2.0) / TILE_SIZE - 0.5;
+		double centerTileZ = (originZ + drawHeight / 2.0) / TILE_SIZE - 0.5;
+		visible.sort(Comparator.comparingDouble(
+			t -> Math.abs(t.tileX - centerTileX)
+				+ Math.abs(t.tileZ - centerTileZ)));
+		long now = System.currentTimeMillis();
+		for(Tile tile : visible)
+		{
+			if(pendingTiles >= MAX_PENDING_TILES)
+			{
+				break;
+			}
+			if(tile.pending == null && needsRaster(tile, columnCache, now))
+			{
+				startRaster(tile, columnCache, blocksPerPixel);
+			}
+		}
+		
+		gfx.enableScissor(drawX, drawY, drawX + drawWidth,
+			drawY + drawHeight);
+		gfx.fill(drawX, drawY, drawX + drawWidth, drawY + drawHeight,
+			BACKGROUND_COLOR);
+		for(Tile tile : visible)
+		{
+			if(tile.textureId == null)
+			{
+				continue;
+			}
+			int x = drawX + (int)Math.round(tile.tileX * TILE_SIZE - originX);
+			int y = drawY + (int)Math.round(tile.tileZ * TILE_SIZE - originZ);
+			gfx.blit(RenderPipelines.GUI_TEXTURED, tile.textureId, x, y, 0, 0,
+				TILE_SIZE, TILE_SIZE, TILE_SIZE, TILE_SIZE, 0xFFFFFFFF);
+		}
+		gfx.disableScissor();
+		
+		evictUnusedTiles();
+	}
+	
+	/**
+	 * Releases all tile textures. Rasterization that is still running is
+	 * discarded when it finishes.
+	 */
+	public void close()
+	{
+		for(Tile tile : tiles.values())
+		{
+			release(tile);
+		}
+		tiles.clear();
+		mapRenderService.getColumnCache().unpinSurface();
+	}
+	
+	private boolean needsRaster(Tile tile, ColumnRegionCache columnCache,
+		long now)
+	{
+		if(tile.textureId == null)
+		{
+			return true;
+		}
+		if(now - tile.rasterizedAtMs < REFRESH_INTERVAL_MS)
+		{
+			return false;
+		}
+		
+		// keep showing the old image while regions under it are loading
+		long version = columnCache.getSurfaceVersion(tile.minChunkX,
+			tile.minChunkZ, tile.maxChunkX, tile.maxChunkZ);
+		return version != -1 && version != tile.version;
+	}
+	
+	private void startRaster(Tile tile, ColumnRegionCache columnCache,
+		double blocksPerPixel)
+	{
+		int minPixelX = tile.tileX * TILE_SIZE;
+		int minPixelZ = tile.tileZ * TILE_SIZE;
+		ColumnRegionCache.SurfaceSnapshot surface =
+			columnCache.snapshotSurface(tile.minChunkX, tile.minChunkZ,
+				tile.maxChunkX, tile.maxChunkZ);
+		
+		tile.version = surface.getVersion();
+		tile.rasterizedAtMs = System.currentTimeMillis();
+		tile.pending = CompletableFuture.supplyAsync(
+			() -> rasterize(surface, minPixelX, minPixelZ, blocksPerPixel),
+			RASTER_POOL);
+		pendingTiles++;
+	}
+	
+	private static int[] rasterize(ColumnRegionCache.SurfaceSnapshot surface,
+		int minPixelX, int minPixelZ, double blocksPerPixel)
+	{
+		int[] columnX = new int[TILE_SIZE];
+		for(int px = 0; px < TILE_SIZE; px++)
+		{
+			columnX[px] = Mth.floor((minPixelX + px + 0.5) * blocksPerPixel);
+		}
+		
+		int[] pixels = new int[TILE_SIZE * TILE_SIZE];
+		for(int pz = 0; pz < TILE_SIZE; pz++)
+		{
+			int z = Mth.floor((minPixelZ + pz + 0.5) * blocksPerPixel);
+			int row = pz * TILE_SIZE;
+			for(int px = 0; px < TILE_SIZE; px++)
+			{
+				int color = surface.getColor(columnX[px], z);
+				pixels[row + px] = color == 0 ? BACKGROUND_COLOR
+					: 0xFF000000 | (color & 0x00FFFFFF);
+			}
+		}
+		return pixels;
+	}
+	
+	private void upload(Tile tile)
+	{
+		int[] pixels = tile.pending.isCompletedExceptionally() ? null
+			: tile.pending.getNow(null);
+		tile.pending = null;
+		pendingTiles--;
+		if(pixels == null)
+		{
+			return;
+		}
+		
+		if(tile.texture == null)
+		{
+			tile.texture = new DynamicTexture("wurst_world_map_tile",
+				TILE_SIZE, TILE_SIZE, false);
+			tile.textureId = Identifier.fromNamespaceAndPath("wurst",
+				"dynamic/world_map_tile_" + nextTextureId++);
+			Minecraft.getInstance().getTextureManager()
+				.register(tile.textureId, tile.texture);
+		}
+		NativeImage image = tile.texture.getPixels();
+		if(image == null)
+		{
+			return;
+		}
+		for(int pz = 0; pz < TILE_SIZE; pz++)
+		{
+			for(int px = 0; px < TILE_SIZE; px++)
+			{
+				image.setPixel(px, pz, pixels[pz * TILE_SIZE + px]);
+			}
+		}
+		tile.texture.upload();
+	}
+	
+	private void evictUnusedTiles()
+	{
+		if(tiles.size() <= MAX_CACHED_TILES)
+		{
+			return;
+		}
+		
+		ArrayList<Tile> candidates = new ArrayList<>();
+		for(Long2ObjectMap.Entry<Tile> entry : tiles.long2ObjectEntrySet())
+		{
+			Tile tile = entry.getValue();
+			if(tile.lastUsedFrame != frame)
+			{
+				candidates.add(tile);
+			}
+		}
+		candidates.sort(Comparator.comparingLong(t -> t.lastUsedFrame));
+		
+		int toRemove = tiles.size() - MAX_CACHED_TILES;
+		for(int i = 0; i < Math.min(toRemove, candidates.size()); i++)
+		{
+			Tile tile = candidates.get(i);
+			release(tile);
+			tiles.remove(tile.key);
+		}
+	}
+	
+	private void release(Tile tile)
+	{
+		if(tile.textureId != null)
+		{
+			Minecraft.getInstance().getTextureManager()
+				.release(tile.textureId);
+		}
+		tile.texture = null;
+		tile.textureId = null;
+		if(tile.pending != null)
+		{
+			tile.pending.cancel(false);
+			tile.pending = null;
+			pendingTiles--;
+		}
+	}
+	
+	/**
+	 * Returns the chunk that the given pixel column or row samples.
+	 */
+	private static int chunkOf(int pixel, double blocksPerPixel)
+	{
+		return Mth.floor((pixel + 0.5) * blocksPerPixel) >> 4;
+	}
+	
+	private static long tileKey(int zoomLevel, int tileX, int tileZ)
+	{
+		// 8 bits of zoom level and 28 bits per tile coordinate
+		return ((long)(zoomLevel & 0xFF) << 56)
+			| ((long)(tileX & 0xFFFFFFF) << 28) | (tileZ & 0xFFFFFFFL);
+	}
+	
+	private static final class Tile
+	{
+		private final long key;
+		private final int tileX;
+		private final int tileZ;
+		private final int minChunkX;
+		private final int minChunkZ;
+		private final int maxChunkX;
+		private final int maxChunkZ;
+		private DynamicTexture texture;
+		private Identifier textureId;
+		private CompletableFuture<int[]> pending;
+		private long version = -1;
+		private long rasterizedAtMs;
+		private long lastUsedFrame;
+		
+		private Tile(long key, int tileX, int tileZ, double blocksPerPixel)
+		{
+			this.key = key;
+			this.tileX = tileX;
+			this.tileZ = tileZ;
+			minChunkX = chunkOf(tileX * TILE_SIZE, blocksPerPixel);
+			minChunkZ = chunkOf(tileZ * TILE_SIZE, blocksPerPixel);
+			maxChunkX = chunkOf((tileX + 1) * TILE_SIZE - 1, blocksPerPixel);
+			maxChunkZ = chunkOf((tileZ + 1) * TILE_SIZE - 1, blocksPerPixel);
+		}
+	}
+}
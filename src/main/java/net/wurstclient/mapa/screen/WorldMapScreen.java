@@ -8,43 +8,38 @@
 package net.wurstclient.mapa.screen;
 
 import org.lwjgl.glfw.GLFW;
-import com.mojang.blaze3d.platform.NativeImage;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.GuiGraphicsExtractor;
 import net.minecraft.client.gui.screens.Screen;
 import net.minecraft.client.input.KeyEvent;
 import net.minecraft.client.input.MouseButtonEvent;
-import net.minecraft.client.renderer.RenderPipelines;
-import net.minecraft.client.renderer.texture.DynamicTexture;
 import net.minecraft.network.chat.Component;
-import net.minecraft.resources.Identifier;
 import net.minecraft.util.Mth;
 import net.wurstclient.hacks.MapaHack;
 import net.wurstclient.mapa.map.MapRenderService;
+import net.wurstclient.mapa.map.WorldMapTileCache;
 
 public final class WorldMapScreen extends Screen
 {
-	private static final Identifier WORLD_MAP_TEX_ID =
-		Identifier.fromNamespaceAndPath("wurst", "dynamic/world_map");
+	// zoom moves in fixed steps, so that tiles can be cached per level
+	private static final double ZOOM_STEP = 1.15;
+	private static final int MIN_ZOOM_LEVEL = -9;
+	private static final int MAX_ZOOM_LEVEL = 16;
+	
 	private final MapaHack hack;
 	private final MapRenderService mapRenderService;
+	private final WorldMapTileCache tileCache;
 	private double centerX;
 	private double centerZ;
+	private int zoomLevel;
 	private double blocksPerPixel = 1.0;
-	private DynamicTexture worldMapTexture;
-	private int textureWidth;
-	private int textureHeight;
-	private double lastCenterX = Double.NaN;
-	private double lastCenterZ = Double.NaN;
-	private double lastBlocksPerPixel = Double.NaN;
-	private String lastCacheKey = "";
-	private int lastKeyCount = -1;
 	
 	public WorldMapScreen(MapaHack hack, MapRenderService mapRenderService)
 	{
 		super(Component.literal("Mapa World Map"));
 		this.hack = hack;
 		this.mapRenderService = mapRenderService;
+		tileCache = new WorldMapTileCache(mapRenderService);
 	}
 	
 	@Override
@@ -56,8 +51,12 @@ public final class WorldMapScreen extends Screen
 			centerX = mc.player.getX();
 			centerZ = mc.player.getZ();
 		}
-		blocksPerPixel = MapRenderService
+		double initialBlocksPerPixel = MapRenderService
 			.zoomToBlocksPerPixel(hack.createConfig().minimapZoom);
+		int initialLevel = (int)Math
+			.round(Math.log(initialBlocksPerPixel) / Math.log(ZOOM_STEP));
+		zoomLevel = Mth.clamp(initialLevel, MIN_ZOOM_LEVEL, MAX_ZOOM_LEVEL);
+		blocksPerPixel = levelToBlocksPerPixel(zoomLevel);
 	}
 	
 	@Override
@@ -88,12 +87,8 @@ public final class WorldMapScreen extends Screen
 		{
 			MapRenderService.WorldMapSnapshot snapshot =
 				mapRenderService.snapshotWorldMap(Minecraft.getInstance());
-			ensureTexture(drawW, drawH);
-			if(shouldRebuild(snapshot, drawW, drawH))
-				rebuildTexture(snapshot, drawW, drawH);
-			if(worldMapTexture != null)
-				context.blit(RenderPipelines.GUI_TEXTURED, WORLD_MAP_TEX_ID,
-					mapX, mapY, 0, 0, drawW, drawH, drawW, drawH, 0xFFFFFFFF);
+			tileCache.render(context, snapshot, zoomLevel, blocksPerPixel,
+				mapX, mapY, drawW, drawH, centerX, centerZ);
 		}
 		
 		hack.renderFullscreenMapEsp(context, mapX, mapY, drawW, drawH, centerX,
@@ -108,7 +103,7 @@ public final class WorldMapScreen extends Screen
 		}
 		
 		int cachedColumns = cfg.enabled ? mapRenderService
-			.snapshotWorldMap(Minecraft.getInstance()).keys().length : 0;
+			.snapshotWorldMap(Minecraft.getInstance()).cachedColumns() : 0;
 		String info = String.format(java.util.Locale.ROOT,
 			"Zoom %.2f blocks/pixel | Cached columns %d | Drag to pan | Scroll to zoom | Space to recenter",
 			blocksPerPixel, cachedColumns);
@@ -124,8 +119,10 @@ public final class WorldMapScreen extends Screen
 		if(scrollY == 0.0)
 			return false;
 		
-		double factor = scrollY > 0.0 ? 0.85 : 1.15;
-		blocksPerPixel = Mth.clamp(blocksPerPixel * factor, 0.25, 10.0);
+		int step = scrollY > 0.0 ? -1 : 1;
+		zoomLevel =
+			Mth.clamp(zoomLevel + step, MIN_ZOOM_LEVEL, MAX_ZOOM_LEVEL);
+		blocksPerPixel = levelToBlocksPerPixel(zoomLevel);
 		return true;
 	}
 	
@@ -152,11 +149,7 @@ public final class WorldMapScreen extends Screen
 	@Override
 	public void removed()
 	{
-		if(worldMapTexture != null)
-		{
-			worldMapTexture.close();
-			worldMapTexture = null;
-		}
+		tileCache.close();
 		super.removed();
 	}
 	
@@ -175,89 +168,8 @@ public final class WorldMapScreen extends Screen
 		return super.keyPressed(event);
 	}
 	
-	private void ensureTexture(int width, int height)
-	{
-		if(worldMapTexture != null && textureWidth == width
-			&& textureHeight == height)
-			return;
-		if(worldMapTexture != null)
-			worldMapTexture.close();
-		textureWidth = width;
-		textureHeight = height;
-		worldMapTexture =
-			new DynamicTexture("wurst_world_map", width, height, false);
-		Minecraft.getInstance().getTextureManager().register(WORLD_MAP_TEX_ID,
-			worldMapTexture);
-		lastCenterX = Double.NaN;
-		lastCenterZ = Double.NaN;
-		lastBlocksPerPixel = Double.NaN;
-		lastCacheKey = "";
-		lastKeyCount = -1;
-	}
-	
-	private boolean shouldRebuild(MapRenderService.WorldMapSnapshot snapshot,
-		int width, int height)
-	{
-		return worldMapTexture != null && (Double.isNaN(lastCenterX)
-			|| Math.abs(centerX - lastCenterX) > 0.001
-			|| Math.abs(centerZ - lastCenterZ) > 0.001
-			|| Math.abs(blocksPerPixel - lastBlocksPerPixel) > 0.0001
-			|| !snapshot.cacheKey().equals(lastCacheKey)
-			|| snapshot.keys().length != lastKeyCount || textureWidth != width
-			|| textureHeight != height);
-	}
-	
-	private void rebuildTexture(MapRenderService.WorldMapSnapshot snapshot,
-		int width, int height)
+	private static double levelToBlocksPerPixel(int level)
 	{
-		NativeImage image = worldMapTexture.getPixels();
-		if(image == null)
-			return;
-		
-		for(int x = 0; x < width; x++)
-			for(int y = 0; y < height; y++)
-				image.setPixel(x, y, 0xFF101010);
-			
-		double halfWidth = width * blocksPerPixel * 0.5;
-		double halfHeight = height * blocksPerPixel * 0.5;
-		double minX = centerX - halfWidth;
-		double minZ = centerZ - halfHeight;
-		double maxX = centerX + halfWidth;
-		double maxZ = centerZ + halfHeight;
-		double pixelsPerBlock = 1.0 / Math.max(0.0001, blocksPerPixel);
-		
-		long[] keys = snapshot.keys();
-		int[] colors = snapshot.colors();
-		for(int i = 0; i < keys.length; i++)
-		{
-			long key = keys[i];
-			if(MapRenderService.unpackColumnUnderground(key))
-				continue;
-			int wx = MapRenderService.unpackColumnX(key);
-			int wz = MapRenderService.unpackColumnZ(key);
-			if(wx < minX - 1 || wz < minZ - 1 || wx > maxX + 1 || wz > maxZ + 1)
-				continue;
-			
-			int px0 = (int)Math.floor((wx - minX) * pixelsPerBlock);
-			int py0 = (int)Math.floor((wz - minZ) * pixelsPerBlock);
-			int px1 = Math.max(px0 + 1,
-				(int)Math.ceil((wx + 1 - minX) * pixelsPerBlock));
-			int py1 = Math.max(py0 + 1,
-				(int)Math.ceil((wz + 1 - minZ) * pixelsPerBlock));
-			
-			if(px1 <= 0 || py1 <= 0 || px0 >= width || py0 >= height)
-				continue;
-			int argb = 0xFF000000 | (colors[i] & 0x00FFFFFF);
-			for(int px = Math.max(0, px0); px < Math.min(width, px1); px++)
-				for(int py = Math.max(0, py0); py < Math.min(height, py1); py++)
-					image.setPixel(px, py, argb);
-		}
-		
-		worldMapTexture.upload();
-		lastCenterX = centerX;
-		lastCenterZ = centerZ;
-		lastBlocksPerPixel = blocksPerPixel;
-		lastCacheKey = snapshot.cacheKey();
-		lastKeyCount = snapshot.keys().length;
+		return Math.pow(ZOOM_STEP, level);
 	}
 }
@@ -16,6 +16,7 @@ import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.Redirect;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.components.toasts.SystemToast;
 import net.minecraft.client.multiplayer.ClientCommonPacketListenerImpl;
@@ -35,6 +36,7 @@ import net.minecraft.sounds.SoundSource;
 import net.minecraft.network.protocol.game.ClientGamePacketListener;
 import net.minecraft.network.protocol.game.ClientboundBlockUpdatePacket;
 import net.minecraft.network.protocol.game.ClientboundExplodePacket;
+import net.minecraft.network.protocol.game.ClientboundForgetLevelChunkPacket;
 import net.minecraft.network.protocol.game.ClientboundLevelChunkPacketData;
 import net.minecraft.network.protocol.game.ClientboundLoginPacket;
 import net.minecraft.network.protocol.game.ClientboundMapItemDataPacket;
@@ -42,7 +44,9 @@ import net.minecraft.network.protocol.game.ClientboundOpenSignEditorPacket;
 import net.minecraft.network.protocol.game.ClientboundPlayerPositionPacket;
 import net.minecraft.network.protocol.game.ClientboundSectionBlocksUpdatePacket;
 import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
 import net.minecraft.world.entity.player.ProfileKeyPair;
+import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.phys.Vec3;
 import net.minecraft.world.level.saveddata.maps.MapItemSavedData;
 import net.wurstclient.WurstClient;
@@ -261,6 +265,9 @@ public abstract class ClientPacketListenerMixin
 	{
 		WurstClient.INSTANCE.getHax().newChunksHack.afterLoadChunk(x, z);
 		WurstClient.INSTANCE.getHax().newerNewChunksHack.afterLoadChunk(x, z);
+		WurstClient.INSTANCE.getHax().xRayHack.afterUpdateChunk(x, z);
+		WurstClient.INSTANCE.getBlockEntityIndex().afterUpdateChunk(x, z);
+		WurstClient.INSTANCE.getWalkabilityCache().afterLoadChunk(x, z);
 		if(minecraft.level != null)
 			WurstClient.INSTANCE.getHax().autoFlyHack
 				.onPathChunkLoaded(minecraft.level.getChunk(x, z));
@@ -287,6 +294,12 @@ public abstract class ClientPacketListenerMixin
 			.afterUpdateBlock(packet.getPos());
 		WurstClient.INSTANCE.getHax().autoFlyHack
 			.onPathBlockUpdate(packet.getPos(), packet.getBlockState());
+		WurstClient.INSTANCE.getHax().xRayHack
+			.afterUpdateBlock(packet.getPos());
+		WurstClient.INSTANCE.getBlockEntityIndex().afterUpdateChunk(
+			packet.getPos().getX() >> 4, packet.getPos().getZ() >> 4);
+		WurstClient.INSTANCE.getWalkabilityCache()
+			.afterUpdateBlock(packet.getPos());
 	}
 	
 	@Inject(
@@ -295,13 +308,34 @@ public abstract class ClientPacketListenerMixin
 	private void onOnChunkDeltaUpdate(
 		ClientboundSectionBlocksUpdatePacket packet, CallbackInfo ci)
 	{
+		LongArrayList positions = new LongArrayList();
 		packet.runUpdates((pos, state) -> {
 			WurstClient.INSTANCE.getHax().autoFlyHack.onPathBlockUpdate(pos,
 				state);
 			WurstClient.INSTANCE.getHax().newChunksHack.afterUpdateBlock(pos);
 			WurstClient.INSTANCE.getHax().newerNewChunksHack
 				.afterChunkDeltaUpdate(pos, state);
+			positions.add(pos.asLong());
 		});
+		
+		SectionPos section = packet.sectionPos;
+		WurstClient.INSTANCE.getHax().xRayHack.afterUpdateChunk(section.x(),
+			section.z());
+		WurstClient.INSTANCE.getBlockEntityIndex()
+			.afterUpdateChunk(section.x(), section.z());
+		WurstClient.INSTANCE.getWalkabilityCache()
+			.afterUpdateBlocks(section.x(), section.z(), positions);
+	}
+	
+	@Inject(
+		method = "handleForgetLevelChunk(Lnet/minecraft/network/protocol/game/ClientboundForgetLevelChunkPacket;)V",
+		at = @At("TAIL"))
+	private void onUnloadChunk(ClientboundForgetLevelChunkPacket packet,
+		CallbackInfo ci)
+	{
+		ChunkPos pos = packet.pos();
+		WurstClient.INSTANCE.getBlockEntityIndex().afterUpdateChunk(pos.x(),
+			pos.z());
 	}
 	
 	@Inject(
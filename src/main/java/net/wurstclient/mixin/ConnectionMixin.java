@@ -25,6 +25,7 @@ import net.minecraft.network.protocol.game.ServerboundMovePlayerPacket;
 import net.wurstclient.WurstClient;
 import net.wurstclient.event.EventManager;
 import net.wurstclient.events.ConnectionPacketOutputListener.ConnectionPacketOutputEvent;
+import net.wurstclient.events.PacketInputListener;
 import net.wurstclient.events.PacketInputListener.PacketInputEvent;
 import net.wurstclient.hacks.NbtFilterHack;
 import net.wurstclient.other_features.PacketFirewallOtf;
@@ -45,6 +46,9 @@ public abstract class ConnectionMixin
 	private void onChannelRead0(ChannelHandlerContext context, Packet<?> packet,
 		CallbackInfo ci)
 	{
+		if(!EventManager.hasListeners(PacketInputListener.class))
+			return;
+		
 		PacketInputEvent event = new PacketInputEvent(packet);
 		EventManager.fire(event);
 		
@@ -19,6 +19,7 @@ import net.minecraft.resources.Identifier;
 import net.minecraft.world.entity.Entity;
 import net.wurstclient.WurstClient;
 import net.wurstclient.event.EventManager;
+import net.wurstclient.events.GUIRenderListener;
 import net.wurstclient.events.GUIRenderListener.GUIRenderEvent;
 import net.wurstclient.hack.HackList;
 
@@ -36,6 +37,9 @@ public class HudMixin
 		if(WurstClient.MC.debugEntries.isOverlayVisible())
 			return;
 		
+		if(!EventManager.hasListeners(GUIRenderListener.class))
+			return;
+		
 		float tickDelta = tickCounter.getGameTimeDeltaPartialTick(true);
 		EventManager.fire(new GUIRenderEvent(context, tickDelta));
 	}
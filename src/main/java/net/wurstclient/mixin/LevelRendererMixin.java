@@ -26,6 +26,7 @@ import net.minecraft.client.renderer.SubmitNodeCollector;
 import net.minecraft.client.renderer.state.level.CameraRenderState;
 import net.minecraft.client.renderer.state.level.LevelRenderState;
 import net.wurstclient.event.EventManager;
+import net.wurstclient.events.RenderListener;
 import net.wurstclient.events.RenderListener.RenderEvent;
 import net.wurstclient.WurstClient;
 import net.wurstclient.hacks.RenderAdjustHack;
@@ -83,8 +84,8 @@ public class LevelRendererMixin
 		PoseStack matrixStack = new PoseStack();
 		matrixStack.mulPose(positionMatrix);
 		float tickProgress = tickCounter.getGameTimeDeltaPartialTick(false);
-		RenderEvent event = new RenderEvent(matrixStack, tickProgress);
-		EventManager.fire(event);
+		if(EventManager.hasListeners(RenderListener.class))
+			EventManager.fire(new RenderEvent(matrixStack, tickProgress));
 		GlobalEspManager.getInstance().endFrame(matrixStack);
 		net.wurstclient.util.RenderUtils.endTextFrame();
 	}
@@ -61,7 +61,7 @@ public class FluidRendererMixin
 				opacity = Math.min(opacity, surface.getSurfaceOpacity());
 		}
 		
-		if(xray.isOpacityMode() && !xray.isVisible(blockState.getBlock(), pos))
+		if(xray.isOpacityMode() && !xray.isVisible(blockState, pos))
 			opacity = Math.min(opacity, xray.getOpacityFloat());
 		
 		currentOpacity.set(opacity);
@@ -71,7 +71,7 @@ public abstract class ModelBlockRendererMixin implements ItemLike
 				opacity = Math.min(opacity, surface.getSurfaceOpacity());
 		}
 		
-		if(xray.isOpacityMode() && !xray.isVisible(state.getBlock(), pos))
+		if(xray.isOpacityMode() && !xray.isVisible(state, pos))
 			opacity = Math.min(opacity, xray.getOpacityFloat());
 		
 		currentOpacity.set(opacity);
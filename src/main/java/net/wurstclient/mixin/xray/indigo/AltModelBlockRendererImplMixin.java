@@ -91,7 +91,7 @@ public abstract class AltModelBlockRendererImplMixin
 		}
 		
 		XRayHack xray = WurstClient.INSTANCE.getHax().xRayHack;
-		if(!xray.isOpacityMode() || xray.isVisible(blockState.getBlock(), pos))
+		if(!xray.isOpacityMode() || xray.isVisible(blockState, pos))
 			return;
 		
 		quad.chunkLayer(ChunkSectionLayer.TRANSLUCENT);
@@ -53,7 +53,7 @@ public class BlockRendererMixin extends AbstractBlockRenderContextMixin
 		}
 		
 		XRayHack xray = WurstClient.INSTANCE.getHax().xRayHack;
-		if(!xray.isOpacityMode() || xray.isVisible(state.getBlock(), pos))
+		if(!xray.isOpacityMode() || xray.isVisible(state, pos))
 			return original;
 		
 		return ChunkSectionLayer.TRANSLUCENT;
@@ -86,7 +86,7 @@ public class BlockRendererMixin extends AbstractBlockRenderContextMixin
 		}
 		
 		XRayHack xray = WurstClient.INSTANCE.getHax().xRayHack;
-		if(!xray.isOpacityMode() || xray.isVisible(state.getBlock(), pos))
+		if(!xray.isOpacityMode() || xray.isVisible(state, pos))
 			return original;
 		float op = xray.getOpacityFloat();
 		if(op >= 0.99f)
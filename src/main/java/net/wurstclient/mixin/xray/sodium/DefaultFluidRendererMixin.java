@@ -149,7 +149,7 @@ public class DefaultFluidRendererMixin
 		
 		XRayHack xray = WurstClient.INSTANCE.getHax().xRayHack;
 		if(!xray.isOpacityMode()
-			|| xray.isVisible(fluid.createLegacyBlock().getBlock(), pos))
+			|| xray.isVisible(fluid.createLegacyBlock(), pos))
 			return original;
 		float op = xray.getOpacityFloat();
 		if(op >= 0.99f)
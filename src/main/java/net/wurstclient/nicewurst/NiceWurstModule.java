@@ -33,6 +33,7 @@ import net.wurstclient.Category;
 import net.wurstclient.Feature;
 import net.wurstclient.WurstClient;
 import net.wurstclient.WurstRenderLayers;
+import net.wurstclient.chestsearch.ChestDatabase;
 import net.wurstclient.chestsearch.ChestEntry;
 import net.wurstclient.chestsearch.ChestManager;
 import net.wurstclient.config.BuildConfig;
@@ -399,24 +400,70 @@ public final class NiceWurstModule
 	private static final class OpenedChestMarker
 		implements UpdateListener, RenderListener
 	{
-		private List<ChestEntry> openedChests = List.of();
+		private ChestManager chestManager;
+		private ChestDatabase database;
+		private long version;
+		private String dimension;
+		private List<Marker> markers = List.of();
 		
 		@Override
 		public void onUpdate()
 		{
+			Level level = WurstClient.MC.level;
+			if(level == null || level.dimension() == null)
+			{
+				database = null;
+				markers = List.of();
+				return;
+			}
+			
 			try
 			{
-				openedChests = new ChestManager().all();
+				if(chestManager == null)
+					chestManager = new ChestManager();
+				ChestDatabase db = chestManager.getCurrentDb();
+				String curDimFull = level.dimension().identifier().toString();
+				
+				// only rebuild when a chest was recorded or removed
+				if(db == database && db.getVersion() == version
+					&& curDimFull.equals(dimension))
+					return;
+				
+				ChestDatabase.Snapshot snapshot = db.snapshot();
+				markers = getMarkers(snapshot.entries(), curDimFull,
+					level.dimension().identifier().getPath());
+				database = db;
+				version = snapshot.version();
+				dimension = curDimFull;
+				
 			}catch(Throwable ignored)
 			{
-				openedChests = List.of();
+				database = null;
+				markers = List.of();
 			}
 		}
 		
+		private static List<Marker> getMarkers(List<ChestEntry> entries,
+			String curDimFull, String curDimPath)
+		{
+			ArrayList<Marker> markers = new ArrayList<>();
+			for(ChestEntry entry : entries)
+			{
+				if(entry == null || entry.dimension == null)
+					continue;
+				if(!dimensionMatches(entry.dimension, curDimFull, curDimPath))
+					continue;
+				BlockPos pos = entry.getClickedPos();
+				if(pos != null)
+					markers.add(new Marker(pos, entryToBox(entry)));
+			}
+			return markers;
+		}
+		
 		@Override
 		public void onRender(PoseStack matrixStack, float partialTicks)
 		{
-			if(matrixStack == null || openedChests.isEmpty())
+			if(matrixStack == null || markers.isEmpty())
 				return;
 			
 			if(WurstClient.INSTANCE == null || WurstClient.MC == null)
@@ -431,21 +478,10 @@ public final class NiceWurstModule
 			if(level == null || level.dimension() == null)
 				return;
 			
-			String curDimFull = level.dimension().identifier().toString();
-			String curDimPath = level.dimension().identifier().getPath();
-			
 			ArrayList<AABB> boxes = new ArrayList<>();
-			for(ChestEntry entry : openedChests)
-			{
-				if(entry == null || entry.dimension == null)
-					continue;
-				if(!dimensionMatches(entry.dimension, curDimFull, curDimPath))
-					continue;
-				BlockPos pos = entry.getClickedPos();
-				if(pos == null || !level.isLoaded(pos))
-					continue;
-				boxes.add(entryToBox(entry));
-			}
+			for(Marker marker : markers)
+				if(level.isLoaded(marker.pos()))
+					boxes.add(marker.box());
 			
 			if(boxes.isEmpty())
 				return;
@@ -476,6 +512,9 @@ public final class NiceWurstModule
 			int maxZ = Math.max(entry.z, entry.maxZ) + 1;
 			return new AABB(minX, minY, minZ, maxX, maxY, maxZ);
 		}
+		
+		private record Marker(BlockPos pos, AABB box)
+		{}
 	}
 	
 	private static boolean isHackAllowed(Hack hack)
@@ -28,6 +28,14 @@ public final class PerformanceOverlayOtf extends OtherFeature
 		0.5, 3.0, 0.05, ValueDisplay.DECIMAL);
 	private final EnumSetting<SortMode> sortMode =
 		new EnumSetting<>("Sort by", SortMode.values(), SortMode.TOTAL_TIME);
+	private final EnumSetting<Window> window = new EnumSetting<>("Window",
+		"How many seconds of timings are averaged together.", Window.values(),
+		Window.ONE_SECOND);
+	private final CheckboxSetting showPercentiles = new CheckboxSetting(
+		"Show percentiles",
+		"Show p50/p95/p99 callback times, which tell apart hacks that are"
+			+ " slow every frame from hacks that only stutter sometimes.",
+		true);
 	private final CheckboxSetting showUpdate = new CheckboxSetting(
 		"Show update time", "Include onUpdate() timing.", true);
 	private final CheckboxSetting showRender = new CheckboxSetting(
@@ -53,6 +61,8 @@ public final class PerformanceOverlayOtf extends OtherFeature
 		addSetting(maxRows);
 		addSetting(fontScale);
 		addSetting(sortMode);
+		addSetting(window);
+		addSetting(showPercentiles);
 		addSetting(showUpdate);
 		addSetting(showRender);
 		addSetting(showGui);
@@ -106,6 +116,16 @@ public final class PerformanceOverlayOtf extends OtherFeature
 		return sortMode.getSelected();
 	}
 	
+	public int getWindowSeconds()
+	{
+		return window.getSelected().seconds;
+	}
+	
+	public boolean shouldShowPercentiles()
+	{
+		return showPercentiles.isChecked();
+	}
+	
 	public boolean shouldShowUpdate()
 	{
 		return showUpdate.isChecked();
@@ -170,8 +190,9 @@ public final class PerformanceOverlayOtf extends OtherFeature
 	
 	public enum SortMode
 	{
-		TOTAL_TIME("Total time (1s)"),
-		PEAK_TIME("Peak callback");
+		TOTAL_TIME("Total time"),
+		PEAK_TIME("Peak callback"),
+		P99_TIME("p99 callback");
 		
 		private final String name;
 		
@@ -186,4 +207,26 @@ public final class PerformanceOverlayOtf extends OtherFeature
 			return name;
 		}
 	}
+	
+	public enum Window
+	{
+		ONE_SECOND("1s", 1),
+		TEN_SECONDS("10s", 10),
+		SIXTY_SECONDS("60s", 60);
+		
+		private final String name;
+		private final int seconds;
+		
+		private Window(String name, int seconds)
+		{
+			this.name = name;
+			this.seconds = seconds;
+		}
+		
+		@Override
+		public String toString()
+		{
+			return name;
+		}
+	}
 }
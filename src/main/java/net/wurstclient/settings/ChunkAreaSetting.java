@@ -106,7 +106,11 @@ public final class ChunkAreaSetting
 		
 		public boolean isInRange(ChunkPos pos)
 		{
-			ChunkPos center = MC.player.chunkPosition();
+			return isInRange(pos, MC.player.chunkPosition());
+		}
+		
+		public boolean isInRange(ChunkPos pos, ChunkPos center)
+		{
 			return Math.abs(pos.x() - center.x()) <= chunkRange
 				&& Math.abs(pos.z() - center.z()) <= chunkRange;
 		}
@@ -8,10 +8,17 @@
 package net.wurstclient.util;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.Stream.Builder;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.minecraft.core.BlockPos;
 import net.wurstclient.hacks.SearchHack;
 
@@ -25,6 +32,16 @@ public enum BlockVertexCompiler
 {
 	;
 	
+	private static final int DOWN = 0;
+	private static final int UP = 1;
+	private static final int NORTH = 2;
+	private static final int SOUTH = 3;
+	private static final int WEST = 4;
+	private static final int EAST = 5;
+	private static final int[] SIDE_X = {0, 0, 0, 0, -1, 1};
+	private static final int[] SIDE_Y = {-1, 1, 0, 0, 0, 0};
+	private static final int[] SIDE_Z = {0, 0, -1, 1, 0, 0};
+	
 	public static ArrayList<int[]> compile(HashSet<BlockPos> blocks)
 	{
 		Stream<BlockPos> stream = ShaderUtils.isShaderSafeMode()
@@ -43,6 +60,207 @@ public enum BlockVertexCompiler
 			.collect(Collectors.toCollection(ArrayList::new));
 	}
 	
+	/**
+	 * Like {@link #compile(HashSet)}, but reads packed
+	 * {@link BlockPos#asLong()} positions directly and merges coplanar
+	 * neighboring faces into larger quads. The vertices are written into one
+	 * flat <code>x, y, z</code> int list instead of an array per vertex, so
+	 * large result sets like deepslate or netherrack stay cheap to build and
+	 * to draw.
+	 */
+	public static Mesh compileGreedy(LongOpenHashSet blocks)
+	{
+		return compileGreedy(blocks, blocks);
+	}
+	
+	/**
+	 * Same as {@link #compileGreedy(LongOpenHashSet)}, but only meshes
+	 * <code>blocks</code> while hiding the faces that touch any of
+	 * <code>neighbors</code>. This lets a subset of a larger result, e.g. one
+	 * chunk, be meshed on its own without drawing faces along its border that
+	 * the full mesh wouldn't have.
+	 */
+	public static Mesh compileGreedy(LongOpenHashSet blocks,
+		LongOpenHashSet neighbors)
+	{
+		// collect the exposed faces of each plane, e.g. all the down faces
+		// at y=12, as 2D cells
+		Long2ObjectOpenHashMap<LongArrayList> planes =
+			new Long2ObjectOpenHashMap<>();
+		int faces = 0;
+		LongIterator iterator = blocks.iterator();
+		while(iterator.hasNext())
+		{
+			long pos = iterator.nextLong();
+			int x = BlockPos.getX(pos);
+			int y = BlockPos.getY(pos);
+			int z = BlockPos.getZ(pos);
+			
+			for(int side = 0; side < 6; side++)
+			{
+				if(neighbors.contains(BlockPos.offset(pos, SIDE_X[side],
+					SIDE_Y[side], SIDE_Z[side])))
+					continue;
+				
+				int plane;
+				int u;
+				int v;
+				switch(side)
+				{
+					case DOWN, UP ->
+					{
+						plane = side == UP ? y + 1 : y;
+						u = x;
+						v = z;
+					}
+					case NORTH, SOUTH ->
+					{
+						plane = side == SOUTH ? z + 1 : z;
+						u = x;
+						v = y;
+					}
+					default ->
+					{
+						plane = side == EAST ? x + 1 : x;
+						u = z;
+						v = y;
+					}
+				}
+				
+				planes.computeIfAbsent(packPlane(side, plane),
+					k -> new LongArrayList()).add(packCell(u, v));
+				faces++;
+			}
+		}
+		
+		IntArrayList vertices = new IntArrayList();
+		for(Long2ObjectMap.Entry<LongArrayList> entry : planes
+			.long2ObjectEntrySet())
+		{
+			long planeKey = entry.getLongKey();
+			mergePlane((int)(planeKey >>> 32), (int)planeKey,
+				entry.getValue(), vertices);
+		}
+		
+		return new Mesh(vertices, faces);
+	}
+	
+	/**
+	 * Covers the given cells of one plane with as few rectangles as possible,
+	 * growing each one along u first and then along v.
+	 */
+	private static void mergePlane(int side, int plane, LongArrayList cellList,
+		IntArrayList vertices)
+	{
+		long[] cells = cellList.toLongArray();
+		// sorted by v, then u
+		Arrays.sort(cells);
+		LongOpenHashSet remaining = new LongOpenHashSet(cells);
+		
+		for(long cell : cells)
+		{
+			if(!remaining.remove(cell))
+				continue;
+			
+			int u0 = unpackU(cell);
+			int v0 = unpackV(cell);
+			
+			int u1 = u0 + 1;
+			while(remaining.remove(packCell(u1, v0)))
+				u1++;
+			
+			int v1 = v0 + 1;
+			while(isRowRemaining(remaining, u0, u1, v1))
+			{
+				for(int u = u0; u < u1; u++)
+					remaining.remove(packCell(u, v1));
+				v1++;
+			}
+			
+			addQuad(side, plane, u0, v0, u1, v1, vertices);
+		}
+	}
+	
+	private static boolean isRowRemaining(LongOpenHashSet remaining, int u0,
+		int u1, int v)
+	{
+		for(int u = u0; u < u1; u++)
+			if(!remaining.contains(packCell(u, v)))
+				return false;
+			
+		return true;
+	}
+	
+	/**
+	 * Adds the four corners of one merged face, in the same winding order as
+	 * the single-block faces of {@link #getVertices(BlockPos, HashSet)}.
+	 */
+	private static void addQuad(int side, int plane, int u0, int v0, int u1,
+		int v1, IntArrayList vertices)
+	{
+		addVertex(side, plane, u0, v0, vertices);
+		if(side == DOWN || side == SOUTH || side == WEST)
+		{
+			addVertex(side, plane, u1, v0, vertices);
+			addVertex(side, plane, u1, v1, vertices);
+			addVertex(side, plane, u0, v1, vertices);
+			
+		}else
+		{
+			addVertex(side, plane, u0, v1, vertices);
+			addVertex(side, plane, u1, v1, vertices);
+			addVertex(side, plane, u1, v0, vertices);
+		}
+	}
+	
+	private static void addVertex(int side, int plane, int u, int v,
+		IntArrayList vertices)
+	{
+		switch(side)
+		{
+			case DOWN, UP ->
+			{
+				vertices.add(u);
+				vertices.add(plane);
+				vertices.add(v);
+			}
+			case NORTH, SOUTH ->
+			{
+				vertices.add(u);
+				vertices.add(v);
+				vertices.add(plane);
+			}
+			default ->
+			{
+				vertices.add(plane);
+				vertices.add(v);
+				vertices.add(u);
+			}
+		}
+	}
+	
+	private static long packPlane(int side, int plane)
+	{
+		return (long)side << 32 | plane & 0xFFFFFFFFL;
+	}
+	
+	// u is stored with its sign bit flipped, so that sorting the packed
+	// cells as signed longs orders them by v and then by u
+	private static long packCell(int u, int v)
+	{
+		return (long)v << 32 | (u ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+	}
+	
+	private static int unpackU(long cell)
+	{
+		return (int)cell ^ Integer.MIN_VALUE;
+	}
+	
+	private static int unpackV(long cell)
+	{
+		return (int)(cell >> 32);
+	}
+	
 	private static int[] applyRegionOffset(int[] vertex, RegionPos region)
 	{
 		vertex[0] -= region.x();
@@ -110,4 +328,16 @@ public enum BlockVertexCompiler
 	{
 		return new int[]{pos.getX() + x, pos.getY() + y, pos.getZ() + z};
 	}
+	
+	/**
+	 * A merged mesh. <code>faces</code> is the number of single-block faces
+	 * it replaces.
+	 */
+	public record Mesh(IntArrayList vertices, int faces)
+	{
+		public int getQuadCount()
+		{
+			return vertices.size() / 12;
+		}
+	}
 }
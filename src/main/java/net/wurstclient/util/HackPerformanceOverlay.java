@@ -19,7 +19,6 @@ import net.minecraft.client.gui.screens.inventory.AbstractContainerScreen;
 import net.minecraft.util.Mth;
 import net.wurstclient.WurstClient;
 import net.wurstclient.other_features.PerformanceOverlayOtf;
-import net.wurstclient.other_features.PerformanceOverlayOtf.SortMode;
 
 public final class HackPerformanceOverlay
 {
@@ -68,8 +67,9 @@ public final class HackPerformanceOverlay
 			Math.max(1, (int)Math.round(LINE_SPACING * fontScale));
 		int scaledWidth = WurstClient.MC.getWindow().getGuiScaledWidth();
 		int scaledHeight = WurstClient.MC.getWindow().getGuiScaledHeight();
-		HackPerformanceTracker.ListSnapshot snapshot = HackPerformanceTracker
-			.getTopRows(otf.getMaxRows(), otf.getSortMode());
+		HackPerformanceTracker.ListSnapshot snapshot =
+			HackPerformanceTracker.getTopRows(otf.getMaxRows(),
+				otf.getSortMode(), otf.getWindowSeconds());
 		if(snapshot.rows().isEmpty())
 			return;
 		
@@ -140,9 +140,15 @@ public final class HackPerformanceOverlay
 		ArrayList<String> lines = new ArrayList<>();
 		List<HackPerformanceTracker.Row> rows = snapshot.rows();
 		boolean usingWindowData = snapshot.usingWindowData();
-		String mode = usingWindowData ? "1s window" : "live";
-		lines.add("Hack Performance [" + mode + "] sort="
-			+ (otf.getSortMode() == SortMode.PEAK_TIME ? "peak" : "total"));
+		String mode =
+			usingWindowData ? snapshot.windowSeconds() + "s window" : "live";
+		String sort = switch(otf.getSortMode())
+		{
+			case PEAK_TIME -> "peak";
+			case P99_TIME -> "p99";
+			default -> "total";
+		};
+		lines.add("Hack Performance [" + mode + "] sort=" + sort);
 		
 		double fps = Math.max(1, MC.getFps());
 		double frameMs = 1000.0 / fps;
@@ -151,7 +157,8 @@ public final class HackPerformanceOverlay
 			+ formatMs(snapshot.allTotalMs()) + " | Other "
 			+ formatMs(unattributedMs));
 		lines.add("Top hacks: total " + (usingWindowData ? "ms/s" : "ms")
-			+ " (peak callback ms)");
+			+ " (peak callback ms)"
+			+ (otf.shouldShowPercentiles() ? " p50/p95/p99" : ""));
 		if(snapshot.hiddenRowsTotalMs() > 0.01)
 			lines.add("Hidden by row limit: "
 				+ formatMs(snapshot.hiddenRowsTotalMs()));
@@ -161,6 +168,10 @@ public final class HackPerformanceOverlay
 			StringBuilder sb = new StringBuilder(row.name());
 			sb.append(" | ").append(formatMs(row.totalMs()));
 			sb.append(" (peak ").append(formatMs(row.peakMs())).append(")");
+			if(otf.shouldShowPercentiles())
+				sb.append(" ").append(formatMs(row.p50Ms())).append("/")
+					.append(formatMs(row.p95Ms())).append("/")
+					.append(formatMs(row.p99Ms()));
 			
 			if(otf.shouldShowUpdate() || otf.shouldShowRender()
 				|| otf.shouldShowGui())
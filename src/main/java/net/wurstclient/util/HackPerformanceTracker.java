@@ -8,28 +8,52 @@
 package net.wurstclient.util;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Comparator;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import net.wurstclient.WurstClient;
 import net.wurstclient.event.Listener;
 import net.wurstclient.hack.Hack;
 import net.wurstclient.other_features.PerformanceOverlayOtf.SortMode;
 
+/**
+ * Collects per-hack callback timings for the performance overlay.
+ *
+ * <p>
+ * Every recording thread fills its own one-second buckets without any
+ * locking and hands each completed second to the reader through a lock-free
+ * queue. The reader keeps the last {@link #HISTORY_SECONDS} seconds per hack
+ * and aggregates them into rolling windows, so the overlay can show whether a
+ * hack stutters every frame or only once a minute.
+ */
 public enum HackPerformanceTracker
 {
 	;
 	
 	private static final long WINDOW_NS = 1_000_000_000L;
-	private static final long STALE_NS = 30_000_000_000L;
+	private static final long STALE_SECONDS = 30;
+	private static final int HISTORY_SECONDS = 60;
+	private static final long BASE_NS = System.nanoTime();
+	
+	private static final ThreadLocal<Recorder> RECORDERS =
+		ThreadLocal.withInitial(Recorder::new);
+	private static final ConcurrentLinkedQueue<CompletedSecond> COMPLETED =
+		new ConcurrentLinkedQueue<>();
 	
-	private static final Object LOCK = new Object();
-	private static final IdentityHashMap<Hack, Stats> STATS =
+	// Everything below is only touched by readers, while holding READ_LOCK.
+	private static final Object READ_LOCK = new Object();
+	private static final IdentityHashMap<Hack, History> HISTORY =
 		new IdentityHashMap<>();
+	private static long activeSinceSecond = Long.MIN_VALUE;
+	private static long lastDrainedSecond = Long.MIN_VALUE;
 	
-	private static long windowStartNs = System.nanoTime();
-	private static boolean hasCompletedWindow;
+	private static ListSnapshot cachedSnapshot;
+	private static long cachedSecond = -1;
+	private static int cachedMaxRows;
+	private static SortMode cachedSortMode;
+	private static int cachedWindowSeconds;
 	
 	public enum Phase
 	{
@@ -54,166 +78,295 @@ public enum HackPerformanceTracker
 			|| !hack.isEnabled())
 			return;
 		
-		long nowNs = System.nanoTime();
-		synchronized(LOCK)
+		RECORDERS.get().record(hack, phase, durationNs, getSecond());
+	}
+	
+	/**
+	 * Returns the hacks that took the most time in the last
+	 * <code>windowSeconds</code> completed seconds. The result only changes
+	 * once per second, so calling this every frame is cheap.
+	 */
+	public static ListSnapshot getTopRows(int maxRows, SortMode sortMode,
+		int windowSeconds)
+	{
+		long second = getSecond();
+		int window = Math.max(1, Math.min(HISTORY_SECONDS, windowSeconds));
+		
+		// the calling thread records too, so hand over its last second now
+		// instead of waiting for its next callback
+		RECORDERS.get().publishBefore(second);
+		
+		synchronized(READ_LOCK)
 		{
-			rollWindow(nowNs);
-			Stats stats = STATS.computeIfAbsent(hack, h -> new Stats());
-			stats.record(phase, durationNs, nowNs);
+			drainCompleted();
+			
+			if(cachedSnapshot != null && cachedSecond == second
+				&& cachedMaxRows == maxRows && cachedSortMode == sortMode
+				&& cachedWindowSeconds == window)
+				return cachedSnapshot;
+			
+			cachedSnapshot = buildSnapshot(second, maxRows, sortMode, window);
+			cachedSecond = second;
+			cachedMaxRows = maxRows;
+			cachedSortMode = sortMode;
+			cachedWindowSeconds = window;
+			return cachedSnapshot;
 		}
 	}
 	
-	public static ListSnapshot getTopRows(int maxRows, SortMode sortMode)
+	private static ListSnapshot buildSnapshot(long second, int maxRows,
+		SortMode sortMode, int window)
 	{
-		long nowNs = System.nanoTime();
-		synchronized(LOCK)
+		boolean hasData = lastDrainedSecond != Long.MIN_VALUE;
+		int coveredSeconds = window;
+		if(hasData)
+			coveredSeconds = (int)Math.max(1,
+				Math.min(window, second - activeSinceSecond));
+		
+		ArrayList<Row> rows = new ArrayList<>(HISTORY.size());
+		Iterator<Map.Entry<Hack, History>> iterator =
+			HISTORY.entrySet().iterator();
+		while(iterator.hasNext())
 		{
-			rollWindow(nowNs);
+			Map.Entry<Hack, History> e = iterator.next();
+			Hack hack = e.getKey();
+			History history = e.getValue();
+			if(!hack.isEnabled()
+				&& second - history.lastSecond > STALE_SECONDS)
+			{
+				iterator.remove();
+				continue;
+			}
 			
-			Collection<Map.Entry<Hack, Stats>> entries = STATS.entrySet();
-			ArrayList<Row> rows = new ArrayList<>(entries.size());
-			for(Map.Entry<Hack, Stats> e : entries)
+			Row row = history.toRow(hack.getName(), second, window,
+				coveredSeconds);
+			if(row == null)
 			{
-				Hack hack = e.getKey();
-				Stats stats = e.getValue();
-				if(hack == null || stats == null)
-					continue;
-				if(!hack.isEnabled() && nowNs - stats.lastSeenNs > STALE_NS)
+				if(!hack.isEnabled())
 					continue;
 				
-				rows.add(stats.toRow(hack.getName(), hasCompletedWindow));
+				row = new Row(hack.getName(), 0, 0, 0, 0,
+					history.getLifetimePeakMs(), 0, 0, 0);
 			}
 			
-			if(sortMode == SortMode.PEAK_TIME)
-				rows.sort(Comparator.comparingDouble(Row::peakMs).reversed());
-			else
-				rows.sort(Comparator.comparingDouble(Row::totalMs).reversed());
-			
-			int limit = Math.max(1, maxRows);
-			double allUpdateMs = 0;
-			double allRenderMs = 0;
-			double allGuiMs = 0;
-			double allTotalMs = 0;
-			for(Row row : rows)
-			{
-				allUpdateMs += row.updateMs();
-				allRenderMs += row.renderMs();
-				allGuiMs += row.guiMs();
-				allTotalMs += row.totalMs();
-			}
+			rows.add(row);
+		}
+		
+		Comparator<Row> comparator = switch(sortMode)
+		{
+			case PEAK_TIME -> Comparator.comparingDouble(Row::peakMs);
+			case P99_TIME -> Comparator.comparingDouble(Row::p99Ms);
+			default -> Comparator.comparingDouble(Row::totalMs);
+		};
+		rows.sort(comparator.reversed());
+		
+		int limit = Math.max(1, maxRows);
+		double allUpdateMs = 0;
+		double allRenderMs = 0;
+		double allGuiMs = 0;
+		double allTotalMs = 0;
+		for(Row row : rows)
+		{
+			allUpdateMs += row.updateMs();
+			allRenderMs += row.renderMs();
+			allGuiMs += row.guiMs();
+			allTotalMs += row.totalMs();
+		}
+		
+		ArrayList<Row> visibleRows = rows;
+		if(visibleRows.size() > limit)
+			visibleRows = new ArrayList<>(visibleRows.subList(0, limit));
+		
+		double visibleTotalMs = 0;
+		for(Row row : visibleRows)
+			visibleTotalMs += row.totalMs();
+		
+		return new ListSnapshot(visibleRows, hasData, coveredSeconds,
+			allUpdateMs, allRenderMs, allGuiMs, allTotalMs,
+			allTotalMs - visibleTotalMs);
+	}
+	
+	private static void drainCompleted()
+	{
+		CompletedSecond completed;
+		while((completed = COMPLETED.poll()) != null)
+		{
+			// a gap longer than the history means profiling was paused, so
+			// the windows start over
+			if(lastDrainedSecond == Long.MIN_VALUE
+				|| completed.second() - lastDrainedSecond > HISTORY_SECONDS)
+				activeSinceSecond = completed.second();
 			
-			ArrayList<Row> visibleRows = rows;
-			if(visibleRows.size() > limit)
-				visibleRows = new ArrayList<>(visibleRows.subList(0, limit));
+			lastDrainedSecond = Math.max(lastDrainedSecond, completed.second());
 			
-			double visibleTotalMs = 0;
-			for(Row row : visibleRows)
-				visibleTotalMs += row.totalMs();
+			for(Map.Entry<Hack, SecondStats> e : completed.stats().entrySet())
+				HISTORY.computeIfAbsent(e.getKey(), h -> new History())
+					.add(completed.second(), e.getValue());
 			
-			return new ListSnapshot(visibleRows, hasCompletedWindow,
-				allUpdateMs, allRenderMs, allGuiMs, allTotalMs,
-				allTotalMs - visibleTotalMs);
+			cachedSnapshot = null;
 		}
 	}
 	
-	private static void rollWindow(long nowNs)
+	private static long getSecond()
 	{
-		if(nowNs - windowStartNs < WINDOW_NS)
-			return;
+		return (System.nanoTime() - BASE_NS) / WINDOW_NS;
+	}
+	
+	private static double nanosToMillis(long ns)
+	{
+		return ns / 1_000_000D;
+	}
+	
+	/**
+	 * Per-thread recording state. Only its owning thread ever touches it.
+	 */
+	private static final class Recorder
+	{
+		private long second = -1;
+		private IdentityHashMap<Hack, SecondStats> stats =
+			new IdentityHashMap<>();
 		
-		long windowsElapsed = Math.max(1L, (nowNs - windowStartNs) / WINDOW_NS);
-		windowStartNs += windowsElapsed * WINDOW_NS;
-		hasCompletedWindow = true;
+		private void record(Hack hack, Phase phase, long durationNs,
+			long nowSecond)
+		{
+			publishBefore(nowSecond);
+			second = nowSecond;
+			stats.computeIfAbsent(hack, h -> new SecondStats()).record(phase,
+				durationNs);
+		}
 		
-		ArrayList<Hack> stale = new ArrayList<>();
-		for(Map.Entry<Hack, Stats> e : STATS.entrySet())
+		private void publishBefore(long nowSecond)
 		{
-			Stats stats = e.getValue();
-			stats.rollWindow();
+			if(second == nowSecond || stats.isEmpty())
+				return;
 			
-			Hack hack = e.getKey();
-			if((hack == null || !hack.isEnabled())
-				&& nowNs - stats.lastSeenNs > STALE_NS)
-				stale.add(hack);
+			COMPLETED.add(new CompletedSecond(second, stats));
+			stats = new IdentityHashMap<>();
 		}
-		
-		for(Hack hack : stale)
-			STATS.remove(hack);
 	}
 	
-	private static final class Stats
+	private record CompletedSecond(long second,
+		IdentityHashMap<Hack, SecondStats> stats)
+	{}
+	
+	private static final class SecondStats
 	{
-		private final long[] currentTotalNs = new long[Phase.values().length];
-		private final int[] currentCalls = new int[Phase.values().length];
-		private final long[] currentMaxNs = new long[Phase.values().length];
+		private final long[] totalNs = new long[Phase.values().length];
+		private final long[] maxNs = new long[Phase.values().length];
+		private final LatencyHistogram histogram = new LatencyHistogram();
 		
-		private final long[] lastTotalNs = new long[Phase.values().length];
-		private final int[] lastCalls = new int[Phase.values().length];
-		private final long[] lastMaxNs = new long[Phase.values().length];
-		
-		private final long[] peakNs = new long[Phase.values().length];
-		private long lastSeenNs = System.nanoTime();
-		
-		private void record(Phase phase, long durationNs, long nowNs)
+		private void record(Phase phase, long durationNs)
 		{
 			int idx = phase.ordinal();
-			currentTotalNs[idx] += durationNs;
-			currentCalls[idx]++;
-			if(durationNs > currentMaxNs[idx])
-				currentMaxNs[idx] = durationNs;
-			if(durationNs > peakNs[idx])
-				peakNs[idx] = durationNs;
-			lastSeenNs = nowNs;
+			totalNs[idx] += durationNs;
+			if(durationNs > maxNs[idx])
+				maxNs[idx] = durationNs;
+			histogram.record(durationNs);
+		}
+		
+		private void add(SecondStats other)
+		{
+			for(int i = 0; i < totalNs.length; i++)
+			{
+				totalNs[i] += other.totalNs[i];
+				maxNs[i] = Math.max(maxNs[i], other.maxNs[i]);
+			}
+			histogram.add(other.histogram);
 		}
+	}
+	
+	/**
+	 * Ring buffer of the last {@link #HISTORY_SECONDS} seconds of one hack.
+	 */
+	private static final class History
+	{
+		private final SecondStats[] seconds = new SecondStats[HISTORY_SECONDS];
+		private final long[] secondIds = new long[HISTORY_SECONDS];
+		private final long[] peakNs = new long[Phase.values().length];
+		private long lastSecond;
 		
-		private void rollWindow()
+		private void add(long second, SecondStats stats)
 		{
-			for(int i = 0; i < currentTotalNs.length; i++)
+			int slot = (int)Math.floorMod(second, (long)HISTORY_SECONDS);
+			if(seconds[slot] != null && secondIds[slot] == second)
+				seconds[slot].add(stats);
+			else
 			{
-				lastTotalNs[i] = currentTotalNs[i];
-				lastCalls[i] = currentCalls[i];
-				lastMaxNs[i] = currentMaxNs[i];
-				currentTotalNs[i] = 0;
-				currentCalls[i] = 0;
-				currentMaxNs[i] = 0;
+				seconds[slot] = stats;
+				secondIds[slot] = second;
 			}
+			
+			for(int i = 0; i < peakNs.length; i++)
+				peakNs[i] = Math.max(peakNs[i], stats.maxNs[i]);
+			lastSecond = Math.max(lastSecond, second);
 		}
 		
-		private Row toRow(String name, boolean useLastWindow)
+		/**
+		 * Aggregates the completed seconds in the window, or returns
+		 * <code>null</code> if the hack wasn't called during that time.
+		 */
+		private Row toRow(String name, long nowSecond, int window,
+			int coveredSeconds)
 		{
-			long[] totals = useLastWindow ? lastTotalNs : currentTotalNs;
-			long[] maxes = useLastWindow ? lastMaxNs : currentMaxNs;
+			long[] totals = new long[Phase.values().length];
+			long windowMaxNs = 0;
+			LatencyHistogram histogram = new LatencyHistogram();
+			
+			for(long second = nowSecond - window; second < nowSecond; second++)
+			{
+				int slot = (int)Math.floorMod(second, (long)HISTORY_SECONDS);
+				SecondStats stats = seconds[slot];
+				if(stats == null || secondIds[slot] != second)
+					continue;
+				
+				for(int i = 0; i < totals.length; i++)
+				{
+					totals[i] += stats.totalNs[i];
+					windowMaxNs = Math.max(windowMaxNs, stats.maxNs[i]);
+				}
+				histogram.add(stats.histogram);
+			}
+			
+			if(histogram.getTotalCount() == 0)
+				return null;
 			
-			double updateMs = nanosToMillis(totals[Phase.UPDATE.ordinal()]);
-			double renderMs = nanosToMillis(totals[Phase.RENDER.ordinal()]);
-			double guiMs = nanosToMillis(totals[Phase.GUI.ordinal()]);
+			double updateMs = nanosToMillis(totals[Phase.UPDATE.ordinal()])
+				/ coveredSeconds;
+			double renderMs = nanosToMillis(totals[Phase.RENDER.ordinal()])
+				/ coveredSeconds;
+			double guiMs =
+				nanosToMillis(totals[Phase.GUI.ordinal()]) / coveredSeconds;
 			double totalMs = updateMs + renderMs + guiMs;
 			
-			double windowPeakMs =
-				nanosToMillis(Math.max(maxes[Phase.UPDATE.ordinal()],
-					Math.max(maxes[Phase.RENDER.ordinal()],
-						maxes[Phase.GUI.ordinal()])));
-			double lifetimePeakMs =
-				nanosToMillis(Math.max(peakNs[Phase.UPDATE.ordinal()],
-					Math.max(peakNs[Phase.RENDER.ordinal()],
-						peakNs[Phase.GUI.ordinal()])));
+			double peakMs =
+				Math.max(nanosToMillis(windowMaxNs), getLifetimePeakMs());
 			
-			return new Row(name, updateMs, renderMs, guiMs, totalMs,
-				Math.max(windowPeakMs, lifetimePeakMs));
+			return new Row(name, updateMs, renderMs, guiMs, totalMs, peakMs,
+				nanosToMillis(histogram.getValueAtPercentile(50)),
+				nanosToMillis(histogram.getValueAtPercentile(95)),
+				nanosToMillis(histogram.getValueAtPercentile(99)));
 		}
 		
-		private double nanosToMillis(long ns)
+		private double getLifetimePeakMs()
 		{
-			return ns / 1_000_000D;
+			long peak = 0;
+			for(long ns : peakNs)
+				peak = Math.max(peak, ns);
+			return nanosToMillis(peak);
 		}
 	}
 	
+	/**
+	 * Update, render, GUI and total times are averages in ms per second of
+	 * the window. Peak and percentiles are per callback.
+	 */
 	public record Row(String name, double updateMs, double renderMs,
-		double guiMs, double totalMs, double peakMs)
+		double guiMs, double totalMs, double peakMs, double p50Ms,
+		double p95Ms, double p99Ms)
 	{}
 	
 	public record ListSnapshot(ArrayList<Row> rows, boolean usingWindowData,
-		double allUpdateMs, double allRenderMs, double allGuiMs,
-		double allTotalMs, double hiddenRowsTotalMs)
+		int windowSeconds, double allUpdateMs, double allRenderMs,
+		double allGuiMs, double allTotalMs, double hiddenRowsTotalMs)
 	{}
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2014-2026 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.util;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size log-linear histogram for non-negative values such as durations
+ * in nanoseconds. Each power of two is split into 8 linear buckets, so every
+ * percentile is accurate to within 12.5% no matter how large the value is.
+ * Recording never allocates.
+ *
+ * <p>
+ * Not thread-safe.
+ */
+public final class LatencyHistogram
+{
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKET_COUNT =
+		(Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+	
+	private final long[] counts = new long[BUCKET_COUNT];
+	private long totalCount;
+	private long maxValue;
+	
+	public void record(long value)
+	{
+		if(value < 0)
+			value = 0;
+		
+		counts[getBucket(value)]++;
+		totalCount++;
+		if(value > maxValue)
+			maxValue = value;
+	}
+	
+	public void add(LatencyHistogram other)
+	{
+		if(other.totalCount == 0)
+			return;
+		
+		for(int i = 0; i < BUCKET_COUNT; i++)
+			counts[i] += other.counts[i];
+		
+		totalCount += other.totalCount;
+		maxValue = Math.max(maxValue, other.maxValue);
+	}
+	
+	public void reset()
+	{
+		if(totalCount == 0)
+			return;
+		
+		Arrays.fill(counts, 0);
+		totalCount = 0;
+		maxValue = 0;
+	}
+	
+	/**
+	 * Returns the smallest recorded bucket bound that at least the given
+	 * percentage (0-100) of all values are less than or equal to, or 0 if
+	 * nothing has been recorded.
+	 */
+	public long getValueAtPercentile(double percentile)
+	{
+		if(totalCount == 0)
+			return 0;
+		
+		double fraction = Math.min(Math.max(percentile, 0), 100) / 100;
+		long target = Math.max(1, (long)Math.ceil(fraction * totalCount));
+		
+		long seen = 0;
+		for(int i = 0; i < BUCKET_COUNT; i++)
+		{
+			seen += counts[i];
+			if(seen >= target)
+				return Math.min(getUpperBound(i), maxValue);
+		}
+		
+		return maxValue;
+	}
+	
+	public long getTotalCount()
+	{
+		return totalCount;
+	}
+	
+	public long getMax()
+	{
+		return maxValue;
+	}
+	
+	private static int getBucket(long value)
+	{
+		if(value < SUB_BUCKETS)
+			return (int)value;
+		
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BUCKET_BITS;
+		int subBucket = (int)(value >>> shift) & (SUB_BUCKETS - 1);
+		return (shift + 1) * SUB_BUCKETS + subBucket;
+	}
+	
+	private static long getUpperBound(int bucket)
+	{
+		if(bucket < SUB_BUCKETS)
+			return bucket;
+		
+		int shift = bucket / SUB_BUCKETS - 1;
+		long subBucket = bucket % SUB_BUCKETS;
+		long lowerBound = (SUB_BUCKETS + subBucket) << shift;
+		return lowerBound + (1L << shift) - 1;
+	}
+}
@@ -9,6 +9,7 @@ package net.wurstclient.util.chunk;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map.Entry;
@@ -19,6 +20,9 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 import net.minecraft.core.BlockPos;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.game.ClientboundBlockUpdatePacket;
+import net.minecraft.network.protocol.game.ClientboundSectionBlocksUpdatePacket;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.state.BlockState;
@@ -30,6 +34,14 @@ import net.wurstclient.settings.ChunkAreaSetting;
 
 public abstract class AbstractChunkCoordinator implements PacketInputListener
 {
+	/**
+	 * How many chunks each coordinator may have queued or scanning at once.
+	 * The rest wait for the next update, where they are re-sorted by
+	 * distance to the player.
+	 */
+	private static final int MAX_IN_FLIGHT_SEARCHES =
+		Math.max(16, Runtime.getRuntime().availableProcessors() * 4);
+	
 	protected final HashMap<ChunkPos, ChunkSearcher> searchers =
 		new HashMap<>();
 	protected final ChunkAreaSetting area;
@@ -41,6 +53,7 @@ public abstract class AbstractChunkCoordinator implements PacketInputListener
 		new ConcurrentLinkedQueue<>();
 	private final HashSet<ChunkPos> readyChunks = new HashSet<>();
 	private final AtomicInteger matchesVersion = new AtomicInteger();
+	private boolean hasBacklog;
 	
 	public AbstractChunkCoordinator(BiPredicate<BlockPos, BlockState> query,
 		ChunkAreaSetting area)
@@ -52,6 +65,8 @@ public abstract class AbstractChunkCoordinator implements PacketInputListener
 	public boolean update()
 	{
 		DimensionType dimension = WurstClient.MC.level.dimensionType();
+		ChunkPos center = WurstClient.MC.player.chunkPosition();
+		ChunkScanService.updateCenter(center);
 		HashSet<ChunkPos> chunkUpdates = clearChunksToUpdate();
 		HashMap<ChunkPos, ArrayList<ChunkSearcher.BlockUpdate>> blockUpdates =
 			clearBlockUpdates();
@@ -76,6 +91,10 @@ public abstract class AbstractChunkCoordinator implements PacketInputListener
 			else if(chunkUpdates.contains(searcherPos))
 				remove = true;
 			
+			// skipped by the scheduler while out of range
+			else if(searcher.wasDropped())
+				remove = true;
+			
 			if(remove)
 			{
 				searchers.remove(searcherPos);
@@ -87,17 +106,37 @@ public abstract class AbstractChunkCoordinator implements PacketInputListener
 			}
 		}
 		
-		// add new ChunkSearchers
+		// add new ChunkSearchers, nearest first and without flooding the
+		// thread pool, so that nearby matches show up before distant ones
+		ArrayList<ChunkAccess> newChunks = new ArrayList<>();
 		for(ChunkAccess chunk : area.getChunksInRange())
+			if(!searchers.containsKey(chunk.getPos()))
+				newChunks.add(chunk);
+			
+		newChunks.sort(Comparator.comparingInt(
+			chunk -> ChunkUtils.getChebyshevDistance(chunk.getPos(), center)));
+		
+		int inFlight = 0;
+		for(ChunkSearcher searcher : searchers.values())
+			if(!searcher.isDone())
+				inFlight++;
+			
+		hasBacklog = false;
+		for(ChunkAccess chunk : newChunks)
 		{
-			ChunkPos chunkPos = chunk.getPos();
-			if(searchers.containsKey(chunkPos))
-				continue;
+			if(inFlight >= MAX_IN_FLIGHT_SEARCHES)
+			{
+				hasBacklog = true;
+				break;
+			}
 			
-			ChunkSearcher searcher = new ChunkSearcher(query, chunk, dimension);
+			ChunkPos chunkPos = chunk.getPos();
+			ChunkSearcher searcher =
+				new ChunkSearcher(query, chunk, dimension, area);
 			searchers.put(chunkPos, searcher);
 			readyChunks.remove(chunkPos);
 			searcher.start();
+			inFlight++;
 			searchersChanged = true;
 		}
 		
@@ -148,12 +187,14 @@ public abstract class AbstractChunkCoordinator implements PacketInputListener
 		chunksToUpdate.clear();
 		pendingBlockUpdates.clear();
 		readyChunks.clear();
+		hasBacklog = false;
 		matchesVersion.incrementAndGet();
 	}
 	
 	public boolean isDone()
 	{
-		return searchers.values().stream().allMatch(ChunkSearcher::isDone);
+		return !hasBacklog
+			&& searchers.values().stream().allMatch(ChunkSearcher::isDone);
 	}
 	
 	public void setQuery(BiPredicate<BlockPos, BlockState> query)
@@ -164,7 +205,7 @@ public abstract class AbstractChunkCoordinator implements PacketInputListener
 	
 	public void setTargetBlock(Block block)
 	{
-		setQuery((pos, state) -> block == state.getBlock());
+		setQuery(PaletteQuery.of(state -> block == state.getBlock()));
 	}
 	
 	public boolean hasReadyMatches()
@@ -183,6 +224,12 @@ public abstract class AbstractChunkCoordinator implements PacketInputListener
 			.flatMap(ChunkSearcher::getReadyMatches);
 	}
 	
+	protected Stream<PackedMatches> streamReadyPackedMatches()
+	{
+		return searchers.values().stream()
+			.map(ChunkSearcher::getReadyPackedMatches).filter(Objects::nonNull);
+	}
+	
 	protected void onMatchesUpdated(ChunkSearcher searcher)
 	{
 		// Overridden where needed
@@ -211,6 +258,36 @@ public abstract class AbstractChunkCoordinator implements PacketInputListener
 		return updates;
 	}
 	
+	/**
+	 * Queues the block changes from a {@link ClientboundBlockUpdatePacket} or
+	 * {@link ClientboundSectionBlocksUpdatePacket}, so that the next
+	 * {@link #update()} can patch the affected chunk's matches in place
+	 * instead of searching the whole chunk again.
+	 *
+	 * <p>
+	 * Returns <code>false</code> if the given packet is of a different type.
+	 */
+	protected boolean enqueueBlockUpdates(Packet<?> packet)
+	{
+		if(packet instanceof ClientboundBlockUpdatePacket blockUpdate)
+		{
+			BlockPos pos = blockUpdate.getPos();
+			enqueueBlockUpdate(ChunkPos.containing(pos), pos,
+				blockUpdate.getBlockState());
+			return true;
+		}
+		
+		if(packet instanceof ClientboundSectionBlocksUpdatePacket deltaUpdate)
+		{
+			ChunkPos chunkPos = deltaUpdate.sectionPos.chunk();
+			deltaUpdate.runUpdates(
+				(pos, state) -> enqueueBlockUpdate(chunkPos, pos, state));
+			return true;
+		}
+		
+		return false;
+	}
+	
 	protected void enqueueBlockUpdate(ChunkPos chunkPos, BlockPos blockPos,
 		BlockState state)
 	{
@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2014-2026 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.util.chunk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.entity.BlockEntityType;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.phys.Vec3;
+import net.wurstclient.WurstClient;
+import net.wurstclient.events.UpdateListener;
+
+/**
+ * Client-wide index of the block entities in loaded chunks, bucketed by chunk
+ * and by {@link BlockEntityType}, so that ESP hacks can ask for the types and
+ * the distance they need instead of streaming every loaded chunk each tick.
+ *
+ * <p>
+ * Chunks are re-indexed right after the client has applied the chunk, block
+ * or unload packet that touched them, from
+ * {@link net.wurstclient.mixin.ClientPacketListenerMixin}. Queries must be
+ * made on the client thread.
+ */
+public final class BlockEntityIndex implements UpdateListener
+{
+	private static final int PRUNE_INTERVAL_TICKS = 100;
+	
+	private final Long2ObjectOpenHashMap<Bucket> buckets =
+		new Long2ObjectOpenHashMap<>();
+	private final Reference2ObjectOpenHashMap<BlockEntityType<?>, LongOpenHashSet> chunksByType =
+		new Reference2ObjectOpenHashMap<>();
+	private ClientLevel level;
+	private boolean needsFullScan;
+	private int ticksUntilPrune;
+	
+	/**
+	 * Re-indexes the given chunk. Called after the client has applied a
+	 * packet that loaded, changed or unloaded it.
+	 */
+	public void afterUpdateChunk(int chunkX, int chunkZ)
+	{
+		// a new level is indexed from scratch in the next onUpdate()
+		if(level == null || level != WurstClient.MC.level || needsFullScan)
+			return;
+		
+		reindex(ChunkPos.pack(chunkX, chunkZ));
+	}
+	
+	@Override
+	public void onUpdate()
+	{
+		ClientLevel currentLevel = WurstClient.MC.level;
+		if(currentLevel != level)
+		{
+			clear();
+			level = currentLevel;
+			needsFullScan = true;
+		}
+		
+		if(level == null)
+			return;
+		
+		if(needsFullScan)
+		{
+			if(WurstClient.MC.player == null)
+				return;
+			
+			ChunkUtils.getLoadedChunks().forEach(this::index);
+			needsFullScan = false;
+			ticksUntilPrune = PRUNE_INTERVAL_TICKS;
+			return;
+		}
+		
+		if(--ticksUntilPrune > 0)
+			return;
+		
+		// catches unloads that didn't arrive as a packet, e.g. when the
+		// render distance shrinks
+		ticksUntilPrune = PRUNE_INTERVAL_TICKS;
+		LongArrayList unloaded = new LongArrayList();
+		for(LongIterator itr = buckets.keySet().iterator(); itr.hasNext();)
+		{
+			long key = itr.nextLong();
+			if(!level.hasChunk(ChunkPos.getX(key), ChunkPos.getZ(key)))
+				unloaded.add(key);
+		}
+		for(int i = 0; i < unloaded.size(); i++)
+			remove(unloaded.getLong(i));
+	}
+	
+	/**
+	 * Returns all indexed block entities of the given type, in no particular
+	 * order.
+	 */
+	public ArrayList<BlockEntity> getAll(BlockEntityType<?> type)
+	{
+		ArrayList<BlockEntity> result = new ArrayList<>();
+		LongOpenHashSet chunks = chunksByType.get(type);
+		if(chunks == null)
+			return result;
+		
+		for(LongIterator itr = chunks.iterator(); itr.hasNext();)
+			for(BlockEntity be : buckets.get(itr.nextLong()).byType.get(type))
+				if(!be.isRemoved())
+					result.add(be);
+		
+		return result;
+	}
+	
+	/**
+	 * Returns up to <code>limit</code> block entities of the given types that
+	 * are within <code>maxDistance</code> of <code>center</code> and pass
+	 * <code>filter</code>, nearest first.
+	 *
+	 * <p>
+	 * Chunks are visited in order of their horizontal distance to
+	 * <code>center</code>, so the search stops as soon as no remaining chunk
+	 * can hold anything closer than the current <code>limit</code>-th match.
+	 * A <code>limit</code> of zero or less returns every match, unsorted.
+	 * Passing <code>null</code> as <code>types</code> or <code>filter</code>
+	 * matches everything.
+	 */
+	public ArrayList<BlockEntity> getNearest(Vec3 center, double maxDistance,
+		int limit, Collection<? extends BlockEntityType<?>> types,
+		Predicate<BlockEntity> filter)
+	{
+		double maxDistanceSq = maxDistance * maxDistance;
+		long[] chunks = getCandidateChunks(types);
+		double[] bounds = new double[chunks.length];
+		int[] order = new int[chunks.length];
+		for(int i = 0; i < chunks.length; i++)
+		{
+			bounds[i] = getHorizontalDistanceSq(chunks[i], center);
+			order[i] = i;
+		}
+		IntArrays.quickSort(order, (a, b) -> Double.compare(bounds[a],
+			bounds[b]));
+		
+		ArrayList<BlockEntity> all = new ArrayList<>();
+		PriorityQueue<Match> nearest = new PriorityQueue<>(
+			Comparator.comparingDouble(Match::distanceSq).reversed());
+		
+		for(int i : order)
+		{
+			if(bounds[i] > maxDistanceSq)
+				break;
+			
+			if(limit > 0 && nearest.size() >= limit
+				&& bounds[i] >= nearest.peek().distanceSq())
+				break;
+			
+			Bucket bucket = buckets.get(chunks[i]);
+			if(types == null)
+			{
+				for(ArrayList<BlockEntity> list : bucket.byType.values())
+					collect(list, center, maxDistanceSq, limit, filter, all,
+						nearest);
+				continue;
+			}
+			
+			for(BlockEntityType<?> type : types)
+			{
+				ArrayList<BlockEntity> list = bucket.byType.get(type);
+				if(list != null)
+					collect(list, center, maxDistanceSq, limit, filter, all,
+						nearest);
+			}
+		}
+		
+		if(limit <= 0)
+			return all;
+		
+		BlockEntity[] sorted = new BlockEntity[nearest.size()];
+		for(int i = sorted.length - 1; i >= 0; i--)
+			sorted[i] = nearest.poll().be();
+		
+		return new ArrayList<>(Arrays.asList(sorted));
+	}
+	
+	private void clear()
+	{
+		buckets.clear();
+		chunksByType.clear();
+		ticksUntilPrune = PRUNE_INTERVAL_TICKS;
+	}
+	
+	private static void collect(ArrayList<BlockEntity> list, Vec3 center,
+		double maxDistanceSq, int limit, Predicate<BlockEntity> filter,
+		ArrayList<BlockEntity> all, PriorityQueue<Match> nearest)
+	{
+		for(BlockEntity be : list)
+		{
+			if(be.isRemoved())
+				continue;
+			
+			double distanceSq = be.getBlockPos().distToCenterSqr(center);
+			if(distanceSq > maxDistanceSq)
+				continue;
+			
+			if(filter != null && !filter.test(be))
+				continue;
+			
+			if(limit <= 0)
+			{
+				all.add(be);
+				continue;
+			}
+			
+			if(nearest.size() < limit)
+			{
+				nearest.offer(new Match(be, distanceSq));
+				continue;
+			}
+			
+			if(distanceSq < nearest.peek().distanceSq())
+			{
+				nearest.poll();
+				nearest.offer(new Match(be, distanceSq));
+			}
+		}
+	}
+	
+	private long[] getCandidateChunks(
+		Collection<? extends BlockEntityType<?>> types)
+	{
+		if(types == null)
+			return buckets.keySet().toLongArray();
+		
+		LongOpenHashSet chunks = new LongOpenHashSet();
+		for(BlockEntityType<?> type : types)
+		{
+			LongOpenHashSet typeChunks = chunksByType.get(type);
+			if(typeChunks != null)
+				chunks.addAll(typeChunks);
+		}
+		
+		return chunks.toLongArray();
+	}
+	
+	/**
+	 * Returns the squared horizontal distance from <code>center</code> to the
+	 * nearest block center in the given chunk, which is a lower bound for the
+	 * distance to any block entity in it.
+	 */
+	private static double getHorizontalDistanceSq(long chunkKey, Vec3 center)
+	{
+		double minX = (ChunkPos.getX(chunkKey) << 4) + 0.5;
+		double minZ = (ChunkPos.getZ(chunkKey) << 4) + 0.5;
+		double dx = Math.max(0, Math.max(minX - center.x,
+			center.x - (minX + 15)));
+		double dz = Math.max(0, Math.max(minZ - center.z,
+			center.z - (minZ + 15)));
+		return dx * dx + dz * dz;
+	}
+	
+	private void reindex(long chunkKey)
+	{
+		remove(chunkKey);
+		
+		int chunkX = ChunkPos.getX(chunkKey);
+		int chunkZ = ChunkPos.getZ(chunkKey);
+		if(level.hasChunk(chunkX, chunkZ))
+			index(level.getChunk(chunkX, chunkZ));
+	}
+	
+	private void index(LevelChunk chunk)
+	{
+		Collection<BlockEntity> blockEntities =
+			chunk.getBlockEntities().values();
+		if(blockEntities.isEmpty())
+			return;
+		
+		ChunkPos pos = chunk.getPos();
+		long chunkKey = ChunkPos.pack(pos.x(), pos.z());
+		Bucket bucket = new Bucket();
+		for(BlockEntity be : blockEntities)
+		{
+			bucket.byType.computeIfAbsent(be.getType(), t -> new ArrayList<>())
+				.add(be);
+		}
+		
+		buckets.put(chunkKey, bucket);
+		for(BlockEntityType<?> type : bucket.byType.keySet())
+			chunksByType.computeIfAbsent(type, t -> new LongOpenHashSet())
+				.add(chunkKey);
+	}
+	
+	private void remove(long chunkKey)
+	{
+		Bucket bucket = buckets.remove(chunkKey);
+		if(bucket == null)
+			return;
+		
+		for(BlockEntityType<?> type : bucket.byType.keySet())
+		{
+			LongOpenHashSet chunks = chunksByType.get(type);
+			chunks.remove(chunkKey);
+			if(chunks.isEmpty())
+				chunksByType.remove(type);
+		}
+	}
+	
+	private static final class Bucket
+	{
+		private final Reference2ObjectOpenHashMap<BlockEntityType<?>, ArrayList<BlockEntity>> byType =
+			new Reference2ObjectOpenHashMap<>();
+	}
+	
+	private record Match(BlockEntity be, double distanceSq)
+	{}
+}
@@ -0,0 +1,510 @@
+/*
+ * Copyright (c) 2014-2026 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.util.chunk;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BiPredicate;
+import org.slf4j.Logger;
+import com.mojang.logging.LogUtils;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.ChunkAccess;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.MissingPaletteEntryException;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import net.wurstclient.WurstClient;
+
+/**
+ * Shared scanning engine behind every {@link ChunkSearcher}.
+ *
+ * <p>
+ * Searchers that start on the same chunk at roughly the same time (e.g.
+ * Search, X-Ray and PortalESP all reacting to the same chunk load) are
+ * grouped into one batch. Each batch snapshots the chunk once and tests all
+ * of its queries in a single pass over the blocks, then hands each searcher
+ * its own {@link PackedMatches}.
+ */
+final class ChunkScanService
+{
+	private static final Logger LOGGER = LogUtils.getLogger();
+	
+	/**
+	 * Searchers can only join a batch that was created within this window,
+	 * so that they don't get a snapshot that is older than one tick.
+	 */
+	private static final long BATCH_WINDOW_NANOS = 50_000_000L;
+	
+	/**
+	 * Limited by the width of the per-palette-entry match masks.
+	 */
+	private static final int MAX_BATCH_SIZE = Long.SIZE;
+	
+	private static final IdentityHashMap<ChunkAccess, Batch> OPEN_BATCHES =
+		new IdentityHashMap<>();
+	
+	/**
+	 * Batches that haven't started yet. Guarded by {@link #OPEN_BATCHES}.
+	 */
+	private static final ArrayList<Batch> PENDING_BATCHES = new ArrayList<>();
+	
+	private static volatile ChunkPos center;
+	
+	private ChunkScanService()
+	{}
+	
+	/**
+	 * Schedules the given searcher's query on its chunk, sharing the
+	 * snapshot and block pass with any other searcher that is waiting for
+	 * the same chunk.
+	 *
+	 * <p>
+	 * Pending batches don't run in submission order. Each worker picks the
+	 * batch closest to the last {@link #updateCenter(ChunkPos) center} at the
+	 * moment it becomes free, so nearby chunks finish first even while the
+	 * player is moving.
+	 */
+	static CompletableFuture<PackedMatches> submit(ChunkSearcher searcher,
+		ChunkAccess chunk, ExecutorService executor)
+	{
+		CompletableFuture<PackedMatches> future;
+		boolean newBatch = false;
+		
+		synchronized(OPEN_BATCHES)
+		{
+			Batch batch = OPEN_BATCHES.get(chunk);
+			if(batch == null || !batch.canJoin(System.nanoTime()))
+			{
+				ChunkSnapshot snapshot = ChunkSnapshot.capture(chunk);
+				if(snapshot == null)
+					return CompletableFuture
+						.completedFuture(new PackedMatches());
+				
+				batch = new Batch(chunk, snapshot);
+				OPEN_BATCHES.put(chunk, batch);
+				PENDING_BATCHES.add(batch);
+				newBatch = true;
+			}
+			
+			future = batch.add(searcher);
+		}
+		
+		// one task per batch, but each task runs whichever batch is nearest
+		if(newBatch)
+			executor.execute(ChunkScanService::runNearestBatch);
+		
+		return future;
+	}
+	
+	/**
+	 * Sets the chunk that pending scans are prioritized around. Called from
+	 * the client thread whenever a coordinator updates.
+	 */
+	static void updateCenter(ChunkPos pos)
+	{
+		center = pos;
+	}
+	
+	private static void runNearestBatch()
+	{
+		Batch batch;
+		ChunkPos currentCenter = center;
+		
+		synchronized(OPEN_BATCHES)
+		{
+			int nearest = -1;
+			int nearestDistance = Integer.MAX_VALUE;
+			for(int i = 0; i < PENDING_BATCHES.size(); i++)
+			{
+				int distance = currentCenter == null ? 0 : ChunkUtils
+					.getChebyshevDistance(PENDING_BATCHES.get(i).getPos(),
+						currentCenter);
+				if(distance >= nearestDistance)
+					continue;
+				
+				nearest = i;
+				nearestDistance = distance;
+			}
+			
+			if(nearest < 0)
+				return;
+			
+			// swap-remove, order doesn't matter since we always search
+			int last = PENDING_BATCHES.size() - 1;
+			batch = PENDING_BATCHES.get(nearest);
+			PENDING_BATCHES.set(nearest, PENDING_BATCHES.get(last));
+			PENDING_BATCHES.remove(last);
+			
+			batch.started = true;
+			OPEN_BATCHES.remove(batch.chunk, batch);
+		}
+		
+		batch.run(currentCenter);
+	}
+	
+	private static final class Batch
+	{
+		private final ChunkAccess chunk;
+		private final ChunkSnapshot snapshot;
+		private final long createdNanos = System.nanoTime();
+		private final ArrayList<ChunkSearcher> searchers = new ArrayList<>();
+		private final ArrayList<CompletableFuture<PackedMatches>> futures =
+			new ArrayList<>();
+		private boolean started;
+		
+		private Batch(ChunkAccess chunk, ChunkSnapshot snapshot)
+		{
+			this.chunk = chunk;
+			this.snapshot = snapshot;
+		}
+		
+		private ChunkPos getPos()
+		{
+			return snapshot.chunkPos();
+		}
+		
+		private boolean canJoin(long now)
+		{
+			return !started && searchers.size() < MAX_BATCH_SIZE
+				&& now - createdNanos < BATCH_WINDOW_NANOS;
+		}
+		
+		private CompletableFuture<PackedMatches> add(ChunkSearcher searcher)
+		{
+			CompletableFuture<PackedMatches> future =
+				new CompletableFuture<>();
+			searchers.add(searcher);
+			futures.add(future);
+			return future;
+		}
+		
+		private void run(ChunkPos currentCenter)
+		{
+			// drop searchers that were cancelled or whose chunk left their
+			// area while they were waiting
+			ArrayList<ChunkSearcher> members = new ArrayList<>();
+			ArrayList<CompletableFuture<PackedMatches>> memberFutures =
+				new ArrayList<>();
+			for(int i = 0; i < searchers.size(); i++)
+			{
+				ChunkSearcher searcher = searchers.get(i);
+				if(searcher.isInterrupted()
+					|| !searcher.isInArea(getPos(), currentCenter))
+				{
+					futures.get(i).cancel(false);
+					continue;
+				}
+				
+				members.add(searcher);
+				memberFutures.add(futures.get(i));
+			}
+			
+			if(members.isEmpty())
+				return;
+			
+			try
+			{
+				PackedMatches[] results = new MultiQueryScan(snapshot,
+					members.toArray(new ChunkSearcher[0])).run();
+				
+				for(int i = 0; i < results.length; i++)
+					memberFutures.get(i).complete(results[i]);
+				
+			}catch(RuntimeException e)
+			{
+				memberFutures.forEach(f -> f.completeExceptionally(e));
+			}
+		}
+	}
+	
+	/**
+	 * One pass over a chunk snapshot that evaluates all of a batch's queries.
+	 * {@link PaletteQuery PaletteQueries} are resolved per palette entry into
+	 * a bit mask, so sections where no palette entry matches any query are
+	 * skipped entirely unless a plain query needs to see every block.
+	 */
+	private static final class MultiQueryScan
+	{
+		private final ChunkSnapshot snapshot;
+		private final ChunkSearcher[] members;
+		private final BiPredicate<BlockPos, BlockState>[] queries;
+		private final PaletteQuery[] paletteQueries;
+		private final PackedMatches[] results;
+		private final boolean hasPlainQueries;
+		
+		private final BlockPos.MutableBlockPos mutablePos =
+			new BlockPos.MutableBlockPos();
+		private boolean reportedMissingEntry;
+		
+		@SuppressWarnings("unchecked")
+		private MultiQueryScan(ChunkSnapshot snapshot, ChunkSearcher[] members)
+		{
+			this.snapshot = snapshot;
+			this.members = members;
+			queries = new BiPredicate[members.length];
+			paletteQueries = new PaletteQuery[members.length];
+			results = new PackedMatches[members.length];
+			
+			boolean plain = false;
+			for(int i = 0; i < members.length; i++)
+			{
+				queries[i] = members[i].getQuery();
+				results[i] = new PackedMatches();
+				
+				if(queries[i] instanceof PaletteQuery paletteQuery)
+					paletteQueries[i] = paletteQuery;
+				else
+					plain = true;
+			}
+			
+			hasPlainQueries = plain;
+		}
+		
+		private PackedMatches[] run()
+		{
+			int[] ids = new int[4096];
+			long[] masks = new long[PaletteUtils.MAX_LOCAL_PALETTE_SIZE];
+			BlockState[] entries =
+				new BlockState[PaletteUtils.MAX_LOCAL_PALETTE_SIZE];
+			
+			int minY = snapshot.minY();
+			int maxY = snapshot.maxY();
+			int lastSection = SectionPos.blockToSectionCoord(maxY)
+				- snapshot.minSectionCoord();
+			
+			for(int i = 0; i <= lastSection; i++)
+			{
+				if(allInterrupted())
+					break;
+				
+				int sectionMinY = SectionPos
+					.sectionToBlockCoord(snapshot.minSectionCoord() + i);
+				int fromY = Math.max(minY, sectionMinY) - sectionMinY;
+				int toY = Math.min(maxY, sectionMinY + 15) - sectionMinY;
+				if(fromY > toY)
+					continue;
+				
+				int start = fromY << 8;
+				int end = (toY + 1) << 8;
+				PalettedContainer<BlockState> container =
+					i < snapshot.sections().length ? snapshot.sections()[i]
+						: null;
+				
+				// empty sections are all air, which some queries do match
+				if(container == null)
+				{
+					BlockState air = Blocks.AIR.defaultBlockState();
+					long airMask = getPaletteMask(air);
+					if(airMask == 0 && !hasPlainQueries)
+						continue;
+					
+					for(int index = start; index < end; index++)
+						visit(sectionMinY, index, air, airMask);
+					continue;
+				}
+				
+				// skip the whole section if no palette entry can match
+				if(!hasPlainQueries && !container.maybeHas(this::anyPaletteHit))
+					continue;
+				
+				PaletteUtils.Data<BlockState> data =
+					PaletteUtils.getData(container);
+				if(data == null || !data.isLocal())
+				{
+					scanContainer(container, sectionMinY, start, end);
+					continue;
+				}
+				
+				int paletteSize = data.paletteSize();
+				boolean anyHit = false;
+				for(int id = 0; id < paletteSize; id++)
+				{
+					BlockState entry;
+					try
+					{
+						entry = data.palette().valueFor(id);
+						
+					}catch(MissingPaletteEntryException e)
+					{
+						reportMissingEntry(e);
+						entry = null;
+					}
+					
+					entries[id] = entry;
+					masks[id] = entry == null ? 0 : getPaletteMask(entry);
+					anyHit |= masks[id] != 0;
+				}
+				
+				if(!anyHit && !hasPlainQueries)
+					continue;
+				
+				// only visit blocks whose palette id matched, unless a
+				// plain query needs to see every block
+				data.unpackIds(ids);
+				for(int index = start; index < end; index++)
+				{
+					int id = ids[index];
+					if(id < 0 || id >= paletteSize)
+						continue;
+					
+					BlockState state = entries[id];
+					if(state == null)
+						continue;
+					
+					if(masks[id] == 0 && !hasPlainQueries)
+						continue;
+					
+					visit(sectionMinY, index, state, masks[id]);
+				}
+			}
+			
+			return results;
+		}
+		
+		private void scanContainer(PalettedContainer<BlockState> container,
+			int sectionMinY, int start, int end)
+		{
+			for(int index = start; index < end; index++)
+			{
+				BlockState state;
+				try
+				{
+					state = container.get(index & 15, index >> 8,
+						index >> 4 & 15);
+					
+				}catch(MissingPaletteEntryException e)
+				{
+					reportMissingEntry(e);
+					continue;
+				}
+				
+				long mask = getPaletteMask(state);
+				if(mask == 0 && !hasPlainQueries)
+					continue;
+				
+				visit(sectionMinY, index, state, mask);
+			}
+		}
+		
+		private void visit(int sectionMinY, int index, BlockState state,
+			long paletteMask)
+		{
+			mutablePos.set(snapshot.minX() + (index & 15),
+				sectionMinY + (index >> 8),
+				snapshot.minZ() + (index >> 4 & 15));
+			long packedPos = mutablePos.asLong();
+			int stateId = -1;
+			
+			for(int i = 0; i < members.length; i++)
+			{
+				if(members[i].isInterrupted())
+					continue;
+				
+				boolean matches;
+				if(paletteQueries[i] != null)
+					matches = (paletteMask & 1L << i) != 0
+						&& paletteQueries[i].testPosition(mutablePos, state);
+				else
+					matches = queries[i].test(mutablePos, state);
+				
+				if(!matches)
+					continue;
+				
+				if(stateId < 0)
+					stateId = Block.getId(state);
+				
+				results[i].add(packedPos, stateId);
+			}
+		}
+		
+		private long getPaletteMask(BlockState state)
+		{
+			long mask = 0;
+			for(int i = 0; i < paletteQueries.length; i++)
+				if(paletteQueries[i] != null
+					&& paletteQueries[i].states().test(state))
+					mask |= 1L << i;
+			
+			return mask;
+		}
+		
+		private boolean anyPaletteHit(BlockState state)
+		{
+			for(PaletteQuery paletteQuery : paletteQueries)
+				if(paletteQuery != null && paletteQuery.states().test(state))
+					return true;
+			
+			return false;
+		}
+		
+		private boolean allInterrupted()
+		{
+			for(ChunkSearcher member : members)
+				if(!member.isInterrupted())
+					return false;
+			
+			return true;
+		}
+		
+		private void reportMissingEntry(MissingPaletteEntryException e)
+		{
+			if(reportedMissingEntry)
+				return;
+			
+			reportedMissingEntry = true;
+			LOGGER.warn("ChunkSearcher skipped palette gap in chunk {}: {}",
+				snapshot.chunkPos(), e.getMessage());
+		}
+	}
+	
+	private record ChunkSnapshot(ChunkPos chunkPos, int minX, int minY,
+		int minZ, int maxX, int maxY, int maxZ, int minSectionCoord,
+		PalettedContainer<BlockState>[] sections)
+	{
+		static ChunkSnapshot capture(ChunkAccess chunk)
+		{
+			if(WurstClient.MC == null || WurstClient.MC.level == null)
+				return null;
+			
+			ChunkPos chunkPos = chunk.getPos();
+			if(!WurstClient.MC.level.hasChunk(chunkPos.x(), chunkPos.z()))
+				return null;
+			
+			LevelChunkSection[] chunkSections = chunk.getSections();
+			@SuppressWarnings("unchecked")
+			PalettedContainer<BlockState>[] copies =
+				new PalettedContainer[chunkSections.length];
+			
+			for(int i = 0; i < chunkSections.length; i++)
+			{
+				LevelChunkSection section = chunkSections[i];
+				if(section == null || section.hasOnlyAir())
+					continue;
+				
+				copies[i] = section.getStates().copy();
+			}
+			
+			int minX = chunkPos.getMinBlockX();
+			int minY = chunk.getMinY();
+			int minZ = chunkPos.getMinBlockZ();
+			int maxX = chunkPos.getMaxBlockX();
+			int maxY = ChunkUtils.getHighestNonEmptySectionYOffset(chunk) + 16;
+			int maxZ = chunkPos.getMaxBlockZ();
+			int minSectionCoord = SectionPos.blockToSectionCoord(minY);
+			
+			return new ChunkSnapshot(chunkPos, minX, minY, minZ, maxX, maxY,
+				maxZ, minSectionCoord, copies);
+		}
+	}
+}
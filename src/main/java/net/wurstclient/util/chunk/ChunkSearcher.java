@@ -13,27 +13,26 @@ import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.BiPredicate;
 import java.util.stream.Stream;
-import org.slf4j.Logger;
-import com.mojang.logging.LogUtils;
 import net.minecraft.core.BlockPos;
-import net.minecraft.core.SectionPos;
 import net.minecraft.world.level.ChunkPos;
-import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.chunk.ChunkAccess;
-import net.minecraft.world.level.chunk.LevelChunkSection;
-import net.minecraft.world.level.chunk.MissingPaletteEntryException;
-import net.minecraft.world.level.chunk.PalettedContainer;
 import net.minecraft.world.level.dimension.DimensionType;
-import net.wurstclient.WurstClient;
+import net.wurstclient.settings.ChunkAreaSetting;
 import net.wurstclient.util.MinPriorityThreadFactory;
 
 /**
  * Searches the given {@link ChunkAccess} for blocks matching the given query.
+ *
+ * <p>
+ * The actual scanning is done by {@link ChunkScanService}, which shares one
+ * chunk snapshot and one block pass between all searchers that start on the
+ * same chunk at the same time. Queries wrapped in a {@link PaletteQuery} are
+ * tested against each section's palette first, so that sections without any
+ * possible match are skipped entirely.
  */
 public final class ChunkSearcher
 {
-	private static final Logger LOGGER = LogUtils.getLogger();
 	private static volatile java.util.concurrent.ExecutorService backgroundThreadPool =
 		MinPriorityThreadFactory.newFixedThreadPool();
 	private static volatile int backgroundThreadPriority =
@@ -42,18 +41,32 @@ public final class ChunkSearcher
 	private final BiPredicate<BlockPos, BlockState> query;
 	private final ChunkAccess chunk;
 	private final DimensionType dimension;
+	private final ChunkAreaSetting area;
 	
-	private CompletableFuture<ArrayList<Result>> future;
-	private boolean interrupted;
-	private volatile ArrayList<Result> results;
+	private CompletableFuture<PackedMatches> future;
+	private volatile boolean interrupted;
+	private volatile PackedMatches results;
+	private List<Result> resultList;
 	private ArrayList<BlockUpdate> pendingUpdates;
 	
 	public ChunkSearcher(BiPredicate<BlockPos, BlockState> query,
 		ChunkAccess chunk, DimensionType dimension)
+	{
+		this(query, chunk, dimension, null);
+	}
+	
+	/**
+	 * @param area
+	 *            If set, the scan is dropped before it starts when the chunk
+	 *            has left this area in the meantime.
+	 */
+	public ChunkSearcher(BiPredicate<BlockPos, BlockState> query,
+		ChunkAccess chunk, DimensionType dimension, ChunkAreaSetting area)
 	{
 		this.query = query;
 		this.chunk = chunk;
 		this.dimension = dimension;
+		this.area = area;
 	}
 	
 	public void start()
@@ -61,15 +74,7 @@ public final class ChunkSearcher
 		if(future != null || interrupted)
 			throw new IllegalStateException();
 		
-		ChunkSnapshot snapshot = ChunkSnapshot.capture(chunk);
-		if(snapshot == null)
-		{
-			future = CompletableFuture.completedFuture(new ArrayList<>());
-			return;
-		}
-		
-		future = CompletableFuture.supplyAsync(() -> searchNow(snapshot),
-			backgroundThreadPool);
+		future = ChunkScanService.submit(this, chunk, backgroundThreadPool);
 	}
 	
 	public static int getBackgroundThreadPriority()
@@ -90,54 +95,6 @@ public final class ChunkSearcher
 		oldPool.shutdownNow();
 	}
 	
-	private ArrayList<Result> searchNow(ChunkSnapshot snapshot)
-	{
-		ArrayList<Result> results = new ArrayList<>();
-		boolean reportedMissingEntry = false;
-		ChunkPos chunkPos = snapshot.chunkPos();
-		
-		int minX = snapshot.minX();
-		int minY = snapshot.minY();
-		int minZ = snapshot.minZ();
-		int maxX = snapshot.maxX();
-		int maxY = snapshot.maxY();
-		int maxZ = snapshot.maxZ();
-		
-		BlockPos.MutableBlockPos mutablePos = new BlockPos.MutableBlockPos();
-		
-		for(int x = minX; x <= maxX; x++)
-			for(int y = minY; y <= maxY; y++)
-				for(int z = minZ; z <= maxZ; z++)
-				{
-					if(interrupted)
-						return results;
-					
-					mutablePos.set(x, y, z);
-					BlockState state;
-					try
-					{
-						state = snapshot.getBlockState(mutablePos);
-						
-					}catch(MissingPaletteEntryException e)
-					{
-						if(!reportedMissingEntry)
-						{
-							reportedMissingEntry = true;
-							LOGGER.warn(
-								"ChunkSearcher skipped palette gap in chunk {}: {}",
-								chunkPos, e.getMessage());
-						}
-						continue;
-					}
-					if(!query.test(mutablePos, state))
-						continue;
-					
-					results.add(new Result(mutablePos.immutable(), state));
-				}
-			
-		return results;
-	}
-	
 	public void cancel()
 	{
 		if(future == null || future.isDone())
@@ -147,6 +104,27 @@ public final class ChunkSearcher
 		future.cancel(false);
 	}
 	
+	BiPredicate<BlockPos, BlockState> getQuery()
+	{
+		return query;
+	}
+	
+	boolean isInArea(ChunkPos pos, ChunkPos center)
+	{
+		return area == null || center == null
+			|| area.getSelected().isInRange(pos, center);
+	}
+	
+	/**
+	 * Returns true if the scan was skipped by the scheduler because the chunk
+	 * left the area before the scan could start. Such searchers should be
+	 * replaced with a new one if the chunk comes back into range.
+	 */
+	public boolean wasDropped()
+	{
+		return !interrupted && future != null && future.isCancelled();
+	}
+	
 	public boolean isInterrupted()
 	{
 		return interrupted;
@@ -164,19 +142,7 @@ public final class ChunkSearcher
 	
 	public Stream<Result> getMatches()
 	{
-		if(future == null || future.isCancelled())
-			return Stream.empty();
-		
-		ensureResultsLoaded();
-		if(results == null)
-			return Stream.empty();
-		
-		ArrayList<Result> snapshot;
-		synchronized(this)
-		{
-			snapshot = new ArrayList<>(results);
-		}
-		return snapshot.stream();
+		return getMatchesList().stream();
 	}
 	
 	public List<Result> getMatchesList()
@@ -188,23 +154,12 @@ public final class ChunkSearcher
 		if(results == null)
 			return List.of();
 		
-		synchronized(this)
-		{
-			return Collections.unmodifiableList(new ArrayList<>(results));
-		}
+		return getResultList();
 	}
 	
 	public Stream<Result> getReadyMatches()
 	{
-		if(!hasResultsReady())
-			return Stream.empty();
-		
-		ArrayList<Result> snapshot;
-		synchronized(this)
-		{
-			snapshot = new ArrayList<>(results);
-		}
-		return snapshot.stream();
+		return getReadyMatchesList().stream();
 	}
 	
 	public List<Result> getReadyMatchesList()
@@ -212,9 +167,36 @@ public final class ChunkSearcher
 		if(!hasResultsReady())
 			return List.of();
 		
+		return getResultList();
+	}
+	
+	/**
+	 * Returns the matches as {@link Result}s, built once per change to the
+	 * packed matches, so that callers polling every tick don't allocate a
+	 * new list each time.
+	 */
+	private synchronized List<Result> getResultList()
+	{
+		if(resultList == null)
+			resultList = Collections.unmodifiableList(results.toResults());
+		
+		return resultList;
+	}
+	
+	/**
+	 * Returns a copy of the ready matches in their packed form, or
+	 * <code>null</code> if the search isn't done yet. Unlike
+	 * {@link #getReadyMatches()}, this doesn't allocate any per-match
+	 * objects.
+	 */
+	public PackedMatches getReadyPackedMatches()
+	{
+		if(!hasResultsReady())
+			return null;
+		
 		synchronized(this)
 		{
-			return Collections.unmodifiableList(new ArrayList<>(results));
+			return results.copy();
 		}
 	}
 	
@@ -258,7 +240,11 @@ public final class ChunkSearcher
 		ensureResultsLoaded();
 		synchronized(this)
 		{
-			return applyUpdates(results, updates);
+			if(!applyUpdates(results, updates))
+				return false;
+			
+			resultList = null;
+			return true;
 		}
 	}
 	
@@ -270,7 +256,7 @@ public final class ChunkSearcher
 		if(!future.isDone())
 			return;
 		
-		ArrayList<Result> computed = future.join();
+		PackedMatches computed = future.join();
 		
 		synchronized(this)
 		{
@@ -290,7 +276,7 @@ public final class ChunkSearcher
 		}
 	}
 	
-	private boolean applyUpdates(ArrayList<Result> target,
+	private boolean applyUpdates(PackedMatches target,
 		List<BlockUpdate> updates)
 	{
 		boolean changed = false;
@@ -299,100 +285,16 @@ public final class ChunkSearcher
 		{
 			BlockPos pos = update.pos();
 			BlockState state = update.state();
-			boolean matches = query.test(pos, state);
-			int index = indexOf(target, pos);
-			
-			if(matches)
-			{
-				Result newResult = new Result(pos, state);
-				if(index < 0)
-				{
-					target.add(newResult);
-					changed = true;
-				}else if(target.get(index).state() != state)
-				{
-					target.set(index, newResult);
-					changed = true;
-				}
-			}else if(index >= 0)
-			{
-				target.remove(index);
-				changed = true;
-			}
+			changed |=
+				target.update(pos.asLong(), state, query.test(pos, state));
 		}
 		
 		return changed;
 	}
 	
-	private int indexOf(ArrayList<Result> list, BlockPos pos)
-	{
-		for(int i = 0; i < list.size(); i++)
-			if(list.get(i).pos().equals(pos))
-				return i;
-			
-		return -1;
-	}
-	
 	public record Result(BlockPos pos, BlockState state)
 	{}
 	
 	public record BlockUpdate(BlockPos pos, BlockState state)
 	{}
-	
-	private record ChunkSnapshot(ChunkPos chunkPos, int minX, int minY,
-		int minZ, int maxX, int maxY, int maxZ, int minSectionCoord,
-		PalettedContainer<BlockState>[] sections)
-	{
-		static ChunkSnapshot capture(ChunkAccess chunk)
-		{
-			if(WurstClient.MC == null || WurstClient.MC.level == null)
-				return null;
-			
-			ChunkPos chunkPos = chunk.getPos();
-			if(!WurstClient.MC.level.hasChunk(chunkPos.x(), chunkPos.z()))
-				return null;
-			
-			LevelChunkSection[] chunkSections = chunk.getSections();
-			@SuppressWarnings("unchecked")
-			PalettedContainer<BlockState>[] copies =
-				new PalettedContainer[chunkSections.length];
-			
-			for(int i = 0; i < chunkSections.length; i++)
-			{
-				LevelChunkSection section = chunkSections[i];
-				if(section == null || section.hasOnlyAir())
-					continue;
-				
-				copies[i] = section.getStates().copy();
-			}
-			
-			int minX = chunkPos.getMinBlockX();
-			int minY = chunk.getMinY();
-			int minZ = chunkPos.getMinBlockZ();
-			int maxX = chunkPos.getMaxBlockX();
-			int maxY = ChunkUtils.getHighestNonEmptySectionYOffset(chunk) + 16;
-			int maxZ = chunkPos.getMaxBlockZ();
-			int minSectionCoord = SectionPos.blockToSectionCoord(minY);
-			
-			return new ChunkSnapshot(chunkPos, minX, minY, minZ, maxX, maxY,
-				maxZ, minSectionCoord, copies);
-		}
-		
-		BlockState getBlockState(BlockPos pos)
-		{
-			int ySection = SectionPos.blockToSectionCoord(pos.getY());
-			int sectionIndex = ySection - minSectionCoord;
-			
-			PalettedContainer<BlockState> container = null;
-			
-			if(sectionIndex >= 0 && sectionIndex < sections.length)
-				container = sections[sectionIndex];
-			
-			if(container == null)
-				return Blocks.AIR.defaultBlockState();
-			
-			return container.get(pos.getX() & 15, pos.getY() & 15,
-				pos.getZ() & 15);
-		}
-	}
 }
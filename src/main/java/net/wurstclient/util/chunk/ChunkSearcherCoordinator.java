@@ -11,8 +11,6 @@ import java.util.function.BiPredicate;
 import java.util.stream.Stream;
 import net.minecraft.core.BlockPos;
 import net.minecraft.network.protocol.Packet;
-import net.minecraft.network.protocol.game.ClientboundBlockUpdatePacket;
-import net.minecraft.network.protocol.game.ClientboundSectionBlocksUpdatePacket;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.block.state.BlockState;
 import net.wurstclient.settings.ChunkAreaSetting;
@@ -36,22 +34,11 @@ public final class ChunkSearcherCoordinator extends AbstractChunkCoordinator
 	{
 		Packet<?> packet = event.getPacket();
 		
-		if(packet instanceof ClientboundBlockUpdatePacket blockUpdate)
-		{
-			BlockPos pos = blockUpdate.getPos();
-			enqueueBlockUpdate(ChunkPos.containing(pos), pos,
-				blockUpdate.getBlockState());
+		// block changes patch the existing matches in place
+		if(enqueueBlockUpdates(packet))
 			return;
-		}
-		
-		if(packet instanceof ClientboundSectionBlocksUpdatePacket deltaUpdate)
-		{
-			ChunkPos chunkPos = deltaUpdate.sectionPos.chunk();
-			deltaUpdate.runUpdates(
-				(pos, state) -> enqueueBlockUpdate(chunkPos, pos, state));
-			return;
-		}
 		
+		// chunk (re)loads still need a full rescan
 		ChunkPos chunkPos = ChunkUtils.getAffectedChunk(packet);
 		
 		if(chunkPos != null)
@@ -67,4 +54,13 @@ public final class ChunkSearcherCoordinator extends AbstractChunkCoordinator
 	{
 		return streamReadyMatches();
 	}
+	
+	/**
+	 * Returns the ready matches of each chunk in their packed form, without
+	 * allocating any per-match objects.
+	 */
+	public Stream<PackedMatches> getReadyPackedMatches()
+	{
+		return streamReadyPackedMatches();
+	}
 }
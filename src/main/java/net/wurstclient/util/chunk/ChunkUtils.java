@@ -38,6 +38,11 @@ public enum ChunkUtils
 		return Math.abs(a.x() - b.x()) + Math.abs(a.z() - b.z());
 	}
 	
+	public static int getChebyshevDistance(ChunkPos a, ChunkPos b)
+	{
+		return Math.max(Math.abs(a.x() - b.x()), Math.abs(a.z() - b.z()));
+	}
+	
 	/**
 	 * Returns the position of the chunk affected by the given
 	 * {@link ClientboundBlockUpdatePacket},
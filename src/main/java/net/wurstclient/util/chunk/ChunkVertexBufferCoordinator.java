@@ -44,6 +44,8 @@ public final class ChunkVertexBufferCoordinator extends AbstractChunkCoordinator
 	@Override
 	public void onReceivedPacket(PacketInputEvent event)
 	{
+		// No delta path here, since queries like MobSpawnESP's depend on
+		// light levels and neighboring blocks, not just on the changed state.
 		ChunkPos center = ChunkUtils.getAffectedChunk(event.getPacket());
 		if(center == null)
 			return;
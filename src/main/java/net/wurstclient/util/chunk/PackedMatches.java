@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2014-2026 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.util.chunk;
+
+import java.util.ArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.wurstclient.util.chunk.ChunkSearcher.Result;
+
+/**
+ * Primitive storage for the matches of one {@link ChunkSearcher}. Positions
+ * are kept as {@link BlockPos#asLong()} values and states as
+ * {@link Block#BLOCK_STATE_REGISTRY} ids, so that searching for common blocks
+ * doesn't allocate a {@link BlockPos} and a {@link Result} per match.
+ *
+ * <p>
+ * Not thread-safe. {@link ChunkSearcher} guards its instance and only hands
+ * out copies.
+ */
+public final class PackedMatches
+{
+	private final LongArrayList positions;
+	private final IntArrayList stateIds;
+	private Long2IntOpenHashMap index;
+	
+	public PackedMatches()
+	{
+		positions = new LongArrayList();
+		stateIds = new IntArrayList();
+	}
+	
+	private PackedMatches(PackedMatches other)
+	{
+		positions = new LongArrayList(other.positions);
+		stateIds = new IntArrayList(other.stateIds);
+	}
+	
+	public void add(long pos, int stateId)
+	{
+		if(index != null)
+			index.put(pos, positions.size());
+		
+		positions.add(pos);
+		stateIds.add(stateId);
+	}
+	
+	/**
+	 * Adds, replaces or removes the match at the given position. Returns true
+	 * if anything changed.
+	 */
+	boolean update(long pos, BlockState state, boolean matches)
+	{
+		if(index == null)
+			buildIndex();
+		
+		int i = index.get(pos);
+		if(matches)
+		{
+			int stateId = Block.getId(state);
+			if(i < 0)
+			{
+				add(pos, stateId);
+				return true;
+			}
+			
+			if(stateIds.getInt(i) == stateId)
+				return false;
+			
+			stateIds.set(i, stateId);
+			return true;
+		}
+		
+		if(i < 0)
+			return false;
+		
+		// swap-remove so patching stays O(1) for large result lists
+		index.remove(pos);
+		int last = positions.size() - 1;
+		if(i < last)
+		{
+			long lastPos = positions.getLong(last);
+			positions.set(i, lastPos);
+			stateIds.set(i, stateIds.getInt(last));
+			index.put(lastPos, i);
+		}
+		
+		positions.removeLong(last);
+		stateIds.removeInt(last);
+		return true;
+	}
+	
+	private void buildIndex()
+	{
+		index = new Long2IntOpenHashMap(positions.size());
+		index.defaultReturnValue(-1);
+		for(int i = 0; i < positions.size(); i++)
+			index.put(positions.getLong(i), i);
+	}
+	
+	public int size()
+	{
+		return positions.size();
+	}
+	
+	public boolean isEmpty()
+	{
+		return positions.isEmpty();
+	}
+	
+	public long getPos(int i)
+	{
+		return positions.getLong(i);
+	}
+	
+	public int getStateId(int i)
+	{
+		return stateIds.getInt(i);
+	}
+	
+	public BlockState getState(int i)
+	{
+		return Block.stateById(stateIds.getInt(i));
+	}
+	
+	public PackedMatches copy()
+	{
+		return new PackedMatches(this);
+	}
+	
+	public ArrayList<Result> toResults()
+	{
+		ArrayList<Result> results = new ArrayList<>(positions.size());
+		for(int i = 0; i < positions.size(); i++)
+			results.add(new Result(BlockPos.of(positions.getLong(i)),
+				Block.stateById(stateIds.getInt(i))));
+		
+		return results;
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2014-2026 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.util.chunk;
+
+import java.util.Objects;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.block.state.BlockState;
+
+/**
+ * A chunk search query whose block state test doesn't depend on the
+ * position. {@link ChunkSearcher} tests such queries against each section's
+ * palette first, skips sections without any matching entry and only visits
+ * the blocks whose palette id matched.
+ *
+ * <p>
+ * The optional position test is only run for blocks that already passed the
+ * state test.
+ */
+public record PaletteQuery(Predicate<BlockState> states,
+	BiPredicate<BlockPos, BlockState> positions)
+	implements BiPredicate<BlockPos, BlockState>
+{
+	public PaletteQuery
+	{
+		Objects.requireNonNull(states);
+	}
+	
+	public static PaletteQuery of(Predicate<BlockState> states)
+	{
+		return new PaletteQuery(states, null);
+	}
+	
+	public static PaletteQuery of(Predicate<BlockState> states,
+		BiPredicate<BlockPos, BlockState> positions)
+	{
+		return new PaletteQuery(states, positions);
+	}
+	
+	@Override
+	public boolean test(BlockPos pos, BlockState state)
+	{
+		return states.test(state)
+			&& (positions == null || positions.test(pos, state));
+	}
+	
+	public boolean testPosition(BlockPos pos, BlockState state)
+	{
+		return positions == null || positions.test(pos, state);
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2014-2026 Wurst-Imperium and contributors.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+package net.wurstclient.util.chunk;
+
+import net.minecraft.util.BitStorage;
+import net.minecraft.world.level.chunk.Palette;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import net.wurstclient.mixin.PalettedContainerAccessor;
+
+/**
+ * Gives direct access to the palette and packed index storage behind a
+ * {@link PalettedContainer}, so that callers can test each distinct state
+ * once instead of once per block.
+ *
+ * <p>
+ * Section containers always use the index order
+ * <code>(y &lt;&lt; 8) | (z &lt;&lt; 4) | x</code>.
+ */
+public enum PaletteUtils
+{
+	;
+	
+	/**
+	 * Palettes larger than this are the global registry palette, where
+	 * testing every entry would be slower than testing every block.
+	 */
+	public static final int MAX_LOCAL_PALETTE_SIZE = 256;
+	
+	/**
+	 * Returns the palette and index storage of the given container, or
+	 * <code>null</code> if it doesn't have any yet.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> Data<T> getData(PalettedContainer<T> container)
+	{
+		if(container == null)
+			return null;
+		
+		PalettedContainer.Data<T> data =
+			((PalettedContainerAccessor<T>)container).getData();
+		if(data == null || data.palette() == null || data.storage() == null)
+			return null;
+		
+		return new Data<>(data.palette(), data.storage());
+	}
+	
+	public record Data<T>(Palette<T> palette, BitStorage storage)
+	{
+		public int paletteSize()
+		{
+			return palette.getSize();
+		}
+		
+		/**
+		 * Returns true if the palette is small enough to be worth testing
+		 * entry by entry.
+		 */
+		public boolean isLocal()
+		{
+			return palette.getSize() <= MAX_LOCAL_PALETTE_SIZE;
+		}
+		
+		/**
+		 * Writes the palette id of every block into the given array, which
+		 * must hold at least {@link BitStorage#getSize()} entries.
+		 */
+		public void unpackIds(int[] out)
+		{
+			storage.unpack(out);
+		}
+	}
+}